@@ -0,0 +1,92 @@
+package com.github.loyada.jdollarx.benchmarks;
+
+import com.github.loyada.jdollarx.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static com.github.loyada.jdollarx.BasicPath.span;
+import static com.github.loyada.jdollarx.ElementProperties.hasClass;
+import static com.github.loyada.jdollarx.ElementProperties.hasText;
+
+/**
+ * Measures the cost of building and rendering nested {@code inside()}/{@code that()} chains,
+ * which is the typical shape of Paths in large page-object libraries.
+ * Run with:
+ * <pre>
+ *     mvn -Pbenchmarks package
+ *     java -jar jdollarx-benchmarks/target/benchmarks.jar PathCompositionBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathCompositionBenchmark {
+
+    @Param({"5", "20"})
+    public int depth;
+
+    private Path prebuilt;
+
+    @Setup
+    public void setup() {
+        prebuilt = buildNested(depth);
+    }
+
+    private static Path buildNested(int depth) {
+        Path path = span.withClass("leaf");
+        for (int i = 0; i < depth; i++) {
+            Path container = div.that(hasClass("level-" + i), hasText("title " + i));
+            path = path.inside(container).that(hasClass("inner-" + i));
+        }
+        return path;
+    }
+
+    /**
+     * Build a nested Path from scratch, and render it once, as happens when a page object is loaded.
+     */
+    @Benchmark
+    public String buildAndRenderNested() {
+        return buildNested(depth).getXPath().get();
+    }
+
+    /**
+     * Render a Path that is already defined, as happens in every interaction with a static page-object Path.
+     */
+    @Benchmark
+    public String renderPrebuiltXpath() {
+        return prebuilt.getXPath().get();
+    }
+
+    @Benchmark
+    public String renderPrebuiltAlternateXpath() {
+        return prebuilt.getAlternateXPath().get();
+    }
+
+    @Benchmark
+    public String describePrebuilt() {
+        return prebuilt.toString();
+    }
+
+    /**
+     * Derive a new Path from a prebuilt one. The relation needs the rendered operands.
+     */
+    @Benchmark
+    public String deriveFromPrebuilt() {
+        return div.withClass("wrapper").contains(prebuilt).getXPath().get();
+    }
+}
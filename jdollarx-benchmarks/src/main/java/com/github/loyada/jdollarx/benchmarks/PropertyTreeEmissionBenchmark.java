@@ -0,0 +1,97 @@
+package com.github.loyada.jdollarx.benchmarks;
+
+import com.github.loyada.jdollarx.ElementProperty;
+import com.github.loyada.jdollarx.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static com.github.loyada.jdollarx.ElementProperties.hasAggregatedTextContaining;
+import static com.github.loyada.jdollarx.ElementProperties.hasAttribute;
+import static com.github.loyada.jdollarx.ElementProperties.hasClass;
+import static com.github.loyada.jdollarx.ElementProperties.hasText;
+import static com.github.loyada.jdollarx.ElementProperties.hasTextStartingWith;
+import static com.github.loyada.jdollarx.ElementProperties.not;
+
+/**
+ * Measures the emission of large trees of element properties, combined with and/or/not.
+ * Every leaf is a text, class or attribute condition, some of which contain quotes.
+ * To see the allocation rate, run with the GC profiler:
+ * <pre>
+ *     mvn -Pbenchmarks package
+ *     java -jar jdollarx-benchmarks/target/benchmarks.jar PropertyTreeEmissionBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PropertyTreeEmissionBenchmark {
+
+    /**
+     * The number of leaves in the tree
+     */
+    @Param({"16", "256"})
+    public int leaves;
+
+    private ElementProperty tree;
+
+    @Setup
+    public void setup() {
+        tree = buildTree(0, leaves);
+    }
+
+    private static ElementProperty buildTree(int from, int to) {
+        if (to - from == 1) {
+            return leaf(from);
+        }
+        int middle = (from + to) / 2;
+        ElementProperty left = buildTree(from, middle);
+        ElementProperty right = buildTree(middle, to);
+        switch ((to - from) % 3) {
+            case 0: return left.and(not(right));
+            case 1: return left.or(right);
+            default: return left.and(right);
+        }
+    }
+
+    private static ElementProperty leaf(int i) {
+        switch (i % 5) {
+            case 0: return hasText("item " + i);
+            case 1: return hasClass("class-" + i);
+            case 2: return hasAttribute("data-id", "row-" + i);
+            case 3: return hasTextStartingWith("it's " + i);
+            default: return hasAggregatedTextContaining("O'Neil " + i);
+        }
+    }
+
+    /**
+     * Emit the xpath of the property tree on its own
+     */
+    @Benchmark
+    public String emitProperty() {
+        return tree.toXpath();
+    }
+
+    /**
+     * Emit a new Path that is defined by the property tree. The Path is not cached, so the entire tree is emitted.
+     */
+    @Benchmark
+    public String emitPath() {
+        Path path = div.that(tree);
+        return path.getXPath().get();
+    }
+}
@@ -0,0 +1,278 @@
+package com.github.loyada.jdollarx;
+
+import com.github.loyada.jdollarx.visual.Images;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An asynchronous version of {@link InBrowser}. Every operation returns immediately with a CompletableFuture,
+ * so that many browsers can be driven from a single thread, and their results combined with the CompletableFuture
+ * API.
+ * A WebDriver is not thread-safe, so all the operations on the same driver run one after the other, in the order
+ * they were submitted, even when they were submitted through different instances of AsyncInBrowser. Operations on
+ * different drivers run concurrently.
+ * The operations run on virtual threads when the JVM supports them, and otherwise on a shared pool of daemon
+ * threads.
+ * Example:
+ * <pre>
+ * {@code
+ *     AsyncInBrowser alice = new AsyncInBrowser(aliceDriver);
+ *     AsyncInBrowser bob = new AsyncInBrowser(bobDriver);
+ *     CompletableFuture.allOf(alice.clickOn(sendButton), bob.clickOn(sendButton)).join();
+ * }
+ * </pre>
+ */
+public final class AsyncInBrowser {
+    private static final boolean virtualThreads;
+    private static final Executor sharedExecutor;
+    private static final Map<WebDriver, Executor> serialExecutors = Collections.synchronizedMap(new WeakHashMap<>());
+
+    static {
+        ExecutorService virtual = virtualThreadExecutor();
+        virtualThreads = (virtual != null);
+        sharedExecutor = virtualThreads ? virtual : Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("dollarx-async-%d").build());
+    }
+
+    private final InBrowser browser;
+    private final Executor executor;
+
+    /**
+     * @param driver the driver. It should not be used directly while operations are pending.
+     */
+    public AsyncInBrowser(WebDriver driver) {
+        this(new InBrowser(driver));
+    }
+
+    /**
+     * @param browser the browser whose operations run asynchronously, with its settings
+     */
+    public AsyncInBrowser(InBrowser browser) {
+        this.browser = browser;
+        this.executor = serialExecutors.computeIfAbsent(browser.getDriver(),
+                driver -> MoreExecutors.newSequentialExecutor(sharedExecutor));
+    }
+
+    /**
+     * Run the operations on the given executor, one after the other. The operations are not ordered with operations
+     * on the same driver that were submitted through other instances.
+     * @param browser the browser whose operations run asynchronously, with its settings
+     * @param executor runs the operations
+     */
+    public AsyncInBrowser(InBrowser browser, Executor executor) {
+        this.browser = browser;
+        this.executor = MoreExecutors.newSequentialExecutor(executor);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() exists from Java 21, and this library is built for Java 11
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the operations run on virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return the synchronous browser that runs the operations
+     */
+    public InBrowser getBrowser() {
+        return browser;
+    }
+
+    /**
+     * Run any operation of InBrowser, in turn with the other operations on the same driver
+     * @param operation the operation
+     * @param <T> the type of the result
+     * @return the result of the operation
+     */
+    public <T> CompletableFuture<T> submit(Function<InBrowser, T> operation) {
+        return schedule(() -> operation.apply(browser));
+    }
+
+    /**
+     * Run any operation of InBrowser, in turn with the other operations on the same driver
+     * @param operation the operation
+     * @return completes when the operation is done
+     */
+    public CompletableFuture<Void> run(Consumer<InBrowser> operation) {
+        return schedule(() -> {
+            operation.accept(browser);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> schedule(Callable<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(operation.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * See {@link InBrowser#find(Path)}
+     * @param el a Path instance
+     * @return the element
+     */
+    public CompletableFuture<WebElement> find(Path el) {
+        return submit(browser -> browser.find(el));
+    }
+
+    /**
+     * See {@link InBrowser#findAll(Path)}
+     * @param el a Path instance
+     * @return the elements
+     */
+    public CompletableFuture<List<WebElement>> findAll(Path el) {
+        return submit(browser -> browser.findAll(el));
+    }
+
+    /**
+     * See {@link InBrowser#countAll(Path)}
+     * @param el a Path instance
+     * @return the number of elements
+     */
+    public CompletableFuture<Integer> countAll(Path el) {
+        return submit(browser -> browser.countAll(el));
+    }
+
+    /**
+     * See {@link InBrowser#isPresent(Path)}
+     * @param el a Path instance
+     * @return whether the element is present
+     */
+    public CompletableFuture<Boolean> isPresent(Path el) {
+        return submit(browser -> browser.isPresent(el));
+    }
+
+    /**
+     * See {@link InBrowser#isDisplayed(Path)}
+     * @param el a Path instance
+     * @return whether the element is displayed
+     */
+    public CompletableFuture<Boolean> isDisplayed(Path el) {
+        return submit(browser -> browser.isDisplayed(el));
+    }
+
+    /**
+     * See {@link InBrowser#clickOn(Path)}
+     * @param el a Path instance
+     * @return the element that was clicked
+     */
+    public CompletableFuture<WebElement> clickOn(Path el) {
+        return submit(browser -> browser.clickOn(el));
+    }
+
+    /**
+     * See {@link InBrowser#clickAt(Path)}
+     * @param el a Path instance
+     * @return the element that was clicked
+     */
+    public CompletableFuture<WebElement> clickAt(Path el) {
+        return submit(browser -> browser.clickAt(el));
+    }
+
+    /**
+     * See {@link InBrowser#hoverOver(Path)}
+     * @param el a Path instance
+     * @return the element
+     */
+    public CompletableFuture<WebElement> hoverOver(Path el) {
+        return submit(browser -> browser.hoverOver(el));
+    }
+
+    /**
+     * Send keys to the browser. See {@link InBrowser#sendKeys(CharSequence...)}
+     * @param charsToSend the keys
+     * @return completes when the keys were sent
+     */
+    public CompletableFuture<Void> sendKeys(CharSequence... charsToSend) {
+        return run(browser -> browser.sendKeys(charsToSend).toBrowser());
+    }
+
+    /**
+     * Send keys to an element. See {@link InBrowser#sendKeys(CharSequence...)}
+     * @param el the element that receives the keys
+     * @param charsToSend the keys
+     * @return completes when the keys were sent, or with an OperationFailedException
+     */
+    public CompletableFuture<Void> sendKeysTo(Path el, CharSequence... charsToSend) {
+        return schedule(() -> {
+            browser.sendKeys(charsToSend).to(el);
+            return null;
+        });
+    }
+
+    /**
+     * See {@link InBrowser#scrollTo(Path)}
+     * @param el a Path instance
+     * @return the element
+     */
+    public CompletableFuture<WebElement> scrollTo(Path el) {
+        return submit(browser -> browser.scrollTo(el));
+    }
+
+    /**
+     * Scroll inside an element. See {@link InBrowser#scrollElement(Path)}. Example:
+     * {@code async.scrollElement(grid, scroll -> scroll.downUntilElementIsPresent(row))}
+     * @param wrapper the element to scroll
+     * @param scroll the scroll operation
+     * @param <T> the type of the result
+     * @return the result of the scroll operation
+     */
+    public <T> CompletableFuture<T> scrollElement(Path wrapper, Function<Operations.ScrollElement, T> scroll) {
+        return submit(browser -> scroll.apply(browser.scrollElement(wrapper)));
+    }
+
+    /**
+     * Capture an image of an element. See {@link Images#captureImage(InBrowser, Path)}
+     * @param el a Path instance
+     * @return the image
+     */
+    public CompletableFuture<BufferedImage> captureImage(Path el) {
+        return submit(browser -> Images.captureImage(browser, el));
+    }
+
+    /**
+     * Capture an image of the window. See {@link Images#captureImage(InBrowser)}
+     * @return the image
+     */
+    public CompletableFuture<BufferedImage> captureWindow() {
+        return submit(Images::captureImage);
+    }
+}
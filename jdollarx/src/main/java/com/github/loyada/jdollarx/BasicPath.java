@@ -2,34 +2,53 @@ package com.github.loyada.jdollarx;
 
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.openqa.selenium.WebElement;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.github.loyada.jdollarx.ElementProperties.hasAggregatedTextEqualTo;
 import static com.github.loyada.jdollarx.ElementProperties.isInside;
-import static com.github.loyada.jdollarx.PathUtils.hasHeirarchy;
+import static com.github.loyada.jdollarx.PathUtils.alternateXpathExprOf;
+import static com.github.loyada.jdollarx.PathUtils.correctAxis;
 import static com.github.loyada.jdollarx.PathUtils.oppositeRelation;
-import static com.github.loyada.jdollarx.PathUtils.transformXpathToCorrectAxis;
+import static com.github.loyada.jdollarx.PathUtils.xpathExprOf;
 import static java.lang.String.format;
 
 /**
  * The standard implementation of Path in DollarX
  */
 public final class BasicPath implements Path {
-    private Optional<String> insideXpath = Optional.empty();
-    private final Optional<String> xpath;
-    private final Optional<String> alternateXpath;
-    private final Optional<String> xpathExplanation;
-    private final Optional<String> describedBy;
+    private final Optional<XpathExpr> insideXpath;
+    private final Optional<XpathExpr> xpath;
+    private final Optional<XpathExpr> alternateXpath;
+    private final Optional<LazyDescription> xpathExplanation;
+    private final Optional<LazyDescription> describedBy;
     private final Optional<WebElement> underlying;
     private final ImmutableList<ElementProperty> elementProperties;
 
+    // BasicPath is immutable, so the derived expressions and strings are computed once, on first use, and cached.
+    // A race between readers can at most compute the same value twice, so volatile fields are sufficient.
+    private volatile Optional<XpathExpr> cachedXpathExpr;
+    private volatile Optional<XpathExpr> cachedAlternateXpathExpr;
+    private volatile Optional<XpathExpr> cachedXpathExprWithoutInsideClause;
+    private volatile Optional<String> cachedXpath;
+    private volatile Optional<String> cachedAlternateXpath;
+    private volatile Optional<String> cachedOptimizedXpath;
+    private volatile Optional<String> cachedCssSelector;
+    private volatile String cachedToString;
+    private volatile int cachedHashCode;
+
+    private static final Interner<BasicPath> interner = Interners.newWeakInterner();
+
     public static PathBuilder builder() {
         return new PathBuilder();
     }
@@ -38,13 +57,13 @@ public final class BasicPath implements Path {
      * A builder for BasicPath. Usually {@link #customElement(String)} is simpler and sufficient.
      */
     public static final class PathBuilder {
-        private final Optional<String> insideXpath;
-        private final Optional<String> xpath;
-        private final Optional<String> xpathExplanation;
-        private final Optional<String> describedBy;
+        private final Optional<XpathExpr> insideXpath;
+        private final Optional<XpathExpr> xpath;
+        private final Optional<LazyDescription> xpathExplanation;
+        private final Optional<LazyDescription> describedBy;
         private final Optional<WebElement> underlying;
         private final List<ElementProperty> elementProperties;
-        private final Optional<String> alternateXpath;
+        private final Optional<XpathExpr> alternateXpath;
 
         public PathBuilder() {
             insideXpath = Optional.empty();
@@ -63,6 +82,19 @@ public final class BasicPath implements Path {
                            Optional<WebElement> underlying,
                            List<ElementProperty> elementProperties,
                            Optional<String> alternateXpath
+        ) {
+            this(elementProperties, insideXpath.map(XpathExpr::raw), xpath.map(XpathExpr::raw),
+                    alternateXpath.map(XpathExpr::raw), xpathExplanation.map(LazyDescription::of),
+                    describedBy.map(LazyDescription::of), underlying);
+        }
+
+        private PathBuilder(List<ElementProperty> elementProperties,
+                            Optional<XpathExpr> insideXpath,
+                            Optional<XpathExpr> xpath,
+                            Optional<XpathExpr> alternateXpath,
+                            Optional<LazyDescription> xpathExplanation,
+                            Optional<LazyDescription> describedBy,
+                            Optional<WebElement> underlying
         ) {
             this.insideXpath = insideXpath;
             this.xpath = xpath;
@@ -74,56 +106,96 @@ public final class BasicPath implements Path {
         }
 
         public PathBuilder withXpath(String xpath) {
-            return new PathBuilder(insideXpath, Optional.of(xpath), xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return withXpathExpr(XpathExpr.raw(xpath));
         }
 
         public PathBuilder withAlternateXpath(String alternateXpath) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, Optional.of(alternateXpath));
+            return withAlternateXpathExpr(XpathExpr.raw(alternateXpath));
         }
 
         public PathBuilder withInsideXpath(String insideXpath) {
-            return new PathBuilder(Optional.of(insideXpath), xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return withInsideXpathExprOptional(Optional.of(XpathExpr.raw(insideXpath)));
         }
 
         public PathBuilder withXpathExplanation(String xpathExplanation) {
-            return new PathBuilder(insideXpath, xpath, Optional.of(xpathExplanation), describedBy, underlying, elementProperties, alternateXpath);
+            return withLazyXpathExplanationOptional(Optional.of(LazyDescription.of(xpathExplanation)));
         }
 
         public PathBuilder withDescribedBy(String describedBy) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, Optional.of(describedBy), underlying, elementProperties, alternateXpath);
+            return withLazyDescribedByOptional(Optional.of(LazyDescription.of(describedBy)));
         }
 
         public PathBuilder withUnderlying(WebElement underlying) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, Optional.of(underlying), elementProperties, alternateXpath);
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, Optional.of(underlying));
 
         }
 
         public PathBuilder withInsideXpathOptional(Optional<String> insideXpath) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return withInsideXpathExprOptional(insideXpath.map(XpathExpr::raw));
         }
 
         public PathBuilder withXpathOptional(Optional<String> xpath) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return withXpathExprOptional(xpath.map(XpathExpr::raw));
         }
 
         public PathBuilder withAlternateXpathOptional(Optional<String> alternateXpath) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return withAlternateXpathExprOptional(alternateXpath.map(XpathExpr::raw));
         }
 
         public PathBuilder withXpathExplanationOptional(Optional<String> xpathExplanation) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return withLazyXpathExplanationOptional(xpathExplanation.map(LazyDescription::of));
         }
 
         public PathBuilder withDescribedByOptional(Optional<String> describedBy) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return withLazyDescribedByOptional(describedBy.map(LazyDescription::of));
         }
 
         public PathBuilder withUnderlyingOptional(Optional<WebElement> underlying) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, underlying);
         }
 
         public PathBuilder withElementProperties(List<ElementProperty> elementProperties) {
-            return new PathBuilder(insideXpath, xpath, xpathExplanation, describedBy, underlying, elementProperties, alternateXpath);
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, underlying);
+        }
+
+        PathBuilder withXpathExpr(XpathExpr xpath) {
+            return withXpathExprOptional(Optional.of(xpath));
+        }
+
+        PathBuilder withAlternateXpathExpr(XpathExpr alternateXpath) {
+            return withAlternateXpathExprOptional(Optional.of(alternateXpath));
+        }
+
+        PathBuilder withXpathExprOptional(Optional<XpathExpr> xpath) {
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, underlying);
+        }
+
+        PathBuilder withInsideXpathExprOptional(Optional<XpathExpr> insideXpath) {
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, underlying);
+        }
+
+        PathBuilder withAlternateXpathExprOptional(Optional<XpathExpr> alternateXpath) {
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, underlying);
+        }
+
+        /**
+         * @param xpathExplanation renders the explanation, only if it is read
+         * @return a new builder
+         */
+        PathBuilder withLazyXpathExplanation(Supplier<String> xpathExplanation) {
+            return withLazyXpathExplanationOptional(Optional.of(LazyDescription.lazy(xpathExplanation)));
+        }
+
+        PathBuilder withLazyDescribedBy(Supplier<String> describedBy) {
+            return withLazyDescribedByOptional(Optional.of(LazyDescription.lazy(describedBy)));
+        }
+
+        PathBuilder withLazyXpathExplanationOptional(Optional<LazyDescription> xpathExplanation) {
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, underlying);
+        }
+
+        PathBuilder withLazyDescribedByOptional(Optional<LazyDescription> describedBy) {
+            return new PathBuilder(elementProperties, insideXpath, xpath, alternateXpath, xpathExplanation, describedBy, underlying);
         }
 
         public BasicPath build() {
@@ -132,12 +204,12 @@ public final class BasicPath implements Path {
     }
 
     private BasicPath(Optional<WebElement> underlying,
-                      Optional<String> xpath,
+                      Optional<XpathExpr> xpath,
                       List<ElementProperty> elementProperties,
-                      Optional<String> xpathExplanation,
-                      Optional<String> describedBy,
-                      Optional<String> insideXpath,
-                      Optional<String> alternateXpath
+                      Optional<LazyDescription> xpathExplanation,
+                      Optional<LazyDescription> describedBy,
+                      Optional<XpathExpr> insideXpath,
+                      Optional<XpathExpr> alternateXpath
     ) {
         this.xpath = xpath;
         this.xpathExplanation = xpathExplanation;
@@ -265,13 +337,14 @@ public final class BasicPath implements Path {
          * @return a new Path instance
          */
         public Path ofType(Path path) {
-            String newXPath = path.getXPath().get() + format("[%d]", n);
-            String alternateXpath = path.getAlternateXPath().get() + format("[%d]", n);
+            XpathExpr index = new XpathExpr.Index(String.valueOf(n));
+            XpathExpr newXPath = new XpathExpr.Filtered(xpathExprOf(path), ImmutableList.of(index));
+            XpathExpr alternateXpath = new XpathExpr.Filtered(alternateXpathExprOf(path), ImmutableList.of(index));
 
             return builder().withUnderlyingOptional(path.getUnderlyingSource()).
-                    withXpath(newXPath).
-                    withAlternateXpath(alternateXpath).
-                    withXpathExplanation(format("child number %d of type(%s)", n, path)).build();
+                    withXpathExpr(newXPath).
+                    withAlternateXpathExpr(alternateXpath).
+                    withLazyXpathExplanation(() -> format("child number %d of type(%s)", n, path)).build();
         }
     }
 
@@ -292,18 +365,22 @@ public final class BasicPath implements Path {
          * @return a new Path instance, that adds the global occurrence constraint to it
          */
         public Path of(final Path path) {
+            final XpathExpr index = new XpathExpr.Index((n == 0) ? "last()" : String.valueOf(n));
+            final XpathExpr pathXpath = xpathExprOf(path);
+            final XpathExpr newXPath = new XpathExpr.GlobalIndex(pathXpath, pathXpath, index);
+            final XpathExpr newAlternatePath = new XpathExpr.GlobalIndex(alternateXpathExprOf(path), pathXpath, index);
+            return builder().withUnderlyingOptional(path.getUnderlyingSource()).
+                    withXpathExpr(newXPath).
+                    withAlternateXpathExpr(newAlternatePath).
+                    withLazyXpathExplanation(() -> describe(path)).build();
+        }
+
+        private String describe(Path path) {
             final String prefix = (n == 1) ? "the first occurrence of " :
                     (n == 0) ? "the last occurrence of " : format("occurrence number %d of ", n);
             final String pathString = path.toString();
             final String wrapped = (pathString.contains(" ")) ? format("(%s)", pathString) : pathString;
-            final String index = (n == 0) ? "last()" : format("%d", n);
-            final String xpathPrefix =  (path.getXPath().get().startsWith("(")) ? "(" : "(//";
-            final String newXPath = format("%s%s)[%s]", xpathPrefix, path.getXPath().get(), index);
-            final String newAlternatePath = format("%s%s)[%s]", xpathPrefix, path.getAlternateXPath().get(), index);
-            return builder().withUnderlyingOptional(path.getUnderlyingSource()).
-                    withXpath(newXPath).
-                    withAlternateXpath(newAlternatePath).
-                    withXpathExplanation(prefix + wrapped).build();
+            return prefix + wrapped;
         }
     }
 
@@ -358,36 +435,101 @@ public final class BasicPath implements Path {
 
     @Override
     public Optional<String> getXPath() {
-        if (!xpath.isPresent() && elementProperties.isEmpty() && !insideXpath.isPresent()) {
-            return Optional.empty();
-        } else {
-            String processedXpath = (insideXpath.isPresent() ? (insideXpath.get() + "//") : "") + xpath.orElse("*");
-
-            String props = elementProperties.stream().map(e -> format("[%s]", e.toXpath())).
-                    collect(Collectors.joining());
-            return Optional.of(processedXpath + props);
+        Optional<String> result = cachedXpath;
+        if (result == null) {
+            result = getXpathExpr().map(XpathExpr::toXpath);
+            cachedXpath = result;
         }
+        return result;
     }
 
     @Override
     public Optional<String> getAlternateXPath() {
-        if (!xpath.isPresent() && elementProperties.isEmpty() && !insideXpath.isPresent()) {
-            return Optional.empty();
-        } else {
-            String props = elementProperties.stream().map(e -> format("[%s]", e.toXpath())).
-                    collect(Collectors.joining());
-            return Optional.of(alternateXpath.orElse(xpath.orElse("*")) + props);
+        Optional<String> result = cachedAlternateXpath;
+        if (result == null) {
+            result = getAlternateXpathExpr().map(XpathExpr::toXpath);
+            cachedAlternateXpath = result;
         }
+        return result;
     }
 
-    private Optional<String> getXPathWithoutInsideClause() {
-        if (!xpath.isPresent() && elementProperties.isEmpty()) {
-            return Optional.empty();
-        } else {
-            String props = elementProperties.stream().map(e -> format("[%s]", e.toXpath())).
-                    collect(Collectors.joining());
-            return Optional.of(xpath.orElse("*") + props);
+    /**
+     * Internal implementation.
+     * @return the xpath of this Path, after the rewrites of {@link XpathOptimizer}
+     */
+    Optional<String> getOptimizedXPath() {
+        Optional<String> result = cachedOptimizedXpath;
+        if (result == null) {
+            result = getXpathExpr().map(expr -> XpathOptimizer.optimize(expr).toXpath());
+            cachedOptimizedXpath = result;
+        }
+        return result;
+    }
+
+    /**
+     * Internal implementation.
+     * @return an equivalent CSS selector, if this Path can be expressed as one
+     */
+    Optional<String> getCssSelector() {
+        Optional<String> result = cachedCssSelector;
+        if (result == null) {
+            result = getXpathExpr().flatMap(CssSelectorCompiler::compile);
+            cachedCssSelector = result;
+        }
+        return result;
+    }
+
+    /**
+     * Internal implementation.
+     * @return the expression the xpath of this Path is emitted from
+     */
+    Optional<XpathExpr> getXpathExpr() {
+        Optional<XpathExpr> result = cachedXpathExpr;
+        if (result == null) {
+            if (!xpath.isPresent() && elementProperties.isEmpty() && !insideXpath.isPresent()) {
+                result = Optional.empty();
+            } else {
+                XpathExpr target = withProperties(xpath.orElse(XpathExpr.ANY_ELEMENT));
+                result = Optional.of(new XpathExpr.Cached(insideXpath.isPresent() ?
+                        new XpathExpr.Descendant(insideXpath.get(), target) :
+                        target));
+            }
+            cachedXpathExpr = result;
+        }
+        return result;
+    }
+
+    /**
+     * Internal implementation.
+     * @return the expression the alternate xpath of this Path is emitted from
+     */
+    Optional<XpathExpr> getAlternateXpathExpr() {
+        Optional<XpathExpr> result = cachedAlternateXpathExpr;
+        if (result == null) {
+            result = (!xpath.isPresent() && elementProperties.isEmpty() && !insideXpath.isPresent()) ?
+                    Optional.empty() :
+                    Optional.of(new XpathExpr.Cached(withProperties(alternateXpath.orElse(xpath.orElse(XpathExpr.ANY_ELEMENT)))));
+            cachedAlternateXpathExpr = result;
+        }
+        return result;
+    }
+
+    private Optional<XpathExpr> getXpathExprWithoutInsideClause() {
+        Optional<XpathExpr> result = cachedXpathExprWithoutInsideClause;
+        if (result == null) {
+            result = (!xpath.isPresent() && elementProperties.isEmpty()) ?
+                    Optional.empty() :
+                    Optional.of(new XpathExpr.Cached(withProperties(xpath.orElse(XpathExpr.ANY_ELEMENT))));
+            cachedXpathExprWithoutInsideClause = result;
+        }
+        return result;
+    }
+
+    private XpathExpr withProperties(XpathExpr base) {
+        if (elementProperties.isEmpty()) {
+            return base;
         }
+        return new XpathExpr.Filtered(base, elementProperties.stream().map(XpathExpr::of).collect(Collectors.toList()));
     }
 
     @Override
@@ -397,12 +539,12 @@ public final class BasicPath implements Path {
 
     @Override
     public Optional<String> getXpathExplanation() {
-        return xpathExplanation;
+        return xpathExplanation.map(LazyDescription::get);
     }
 
     @Override
     public Optional<String> getDescribedBy() {
-        return describedBy;
+        return describedBy.map(LazyDescription::get);
     }
 
     @Override
@@ -412,12 +554,12 @@ public final class BasicPath implements Path {
 
     @Override
     public Path describedBy(String description) {
-        return new BasicPath(underlying, xpath, elementProperties, xpathExplanation, Optional.of(description),
+        return new BasicPath(underlying, xpath, elementProperties, xpathExplanation, Optional.of(LazyDescription.of(description)),
                 insideXpath, alternateXpath);
     }
 
     private void verifyRelationBetweenElements(Path path) {
-        if (path.getUnderlyingSource().isPresent() || !getXPath().isPresent() || !path.getXPath().isPresent())
+        if (path.getUnderlyingSource().isPresent() || !getXpathExpr().isPresent() || !path.getXPath().isPresent())
             throw new IllegalArgumentException();
     }
 
@@ -434,11 +576,9 @@ public final class BasicPath implements Path {
         verifyRelationBetweenElements(path);
         return builder().
                 withUnderlyingOptional(underlying).
-                withXpath(format("*[(self::%s) | (self::%s)]", transformXpathToCorrectAxis(this).get(),
-                        transformXpathToCorrectAxis(path).get())).
-                withAlternateXpath(format("*[(self::%s) | (self::%s)]", getAlternateXPath().get(),
-                        path.getAlternateXPath().get())).
-                withXpathExplanation(format("%s or %s", wrapIfNeeded(this), wrapIfNeeded(path))).
+                withXpathExpr(new XpathExpr.Union(correctAxis(this), correctAxis(path))).
+                withAlternateXpathExpr(new XpathExpr.Union(getAlternateXpathExpr().get(), alternateXpathExprOf(path))).
+                withLazyXpathExplanation(() -> format("%s or %s", wrapIfNeeded(this), wrapIfNeeded(path))).
                 build();
     }
 
@@ -454,23 +594,23 @@ public final class BasicPath implements Path {
     public Path that(ElementProperty... prop) {
         if (describedBy.isPresent()) {
             return builder().withUnderlyingOptional(underlying).
-                    withXpathOptional(getXPathWithoutInsideClause()).
-                    withInsideXpathOptional(insideXpath).
+                    withXpathExprOptional(getXpathExprWithoutInsideClause()).
+                    withInsideXpathExprOptional(insideXpath).
                     withElementProperties(ImmutableList.copyOf(prop)).
-                    withAlternateXpathOptional(alternateXpath).
-                    withXpathExplanation(describedBy.get()).build();
+                    withAlternateXpathExprOptional(alternateXpath).
+                    withLazyXpathExplanationOptional(describedBy).build();
         } else {
             ImmutableList<ElementProperty> newProps = ImmutableList.<ElementProperty>builder().
                     addAll(elementProperties).
                     addAll(Arrays.asList(prop)).
                     build();
             return builder().withUnderlyingOptional(underlying).
-                    withXpathOptional(xpath).
-                    withInsideXpathOptional(insideXpath).
+                    withXpathExprOptional(xpath).
+                    withInsideXpathExprOptional(insideXpath).
                     withElementProperties(newProps).
-                    withDescribedByOptional(describedBy).
-                    withAlternateXpathOptional(alternateXpath).
-                    withXpathExplanationOptional(xpathExplanation).build();
+                    withLazyDescribedByOptional(describedBy).
+                    withAlternateXpathExprOptional(alternateXpath).
+                    withLazyXpathExplanationOptional(xpathExplanation).build();
         }
     }
 
@@ -527,26 +667,29 @@ public final class BasicPath implements Path {
      */
     @Override
     public Path inside(final Path path) {
-        final String newXPath = getXPathWithoutInsideClause().orElse("");
-        final String correctedXpathForIndex;
-        final Optional<String> correctInsidePath;
+        final XpathExpr newXPath = getXpathExprWithoutInsideClause().orElse(XpathExpr.raw(""));
+        final XpathExpr correctedXpathForIndex;
+        final Optional<XpathExpr> correctInsidePath;
         final String descriptionPrefix;
-        if (newXPath.startsWith("(")) {
-            correctedXpathForIndex = (newXPath + format("[%s]", isInside(path).toXpath()));
+        if (newXPath.startsWithParenthesis()) {
+            correctedXpathForIndex = new XpathExpr.Filtered(newXPath, ImmutableList.of(XpathExpr.of(isInside(path))));
             correctInsidePath = Optional.empty();
             descriptionPrefix = ", and is inside ";
         } else {
             correctedXpathForIndex = newXPath;
-            correctInsidePath = Optional.of(path.getXPath().get() + (insideXpath.isPresent() ? "//" + insideXpath.get() : ""));
+            final XpathExpr pathXpath = xpathExprOf(path);
+            correctInsidePath = Optional.of(insideXpath.isPresent() ?
+                    new XpathExpr.Descendant(pathXpath, insideXpath.get()) :
+                    pathXpath);
             descriptionPrefix = ", inside ";
         }
 
         return builder().
                 withUnderlyingOptional(path.getUnderlyingSource()).
-                withXpath(correctedXpathForIndex).
-                withInsideXpathOptional(correctInsidePath).
-                withAlternateXpathOptional(this.that(ElementProperties.isDescendantOf(path)).getAlternateXPath()).
-                withXpathExplanation(toString() + descriptionPrefix + wrapIfNeeded(path)).
+                withXpathExpr(correctedXpathForIndex).
+                withInsideXpathExprOptional(correctInsidePath).
+                withAlternateXpathExprOptional(((BasicPath) this.that(ElementProperties.isDescendantOf(path))).getAlternateXpathExpr()).
+                withLazyXpathExplanation(() -> toString() + descriptionPrefix + wrapIfNeeded(path)).
                 build();
     }
 
@@ -557,11 +700,11 @@ public final class BasicPath implements Path {
      */
     @Override
     public Path insideTopLevel() {
-        if (!getXPath().isPresent()) throw new IllegalArgumentException("must have a non-empty xpath");
+        if (!getXpathExpr().isPresent()) throw new IllegalArgumentException("must have a non-empty xpath");
 
         return new PathBuilder().
-                withXpath(XpathUtils.insideTopLevel(getXPath().get())).
-                withDescribedBy(toString()).
+                withXpathExpr(new XpathExpr.TopLevel(getXpathExpr().get())).
+                withLazyDescribedBy(this::toString).
                 build();
     }
 
@@ -729,11 +872,48 @@ public final class BasicPath implements Path {
         return createNewWithAdditionalProperty(ElementProperties.hasTextContaining(txt));
     }
 
+    /**
+     * Two BasicPaths are equal if they are mapped to the same xpath, have the same description, and refer to the same
+     * underlying element. Thus, Paths can be used as keys, regardless of how they were built.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BasicPath)) return false;
+        BasicPath other = (BasicPath) o;
+        return hashCode() == other.hashCode() &&
+                underlying.equals(other.underlying) &&
+                getXPath().equals(other.getXPath()) &&
+                getAlternateXPath().equals(other.getAlternateXPath()) &&
+                toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        int result = cachedHashCode;
+        if (result == 0) {
+            result = Objects.hash(getXPath(), getAlternateXPath(), underlying);
+            cachedHashCode = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a canonical instance that is equal to this Path. All the equal Paths that are interned share the same
+     * instance, including its xpath and description, so a Path that is built repeatedly (for example, in a loop)
+     * is kept in memory only once. Canonical instances are weakly referenced, and are garbage-collected when they are
+     * no longer used.
+     * @return the canonical instance of this Path
+     */
+    public BasicPath intern() {
+        return interner.intern(this);
+    }
+
     private Optional<String> getXpathExplanationForToString() {
         if (xpath.isPresent()) {
             return xpathExplanation.isPresent() ?
-                    xpathExplanation :
-                    Optional.of("xpath: \"" + xpath.get() + "\"");
+                    xpathExplanation.map(LazyDescription::get) :
+                    Optional.of("xpath: \"" + xpath.get().toXpath() + "\"");
         } else return Optional.empty();
     }
 
@@ -744,7 +924,7 @@ public final class BasicPath implements Path {
 
     private Optional<String> getPropertiesToStringForLengthLargerThan2() {
         String propsAsList = elementProperties.stream().map(Object::toString).collect(Collectors.joining(", "));
-        if (xpathExplanation.isPresent() && xpathExplanation.get().contains("with properties") || elementProperties.size() == 1) {
+        if (xpathExplanation.isPresent() && xpathExplanation.get().get().contains("with properties") || elementProperties.size() == 1) {
             return Optional.of("and " + propsAsList);
         } else {
             return Optional.of("that [" + propsAsList + "]");
@@ -753,7 +933,17 @@ public final class BasicPath implements Path {
 
     @Override
     public String toString() {
-        if (describedBy.isPresent() && !describedBy.equals(xpathExplanation)) {
+        String result = cachedToString;
+        if (result == null) {
+            result = computeToString();
+            cachedToString = result;
+        }
+        return result;
+    }
+
+    private String computeToString() {
+        Optional<String> describedBy = getDescribedBy();
+        if (describedBy.isPresent() && !describedBy.equals(getXpathExplanation())) {
             return describedBy.get();
         } else {
             Optional<String> underlyingOption = (underlying.isPresent()) ?
@@ -772,7 +962,7 @@ public final class BasicPath implements Path {
                                             Optional.empty();
 
             return (xpathExplanation.isPresent() && !underlyingOption.isPresent() && !propsOption.isPresent()) ?
-                    xpathExplanation.get() :
+                    xpathExplanation.get().get() :
                     Stream.of(underlyingOption, xpathOption, propsOption).filter(Optional::isPresent).map(Optional::get).
                             collect(Collectors.joining(", "));
         }
@@ -781,39 +971,47 @@ public final class BasicPath implements Path {
 
     private BasicPath createWithSimpleRelation(Path path, String relation) {
         verifyRelationBetweenElements(path);
-        String myXpath = getXPath().get();
+        XpathExpr myXpath = getXpathExpr().get();
         boolean isInside = insideXpath.isPresent();
-        String processedXpath = isInside ? format("*[ancestor::%s and self::%s]", insideXpath.get(), myXpath) : myXpath;
-        String newAlternateXpath = getAlternateXPath().get() + format("[%s::%s]", oppositeRelation(relation), path.getAlternateXPath().get());
-        boolean useAlternateXpath = hasHeirarchy(processedXpath);
-        String newXpath = useAlternateXpath ? newAlternateXpath : (path.getXPath().get() + "/" + relation + "::" + processedXpath);
+        XpathExpr processedXpath = isInside ?
+                new XpathExpr.Filtered(XpathExpr.ANY_ELEMENT, ImmutableList.of(new XpathExpr.AllOf(ImmutableList.of(
+                        new XpathExpr.Relation("ancestor", insideXpath.get()),
+                        new XpathExpr.Relation("self", myXpath))))) :
+                myXpath;
+        XpathExpr newAlternateXpath = withRelation(getAlternateXpathExpr().get(), oppositeRelation(relation), alternateXpathExprOf(path));
+        XpathExpr newXpath = new XpathExpr.AxisStep(xpathExprOf(path), relation, processedXpath, newAlternateXpath);
 
         return builder().
                 withUnderlyingOptional(underlying).
-                withXpath(newXpath).
-                withAlternateXpath(newAlternateXpath).
-                withXpathExplanation(toString() + ", " + relation + " of " + path.toString()).
+                withXpathExpr(newXpath).
+                withAlternateXpathExpr(newAlternateXpath).
+                withLazyXpathExplanation(() -> toString() + ", " + relation + " of " + path.toString()).
                 build();
     }
 
+    private static XpathExpr withRelation(XpathExpr base, String relation, XpathExpr target) {
+        return new XpathExpr.Filtered(base, ImmutableList.of(new XpathExpr.Relation(relation, target)));
+    }
+
     private String wrapIfNeeded(Path path) {
         return (path.toString().trim().contains(" ")) ? "(" + path + ")" : path.toString();
     }
 
     private BasicPath createWithHumanReadableRelation(Path path, String xpathRelation, String humanReadableRelation) {
         verifyRelationBetweenElements(path);
-        String myXpath = getXPath().get();
+        XpathExpr myXpath = getXpathExpr().get();
         boolean isInside = insideXpath.isPresent();
-        String processedXpath = isInside ? format("%s[ancestor::%s]", getXPathWithoutInsideClause().get(), insideXpath.get()) : myXpath;
-        String newAlternateXpath = getAlternateXPath().get() + format("[%s::%s]", oppositeRelation(xpathRelation), path.getAlternateXPath().get());
-        boolean useAlternateXpath = hasHeirarchy(processedXpath);
-        String newXpath = useAlternateXpath ? newAlternateXpath : (path.getXPath().get() + "/" + xpathRelation + "::" + processedXpath);
+        XpathExpr processedXpath = isInside ?
+                withRelation(getXpathExprWithoutInsideClause().get(), "ancestor", insideXpath.get()) :
+                myXpath;
+        XpathExpr newAlternateXpath = withRelation(getAlternateXpathExpr().get(), oppositeRelation(xpathRelation), alternateXpathExprOf(path));
+        XpathExpr newXpath = new XpathExpr.AxisStep(xpathExprOf(path), xpathRelation, processedXpath, newAlternateXpath);
 
         return builder().
                 withUnderlyingOptional(underlying).
-                withXpath(newXpath).
-                withAlternateXpath(newAlternateXpath).
-                withXpathExplanation(toString() + ", " + humanReadableRelation + " " + wrapIfNeeded(path)).
+                withXpathExpr(newXpath).
+                withAlternateXpathExpr(newAlternateXpath).
+                withLazyXpathExplanation(() -> toString() + ", " + humanReadableRelation + " " + wrapIfNeeded(path)).
                 build();
     }
 
@@ -821,22 +1019,22 @@ public final class BasicPath implements Path {
     private BasicPath createNewWithAdditionalProperty(ElementProperty prop) {
         if (describedBy.isPresent()) {
             return builder().withUnderlyingOptional(underlying).
-                    withXpathOptional(getXPath()).
-                    withAlternateXpathOptional(getAlternateXPath()).
-                    withInsideXpathOptional(insideXpath).
+                    withXpathExprOptional(getXpathExpr()).
+                    withAlternateXpathExprOptional(getAlternateXpathExpr()).
+                    withInsideXpathExprOptional(insideXpath).
                     withElementProperties(ImmutableList.of(prop)).
-                    withXpathExplanation(describedBy.get()).build();
+                    withLazyXpathExplanationOptional(describedBy).build();
         } else {
             ImmutableList<ElementProperty> newProps = ImmutableList.<ElementProperty>builder().
                     addAll(elementProperties).add(prop).
                     build();
             return builder().withUnderlyingOptional(underlying).
-                    withXpathOptional(xpath).
-                    withInsideXpathOptional(insideXpath).
-                    withAlternateXpathOptional(getAlternateXPath()).
+                    withXpathExprOptional(xpath).
+                    withInsideXpathExprOptional(insideXpath).
+                    withAlternateXpathExprOptional(getAlternateXpathExpr()).
                     withElementProperties(newProps).
-                    withDescribedByOptional(describedBy).
-                    withXpathExplanationOptional(xpathExplanation).build();
+                    withLazyDescribedByOptional(describedBy).
+                    withLazyXpathExplanationOptional(xpathExplanation).build();
         }
     }
 
@@ -0,0 +1,558 @@
+package com.github.loyada.jdollarx;
+
+import com.github.loyada.jdollarx.singlebrowser.BrowserContext;
+import com.github.loyada.jdollarx.singlebrowser.sizing.WindowResizer;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * A pool of browser sessions, to avoid paying for the creation of a session in every test class.
+ * A session is leased, used through {@link InBrowser}, and returned to the pool when the lease is closed.
+ * On return, the state of the session is reset (cookies, local and session storage, the current page, and
+ * optionally the window size), and unhealthy sessions are evicted and quit.
+ * Example:
+ * <pre>
+ * {@code
+ *     BrowserPool pool = BrowserPool.builder(DriverSetup::createStandardChromeDriver)
+ *             .withMaxSessions(4)
+ *             .withWarmSessions(2)
+ *             .withWindowSize(1200, 800)
+ *             .build();
+ *     try (BrowserPool.Lease lease = pool.lease()) {
+ *         lease.getBrowser().clickOn(button);
+ *     }
+ * }
+ * </pre>
+ * To use a leased session with the singleton API, open a {@link BrowserContext} with its driver.
+ * A pool can be shared between threads.
+ */
+public final class BrowserPool implements AutoCloseable {
+    private final Supplier<WebDriver> factory;
+    private final int maxSessions;
+    private final Predicate<WebDriver> healthCheck;
+    private final int maxLeasesPerSession;
+    private final String resetUrl;
+    private final Optional<int[]> windowSize;
+    private final long defaultLeaseTimeoutMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    private final Deque<Session> idle = new ArrayDeque<>();
+    private int sessions = 0;
+    private int leased = 0;
+    private boolean closed = false;
+
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalLeaseNanos = new AtomicLong();
+
+    private BrowserPool(Builder builder) {
+        this.factory = builder.factory;
+        this.maxSessions = builder.maxSessions;
+        this.healthCheck = builder.healthCheck;
+        this.maxLeasesPerSession = builder.maxLeasesPerSession;
+        this.resetUrl = builder.resetUrl;
+        this.windowSize = builder.windowSize;
+        this.defaultLeaseTimeoutMillis = builder.leaseTimeout.toMillis();
+    }
+
+    /**
+     * @param factory creates a new session. Called when the pool needs a new session, outside of any lock.
+     * @return a builder of a pool
+     */
+    public static Builder builder(Supplier<WebDriver> factory) {
+        return new Builder(factory);
+    }
+
+    /**
+     * Create new sessions in advance, within the maximal size of the pool
+     * @param numberOfSessions the number of sessions to create
+     */
+    public void warmUp(int numberOfSessions) {
+        List<Lease> warmed = new ArrayList<>();
+        try {
+            for (int i = 0; i < numberOfSessions; i++) {
+                Optional<Lease> lease = leaseNewSession();
+                if (!lease.isPresent()) {
+                    break;
+                }
+                warmed.add(lease.get());
+            }
+        } finally {
+            // warmed sessions are not counted as used
+            warmed.forEach(lease -> giveBack(lease, false));
+        }
+    }
+
+    /**
+     * Lease a session, waiting up to the default lease timeout of the pool if all the sessions are in use.
+     * @return the lease. Close it to return the session to the pool.
+     */
+    public Lease lease() {
+        return lease(defaultLeaseTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lease a session. An idle session is reused if there is one. Otherwise a new session is created, unless the
+     * pool is full, in which case it waits for a session to be returned.
+     * @param timeout maximal time to wait for a session
+     * @param unit unit of the timeout
+     * @return the lease. Close it to return the session to the pool.
+     * @throws TimeoutException if no session was available in time
+     */
+    public Lease lease(long timeout, TimeUnit unit) {
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        Session session = null;
+        lock.lock();
+        try {
+            while (session == null) {
+                if (closed) {
+                    throw new IllegalStateException("the pool is closed");
+                }
+                if (!idle.isEmpty()) {
+                    session = idle.pollFirst();
+                } else if (sessions < maxSessions) {
+                    sessions++;
+                    break;
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException(format("no browser session was available within %d ms",
+                                unit.toMillis(timeout)));
+                    }
+                    returned.awaitNanos(remaining);
+                }
+            }
+            leased++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a browser session", e);
+        } finally {
+            lock.unlock();
+        }
+        if (session == null) {
+            session = createSession();
+        }
+        long waited = System.nanoTime() - start;
+        leases.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        return new Lease(session);
+    }
+
+    private Optional<Lease> leaseNewSession() {
+        lock.lock();
+        try {
+            if (closed || sessions >= maxSessions) {
+                return Optional.empty();
+            }
+            sessions++;
+            leased++;
+        } finally {
+            lock.unlock();
+        }
+        return Optional.of(new Lease(createSession()));
+    }
+
+    private Session createSession() {
+        WebDriver driver = null;
+        try {
+            driver = factory.get();
+            if (windowSize.isPresent()) {
+                resize(driver, windowSize.get());
+            }
+        } catch (RuntimeException e) {
+            if (driver != null) {
+                quit(driver);
+            }
+            lock.lock();
+            try {
+                sessions--;
+                leased--;
+                returned.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        created.incrementAndGet();
+        return new Session(driver);
+    }
+
+    private void giveBack(Lease lease, boolean used) {
+        Session session = lease.session;
+        if (used) {
+            session.leases++;
+            totalLeaseNanos.addAndGet(System.nanoTime() - lease.start);
+        }
+        boolean keep = !lease.unhealthy && (session.leases < maxLeasesPerSession) && reset(session.driver) &&
+                isHealthy(session.driver);
+        lock.lock();
+        try {
+            leased--;
+            keep = keep && !closed;
+            if (keep) {
+                idle.addFirst(session);
+            } else {
+                sessions--;
+            }
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (!keep) {
+            evictions.incrementAndGet();
+            quit(session.driver);
+        }
+    }
+
+    private boolean reset(WebDriver driver) {
+        try {
+            driver.manage().deleteAllCookies();
+            if (driver instanceof JavascriptExecutor) {
+                // storage belongs to the origin of the current page, so it is cleared before leaving it
+                ((JavascriptExecutor) driver).executeScript(
+                        "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+            }
+            driver.get(resetUrl);
+            windowSize.ifPresent(size -> resize(driver, size));
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static void resize(WebDriver driver, int[] size) {
+        try (BrowserContext ignored = BrowserContext.open(driver)) {
+            // the new size is kept, so the resizer is not closed
+            new WindowResizer(size[0], size[1]);
+        }
+    }
+
+    private boolean isHealthy(WebDriver driver) {
+        try {
+            return healthCheck.test(driver);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static void quit(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (RuntimeException e) {
+            // the session is discarded anyway
+        }
+    }
+
+    /**
+     * Quit all the idle sessions. Leased sessions are quit when they are returned.
+     */
+    @Override
+    public void close() {
+        List<Session> toQuit;
+        lock.lock();
+        try {
+            closed = true;
+            toQuit = new ArrayList<>(idle);
+            sessions -= idle.size();
+            idle.clear();
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toQuit.forEach(session -> quit(session.driver));
+    }
+
+    /**
+     * @return a snapshot of the metrics of the pool
+     */
+    public Statistics getStatistics() {
+        int currentSessions, currentlyLeased;
+        lock.lock();
+        try {
+            currentSessions = sessions;
+            currentlyLeased = leased;
+        } finally {
+            lock.unlock();
+        }
+        return new Statistics(leases.get(), created.get(), evictions.get(), totalWaitNanos.get(), maxWaitNanos.get(),
+                totalLeaseNanos.get(), currentSessions, currentlyLeased, maxSessions);
+    }
+
+    public void resetStatistics() {
+        leases.set(0);
+        created.set(0);
+        evictions.set(0);
+        totalWaitNanos.set(0);
+        maxWaitNanos.set(0);
+        totalLeaseNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return format("browser pool of up to %d sessions: %s", maxSessions, getStatistics());
+    }
+
+    private static final class Session {
+        private final WebDriver driver;
+        private int leases = 0;
+
+        Session(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    /**
+     * A session that was leased from the pool. Closing the lease returns the session to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Session session;
+        private final InBrowser browser;
+        private final long start = System.nanoTime();
+        private boolean unhealthy = false;
+        private boolean isReturned = false;
+
+        private Lease(Session session) {
+            this.session = session;
+            this.browser = new InBrowser(session.driver);
+        }
+
+        public InBrowser getBrowser() {
+            return browser;
+        }
+
+        public WebDriver getDriver() {
+            return session.driver;
+        }
+
+        /**
+         * Evict the session when it is returned, instead of reusing it. Useful when a test leaves the browser in
+         * an unknown state.
+         */
+        public void markUnhealthy() {
+            unhealthy = true;
+        }
+
+        /**
+         * Return the session to the pool. Closing a lease more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (!isReturned) {
+                isReturned = true;
+                giveBack(this, true);
+            }
+        }
+    }
+
+    /**
+     * Metrics of a pool
+     */
+    public static final class Statistics {
+        private final long leases;
+        private final long created;
+        private final long evictions;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long totalLeaseNanos;
+        private final int sessions;
+        private final int leased;
+        private final int maxSessions;
+
+        Statistics(long leases, long created, long evictions, long totalWaitNanos, long maxWaitNanos,
+                   long totalLeaseNanos, int sessions, int leased, int maxSessions) {
+            this.leases = leases;
+            this.created = created;
+            this.evictions = evictions;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.totalLeaseNanos = totalLeaseNanos;
+            this.sessions = sessions;
+            this.leased = leased;
+            this.maxSessions = maxSessions;
+        }
+
+        /**
+         * @return the number of leases
+         */
+        public long getLeases() {
+            return leases;
+        }
+
+        /**
+         * @return the number of sessions that were created, including warm-up
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * @return the number of sessions that were evicted and quit
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the average time to get a lease, including the creation of a new session when needed
+         */
+        public Duration getAverageWait() {
+            return leases == 0 ? Duration.ZERO : Duration.ofNanos(totalWaitNanos / leases);
+        }
+
+        /**
+         * @return the longest time to get a lease
+         */
+        public Duration getMaxWait() {
+            return Duration.ofNanos(maxWaitNanos);
+        }
+
+        /**
+         * @return the total time of all the returned leases
+         */
+        public Duration getTotalLeaseTime() {
+            return Duration.ofNanos(totalLeaseNanos);
+        }
+
+        /**
+         * @return the number of live sessions, leased or idle
+         */
+        public int getSessions() {
+            return sessions;
+        }
+
+        /**
+         * @return the number of sessions that are currently leased
+         */
+        public int getLeased() {
+            return leased;
+        }
+
+        /**
+         * @return the fraction of the maximal size of the pool that is currently leased
+         */
+        public double getUtilization() {
+            return (double) leased / maxSessions;
+        }
+
+        @Override
+        public String toString() {
+            return format("%d leases, %d created, %d evicted, %d/%d sessions leased, average wait %dms, max wait %dms",
+                    leases, created, evictions, leased, sessions, getAverageWait().toMillis(), getMaxWait().toMillis());
+        }
+    }
+
+    public static final class Builder {
+        private final Supplier<WebDriver> factory;
+        private int maxSessions = 1;
+        private int warmSessions = 0;
+        private Predicate<WebDriver> healthCheck = driver -> driver.getWindowHandle() != null;
+        private int maxLeasesPerSession = Integer.MAX_VALUE;
+        private String resetUrl = "about:blank";
+        private Optional<int[]> windowSize = Optional.empty();
+        private Duration leaseTimeout = Duration.ofMinutes(1);
+
+        private Builder(Supplier<WebDriver> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * @param maxSessions the maximal number of live sessions. Default is 1.
+         * @return the builder
+         */
+        public Builder withMaxSessions(int maxSessions) {
+            if (maxSessions < 1) {
+                throw new IllegalArgumentException("at least one session is required");
+            }
+            this.maxSessions = maxSessions;
+            return this;
+        }
+
+        /**
+         * @param warmSessions the number of sessions that are created when the pool is built. Default is 0.
+         * @return the builder
+         */
+        public Builder withWarmSessions(int warmSessions) {
+            this.warmSessions = warmSessions;
+            return this;
+        }
+
+        /**
+         * @param healthCheck checked whenever a session is returned. A session that fails it, or throws an
+         *                    exception, is evicted. By default, the session must have a window.
+         * @return the builder
+         */
+        public Builder withHealthCheck(Predicate<WebDriver> healthCheck) {
+            this.healthCheck = healthCheck;
+            return this;
+        }
+
+        /**
+         * @param maxLeasesPerSession evict a session after it was leased this number of times. Default is unlimited.
+         * @return the builder
+         */
+        public Builder withMaxLeasesPerSession(int maxLeasesPerSession) {
+            this.maxLeasesPerSession = maxLeasesPerSession;
+            return this;
+        }
+
+        /**
+         * @param resetUrl the page that a returned session navigates to. Default is about:blank.
+         * @return the builder
+         */
+        public Builder withResetUrl(String resetUrl) {
+            this.resetUrl = resetUrl;
+            return this;
+        }
+
+        /**
+         * Resize the window of new and returned sessions, using {@link WindowResizer}
+         * @param width the visible width
+         * @param height the visible height
+         * @return the builder
+         */
+        public Builder withWindowSize(int width, int height) {
+            this.windowSize = Optional.of(new int[]{width, height});
+            return this;
+        }
+
+        /**
+         * @param leaseTimeout maximal time that {@link BrowserPool#lease()} waits for a session. Default is 1 minute.
+         * @return the builder
+         */
+        public Builder withLeaseTimeout(Duration leaseTimeout) {
+            this.leaseTimeout = leaseTimeout;
+            return this;
+        }
+
+        /**
+         * @return a new pool, with the warm sessions already created
+         */
+        public BrowserPool build() {
+            BrowserPool pool = new BrowserPool(this);
+            pool.warmUp(warmSessions);
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.github.loyada.jdollarx;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Internal implementation.
+ * Compiles the expression tree of a {@link BasicPath} to an equivalent CSS selector, when possible.
+ * Browsers evaluate CSS selectors much faster than xpath, so when enabled, {@link InBrowserFinder} uses the
+ * CSS selector for such Paths, and falls back to xpath for everything else.
+ * Supported: element type, id, class, attribute equality and presence, not() of those, nth-child/nth-of-type,
+ * first/last/only child, and the relations: inside/ancestor, child/parent, after sibling and immediately after sibling.
+ * Note that in a document that is rendered in quirks mode, browsers match class names and ids case-insensitively.
+ * Disabled by default.
+ */
+public final class CssSelectorCompiler {
+    private static volatile boolean enabled = false;
+
+    private static final Pattern htmlTag = Pattern.compile("^[a-z][a-z0-9\\-]*$");
+    private static final Pattern identifier = Pattern.compile("^-?[A-Za-z_][A-Za-z0-9_\\-]*$");
+    private static final Pattern attributePresent = Pattern.compile("^@(-?[A-Za-z_][A-Za-z0-9_\\-]*)$");
+    private static final Pattern attributeAbsent = Pattern.compile("^not\\(@(-?[A-Za-z_][A-Za-z0-9_\\-]*)\\)$");
+    private static final Pattern nthSibling = Pattern.compile("^count\\(preceding-sibling::\\*\\)=(\\d+)$");
+    private static final Pattern nthFromLastSibling = Pattern.compile("^count\\(following-sibling::\\*\\)=(\\d+)$");
+    private static final Pattern positionEquals = Pattern.compile("^position\\(\\) = (\\d+)$");
+    private static final Pattern index = Pattern.compile("^(\\d+)$");
+    private static final String onlyChild = "count(preceding-sibling::*)=0 and count(following-sibling::*)=0";
+
+    // In HTML, CSS compares the values of these attributes case-insensitively, while xpath compares them exactly
+    private static final Set<String> caseInsensitiveAttributes = ImmutableSet.of(
+            "accept", "accept-charset", "align", "alink", "axis", "bgcolor", "charset", "checked", "clear",
+            "codetype", "color", "compact", "declare", "defer", "dir", "direction", "disabled", "enctype", "face",
+            "frame", "hreflang", "http-equiv", "lang", "language", "link", "media", "method", "multiple", "nohref",
+            "noresize", "noshade", "nowrap", "readonly", "rel", "rev", "rules", "scope", "scrolling", "selected",
+            "shape", "target", "text", "type", "valign", "valuetype", "vlink");
+
+    private CssSelectorCompiler() {}
+
+    /**
+     * Use CSS selectors to find Paths that can be expressed by them
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Always use xpath to find Paths
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param path the Path to find
+     * @return the CSS selector to find the path with, if enabled, and the path can be expressed as a CSS selector
+     */
+    static Optional<String> selectorForFind(Path path) {
+        if (enabled && path instanceof BasicPath && !path.getUnderlyingSource().isPresent()) {
+            return ((BasicPath) path).getCssSelector();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param expr the expression of a Path, relative to the entire document
+     * @return an equivalent CSS selector, if one exists
+     */
+    static Optional<String> compile(XpathExpr expr) {
+        return compileStep(expr, true).map(Selector::toString);
+    }
+
+    /**
+     * A complex selector. The compound selector of the subject element is kept separately, so that more
+     * constraints can be added to it.
+     */
+    private static final class Selector {
+        final String context;
+        final String compound;
+
+        Selector(String context, String compound) {
+            this.context = context;
+            this.compound = compound;
+        }
+
+        boolean hasContext() {
+            return !context.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return context + compound;
+        }
+    }
+
+    /**
+     * @param childStep whether the expression is a child step of its context, so that an index refers to the
+     *                  position among its siblings
+     */
+    private static Optional<Selector> compileStep(XpathExpr expr, boolean childStep) {
+        if (expr instanceof XpathExpr.Cached) {
+            return compileStep(((XpathExpr.Cached) expr).expression, childStep);
+        } else if (expr instanceof XpathExpr.CorrectAxis) {
+            return compileStep(((XpathExpr.CorrectAxis) expr).resolve(), childStep);
+        } else if (expr instanceof XpathExpr.Raw) {
+            String xpath = ((XpathExpr.Raw) expr).xpath;
+            return (xpath.equals("*") || htmlTag.matcher(xpath).matches()) ?
+                    Optional.of(new Selector("", xpath)) :
+                    Optional.empty();
+        } else if (expr instanceof XpathExpr.Filtered) {
+            XpathExpr.Filtered filtered = (XpathExpr.Filtered) expr;
+            return compileFiltered(filtered.base, filtered.predicates, childStep);
+        } else if (expr instanceof XpathExpr.Descendant) {
+            XpathExpr.Descendant descendant = (XpathExpr.Descendant) expr;
+            return combine(compileStep(descendant.ancestor, childStep), " ", compileStep(descendant.target, true));
+        } else if (expr instanceof XpathExpr.AxisStep) {
+            XpathExpr.AxisStep step = (XpathExpr.AxisStep) expr;
+            if (step.usesFallback()) {
+                return compileStep(step.fallback, childStep);
+            }
+            Optional<String> combinator = combinatorForStep(step.axis);
+            if (!combinator.isPresent()) {
+                return Optional.empty();
+            }
+            return combine(compileStep(step.context, childStep), combinator.get(),
+                    compileStep(step.target, step.axis.equals("child")));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * context [combinator] target, where the target must not have a context of its own
+     */
+    private static Optional<Selector> combine(Optional<Selector> context, String combinator, Optional<Selector> target) {
+        if (!context.isPresent() || !target.isPresent() || target.get().hasContext()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Selector(context.get() + combinator, target.get().compound));
+    }
+
+    private static Optional<String> combinatorForStep(String axis) {
+        switch (axis) {
+            case "child": return Optional.of(" > ");
+            case "descendant": return Optional.of(" ");
+            case "following-sibling": return Optional.of(" ~ ");
+            case "following-sibling::*[1]/self": return Optional.of(" + ");
+            default: return Optional.empty();
+        }
+    }
+
+    private static Optional<String> combinatorForPredicate(String axis) {
+        switch (axis) {
+            case "parent": return Optional.of(" > ");
+            case "ancestor": return Optional.of(" ");
+            case "preceding-sibling": return Optional.of(" ~ ");
+            case "preceding-sibling::*[1]/self": return Optional.of(" + ");
+            default: return Optional.empty();
+        }
+    }
+
+    private static Optional<Selector> compileFiltered(XpathExpr base, List<XpathExpr> predicates, boolean childStep) {
+        List<XpathExpr> allPredicates = new ArrayList<>(predicates);
+        XpathExpr unwrapped = unwrap(base);
+        while (unwrapped instanceof XpathExpr.Filtered) {
+            allPredicates.addAll(0, ((XpathExpr.Filtered) unwrapped).predicates);
+            unwrapped = unwrap(((XpathExpr.Filtered) unwrapped).base);
+        }
+        Optional<Selector> baseSelector = compileStep(unwrapped, childStep);
+        if (!baseSelector.isPresent()) {
+            return Optional.empty();
+        }
+        String context = baseSelector.get().context;
+        StringBuilder compound = new StringBuilder(baseSelector.get().compound);
+        boolean positionAllowed = childStep && unwrapped instanceof XpathExpr.Raw;
+        for (XpathExpr predicate : allPredicates) {
+            Optional<String> position = positionAllowed ? compilePosition(predicate, compound.toString()) : Optional.empty();
+            positionAllowed = false;
+            if (position.isPresent()) {
+                compound.append(position.get());
+                continue;
+            }
+            Optional<Constraint> constraint = compilePredicate(predicate);
+            if (!constraint.isPresent()) {
+                return Optional.empty();
+            }
+            if (constraint.get().relation.isPresent()) {
+                if (!context.isEmpty()) {
+                    // CSS can express only a single chain of relations
+                    return Optional.empty();
+                }
+                context = constraint.get().relation.get();
+            }
+            compound.append(constraint.get().compound);
+        }
+        return Optional.of(new Selector(context, compound.toString()));
+    }
+
+    private static XpathExpr unwrap(XpathExpr expr) {
+        if (expr instanceof XpathExpr.Cached) {
+            return unwrap(((XpathExpr.Cached) expr).expression);
+        } else if (expr instanceof XpathExpr.CorrectAxis) {
+            return unwrap(((XpathExpr.CorrectAxis) expr).resolve());
+        } else if (expr instanceof XpathExpr.PropertyCondition) {
+            return unwrap(((XpathExpr.PropertyCondition) expr).expand());
+        } else if (expr instanceof XpathExpr.Group) {
+            return unwrap(((XpathExpr.Group) expr).expression);
+        }
+        return expr;
+    }
+
+    /**
+     * An index, as the first predicate of an element type in a child step
+     */
+    private static Optional<String> compilePosition(XpathExpr predicate, String nodeTest) {
+        XpathExpr unwrapped = unwrap(predicate);
+        String xpath = (unwrapped instanceof XpathExpr.Index) ?
+                ((XpathExpr.Index) unwrapped).index :
+                (unwrapped instanceof XpathExpr.Raw) ? ((XpathExpr.Raw) unwrapped).xpath : "";
+        boolean anyElement = nodeTest.equals("*");
+        if (xpath.equals("last()")) {
+            return Optional.of(anyElement ? ":last-child" : ":last-of-type");
+        }
+        Matcher matcher = index.matcher(xpath);
+        if (!matcher.matches()) {
+            matcher = positionEquals.matcher(xpath);
+        }
+        if (matcher.matches()) {
+            return Optional.of(String.format(anyElement ? ":nth-child(%s)" : ":nth-of-type(%s)", matcher.group(1)));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * A constraint on the subject element: a compound selector, and optionally a relation to another element
+     */
+    private static final class Constraint {
+        final String compound;
+        final Optional<String> relation;
+
+        Constraint(String compound, Optional<String> relation) {
+            this.compound = compound;
+            this.relation = relation;
+        }
+
+        static Optional<Constraint> of(String compound) {
+            return Optional.of(new Constraint(compound, Optional.empty()));
+        }
+    }
+
+    private static Optional<Constraint> compilePredicate(XpathExpr predicate) {
+        XpathExpr expr = unwrap(predicate);
+        if (expr instanceof XpathExpr.AttributeEquals) {
+            XpathExpr.AttributeEquals attributeEquals = (XpathExpr.AttributeEquals) expr;
+            return attributeSelector(attributeEquals.attribute, attributeEquals.value).flatMap(Constraint::of);
+        } else if (expr instanceof XpathExpr.HasClasses) {
+            XpathExpr.HasClasses hasClasses = (XpathExpr.HasClasses) expr;
+            if (!hasClasses.all && hasClasses.classNames.size() > 1) {
+                return Optional.empty();
+            }
+            return classSelectors(hasClasses.classNames, "", "").flatMap(Constraint::of);
+        } else if (expr instanceof XpathExpr.Not) {
+            return compileNegation(unwrap(((XpathExpr.Not) expr).condition)).flatMap(Constraint::of);
+        } else if (expr instanceof XpathExpr.And) {
+            XpathExpr.And and = (XpathExpr.And) expr;
+            return compileConjunction(Arrays.asList(and.first, and.second));
+        } else if (expr instanceof XpathExpr.AllOf) {
+            return compileConjunction(((XpathExpr.AllOf) expr).conditions);
+        } else if (expr instanceof XpathExpr.Relation) {
+            XpathExpr.Relation relation = (XpathExpr.Relation) expr;
+            Optional<String> combinator = combinatorForPredicate(relation.axis);
+            if (!combinator.isPresent()) {
+                return Optional.empty();
+            }
+            return compileStep(relation.target, false).
+                    map(target -> new Constraint("", Optional.of(target + combinator.get())));
+        } else if (expr instanceof XpathExpr.Raw) {
+            return compileRawPredicate(((XpathExpr.Raw) expr).xpath).flatMap(Constraint::of);
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Constraint> compileConjunction(List<XpathExpr> conditions) {
+        StringBuilder compound = new StringBuilder();
+        Optional<String> relation = Optional.empty();
+        for (XpathExpr condition : conditions) {
+            Optional<Constraint> constraint = compilePredicate(condition);
+            if (!constraint.isPresent() || (relation.isPresent() && constraint.get().relation.isPresent())) {
+                return Optional.empty();
+            }
+            if (constraint.get().relation.isPresent()) {
+                relation = constraint.get().relation;
+            }
+            compound.append(constraint.get().compound);
+        }
+        return Optional.of(new Constraint(compound.toString(), relation));
+    }
+
+    private static Optional<String> compileNegation(XpathExpr condition) {
+        if (condition instanceof XpathExpr.AttributeEquals) {
+            XpathExpr.AttributeEquals attributeEquals = (XpathExpr.AttributeEquals) condition;
+            return attributeSelector(attributeEquals.attribute, attributeEquals.value).map(s -> ":not(" + s + ")");
+        } else if (condition instanceof XpathExpr.HasClasses) {
+            XpathExpr.HasClasses hasClasses = (XpathExpr.HasClasses) condition;
+            if (hasClasses.all && hasClasses.classNames.size() > 1) {
+                return Optional.empty();
+            }
+            // not (a or b) is equivalent to (not a) and (not b)
+            return classSelectors(hasClasses.classNames, ":not(", ")");
+        } else if (condition instanceof XpathExpr.Raw) {
+            Matcher matcher = attributePresent.matcher(((XpathExpr.Raw) condition).xpath);
+            return matcher.matches() ? Optional.of(":not([" + matcher.group(1) + "])") : Optional.empty();
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> compileRawPredicate(String xpath) {
+        Matcher matcher = attributePresent.matcher(xpath);
+        if (matcher.matches()) {
+            return Optional.of("[" + matcher.group(1) + "]");
+        }
+        matcher = attributeAbsent.matcher(xpath);
+        if (matcher.matches()) {
+            return Optional.of(":not([" + matcher.group(1) + "])");
+        }
+        matcher = nthSibling.matcher(xpath);
+        if (matcher.matches()) {
+            return Optional.of(String.format(":nth-child(%d)", Integer.parseInt(matcher.group(1)) + 1));
+        }
+        matcher = nthFromLastSibling.matcher(xpath);
+        if (matcher.matches()) {
+            return Optional.of(String.format(":nth-last-child(%d)", Integer.parseInt(matcher.group(1)) + 1));
+        }
+        if (xpath.equals(onlyChild)) {
+            return Optional.of(":only-child");
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> attributeSelector(String attribute, String value) {
+        if (!identifier.matcher(attribute).matches() || caseInsensitiveAttributes.contains(attribute.toLowerCase())) {
+            return Optional.empty();
+        }
+        if (attribute.equals("id") && identifier.matcher(value).matches()) {
+            return Optional.of("#" + value);
+        }
+        return Optional.of(String.format("[%s=%s]", attribute, cssString(value)));
+    }
+
+    private static Optional<String> classSelectors(List<String> classNames, String prefix, String suffix) {
+        StringBuilder sb = new StringBuilder();
+        for (String className : classNames) {
+            if (!identifier.matcher(className).matches()) {
+                return Optional.empty();
+            }
+            sb.append(prefix).append('.').append(className).append(suffix);
+        }
+        return Optional.of(sb.toString());
+    }
+
+    static String cssString(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\a ");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
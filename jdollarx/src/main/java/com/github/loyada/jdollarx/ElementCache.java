@@ -0,0 +1,86 @@
+package com.github.loyada.jdollarx;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Internal implementation.
+ * Keeps the elements that were found for Paths, as long as the DOM did not change since they were found.
+ * Changes are detected by a generation counter in the page, that is incremented by a MutationObserver.
+ * Thus, repeated lookups of the same Path cost a check of the generation, instead of a full lookup.
+ * See {@link InBrowser#setElementCaching(boolean)}.
+ */
+final class ElementCache {
+    static final int MAX_ENTRIES = 256;
+
+    // The generation is unique to the document, so a navigation always changes it
+    private static final String generationScript =
+            "var g = window.__dollarxGeneration;" +
+            "if (!g) {" +
+            "  g = window.__dollarxGeneration = {id: Math.random().toString(36).slice(2), count: 0};" +
+            "  new MutationObserver(function() { g.count++; }).observe(document," +
+            "      {subtree: true, childList: true, attributes: true, characterData: true});" +
+            "}" +
+            "return g.id + ':' + g.count;";
+
+    private final Map<Path, WebElement> elements = new LinkedHashMap<Path, WebElement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, WebElement> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private String generation = "";
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * The cache does not keep the driver, so a cache of the singleton browser does not prevent collecting it.
+     * @param driver the driver that the cached elements belong to
+     * @param el the path to find. Paths that have an underlying WebElement are not cached.
+     * @return the element, from the cache if the DOM did not change since it was found
+     */
+    synchronized WebElement find(WebDriver driver, Path el) {
+        if (el.getUnderlyingSource().isPresent()) {
+            return InBrowserFinder.find(driver, el);
+        }
+        String current = generationOf(driver);
+        if (!generation.equals(current)) {
+            elements.clear();
+            generation = current;
+        }
+        WebElement found = elements.get(el);
+        if (found != null) {
+            hits++;
+            return found;
+        }
+        misses++;
+        found = InBrowserFinder.find(driver, el);
+        elements.put(el, found);
+        return found;
+    }
+
+    /**
+     * @param driver the driver
+     * @return the generation of the DOM in the current page. It changes on every change of the DOM,
+     * and on navigation.
+     */
+    static String generationOf(WebDriver driver) {
+        return (String) ((JavascriptExecutor) driver).executeScript(generationScript);
+    }
+
+    synchronized void invalidate(Path el) {
+        elements.remove(el);
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+}
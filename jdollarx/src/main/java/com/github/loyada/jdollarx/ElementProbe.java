@@ -0,0 +1,58 @@
+package com.github.loyada.jdollarx;
+
+/**
+ * The state of the first element that matches a {@link Path}, as it was at a single moment in the browser.
+ * It is retrieved without any implicit waiting. See {@link InBrowser#probe(Path)}.
+ */
+public final class ElementProbe {
+    static final ElementProbe ABSENT = new ElementProbe(false, false, false, false);
+
+    private final boolean present;
+    private final boolean enabled;
+    private final boolean displayed;
+    private final boolean selected;
+
+    ElementProbe(boolean present, boolean enabled, boolean displayed, boolean selected) {
+        this.present = present;
+        this.enabled = enabled;
+        this.displayed = displayed;
+        this.selected = selected;
+    }
+
+    /**
+     * @return true if the element is present
+     */
+    public boolean isPresent() {
+        return present;
+    }
+
+    /**
+     * @return true if the element is present and enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if the element is present and displayed. The browser checks that the element has a layout box,
+     * and is not hidden by its style, and a positive answer is confirmed with WebElement::isDisplayed.
+     */
+    public boolean isDisplayed() {
+        return displayed;
+    }
+
+    /**
+     * @return true if the element is present and selected (or checked)
+     */
+    public boolean isSelected() {
+        return selected;
+    }
+
+    @Override
+    public String toString() {
+        return present ?
+                String.format("present, %s, %s, %s", enabled ? "enabled" : "disabled",
+                        displayed ? "displayed" : "not displayed", selected ? "selected" : "not selected") :
+                "absent";
+    }
+}
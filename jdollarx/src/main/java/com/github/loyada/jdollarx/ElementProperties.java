@@ -8,7 +8,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
-import static com.github.loyada.jdollarx.PathUtils.transformXpathToCorrectAxis;
+import static com.github.loyada.jdollarx.PathUtils.correctAxis;
+import static com.github.loyada.jdollarx.PathUtils.xpathExprOf;
 
 /**
  * Various constrains  on {@link Path} instances, that are used with the methods {@link Path#that}
@@ -181,7 +182,7 @@ public final class ElementProperties {
         return new ElementProperty() {
             @Override
             public String toXpath() {
-                return String.format("count(following-sibling::*)=%d", reverseIndex);
+                return "count(following-sibling::*)=" + reverseIndex;
             }
 
             public String toString() {
@@ -199,7 +200,7 @@ public final class ElementProperties {
         return new ElementProperty() {
             @Override
             public String toXpath() {
-                return String.format("count(preceding-sibling::*)=%d", index);
+                return "count(preceding-sibling::*)=" + index;
             }
 
             public String toString() {
@@ -232,7 +233,7 @@ public final class ElementProperties {
         return new ElementProperty() {
             @Override
             public String toXpath() {
-                return String.format("position()>=%d and position()<=%d", first + 1, last + 1);
+                return "position()>=" + (first + 1) + " and position()<=" + (last + 1);
             }
 
             public String toString() {
@@ -283,6 +284,11 @@ public final class ElementProperties {
                 return XpathUtils.textEquals(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendTextEquals, txt, false);
+            }
+
             public String toString() {
                 return "has the text \"" + txt + "\"";
             }
@@ -313,6 +319,11 @@ public final class ElementProperties {
                 return XpathUtils.caseSensitiveTextEquals(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendCaseSensitiveTextEquals, txt, false);
+            }
+
             public String toString() {
                 return "has the text \"" + txt + "\"";
             }
@@ -331,6 +342,11 @@ public final class ElementProperties {
                 return XpathUtils.textStartsWith(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendTextStartsWith, txt, false);
+            }
+
             public String toString() {
                 return "has text that starts with \"" + txt + "\"";
             }
@@ -349,6 +365,11 @@ public final class ElementProperties {
                 return XpathUtils.textEndsWith(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendTextEndsWith, txt, false);
+            }
+
             public String toString() {
                 return "has text that ends with \"" + txt + "\"";
             }
@@ -367,6 +388,11 @@ public final class ElementProperties {
                 return XpathUtils.hasId(id);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.AttributeEquals("id", id);
+            }
+
             public String toString() {
                 return String.format("has Id \"%s\"", id);
             }
@@ -423,6 +449,11 @@ public final class ElementProperties {
                 return XpathUtils.hasAttribute(attribute, value);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.AttributeEquals(attribute, value);
+            }
+
             public String toString() {
                 return String.format("has %s: \"%s\"", attribute, value);
             }
@@ -441,6 +472,11 @@ public final class ElementProperties {
                 return XpathUtils.hasAnyOfClasses(cssClasses);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.HasClasses(Arrays.asList(cssClasses), false);
+            }
+
             public String toString() {
                 String classesAsList = String.join(", ", cssClasses);
                 return "has at least one of the classes [" + classesAsList + "]";
@@ -460,6 +496,11 @@ public final class ElementProperties {
                 return XpathUtils.hasClasses(cssClasses);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.HasClasses(Arrays.asList(cssClasses), true);
+            }
+
             public String toString() {
                 String classesAsList = String.join(", ", cssClasses);
                 return "has classes [" + classesAsList + "]";
@@ -476,7 +517,7 @@ public final class ElementProperties {
         return new ElementProperty() {
             @Override
             public String toXpath() {
-                return String.format("contains(@class, '%s')", classSubString);
+                return XpathUtils.hasClassContaining(classSubString);
             }
 
             public String toString() {
@@ -497,6 +538,11 @@ public final class ElementProperties {
                 return XpathUtils.doesNotExist(XpathUtils.hasAnyOfClasses(cssClasses));
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.Not(new XpathExpr.HasClasses(Arrays.asList(cssClasses), false));
+            }
+
             public String toString() {
                 String classesAsList = String.join(", ", cssClasses);
                 return "has non of the classes [" + classesAsList + "]";
@@ -513,7 +559,7 @@ public final class ElementProperties {
         return new ElementProperty() {
             @Override
             public String toXpath() {
-                return String.format("position() = %d", index + 1);
+                return "position() = " + (index + 1);
             }
 
             public String toString() {
@@ -534,6 +580,11 @@ public final class ElementProperties {
                 return XpathUtils.textContains(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendTextContains, txt, false);
+            }
+
             public String toString() {
                 return "has text containing \"" + txt + "\"";
             }
@@ -553,6 +604,11 @@ public final class ElementProperties {
                 return XpathUtils.caseSensitiveTextContains(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendCaseSensitiveTextContains, txt, false);
+            }
+
             public String toString() {
                 return "has text containing \"" + txt + "\"";
             }
@@ -571,6 +627,11 @@ public final class ElementProperties {
                 return XpathUtils.hasClass(className);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.HasClasses(Collections.singletonList(className), true);
+            }
+
             public String toString() {
                 return "has class " + className;
             }
@@ -590,6 +651,11 @@ public final class ElementProperties {
                 return XpathUtils.aggregatedTextEquals(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendAggregatedTextEquals, txt, true);
+            }
+
             public String toString() {
                 return "with aggregated text \"" + txt + "\"";
             }
@@ -609,6 +675,11 @@ public final class ElementProperties {
                 return XpathUtils.aggregatedCaseSensitiveTextEquals(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendAggregatedCaseSensitiveTextEquals, txt, true);
+            }
+
             public String toString() {
                 return "with aggregated text \"" + txt + "\"";
             }
@@ -627,6 +698,11 @@ public final class ElementProperties {
                 return XpathUtils.aggregatedTextStartsWith(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendAggregatedTextStartsWith, txt, true);
+            }
+
             public String toString() {
                 return "with aggregated text that starts with \"" + txt + "\"";
             }
@@ -645,6 +721,11 @@ public final class ElementProperties {
                 return XpathUtils.aggregatedTextEndsWith(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendAggregatedTextEndsWith, txt, true);
+            }
+
             public String toString() {
                 return "with aggregated text that ends with \"" + txt + "\"";
             }
@@ -663,6 +744,11 @@ public final class ElementProperties {
                 return XpathUtils.aggregatedTextContains(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendAggregatedTextContains, txt, true);
+            }
+
             public String toString() {
                 return "with aggregated text containing \"" + txt + "\"";
             }
@@ -682,6 +768,11 @@ public final class ElementProperties {
                 return XpathUtils.aggregatedcaseSensitiveTextContains(txt);
             }
 
+            @Override
+            public XpathExpr toXpathExpr() {
+                return new XpathExpr.TextCondition(XpathUtils::appendAggregatedCaseSensitiveTextContains, txt, true);
+            }
+
             public String toString() {
                 return "with aggregated text containing \"" + txt + "\"";
             }
@@ -720,10 +811,10 @@ public final class ElementProperties {
 
     ///////////////////////////////////////////////////////////
     // relationships
-    private static String getRelationXpath(Path path, String relation) {
+    private static XpathExpr getRelationXpath(Path path, String relation) {
         if (path.getUnderlyingSource().isPresent() || !path.getXPath().isPresent())
             throw new IllegalArgumentException("must use a pure xpath BasicPath");
-        return relation + "::" + transformXpathToCorrectAxis(path).get();
+        return new XpathExpr.Relation(relation, correctAxis(path));
     }
 
     private static String rValueToString(Path path) {
@@ -739,6 +830,11 @@ public final class ElementProperties {
         return new ElementProperty() {
             @Override
             public String toXpath() {
+                return toXpathExpr().toXpath();
+            }
+
+            @Override
+            public XpathExpr toXpathExpr() {
                 return getRelationXpath(path, "parent");
             }
 
@@ -824,6 +920,11 @@ public final class ElementProperties {
         return new ElementProperty() {
             @Override
             public String toXpath() {
+                return toXpathExpr().toXpath();
+            }
+
+            @Override
+            public XpathExpr toXpathExpr() {
                 return getRelationXpath(path, "ancestor");
             }
 
@@ -980,8 +1081,9 @@ public final class ElementProperties {
     public static ElementProperty isSiblingOf(Path... paths) {
         return new RelationBetweenMultiElement("", Arrays.asList(paths)) {
             @Override
-            protected String getXpathExpressionForSingle(Path path) {
-                return "(" + isAfterSibling(path).toXpath() + ") or (" + isBeforeSibling(path).toXpath() + ")";
+            protected XpathExpr getXpathExpressionForSingle(Path path) {
+                return new XpathExpr.Or(new XpathExpr.Group(isAfterSibling(path).toXpathExpr()),
+                        new XpathExpr.Group(isBeforeSibling(path).toXpathExpr()));
             }
             @Override
             public String toString() {
@@ -1083,7 +1185,12 @@ public final class ElementProperties {
 
         @Override
         public String toXpath() {
-            return XpathUtils.doesNotExist(p.toXpath());
+            return toXpathExpr().toXpath();
+        }
+
+        @Override
+        public XpathExpr toXpathExpr() {
+            return new XpathExpr.Not(p.toXpathExpr());
         }
     }
 
@@ -1102,7 +1209,12 @@ public final class ElementProperties {
 
         @Override
         public String toXpath() {
-            return "(" + p1.toXpath() + " and " + p2.toXpath() + ")";
+            return toXpathExpr().toXpath();
+        }
+
+        @Override
+        public XpathExpr toXpathExpr() {
+            return new XpathExpr.And(p1.toXpathExpr(), p2.toXpathExpr());
         }
     }
 
@@ -1120,7 +1232,12 @@ public final class ElementProperties {
 
         @Override
         public String toXpath() {
-            return p1.toXpath() + " or " + p2.toXpath();
+            return toXpathExpr().toXpath();
+        }
+
+        @Override
+        public XpathExpr toXpathExpr() {
+            return new XpathExpr.Or(p1.toXpathExpr(), p2.toXpathExpr());
         }
     }
 
@@ -1142,6 +1259,11 @@ public final class ElementProperties {
         }
 
         public String toXpath() {
+            return toXpathExpr().toXpath();
+        }
+
+        @Override
+        public XpathExpr toXpathExpr() {
             return getRelationXpath();
         }
 
@@ -1157,31 +1279,33 @@ public final class ElementProperties {
             return (paths.size() == 1) ? relation : (relation + "s");
         }
 
-        protected String getXpathExpressionForSingle(final Path path) {
-            return String.format("%s::%s", relation, transformXpathToCorrectAxis(path).get());
+        protected XpathExpr getXpathExpressionForSingle(final Path path) {
+            return new XpathExpr.Relation(relation, correctAxis(path));
         }
 
 
-        private String getRelationForSingleXpath(final Path path) {
+        private XpathExpr getRelationForSingleXpath(final Path path) {
             if (path.getUnderlyingSource().isPresent() || !path.getXPath().isPresent())
                 throw new IllegalArgumentException("must use a pure xpath Path");
-            if (path.getXPath().get().startsWith("(")) {
+            if (xpathExprOf(path).startsWithParenthesis()) {
                 throw new IllegalArgumentException("The expression not compile to a proper xpath." +
                 "Please use Path methods instead to express the relation.");
             }
-            String expressionForSingle = getXpathExpressionForSingle(path);
+            XpathExpr expressionForSingle = getXpathExpressionForSingle(path);
             return nPath.map(np -> addNPathQualifier(expressionForSingle)).orElse(expressionForSingle);
         }
 
-        private String addNPathQualifier(String path) {
-            return String.format("count(%s)%s%d", path, RelationOperator.opAsXpathString(nPath.get().qualifier), nPath.get().n);
+        private XpathExpr addNPathQualifier(XpathExpr path) {
+            return new XpathExpr.Count(path, nPath.get().qualifier, nPath.get().n);
         }
 
-        private String getRelationXpath() {
-            final String result = paths.stream().
-                    map(this::getRelationForSingleXpath).
-                    collect(Collectors.joining(") and ("));
-            return (paths.size() > 1) ? String.format("(%s)", result) : result;
+        private XpathExpr getRelationXpath() {
+            if (paths.size() == 1) {
+                return getRelationForSingleXpath(paths.get(0));
+            }
+            return new XpathExpr.AllOf(paths.stream().
+                    map(path -> new XpathExpr.Group(getRelationForSingleXpath(path))).
+                    collect(Collectors.toList()));
         }
 
         private String rValueToString(Path path) {
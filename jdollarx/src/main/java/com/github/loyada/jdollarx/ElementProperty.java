@@ -8,6 +8,16 @@ package com.github.loyada.jdollarx;
 public interface ElementProperty {
     String toXpath() ;
 
+    /**
+     * Internal implementation.
+     * The expression that the xpath of this property is emitted from. Properties that do not override it
+     * are treated as opaque xpath.
+     * @return the expression of this property
+     */
+    default XpathExpr toXpathExpr() {
+        return XpathExpr.raw(toXpath());
+    }
+
     /**
      * returns a new property, that is a combination of the current property OR the given property parameter. Meaning the element
      * is required to have any of the two properties.
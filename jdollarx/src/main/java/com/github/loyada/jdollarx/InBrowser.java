@@ -5,17 +5,26 @@ import com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton;
 import org.openqa.selenium.ElementClickInterceptedException;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
+import org.openqa.selenium.remote.RemoteWebDriver;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.FluentWait;
 import org.openqa.selenium.support.ui.Select;
 import org.openqa.selenium.support.ui.Wait;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.UnaryOperator;
 
 import static java.util.Arrays.asList;
@@ -29,6 +38,13 @@ public class InBrowser {
     private final WebDriver driver;
     private int implicitTimeout;
     private TimeUnit timeoutUnit;
+    private boolean probing;
+    private RetryPolicy clickRetryPolicy = defaultClickRetryPolicy();
+    private ElementCache elementCache;
+    // One cache per driver, so that every BrowserContext of the singleton has its own cache. The keys are weak, but
+    // cached elements of a remote driver refer to it, so the caches of drivers that were quit are also removed.
+    private static final Map<WebDriver, ElementCache> singletonElementCaches =
+            Collections.synchronizedMap(new WeakHashMap<>());
 
     /**
      * Creates a connection to a browser, using the given driver
@@ -38,13 +54,47 @@ public class InBrowser {
         this.driver = driver;
     }
 
+    /**
+     * The default policy of clickOn: 3 attempts, 500 milliseconds apart, when the click is intercepted.
+     * Every instance gets its own policy, so that its statistics are not mixed with those of other instances.
+     * @return a new RetryPolicy
+     */
+    public static RetryPolicy defaultClickRetryPolicy() {
+        return RetryPolicy.builder()
+                .named("click")
+                .withMaxAttempts(3)
+                .withInitialDelay(Duration.ofMillis(500))
+                .retryOn(ElementClickInterceptedException.class)
+                .build();
+    }
+
     public static InBrowser fromSingleton() {
-        InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+        InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
         browser.timeoutUnit = InBrowserSinglton.getTimeoutUnit();
         browser.implicitTimeout = InBrowserSinglton.getImplicitTimeout();
+        browser.probing = InBrowserSinglton.isProbing();
+        browser.clickRetryPolicy = InBrowserSinglton.getClickRetryPolicy();
+        if (InBrowserSinglton.isElementCaching()) {
+            browser.elementCache = singletonElementCache(browser.driver);
+        }
         return browser;
     }
 
+    private static ElementCache singletonElementCache(WebDriver driver) {
+        synchronized (singletonElementCaches) {
+            singletonElementCaches.keySet().removeIf(InBrowser::isQuit);
+            return singletonElementCaches.computeIfAbsent(driver, d -> new ElementCache());
+        }
+    }
+
+    private static boolean isQuit(WebDriver driver) {
+        return driver instanceof RemoteWebDriver && ((RemoteWebDriver) driver).getSessionId() == null;
+    }
+
+    static boolean hasSingletonElementCache(WebDriver driver) {
+        return singletonElementCaches.containsKey(driver);
+    }
+
     /**
      *
      * @return the underlying WebDriver instance
@@ -58,11 +108,45 @@ public class InBrowser {
      * If el also has a WebElement (ie: getUnderlyingSource() is not empty), then it looks inside that
      * WebElement. This is useful also to integrate with existing WebDriver code.
      *
+     * When element caching is enabled, an element that was already found is returned, as long as the DOM did
+     * not change since it was found.
+     *
      * @param el - the path to find
      * @return - A WebElement instance from selenium, or throws NoSuchElementException exception
      */
     public WebElement find(final Path el) {
-        return InBrowserFinder.find(driver, el);
+        return (elementCache == null) ? InBrowserFinder.find(driver, el) : elementCache.find(driver, el);
+    }
+
+    /**
+     * Find the element, and apply the action to it. If the element is stale, find it again and retry once.
+     */
+    private <T> T withElement(final Path el, Function<WebElement, T> action) {
+        WebElement found = find(el);
+        try {
+            return action.apply(found);
+        } catch (StaleElementReferenceException e) {
+            if (elementCache != null) {
+                elementCache.invalidate(el);
+            }
+            return action.apply(find(el));
+        }
+    }
+
+    /**
+     * Keep the elements that were found by {@link #find(Path)} and by the actions, such as clickOn, and reuse them
+     * as long as the DOM did not change. A MutationObserver in the page tracks the changes to the DOM, so a repeated
+     * lookup of the same Path costs a cheap check, instead of a full xpath evaluation.
+     * An element that turns out to be stale is found again.
+     * Element caching is disabled by default.
+     * @param caching whether to cache the elements
+     */
+    public void setElementCaching(boolean caching) {
+        this.elementCache = caching ? new ElementCache() : null;
+    }
+
+    public boolean isElementCaching() {
+        return elementCache != null;
     }
 
     /**
@@ -120,6 +204,186 @@ public class InBrowser {
         return InBrowserFinder.countAll(driver, el);
     }
 
+    /**
+     * Find many elements in a single round trip to the browser. Useful when a page is verified
+     * against many paths, since the time is usually dominated by the round trips.
+     * Like {@link #find(Path)}, it does not wait for the elements.
+     * @param paths the paths to find
+     * @return the first element that matches every path, in the same order, or throws NoSuchElementException
+     * that lists all the paths that were not found
+     */
+    public List<WebElement> findMany(final List<? extends Path> paths) {
+        List<WebElement> elements = InBrowserFinder.findMany(driver, paths);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i) == null) {
+                missing.add(paths.get(i).toString());
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new NoSuchElementException("could not find " + String.join("; ", missing));
+        }
+        return elements;
+    }
+
+    /**
+     * Count the elements that match every one of the given paths, in a single round trip to the browser.
+     * @param paths the element definitions
+     * @return the number of elements of every path, in the same order
+     */
+    public List<Integer> countMany(final List<? extends Path> paths) {
+        return InBrowserFinder.countMany(driver, paths);
+    }
+
+    /**
+     * Check whether every one of the given paths is present, in a single round trip to the browser.
+     * Typically you should not use this method directly. Instead, use CustomMatchers.
+     * @param paths the paths to look for
+     * @return whether every path is present, in the same order
+     */
+    public List<Boolean> presenceOf(final List<? extends Path> paths) {
+        return InBrowserFinder.presenceOf(driver, paths);
+    }
+
+    /**
+     * Probe the state of the first element that matches the path, with a single script, without any implicit waiting.
+     * @param el the path to probe
+     * @return the state of the element
+     */
+    public ElementProbe probe(final Path el) {
+        return InBrowserFinder.probeMany(driver, Collections.singletonList(el)).get(0);
+    }
+
+    /**
+     * Probe the state of the first element of every one of the given paths, in a single round trip to the browser,
+     * without any implicit waiting.
+     * @param paths the paths to probe
+     * @return the state of the first element of every path, in the same order
+     */
+    public List<ElementProbe> probeMany(final List<? extends Path> paths) {
+        return InBrowserFinder.probeMany(driver, paths);
+    }
+
+    /**
+     * In probing mode, isPresent, isNotPresent, isEnabled, isSelected and isDisplayed answer immediately from
+     * a single probe of the page, instead of finding the element. Thus, they never wait for the implicit timeout,
+     * which is the common cost of checking an absent element. When waiting is needed, it should be done
+     * explicitly, for example with {@link Operations#doWithRetries}.
+     * Probing mode is disabled by default.
+     * @param probing whether to use probing mode
+     */
+    public void setProbing(boolean probing) {
+        this.probing = probing;
+    }
+
+    public boolean isProbing() {
+        return probing;
+    }
+
+    /**
+     * Wait until the condition on the first element that matches the path is met. The wait is done inside the browser,
+     * and returns as soon as the condition is met, without polling. If the driver can not run asynchronous scripts,
+     * it falls back to polling.
+     * For DISPLAYED and NOT_DISPLAYED, the wait in the browser is only a wake-up signal, since it approximates the
+     * visibility: the result is always confirmed with WebElement.isDisplayed().
+     * @param el the path to check
+     * @param condition the condition to wait for
+     * @param timeout the maximal time to wait
+     * @param unit the unit of the timeout
+     * @return true if the condition was met before the timeout
+     */
+    public boolean waitUntil(Path el, WaitCondition condition, long timeout, TimeUnit unit) {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        boolean confirmedInJava = condition.isConfirmedInJava();
+        if (confirmedInJava && condition.isMetIn(this, el)) {
+            return true;
+        }
+        Optional<Boolean> met = PushWait.until(driver, el, condition, deadline);
+        if (met.isPresent() && !confirmedInJava) {
+            return met.get();
+        }
+        if (met.isPresent() && !met.get()) {
+            return condition.isMetIn(this, el);
+        }
+        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        try {
+            new FluentWait<>(driver).withTimeout(Duration.ofMillis(remaining))
+                    .pollingEvery(Duration.ofMillis(50))
+                    .until(d -> condition.isMetIn(this, el));
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wait until the number of elements that match the path does not change for the given quiet period.
+     * The wait is done inside the browser, that tracks the changes to the DOM. If the driver can not run
+     * asynchronous scripts, it falls back to counting repeatedly.
+     * @param el the path to count
+     * @param quietPeriodInMillis the period in which the number of elements must not change
+     * @return the number of times the number of elements changed, plus one
+     */
+    public int waitUntilStable(Path el, int quietPeriodInMillis) {
+        Optional<Integer> iterations = PushWait.untilStable(driver, el, quietPeriodInMillis);
+        if (iterations.isPresent()) {
+            return iterations.get();
+        }
+        int currentCount = countAll(el);
+        int previousCount;
+        int polls = 0;
+        do {
+            previousCount = currentCount;
+            try {
+                Thread.sleep(quietPeriodInMillis);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            currentCount = countAll(el);
+            polls += 1;
+        } while (currentCount != previousCount);
+        return polls;
+    }
+
+    /**
+     * Wait until the page is quiet: the DOM did not change for the quiet period, measured after at least one
+     * animation frame. Useful instead of a fixed sleep, after an operation that causes the page to render.
+     * Continuous animations that do not change the DOM (e.g. on a canvas) do not prevent the page from being quiet.
+     * If the driver can not run asynchronous scripts, it sleeps for the quiet period.
+     * @param quietPeriodInMillis the period in which the DOM must not change
+     * @param timeout the maximal time to wait
+     * @param unit the unit of the timeout
+     * @return true if the page became quiet before the timeout
+     */
+    public boolean waitUntilQuiet(int quietPeriodInMillis, long timeout, TimeUnit unit) {
+        return waitUntilQuiet(quietPeriodInMillis, false, timeout, unit);
+    }
+
+    /**
+     * Wait until the page is quiet. See {@link #waitUntilQuiet(int, long, TimeUnit)}.
+     * @param quietPeriodInMillis the period in which the DOM must not change
+     * @param includingNetwork whether to wait also until there are no fetch/XHR requests in flight. The requests
+     *                         are tracked from the first time it is called in the current page:
+     *                         window.fetch and XMLHttpRequest.prototype.send are replaced with wrappers that count
+     *                         the requests, for the lifetime of the document.
+     * @param timeout the maximal time to wait
+     * @param unit the unit of the timeout
+     * @return true if the page became quiet before the timeout
+     */
+    public boolean waitUntilQuiet(int quietPeriodInMillis, boolean includingNetwork, long timeout, TimeUnit unit) {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        Optional<Boolean> quiet = PushWait.untilQuiet(driver, quietPeriodInMillis, includingNetwork, deadline);
+        if (quiet.isPresent()) {
+            return quiet.get();
+        }
+        try {
+            Thread.sleep(Math.min(quietPeriodInMillis, Math.max(0, deadline - System.currentTimeMillis())));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
     /////////////// predicates
 
     /**
@@ -129,7 +393,7 @@ public class InBrowser {
      * @return the number of elements in the browser that match the given path
      */
     public Integer numberOfAppearances(Path el) {
-        return InBrowserFinder.findAll(driver, el).size();
+        return InBrowserFinder.numberOfAppearances(driver, el);
     }
 
     /**
@@ -139,6 +403,9 @@ public class InBrowser {
      * @return true if the element is present
      */
     public boolean isPresent(Path el) {
+        if (probing) {
+            return probe(el).isPresent();
+        }
         try {
             find(el);
             return true;
@@ -154,6 +421,9 @@ public class InBrowser {
      * @return true if it is not present
      */
     public boolean isNotPresent(Path el) {
+        if (probing) {
+            return !probe(el).isPresent();
+        }
         try {
             findPageWithout(el);
             return true;
@@ -169,8 +439,11 @@ public class InBrowser {
      * @return true if it is present and enabled
      */
     public boolean isEnabled(Path el) {
+        if (probing) {
+            return probe(el).isEnabled();
+        }
         try {
-            return find(el).isEnabled();
+            return withElement(el, WebElement::isEnabled);
         } catch (NoSuchElementException e) {
             return false;
         }
@@ -183,8 +456,11 @@ public class InBrowser {
      * @return true if it is present and selected
      */
     public boolean isSelected(Path el) {
+        if (probing) {
+            return probe(el).isSelected();
+        }
         try {
-            return find(el).isSelected();
+            return withElement(el, WebElement::isSelected);
         } catch (NoSuchElementException e) {
             return false;
         }
@@ -198,8 +474,11 @@ public class InBrowser {
      * @return true if it is present and selected
      */
     public boolean isDisplayed(Path el) {
+        if (probing) {
+            return probe(el).isDisplayed();
+        }
         try {
-            return find(el).isDisplayed();
+            return withElement(el, WebElement::isDisplayed);
         } catch (NoSuchElementException e) {
             return false;
         }
@@ -212,8 +491,7 @@ public class InBrowser {
      */
     public boolean isCovered(Path el) {
         String script = getScriptToFindIfElementIsExposed();
-        Object res = ((JavascriptExecutor) driver).executeScript(script, find(el));
-        return (boolean) res;
+        return withElement(el, found -> (boolean) ((JavascriptExecutor) driver).executeScript(script, found));
     }
 
     private static String getScriptToFindIfElementIsExposed() {
@@ -236,14 +514,24 @@ public class InBrowser {
      * @return the clicked on WebElement
      */
     public WebElement clickOn(Path el) {
+        return clickOn(el, clickRetryPolicy);
+    }
+
+    /**
+     * Click on the first element that fits the given path. Only works for clickable elements.
+     * If the element is currently not clickable, will wait up to a second for it to be clickable.
+     * @param el the element
+     * @param policy how to retry a click that failed
+     * @return the clicked on WebElement
+     */
+    public WebElement clickOn(Path el, RetryPolicy policy) {
         try {
-            return Operations.doWithRetriesForException(() -> {
-                WebElement found = find(el);
+            return policy.call(() -> withElement(el, found -> {
                 Wait<WebDriver> wait = getWaiter();
                 wait.until(ExpectedConditions.elementToBeClickable(found));
                 found.click();
                 return found;
-            }, ElementClickInterceptedException.class, 3, 500);
+            }));
         } catch (Exception e) {
             if (e instanceof RuntimeException){
                 throw (RuntimeException)e;
@@ -258,9 +546,10 @@ public class InBrowser {
      * @return the clicked on WebElement
      */
     public WebElement clickAt(Path el) {
-        WebElement found = find(el);
-        preformActions(e -> e.moveToElement(found).click());
-        return found;
+        return withElement(el, found -> {
+            preformActions(e -> e.moveToElement(found).click());
+            return found;
+        });
     }
 
     /**
@@ -269,9 +558,10 @@ public class InBrowser {
      * @return the clicked on WebElement
      */
     public WebElement contextClick(Path el) {
-        WebElement found = find(el);
-        preformActions(e -> e.moveToElement(found).contextClick());
-        return found;
+        return withElement(el, found -> {
+            preformActions(e -> e.moveToElement(found).contextClick());
+            return found;
+        });
     }
 
     /**
@@ -289,9 +579,10 @@ public class InBrowser {
      * @return the clicked on WebElement
      */
     public WebElement hoverOver(Path el) {
-        final WebElement found = find(el);
-        preformActions(e -> e.moveToElement(found));
-        return found;
+        return withElement(el, found -> {
+            preformActions(e -> e.moveToElement(found));
+            return found;
+        });
     }
 
     /**
@@ -313,10 +604,12 @@ public class InBrowser {
      * @param el the element
      */
     public void doubleClickOn(Path el) {
-        WebElement found = find(el);
-        Wait<WebDriver> wait = getWaiter();
-        wait.until(ExpectedConditions.elementToBeClickable(found));
-        preformActions(e -> e.doubleClick(found));
+        withElement(el, found -> {
+            Wait<WebDriver> wait = getWaiter();
+            wait.until(ExpectedConditions.elementToBeClickable(found));
+            preformActions(e -> e.doubleClick(found));
+            return found;
+        });
     }
 
     /**
@@ -328,7 +621,7 @@ public class InBrowser {
      * @return a KeySender instance that allows to send keys to the browser in general, or to a specific DOM element
      */
     public Operations.KeysSender sendKeys(CharSequence... charsToSend) {
-        return new Operations.KeysSender(driver, charsToSend);
+        return new Operations.KeysSender(driver, this::find, charsToSend);
     }
 
     /**
@@ -427,8 +720,21 @@ public class InBrowser {
      * @return a list of classes
      */
     public List<String> getCssClasses(final Path el) {
-        String[] res = find(el).getAttribute("class").trim().split("\\s+");
-        return asList(res);
+        return QueryResultCache.get(driver, asList("getCssClasses", el), () -> {
+            String[] res = withElement(el, found -> found.getAttribute("class")).trim().split("\\s+");
+            return Collections.unmodifiableList(asList(res));
+        });
+    }
+
+    /**
+     * @param policy the retry policy of {@link #clickOn(Path)}. The default is {@link #defaultClickRetryPolicy()}.
+     */
+    public void setClickRetryPolicy(RetryPolicy policy) {
+        this.clickRetryPolicy = policy;
+    }
+
+    public RetryPolicy getClickRetryPolicy() {
+        return clickRetryPolicy;
     }
 
     public void setImplicitTimeout(int implicitTimeout, TimeUnit unit) {
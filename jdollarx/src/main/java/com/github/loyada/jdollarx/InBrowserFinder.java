@@ -3,12 +3,17 @@ package com.github.loyada.jdollarx;
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static com.github.loyada.jdollarx.XpathUtils.nOccurances;
 
@@ -16,17 +21,48 @@ import static com.github.loyada.jdollarx.XpathUtils.nOccurances;
  * Internal implementation.
  */
 public class InBrowserFinder {
+    private static final AtomicLong cssLookups = new AtomicLong();
+    private static final AtomicLong xpathLookups = new AtomicLong();
+
+    /**
+     * @return the number of lookups by find/findAll/countAll that used a CSS selector.
+     * See {@link CssSelectorCompiler}.
+     */
+    public static long getCssLookups() {
+        return cssLookups.get();
+    }
+
+    /**
+     * @return the number of lookups by find/findAll/countAll that used xpath
+     */
+    public static long getXpathLookups() {
+        return xpathLookups.get();
+    }
+
+    public static void resetLookupCounters() {
+        cssLookups.set(0);
+        xpathLookups.set(0);
+    }
+
+    private static By byForFind(final Path el, final String path) {
+        Optional<String> selector = CssSelectorCompiler.selectorForFind(el);
+        if (selector.isPresent()) {
+            cssLookups.incrementAndGet();
+            return By.cssSelector(selector.get());
+        }
+        xpathLookups.incrementAndGet();
+        return By.xpath(processedPathForFind(path));
+    }
 
     static WebElement find(WebDriver driver, final Path el) {
-        final Optional<String> path = el.getXPath();
+        final Optional<String> path = XpathOptimizer.xpathForFind(el);
         try {
             if (el.getUnderlyingSource().isPresent()) {
                 WebElement underlying = el.getUnderlyingSource().get();
                 return (path.isPresent()) ? underlying.findElement(By.xpath(path.get())) : underlying;
             } else {
-                if (el.getXPath().isPresent()) {
-                    String processedPath = processedPathForFind(path.get());
-                    return driver.findElement(By.xpath(processedPath));
+                if (path.isPresent()) {
+                    return driver.findElement(byForFind(el, path.get()));
                 } else {
                     throw new IllegalArgumentException("path is empty"); // should never happen
                 }
@@ -57,7 +93,7 @@ public class InBrowserFinder {
     }
 
     public static List<WebElement> findAll(WebDriver driver, final Path el) {
-        final Optional<String> path = el.getXPath();
+        final Optional<String> path = XpathOptimizer.xpathForFind(el);
         if (el.getUnderlyingSource().isPresent()) {
             WebElement underlying = el.getUnderlyingSource().get();
             if (path.isPresent()) {
@@ -67,8 +103,7 @@ public class InBrowserFinder {
             }
         } else {
             if (path.isPresent()) {
-                String processedPath = processedPathForFind(path.get());
-                return driver.findElements(By.xpath(processedPath));
+                return driver.findElements(byForFind(el, path.get()));
 
             } else {
                 throw new IllegalArgumentException("webel is empty"); // should never happen
@@ -77,13 +112,27 @@ public class InBrowserFinder {
     }
 
     public static int countAll(WebDriver driver, final Path el) {
-        final Optional<String> path = el.getXPath();
+        return QueryResultCache.get(driver, Arrays.asList("countAll", el), () -> countAllInBrowser(driver, el));
+    }
+
+    /**
+     * @param driver the driver
+     * @param el the element definition
+     * @return the number of elements that are found by findAll
+     */
+    static int numberOfAppearances(WebDriver driver, final Path el) {
+        return QueryResultCache.get(driver, Arrays.asList("numberOfAppearances", el), () -> findAll(driver, el).size());
+    }
+
+    private static int countAllInBrowser(WebDriver driver, final Path el) {
+        final Optional<String> path = XpathOptimizer.xpathForFind(el);
         if (el.getUnderlyingSource().isPresent()) {
             throw new UnsupportedOperationException();
         } else {
-            if (path.isPresent()) {
-                String processedPath = processedPathForFind(path.get());
-                String script = getScriptForCounting(processedPath);
+            if (path.isPresent() && XpathExpressionCache.isEnabled()) {
+                return countMany(driver, Collections.singletonList(el)).get(0);
+            } else if (path.isPresent()) {
+                String script = getScriptForCounting(el, path.get());
                 try {
                     Object res = ((JavascriptExecutor) driver).executeScript(script);
                     return Long.valueOf((long) res).intValue();
@@ -98,7 +147,14 @@ public class InBrowserFinder {
         }
     }
 
-    private static String getScriptForCounting(String processedPath) {
+    private static String getScriptForCounting(final Path el, final String path) {
+        Optional<String> selector = CssSelectorCompiler.selectorForFind(el);
+        if (selector.isPresent()) {
+            cssLookups.incrementAndGet();
+            return String.format("return document.querySelectorAll(%s).length", toJsString(selector.get()));
+        }
+        xpathLookups.incrementAndGet();
+        String processedPath = processedPathForFind(path);
         return String.format(
                 "return document.evaluate(\"count(%s)\", document, null, XPathResult.NUMBER_TYPE, null).numberValue",
                 processedPath);
@@ -114,7 +170,15 @@ public class InBrowserFinder {
      * @return List of int/string with all the values of the attribute
      */
     public static List<?> getAttributeOfAll(WebDriver driver, final Path el, String attribute) {
-        final Optional<String> path = el.getXPath();
+        if (!QueryResultCache.isEnabled()) {
+            return getAttributeOfAllInBrowser(driver, el, attribute);
+        }
+        return QueryResultCache.get(driver, Arrays.asList("getAttributeOfAll", el, attribute),
+                () -> Collections.unmodifiableList(getAttributeOfAllInBrowser(driver, el, attribute)));
+    }
+
+    private static List<?> getAttributeOfAllInBrowser(WebDriver driver, final Path el, String attribute) {
+        final Optional<String> path = XpathOptimizer.xpathForFind(el);
         if (el.getUnderlyingSource().isPresent()) {
             WebElement underlying = el.getUnderlyingSource().get();
             if (path.isPresent()) {
@@ -127,7 +191,10 @@ public class InBrowserFinder {
                 return Collections.singletonList(value);
             }
         } else {
-            if (path.isPresent()) {
+            if (path.isPresent() && XpathExpressionCache.isEnabled() &&
+                    !CssSelectorCompiler.selectorForFind(el).isPresent()) {
+                return (List<?>) executeBatch(driver, Collections.singletonList(el), "attribute", attribute).get(0);
+            } else if (path.isPresent()) {
                 String processedPath = processedPathForFind(path.get());
                 String pathForAttribute = String.format("%s/@%s", processedPath, attribute);
                 String script = getScriptToExtractAttributes(pathForAttribute);
@@ -140,6 +207,192 @@ public class InBrowserFinder {
         }
     }
 
+    // The state of an element, as in WebElement::isDisplayed, isEnabled and isSelected.
+    // isDisplayed is an approximation: the element has a layout box, and is neither hidden nor transparent.
+    static final String elementStateFunctions =
+            "function dollarxIsDisplayed(el) {" +
+            "  if (el.getClientRects().length === 0) return false;" +
+            "  var style = window.getComputedStyle(el);" +
+            "  return style.visibility !== 'hidden' && style.opacity !== '0';" +
+            "}" +
+            "function dollarxIsEnabled(el) {" +
+            "  return !(el.matches && el.matches(':disabled'));" +
+            "}" +
+            "function dollarxIsSelected(el) {" +
+            "  return !!(el.checked || el.selected);" +
+            "}";
+
+    // Every query is [kind, expression, context, key]. The context is an element, or false for the document.
+    // The key is optional. When the key is given, the expression is compiled once, and kept in the page.
+    // In that case, the expression may be null, and if it is missing from the page, the script returns MISSING.
+    private static final String batchScript = elementStateFunctions +
+            "var queries = arguments[0], mode = arguments[1], result = [], compiled = [];" +
+            "var cache = window.__dollarxXpath = window.__dollarxXpath || {size: 0, expressions: {}};" +
+            "for (var i = 0; i < queries.length; i++) {" +
+            "  var key = queries[i][3];" +
+            "  if (!key) continue;" +
+            "  compiled[i] = cache.expressions[key];" +
+            "  if (compiled[i]) continue;" +
+            "  if (queries[i][1] === null) return '" + XpathExpressionCache.MISSING + "';" +
+            "  if (cache.size >= " + XpathExpressionCache.MAX_EXPRESSIONS + ") {" +
+            "    cache.size = 0;" +
+            "    cache.expressions = {};" +
+            "  }" +
+            "  compiled[i] = cache.expressions[key] = document.createExpression(queries[i][1], null);" +
+            "  cache.size++;" +
+            "}" +
+            "function evaluate(i, context, type) {" +
+            "  return compiled[i] ? compiled[i].evaluate(context, type, null) :" +
+            "      document.evaluate(queries[i][1], context, null, type, null);" +
+            "}" +
+            "for (var i = 0; i < queries.length; i++) {" +
+            "  var kind = queries[i][0], expr = queries[i][1], context = queries[i][2] || document;" +
+            "  if (mode === 'count') {" +
+            "    result.push(kind === 'self' ? 1 : kind === 'css' ? context.querySelectorAll(expr).length :" +
+            "        compiled[i] ? evaluate(i, context, XPathResult.UNORDERED_NODE_SNAPSHOT_TYPE).snapshotLength :" +
+            "        document.evaluate('count(' + expr + ')', context, null, XPathResult.NUMBER_TYPE, null).numberValue);" +
+            "  } else if (mode === 'attribute') {" +
+            "    var nodes = evaluate(i, context, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE), values = [];" +
+            "    for (var j = 0; j < nodes.snapshotLength; j++) {" +
+            "      var node = nodes.snapshotItem(j);" +
+            "      if (node.hasAttribute(arguments[2])) values.push(node.getAttribute(arguments[2]));" +
+            "    }" +
+            "    result.push(values);" +
+            "  } else {" +
+            "    var el = kind === 'self' ? context : kind === 'css' ? context.querySelector(expr) :" +
+            "        evaluate(i, context, XPathResult.FIRST_ORDERED_NODE_TYPE).singleNodeValue;" +
+            "    if (mode === 'probe') {" +
+            // a displayed element is returned, to confirm it with WebElement.isDisplayed()
+            "      var displayed = el !== null && dollarxIsDisplayed(el);" +
+            "      result.push(el === null ? null :" +
+            "          [dollarxIsEnabled(el), displayed, dollarxIsSelected(el), displayed ? el : null]);" +
+            "    } else {" +
+            "      result.push(mode === 'find' ? el : el !== null);" +
+            "    }" +
+            "  }" +
+            "}" +
+            "return result;";
+
+    static List<Object> queryForBatch(final Path el) {
+        final Optional<String> path = XpathOptimizer.xpathForFind(el);
+        if (el.getUnderlyingSource().isPresent()) {
+            WebElement underlying = el.getUnderlyingSource().get();
+            return path.isPresent() ?
+                    Arrays.asList("xpath", path.get(), underlying) :
+                    Arrays.asList("self", "", underlying);
+        } else if (!path.isPresent()) {
+            throw new IllegalArgumentException("path is empty");
+        }
+        Optional<String> selector = CssSelectorCompiler.selectorForFind(el);
+        if (selector.isPresent()) {
+            cssLookups.incrementAndGet();
+            return Arrays.asList("css", selector.get(), false);
+        }
+        xpathLookups.incrementAndGet();
+        return Arrays.asList("xpath", processedPathForFind(path.get()), false);
+    }
+
+    private static List<?> executeBatch(WebDriver driver, final List<? extends Path> paths, Object... modeAndArgs) {
+        if (paths.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<List<Object>> queries = paths.stream().map(InBrowserFinder::queryForBatch).collect(Collectors.toList());
+        if (!XpathExpressionCache.isEnabled()) {
+            return (List<?>) executeBatchScript(driver, queries, modeAndArgs);
+        }
+        List<List<Object>> keyed = XpathExpressionCache.withKeys(driver, queries);
+        Object res = executeBatchScript(driver, keyed, modeAndArgs);
+        if (XpathExpressionCache.MISSING.equals(res)) {
+            XpathExpressionCache.forget(driver);
+            keyed = XpathExpressionCache.withKeys(driver, queries);
+            res = executeBatchScript(driver, keyed, modeAndArgs);
+        }
+        XpathExpressionCache.record(keyed);
+        return (List<?>) res;
+    }
+
+    private static Object executeBatchScript(WebDriver driver, List<List<Object>> queries, Object... modeAndArgs) {
+        Object[] args = new Object[modeAndArgs.length + 1];
+        args[0] = queries;
+        System.arraycopy(modeAndArgs, 0, args, 1, modeAndArgs.length);
+        return ((JavascriptExecutor) driver).executeScript(batchScript, args);
+    }
+
+    /**
+     * Find the first element of every one of the given paths, in a single round trip to the browser.
+     * @param driver the driver
+     * @param paths the paths to find
+     * @return the first element of every path, in the same order. An element is null if it is not present.
+     */
+    static List<WebElement> findMany(WebDriver driver, final List<? extends Path> paths) {
+        List<?> res = executeBatch(driver, paths, "find");
+        List<WebElement> result = new ArrayList<>(res.size());
+        res.forEach(el -> result.add((WebElement) el));
+        return result;
+    }
+
+    /**
+     * Count the elements of every one of the given paths, in a single round trip to the browser.
+     * @param driver the driver
+     * @param paths the paths to count
+     * @return the number of elements that match every path, in the same order
+     */
+    static List<Integer> countMany(WebDriver driver, final List<? extends Path> paths) {
+        return executeBatch(driver, paths, "count").stream().
+                map(count -> ((Number) count).intValue()).
+                collect(Collectors.toList());
+    }
+
+    /**
+     * Check the presence of every one of the given paths, in a single round trip to the browser.
+     * @param driver the driver
+     * @param paths the paths to look for
+     * @return whether every path is present, in the same order
+     */
+    static List<Boolean> presenceOf(WebDriver driver, final List<? extends Path> paths) {
+        return executeBatch(driver, paths, "presence").stream().
+                map(Boolean.class::cast).
+                collect(Collectors.toList());
+    }
+
+    /**
+     * Probe the state of the first element of every one of the given paths, in a single round trip to the browser,
+     * without any implicit waiting.
+     * @param driver the driver
+     * @param paths the paths to probe
+     * @return the state of the first element of every path, in the same order
+     */
+    static List<ElementProbe> probeMany(WebDriver driver, final List<? extends Path> paths) {
+        return executeBatch(driver, paths, "probe").stream().
+                map(InBrowserFinder::toProbe).
+                collect(Collectors.toList());
+    }
+
+    private static ElementProbe toProbe(Object state) {
+        if (state == null) {
+            return ElementProbe.ABSENT;
+        }
+        List<?> flags = (List<?>) state;
+        return new ElementProbe(true, (Boolean) flags.get(0), isConfirmedAsDisplayed(flags), (Boolean) flags.get(2));
+    }
+
+    // The visibility in the browser is an approximation: a positive answer is confirmed with WebElement.isDisplayed(),
+    // on the element that the probe returned, so there is no implicit wait.
+    private static boolean isConfirmedAsDisplayed(List<?> flags) {
+        if (!((Boolean) flags.get(1)) || flags.size() < 4 || !(flags.get(3) instanceof WebElement)) {
+            return false;
+        }
+        try {
+            return ((WebElement) flags.get(3)).isDisplayed();
+        } catch (StaleElementReferenceException e) {
+            return false;
+        }
+    }
+
+    private static String toJsString(String s) {
+        return "'" + s.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
     private static String getScriptToExtractAttributes(String pathForAttribute) {
        return String.format(
                "values = document.evaluate(\"%s\", document, null, XPathResult.ANY_TYPE, null);" +
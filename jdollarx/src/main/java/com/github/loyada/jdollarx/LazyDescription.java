@@ -0,0 +1,47 @@
+package com.github.loyada.jdollarx;
+
+import java.util.function.Supplier;
+
+/**
+ * Internal implementation.
+ * A human-readable description of a Path. Descriptions of composed Paths are rendered from the descriptions of
+ * their operands, so they are rendered only when they are read (typically in an error message), and then kept.
+ */
+final class LazyDescription {
+    // cleared once rendered, so the operands are not retained for the description
+    private volatile Supplier<String> renderer;
+    private volatile String rendered;
+
+    private LazyDescription(Supplier<String> renderer, String rendered) {
+        this.renderer = renderer;
+        this.rendered = rendered;
+    }
+
+    static LazyDescription of(String description) {
+        return new LazyDescription(null, description);
+    }
+
+    static LazyDescription lazy(Supplier<String> renderer) {
+        return new LazyDescription(renderer, null);
+    }
+
+    String get() {
+        String result = rendered;
+        if (result == null) {
+            Supplier<String> currentRenderer = renderer;
+            if (currentRenderer == null) {
+                // rendered by another thread, which published the result before releasing the renderer
+                return rendered;
+            }
+            result = currentRenderer.get();
+            rendered = result;
+            renderer = null;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return get();
+    }
+}
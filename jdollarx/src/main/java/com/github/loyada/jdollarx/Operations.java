@@ -2,6 +2,7 @@ package com.github.loyada.jdollarx;
 
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
@@ -10,6 +11,8 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 
@@ -20,6 +23,8 @@ import static java.lang.Thread.sleep;
  * Internal implementation of various browser operations
  */
 public class Operations {
+    // The maximal time to wait for the page to be quiet, between retries or scroll steps
+    static final int MAX_QUIET_WAIT_MILLIS = 5000;
 
     public static class OperationFailedException extends IOException {
         public OperationFailedException(String message, Throwable cause) {
@@ -35,10 +40,16 @@ public class Operations {
      */
     public static class KeysSender {
         private final WebDriver driver;
+        private final Function<Path, WebElement> finder;
         private final CharSequence[] charsToSend;
 
         public KeysSender(WebDriver driver, CharSequence... charsToSend) {
+            this(driver, path -> InBrowserFinder.find(driver, path), charsToSend);
+        }
+
+        KeysSender(WebDriver driver, Function<Path, WebElement> finder, CharSequence... charsToSend) {
             this.driver = driver;
+            this.finder = finder;
             this.charsToSend = charsToSend;
         }
 
@@ -56,7 +67,11 @@ public class Operations {
          */
         public void to(Path path) throws OperationFailedException {
             try {
-                preformActions(driver, e -> e.sendKeys(InBrowserFinder.find(driver, path), charsToSend));
+                try {
+                    preformActions(driver, e -> e.sendKeys(finder.apply(path), charsToSend));
+                } catch (StaleElementReferenceException e) {
+                    preformActions(driver, a -> a.sendKeys(finder.apply(path), charsToSend));
+                }
             } catch (Exception e) {
                 throw new OperationFailedException("could not send keys to " + path, e);
             }
@@ -212,20 +227,65 @@ public class Operations {
         private final WebDriver driver;
         private final Path wrapper;
         private int step;
+        private int quietPeriodInMillis = 0;
+        private Optional<RetryPolicy> retryPolicy = Optional.empty();
+        private boolean searchInBrowser = false;
+        private final boolean adaptiveStep;
         private final int LARGE_NUM=100000;
 
         private static final Predicate<WebElement> TRUTHY = e -> true;
+        private static final Predicate<WebElement> DISPLAYED = WebElement::isDisplayed;
 
         public ScrollElement(final WebDriver driver, Path wrapper) {
             this.driver = driver;
             this.wrapper = wrapper;
             step=60;
+            adaptiveStep = true;
         }
 
         public ScrollElement(final WebDriver driver, Path wrapper, int stepSizeOverride) {
             this.driver = driver;
             this.wrapper = wrapper;
             step = stepSizeOverride;
+            adaptiveStep = false;
+        }
+
+        /**
+         * After every scroll step, wait until the page is quiet, instead of looking for the expected element
+         * immediately. Useful for virtualized elements, that render their content after a scroll.
+         * See {@link InBrowser#waitUntilQuiet(int, long, java.util.concurrent.TimeUnit)}.
+         * When searching in the browser, the quiet period is capped at 1.5 seconds.
+         * @param quietPeriodInMillis the period in which the DOM must not change
+         * @return this instance
+         */
+        public ScrollElement waitingForQuietPage(int quietPeriodInMillis) {
+            this.quietPeriodInMillis = quietPeriodInMillis;
+            return this;
+        }
+
+        /**
+         * Run the whole scroll-and-search loop inside the browser, with a single asynchronous script, instead of a
+         * round trip for every scroll step and every search. Unless a step size was given, the step is adapted to
+         * the size of the wrapper (80% of its height or width), so that consecutive views overlap.
+         * Presence and visibility of the expected element are checked in the browser. Any other predicate is checked
+         * in Java, on the candidates that the browser found.
+         * If the browser can not run asynchronous scripts, the search falls back to scrolling step by step.
+         * @return this instance
+         */
+        public ScrollElement searchingInBrowser() {
+            this.searchInBrowser = true;
+            return this;
+        }
+
+        /**
+         * Retry a failed search for an element according to the given policy. By default, the search is retried
+         * 3 times, with a delay of 200 milliseconds.
+         * @param policy the retry policy
+         * @return this instance
+         */
+        public ScrollElement withRetryPolicy(RetryPolicy policy) {
+            this.retryPolicy = Optional.of(policy);
+            return this;
         }
 
         /**
@@ -235,7 +295,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement toTopLeftCorner(Path expectedElement) {
-            return downUntilElementIsPresent(expectedElement, step, LARGE_NUM);
+            return downUntilPredicate(expectedElement, step, LARGE_NUM, TRUTHY, adaptiveStep);
         }
 
         /**
@@ -245,7 +305,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement downUntilElementIsPresent(Path expectedElement) {
-            return downUntilElementIsPresent(expectedElement, step, LARGE_NUM);
+            return downUntilPredicate(expectedElement, step, LARGE_NUM, TRUTHY, adaptiveStep);
         }
 
         /**
@@ -257,7 +317,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement upUntilPredicate(Path expectedElement, Predicate<WebElement> predicate) {
-            return upUntilPredicate(expectedElement, step, LARGE_NUM, predicate);
+            return upUntilPredicate(expectedElement, step, LARGE_NUM, predicate, adaptiveStep);
         }
 
         /**
@@ -269,7 +329,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement downUntilPredicate(Path expectedElement, Predicate<WebElement> predicate) {
-            return downUntilPredicate(expectedElement, step, LARGE_NUM, predicate);
+            return downUntilPredicate(expectedElement, step, LARGE_NUM, predicate, adaptiveStep);
         }
 
         /**
@@ -279,7 +339,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement upUntilElementIsPresent(Path expectedElement) {
-            return upUntilElementIsPresent(expectedElement, step, LARGE_NUM);
+            return upUntilPredicate(expectedElement, step, LARGE_NUM, TRUTHY, adaptiveStep);
         }
 
         /**
@@ -289,7 +349,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement rightUntilElementIsPresent(Path expectedElement) {
-            return rightUntilElementIsPresent(expectedElement, step, LARGE_NUM);
+            return rightUntilPredicate(expectedElement, step, LARGE_NUM, TRUTHY, adaptiveStep);
         }
 
         /**
@@ -299,7 +359,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement rightUntilElementIsVisible(Path expectedElement) {
-            return rightUntilPredicate(expectedElement, step, LARGE_NUM, WebElement::isDisplayed);
+            return rightUntilPredicate(expectedElement, step, LARGE_NUM, DISPLAYED, adaptiveStep);
         }
 
         /**
@@ -311,7 +371,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement rightUntilPredicate(Path expectedElement, Predicate<WebElement> predicate) {
-            return rightUntilPredicate(expectedElement, step, LARGE_NUM, predicate);
+            return rightUntilPredicate(expectedElement, step, LARGE_NUM, predicate, adaptiveStep);
         }
 
         /**
@@ -321,7 +381,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement leftUntilElementIsPresent(Path expectedElement) {
-            return leftUntilElementIsPresent(expectedElement, step, LARGE_NUM);
+            return leftUntilPredicate(expectedElement, step, LARGE_NUM, TRUTHY, adaptiveStep);
         }
 
         /**
@@ -331,7 +391,7 @@ public class Operations {
          * @return the WebElement or throws an exception if not found
          */
         public WebElement leftUntilElementIsDisplayed(Path expectedElement) {
-            return leftUntilElementIsDisplayed(expectedElement, step, LARGE_NUM);
+            return leftUntilPredicate(expectedElement, step, LARGE_NUM, DISPLAYED, adaptiveStep);
         }
 
         /**
@@ -343,7 +403,7 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement leftUntilPredicate(Path expectedElement, Predicate<WebElement> predicate) {
-            return leftUntilPredicate(expectedElement, step, LARGE_NUM, predicate);
+            return leftUntilPredicate(expectedElement, step, LARGE_NUM, predicate, adaptiveStep);
         }
 
         /**
@@ -372,11 +432,18 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement downUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls,Predicate<WebElement> predicate) {
+            return downUntilPredicate(expectedElement, scrollStep, maxNumberOfScrolls, predicate, false);
+        }
+
+        private WebElement downUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls,
+                Predicate<WebElement> predicate, boolean stepAdaptedToWrapper) {
             return scrollWrapperUntilElementConditional(
                     expectedElement,
                     scrollStep,
+                    stepAdaptedToWrapper,
                     maxNumberOfScrolls,
                     predicate,
+                    ScrollSearch.Direction.DOWN,
                     "elem = arguments[0];elem.scrollTop = elem.scrollTop+arguments[1];return elem.scrollHeight-elem.scrollTop-elem.clientHeight;");
         }
 
@@ -390,11 +457,18 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement upUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls, Predicate<WebElement> predicate) {
+            return upUntilPredicate(expectedElement, scrollStep, maxNumberOfScrolls, predicate, false);
+        }
+
+        private WebElement upUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls,
+                Predicate<WebElement> predicate, boolean stepAdaptedToWrapper) {
             return scrollWrapperUntilElementConditional(
                     expectedElement,
                     scrollStep,
+                    stepAdaptedToWrapper,
                     maxNumberOfScrolls,
                     predicate,
+                    ScrollSearch.Direction.UP,
                     "elem = arguments[0];elem.scrollTop = elem.scrollTop-arguments[1];return elem.scrollTop;");
         }
 
@@ -440,11 +514,18 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement rightUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls, Predicate<WebElement> predicate) {
+            return rightUntilPredicate(expectedElement, scrollStep, maxNumberOfScrolls, predicate, false);
+        }
+
+        private WebElement rightUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls,
+                Predicate<WebElement> predicate, boolean stepAdaptedToWrapper) {
             return scrollWrapperUntilElementConditional(
                     expectedElement,
                     scrollStep,
+                    stepAdaptedToWrapper,
                     maxNumberOfScrolls,
                     predicate,
+                    ScrollSearch.Direction.RIGHT,
                     "elem = arguments[0];elem.scrollLeft = elem.scrollLeft+arguments[1];return elem.scrollWidth-elem.scrollLeft-elem.clientWidth;");
         }
 
@@ -457,11 +538,18 @@ public class Operations {
          * @return the WebElement or throws an exception of not found
          */
         public WebElement leftUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls, Predicate<WebElement> predicate) {
+            return leftUntilPredicate(expectedElement, scrollStep, maxNumberOfScrolls, predicate, false);
+        }
+
+        private WebElement leftUntilPredicate(Path expectedElement, int scrollStep, int maxNumberOfScrolls,
+                Predicate<WebElement> predicate, boolean stepAdaptedToWrapper) {
             return scrollWrapperUntilElementConditional(
                     expectedElement,
                     scrollStep,
+                    stepAdaptedToWrapper,
                     maxNumberOfScrolls,
                     predicate,
+                    ScrollSearch.Direction.LEFT,
                     "elem = arguments[0];elem.scrollLeft = elem.scrollLeft-arguments[1];return elem.scrollLeft;");
         }
 
@@ -481,27 +569,28 @@ public class Operations {
             );
         }
 
-        private WebElement leftUntilElementIsDisplayed(Path expectedElement, int scrollStep, int maxNumberOfScrolls ) {
-            return leftUntilPredicate(
-                    expectedElement,
-                    scrollStep,
-                    maxNumberOfScrolls,
-                    WebElement::isDisplayed
-            );
-        }
-
         private WebElement scrollWrapperUntilElementConditional(
                 Path expectedElement,
                 int scrollStep,
+                boolean stepAdaptedToWrapper,
                 int maxNumberOfScrolls,
                 Predicate<WebElement> elementPredicate,
+                ScrollSearch.Direction direction,
                 String script) {
             JavascriptExecutor js = (JavascriptExecutor) driver;
             InBrowser browser = new InBrowser(driver);
             WebElement wrapperEl = browser.find(wrapper);
 
             try {
-                return doWithRetries(() -> {
+                Callable<WebElement> scrollUntilFound = () -> {
+                    if (searchInBrowser) {
+                        try {
+                            return searchInBrowser(wrapperEl, expectedElement, stepAdaptedToWrapper ? 0 : scrollStep,
+                                    maxNumberOfScrolls, elementPredicate, direction);
+                        } catch (UnsupportedOperationException e) {
+                            // fall back to scrolling step by step
+                        }
+                    }
                     long left = 1;
                     final int MAX_FAILURES = 5;
                     int failures = 0;
@@ -518,6 +607,9 @@ public class Operations {
                         try {
                             Object ret = js.executeScript(script, wrapperEl, scrollStep);
                             left = (ret.getClass() == Double.class) ? ((Double) ret).longValue() : (long) ret;
+                            if (quietPeriodInMillis > 0) {
+                                browser.waitUntilQuiet(quietPeriodInMillis, MAX_QUIET_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                            }
                         } catch (Exception e) {
                             e.printStackTrace();
                             failures++;
@@ -527,12 +619,36 @@ public class Operations {
                         }
                     }
                     throw new NoSuchElementException(expectedElement.toString());
-                }, 3, 200);
+                };
+                if (retryPolicy.isPresent()) {
+                    return retryPolicy.get().call(scrollUntilFound);
+                }
+                return (quietPeriodInMillis > 0) ?
+                        doWithRetries(scrollUntilFound, 3, browser, quietPeriodInMillis) :
+                        doWithRetries(scrollUntilFound, 3, 200);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
 
+        private WebElement searchInBrowser(
+                WebElement wrapperEl,
+                Path expectedElement,
+                int scrollStep,
+                int maxNumberOfScrolls,
+                Predicate<WebElement> elementPredicate,
+                ScrollSearch.Direction direction) {
+            ScrollSearch.Condition condition = (elementPredicate == TRUTHY) ? ScrollSearch.Condition.PRESENT :
+                    (elementPredicate == DISPLAYED) ? ScrollSearch.Condition.DISPLAYED :
+                            ScrollSearch.Condition.CANDIDATES;
+            return ScrollSearch.search(driver, wrapperEl, expectedElement, direction,
+                    scrollStep,
+                    maxNumberOfScrolls,
+                    (quietPeriodInMillis > 0) ? quietPeriodInMillis : ScrollSearch.SETTLE_MILLIS,
+                    condition,
+                    (condition == ScrollSearch.Condition.PRESENT) ? TRUTHY : elementPredicate);
+        }
+
 
         /**
          * Scroll to top-left corner
@@ -726,6 +842,93 @@ public class Operations {
         }
     }
 
+    /**
+     * Retry an action/assertion up to a number of times. Instead of a fixed delay after each time,
+     * wait until the page is quiet, so it waits only as long as the page is busy.
+     * See {@link InBrowser#waitUntilQuiet(int, long, java.util.concurrent.TimeUnit)}.
+     * For example:
+     * <pre>
+     * {@code
+     *   doWithRetries(() -> assertThat(div.withClass("foo"), isDisplayedIn(browser)), 5, browser, 50);
+     * }
+     * </pre>
+     * @param action the action to try. It's a runnable - no input parapeters and does not return anything.
+     * @param numberOfRetries - maximum number of retries
+     * @param browser - the browser to wait for
+     * @param quietPeriodInMillis - the period in which the DOM must not change before the next retry
+     */
+    public static void doWithRetries(
+            Runnable action,
+            int numberOfRetries,
+            InBrowser browser,
+            int quietPeriodInMillis
+    ) {
+        int triesLeft = numberOfRetries;
+        while (true) {
+            try {
+                action.run();
+                return;
+            } catch (Exception|AssertionError e) {
+                triesLeft-=1;
+                if (triesLeft<=0) {
+                    throw e;
+                }
+                browser.waitUntilQuiet(quietPeriodInMillis, MAX_QUIET_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Retry an action up to a number of times. Instead of a fixed delay after each time,
+     * wait until the page is quiet, so it waits only as long as the page is busy.
+     * @param action the action to try. It has no input parameters, but returns a value
+     * @param numberOfRetries - maximum number of retries
+     * @param browser - the browser to wait for
+     * @param quietPeriodInMillis - the period in which the DOM must not change before the next retry
+     * @param <T> any type that the function returns
+     * @return returns the result of the callable
+     * @throws Exception the exception thrown by the last try in case it exceeded the number of retries.
+     */
+    public static <T> T doWithRetries(
+            Callable<T> action,
+            int numberOfRetries,
+            InBrowser browser,
+            int quietPeriodInMillis
+    ) throws Exception {
+        int triesLeft = numberOfRetries;
+        while (true) {
+            try {
+                return action.call();
+            } catch (Exception|AssertionError e) {
+                triesLeft-=1;
+                if (triesLeft<=0) {
+                    throw e;
+                }
+                browser.waitUntilQuiet(quietPeriodInMillis, MAX_QUIET_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Retry an action/assertion according to the given policy.
+     * @param action the action to try. It's a runnable - no input parapeters and does not return anything.
+     * @param policy - the retry policy
+     */
+    public static void doWithRetries(Runnable action, RetryPolicy policy) {
+        policy.run(action);
+    }
+
+    /**
+     * Retry an action according to the given policy.
+     * @param action the action to try. It has no input parameters, but returns a value
+     * @param policy - the retry policy
+     * @param <T> any type that the function returns
+     * @return returns the result of the callable
+     * @throws Exception the exception thrown by the last try in case the policy does not allow more retries.
+     */
+    public static <T> T doWithRetries(Callable<T> action, RetryPolicy policy) throws Exception {
+        return policy.call(action);
+    }
 
     public static <T, V extends Exception> T doWithRetriesForException(
             Callable<T> action,
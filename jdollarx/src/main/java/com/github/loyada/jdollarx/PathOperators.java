@@ -1,7 +1,7 @@
 package com.github.loyada.jdollarx;
 
 
-import java.util.Optional;
+import java.util.Collections;
 
 /**
  * Utilities to manipulate a {@link Path}
@@ -18,9 +18,14 @@ public final class PathOperators {
     static public Path not(Path path) {
         if (!path.getXPath().isPresent()) throw new IllegalArgumentException();
         return BasicPath.builder().
-                withXpath(String.format("*[not(self::%s)]", PathUtils.transformXpathToCorrectAxis(path).get())).
+                withXpathExpr(notSelf(PathUtils.correctAxis(path))).
                 withUnderlyingOptional(path.getUnderlyingSource()).
-                withAlternateXpath(String.format("*[not(self::%s)]", path.getAlternateXPath().get())).
-                withXpathExplanationOptional(Optional.of(String.format("anything except (%s)", path))).build();
+                withAlternateXpathExpr(notSelf(PathUtils.alternateXpathExprOf(path))).
+                withLazyXpathExplanation(() -> String.format("anything except (%s)", path)).build();
+    }
+
+    private static XpathExpr notSelf(XpathExpr expr) {
+        return new XpathExpr.Filtered(XpathExpr.ANY_ELEMENT,
+                Collections.singletonList(new XpathExpr.Not(new XpathExpr.Relation("self", expr))));
     }
 }
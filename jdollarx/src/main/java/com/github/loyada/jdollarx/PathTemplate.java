@@ -0,0 +1,240 @@
+package com.github.loyada.jdollarx;
+
+import com.google.common.collect.ImmutableSet;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * A {@link Path} with placeholders, that is compiled once and bound to values many times. Useful when the same Path
+ * is needed for many values, such as a row of a table for every index. Binding a value does not rebuild the Path,
+ * nor emit its xpath again.
+ * Example:
+ * <pre>
+ * {@code
+ *     PathTemplate rowTemplate = PathTemplate.of(
+ *              div.that(hasRole("row"), hasAttribute("row-index", value("index"))).inside(table)
+ *              .describedBy("row with index " + value("index")));
+ *     Path row5 = rowTemplate.bind("index", 5);
+ * }
+ * </pre>
+ * Placeholder names consist of lower case letters, digits and underscores.
+ */
+public final class PathTemplate {
+    private static final char START = '\u0001';
+    private static final char END = '\u0002';
+    private static final char VALUE = 'v';
+    private static final char TEXT = 't';
+    private static final char INDEX = 'i';
+    private static final Pattern validName = Pattern.compile("[a-z][a-z0-9_]*");
+
+    private final Slotted xpath;
+    private final Optional<Slotted> alternateXpath;
+    private final Slotted description;
+    private final boolean describedBy;
+    private final Optional<WebElement> underlying;
+    private final ImmutableSet<String> placeholders;
+
+    private PathTemplate(Path path) {
+        this.xpath = Slotted.compile(path.getXPath().orElseThrow(() ->
+                new IllegalArgumentException("a template must have an xpath")));
+        this.alternateXpath = path.getAlternateXPath().map(Slotted::compile);
+        this.description = Slotted.compile(path.toString());
+        this.describedBy = path.getDescribedBy().isPresent();
+        this.underlying = path.getUnderlyingSource();
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        for (Slotted slotted : Arrays.asList(xpath, alternateXpath.orElse(xpath), description)) {
+            slotted.slots.forEach(slot -> names.add(slot.name));
+        }
+        this.placeholders = names.build();
+    }
+
+    /**
+     * Compile a Path that contains placeholders into a template
+     * @param path a Path with placeholders, created with {@link #value(String)}, {@link #text(String)}
+     *             and {@link #isWithIndex(String)}
+     * @return a template that can be bound to values
+     */
+    public static PathTemplate of(Path path) {
+        return new PathTemplate(path);
+    }
+
+    /**
+     * A placeholder for an exact value, such as an attribute value or a case-sensitive text.
+     * It can also be used in a description.
+     * @param name the name of the placeholder
+     * @return a placeholder that can be used instead of a string value
+     */
+    public static String value(String name) {
+        return placeholder(VALUE, name);
+    }
+
+    /**
+     * A placeholder for a text that is matched ignoring case, as in {@link ElementProperties#hasText(String)}
+     * @param name the name of the placeholder
+     * @return a placeholder that can be used instead of the text
+     */
+    public static String text(String name) {
+        return placeholder(TEXT, name);
+    }
+
+    /**
+     * A placeholder for the index of the element among its siblings, as in {@link ElementProperties#isWithIndex(Integer)}
+     * @param name the name of the placeholder. It is bound to an integer, starting with 0
+     * @return an element property that can be applied with Path::that
+     */
+    public static ElementProperty isWithIndex(String name) {
+        String index = placeholder(INDEX, name);
+        return new ElementProperty() {
+            @Override
+            public String toXpath() {
+                return "position() = " + index;
+            }
+
+            public String toString() {
+                return "with index " + index;
+            }
+        };
+    }
+
+    private static String placeholder(char kind, String name) {
+        if (!validName.matcher(name).matches()) {
+            throw new IllegalArgumentException("illegal placeholder name: " + name);
+        }
+        return START + String.valueOf(kind) + name + END;
+    }
+
+    /**
+     * @return the names of all the placeholders in the template
+     */
+    public ImmutableSet<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Bind the template that has a single placeholder
+     * @param name the name of the placeholder
+     * @param value the value of the placeholder
+     * @return a Path that is equivalent to the template Path, with the value instead of the placeholder
+     */
+    public Path bind(String name, Object value) {
+        return bind(Collections.singletonMap(name, value));
+    }
+
+    /**
+     * @param values the value of every placeholder, by name
+     * @return a Path that is equivalent to the template Path, with the values instead of the placeholders
+     */
+    public Path bind(Map<String, ?> values) {
+        for (String name : placeholders) {
+            if (!values.containsKey(name) || values.get(name) == null) {
+                throw new IllegalArgumentException("missing value for placeholder " + name);
+            }
+        }
+        String boundDescription = description.bind(values, false);
+        BasicPath.PathBuilder builder = BasicPath.builder().
+                withUnderlyingOptional(underlying).
+                withXpath(xpath.bind(values, true)).
+                withAlternateXpathOptional(alternateXpath.map(alternate -> alternate.bind(values, true))).
+                withXpathExplanation(boundDescription);
+        return (describedBy ? builder.withDescribedBy(boundDescription) : builder).build();
+    }
+
+    @Override
+    public String toString() {
+        return "template of " + description.bind(Collections.emptyMap(), false);
+    }
+
+    /**
+     * A string that was split at its placeholders
+     */
+    private static final class Slotted {
+        private final List<String> segments;
+        private final List<Slot> slots;
+        private final int length;
+
+        private Slotted(List<String> segments, List<Slot> slots, int length) {
+            this.segments = segments;
+            this.slots = slots;
+            this.length = length;
+        }
+
+        static Slotted compile(String template) {
+            List<String> segments = new ArrayList<>();
+            List<Slot> slots = new ArrayList<>();
+            int segmentStart = 0;
+            int start = template.indexOf(START);
+            while (start >= 0) {
+                int end = template.indexOf(END, start);
+                if (end < 0) {
+                    break;
+                }
+                boolean quoted = start > 0 && template.charAt(start - 1) == '\'' &&
+                        end + 1 < template.length() && template.charAt(end + 1) == '\'';
+                segments.add(template.substring(segmentStart, quoted ? start - 1 : start));
+                slots.add(new Slot(template.charAt(start + 1), template.substring(start + 2, end), quoted));
+                segmentStart = quoted ? end + 2 : end + 1;
+                start = template.indexOf(START, segmentStart);
+            }
+            segments.add(template.substring(segmentStart));
+            return new Slotted(segments, slots, template.length());
+        }
+
+        String bind(Map<String, ?> values, boolean inXpath) {
+            if (slots.isEmpty()) {
+                return segments.get(0);
+            }
+            StringBuilder sb = new StringBuilder(length + 16 * slots.size());
+            for (int i = 0; i < slots.size(); i++) {
+                sb.append(segments.get(i));
+                Object value = values.get(slots.get(i).name);
+                if (value == null) {
+                    sb.append('{').append(slots.get(i).name).append('}');
+                } else if (inXpath) {
+                    slots.get(i).appendXpath(sb, value);
+                } else {
+                    sb.append(value);
+                }
+            }
+            return sb.append(segments.get(slots.size())).toString();
+        }
+    }
+
+    private static final class Slot {
+        private final char kind;
+        private final String name;
+        private final boolean quoted;
+
+        Slot(char kind, String name, boolean quoted) {
+            this.kind = kind;
+            this.name = name;
+            this.quoted = quoted;
+        }
+
+        void appendXpath(StringBuilder sb, Object value) {
+            if (kind == INDEX) {
+                if (!(value instanceof Integer)) {
+                    throw new IllegalArgumentException(format("placeholder %s must be an integer", name));
+                }
+                sb.append((Integer) value + 1);
+                return;
+            }
+            String text = (kind == TEXT) ? value.toString().toLowerCase() : value.toString();
+            if (quoted) {
+                XpathUtils.appendTextForXpath(sb, text);
+            } else if (text.indexOf('\'') >= 0) {
+                throw new IllegalArgumentException(format("value of placeholder %s can not contain a quote", name));
+            } else {
+                sb.append(text);
+            }
+        }
+    }
+}
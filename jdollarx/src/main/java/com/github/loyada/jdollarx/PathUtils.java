@@ -3,7 +3,6 @@ package com.github.loyada.jdollarx;
 
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Map;
-import java.util.Optional;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -20,12 +19,26 @@ public final class PathUtils {
         return xpath.contains("/");
     }
 
-    static Optional<String> transformXpathToCorrectAxis(Path sourcePath) {
-        if (sourcePath.getXPath().isPresent() && hasHeirarchy(sourcePath.getXPath().get())) {
-            return sourcePath.getAlternateXPath();
-        } else {
-            return sourcePath.getXPath();
+    static XpathExpr xpathExprOf(Path path) {
+        if (path instanceof BasicPath) {
+            return ((BasicPath) path).getXpathExpr().get();
         }
+        return XpathExpr.raw(path.getXPath().get());
+    }
+
+    static XpathExpr alternateXpathExprOf(Path path) {
+        if (path instanceof BasicPath) {
+            return ((BasicPath) path).getAlternateXpathExpr().get();
+        }
+        return path.getAlternateXPath().map(XpathExpr::raw).orElseGet(() -> xpathExprOf(path));
+    }
+
+    /**
+     * The form of the path that can follow an axis: the xpath if it has no hierarchy, otherwise the alternate xpath.
+     * The choice is deferred to emission.
+     */
+    static XpathExpr correctAxis(Path path) {
+        return new XpathExpr.CorrectAxis(xpathExprOf(path), alternateXpathExprOf(path));
     }
 
     static String oppositeRelation(String relation) {
@@ -0,0 +1,238 @@
+package com.github.loyada.jdollarx;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Internal implementation.
+ * Waits inside the browser, with a single asynchronous script, instead of polling it from Java.
+ * The script checks the condition whenever the DOM changes (using a MutationObserver), and for conditions on
+ * the visibility of the element, also on every animation frame. It returns as soon as the condition is met, or at
+ * the deadline.
+ * A single script waits for at most MAX_WAIT_PER_SCRIPT_MILLIS, so longer waits are split, to stay within the script
+ * timeout of the driver. If the driver can not run asynchronous scripts, the result is empty, and the caller
+ * should poll instead.
+ */
+final class PushWait {
+    static final long MAX_WAIT_PER_SCRIPT_MILLIS = 5000;
+
+    // Every query is [kind, expression, context], as in the batch lookups of InBrowserFinder
+    private static final String commonFunctions =
+            "var query = arguments[0], kind = query[0], expr = query[1], context = query[2] || document;" +
+            "var callback = arguments[arguments.length - 1], done = false, observer;" +
+            "function first() {" +
+            "  return kind === 'self' ? (context.isConnected ? context : null) :" +
+            "      kind === 'css' ? context.querySelector(expr) :" +
+            "      document.evaluate(expr, context, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;" +
+            "}" +
+            "function count() {" +
+            "  return kind === 'self' ? (context.isConnected ? 1 : 0) :" +
+            "      kind === 'css' ? context.querySelectorAll(expr).length :" +
+            "      document.evaluate('count(' + expr + ')', context, null, XPathResult.NUMBER_TYPE, null).numberValue;" +
+            "}" +
+            "function finish(result) {" +
+            "  if (done) return;" +
+            "  done = true;" +
+            "  if (observer) observer.disconnect();" +
+            "  callback(result);" +
+            "}" +
+            "function observe(onChange) {" +
+            "  observer = new MutationObserver(onChange);" +
+            "  observer.observe(document, {subtree: true, childList: true, attributes: true, characterData: true});" +
+            "}" +
+            InBrowserFinder.elementStateFunctions;
+
+    private static final String conditionScript = commonFunctions +
+            "var condition = arguments[1], timeout = arguments[2];" +
+            "function check() {" +
+            "  var el = first();" +
+            "  switch (condition) {" +
+            "    case 'PRESENT': return el !== null;" +
+            "    case 'ABSENT': return el === null;" +
+            "    case 'DISPLAYED': return el !== null && dollarxIsDisplayed(el);" +
+            "    case 'NOT_DISPLAYED': return el === null || !dollarxIsDisplayed(el);" +
+            "    case 'SELECTED': return el !== null && dollarxIsSelected(el);" +
+            "    case 'NOT_SELECTED': return el !== null && !dollarxIsSelected(el);" +
+            "    case 'ENABLED': return el !== null && dollarxIsEnabled(el);" +
+            "    case 'DISABLED': return el !== null && !dollarxIsEnabled(el);" +
+            "  }" +
+            "}" +
+            "if (check()) return finish(true);" +
+            "observe(function() { if (check()) finish(true); });" +
+            "if (condition.indexOf('DISPLAYED') >= 0) {" +
+            "  (function frame() {" +
+            "    if (done) return;" +
+            "    if (check()) return finish(true);" +
+            "    requestAnimationFrame(frame);" +
+            "  })();" +
+            "}" +
+            "setTimeout(function() { finish(check()); }, timeout);";
+
+    // Returns [stable, number of changes]
+    private static final String stableScript = commonFunctions +
+            "var quietPeriod = arguments[1], timeout = arguments[2];" +
+            "var current = count(), changes = 0, quietTimer;" +
+            "function restartQuietTimer() {" +
+            "  clearTimeout(quietTimer);" +
+            "  quietTimer = setTimeout(function() { finish([true, changes]); }, quietPeriod);" +
+            "}" +
+            "observe(function() {" +
+            "  var updated = count();" +
+            "  if (updated !== current) {" +
+            "    current = updated;" +
+            "    changes++;" +
+            "    restartQuietTimer();" +
+            "  }" +
+            "});" +
+            "restartQuietTimer();" +
+            "setTimeout(function() { finish([false, changes]); }, timeout);";
+
+    // Tracks the activity of the page: the time of the latest DOM mutation, and optionally the fetch/XHR requests
+    // that are in flight. Installed once per document. The quiet period is measured after at least one animation
+    // frame, so that a render that was scheduled before the call is not missed. Animation frames are not tracked,
+    // since a page with a continuous animation (a spinner, a chart) always has a pending frame.
+    private static final String quietScript =
+            "var quietPeriod = arguments[0], network = arguments[1], timeout = arguments[2];" +
+            "var callback = arguments[arguments.length - 1];" +
+            "var a = window.__dollarxActivity;" +
+            "if (!a) {" +
+            "  a = window.__dollarxActivity = {lastMutation: Date.now(), inFlight: -1};" +
+            "  new MutationObserver(function() { a.lastMutation = Date.now(); }).observe(document," +
+            "      {subtree: true, childList: true, attributes: true, characterData: true});" +
+            "}" +
+            "if (network && a.inFlight < 0) {" +
+            "  a.inFlight = 0;" +
+            "  var done = function() { a.inFlight--; };" +
+            "  var fetch = window.fetch;" +
+            "  if (fetch) {" +
+            "    window.fetch = function() {" +
+            "      a.inFlight++;" +
+            "      try {" +
+            "        var p = fetch.apply(this, arguments);" +
+            "      } catch (e) {" +
+            "        done();" +
+            "        throw e;" +
+            "      }" +
+            "      p.then(done, done);" +
+            "      return p;" +
+            "    };" +
+            "  }" +
+            "  var send = XMLHttpRequest.prototype.send;" +
+            "  XMLHttpRequest.prototype.send = function() {" +
+            "    a.inFlight++;" +
+            "    this.addEventListener('loadend', done);" +
+            "    try {" +
+            "      return send.apply(this, arguments);" +
+            "    } catch (e) {" +
+            "      this.removeEventListener('loadend', done);" +
+            "      done();" +
+            "      throw e;" +
+            "    }" +
+            "  };" +
+            "}" +
+            "var start = Date.now(), started = false;" +
+            "function check() {" +
+            "  if (Date.now() - a.lastMutation >= quietPeriod && (!network || a.inFlight <= 0)) return callback(true);" +
+            "  if (Date.now() - start >= timeout) return callback(false);" +
+            "  setTimeout(check, Math.max(1, Math.min(quietPeriod, 20)));" +
+            "}" +
+            // animation frames do not run in a hidden tab, so do not wait for one for long
+            "function afterFrame() {" +
+            "  if (started) return;" +
+            "  started = true;" +
+            "  check();" +
+            "}" +
+            "requestAnimationFrame(afterFrame);" +
+            "setTimeout(afterFrame, 100);";
+
+    private PushWait() {}
+
+    /**
+     * @param driver the driver
+     * @param el the path to check
+     * @param condition the condition to wait for
+     * @param deadline in System.currentTimeMillis() terms
+     * @return whether the condition was met by the deadline, or empty if the browser can not wait for it
+     */
+    static Optional<Boolean> until(WebDriver driver, Path el, WaitCondition condition, long deadline) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return Optional.empty();
+        }
+        List<Object> query = InBrowserFinder.queryForBatch(el);
+        try {
+            do {
+                long wait = Math.max(0, Math.min(deadline - System.currentTimeMillis(), MAX_WAIT_PER_SCRIPT_MILLIS));
+                Object met = ((JavascriptExecutor) driver).executeAsyncScript(
+                        conditionScript, query, condition.name(), wait);
+                if (Boolean.TRUE.equals(met)) {
+                    return Optional.of(true);
+                }
+            } while (System.currentTimeMillis() < deadline);
+            return Optional.of(false);
+        } catch (WebDriverException | ClassCastException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Wait until the page is quiet: the DOM did not change for the quiet period, measured after at least one animation
+     * frame. Optionally, also no fetch/XHR requests in flight. Requests are tracked from the first time this is
+     * called with includingNetwork in the current document: window.fetch and XMLHttpRequest.prototype.send are
+     * replaced with wrappers for the lifetime of the document.
+     * @param driver the driver
+     * @param quietPeriodInMillis the period in which the DOM must not change
+     * @param includingNetwork whether to wait also for the network requests
+     * @param deadline in System.currentTimeMillis() terms
+     * @return whether the page became quiet by the deadline, or empty if the browser can not wait for it
+     */
+    static Optional<Boolean> untilQuiet(WebDriver driver, int quietPeriodInMillis, boolean includingNetwork, long deadline) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return Optional.empty();
+        }
+        try {
+            do {
+                long wait = Math.max(0, Math.min(deadline - System.currentTimeMillis(), MAX_WAIT_PER_SCRIPT_MILLIS));
+                Object quiet = ((JavascriptExecutor) driver).executeAsyncScript(
+                        quietScript, quietPeriodInMillis, includingNetwork, wait);
+                if (Boolean.TRUE.equals(quiet)) {
+                    return Optional.of(true);
+                }
+            } while (System.currentTimeMillis() < deadline);
+            return Optional.of(false);
+        } catch (WebDriverException | ClassCastException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Wait until the number of elements that match the path did not change for the given quiet period
+     * @param driver the driver
+     * @param el the path to count
+     * @param quietPeriodInMillis the period in which the count must not change
+     * @return the number of changes to the count, plus one, or empty if the browser can not wait for it
+     */
+    static Optional<Integer> untilStable(WebDriver driver, Path el, int quietPeriodInMillis) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return Optional.empty();
+        }
+        List<Object> query = InBrowserFinder.queryForBatch(el);
+        long timeout = Math.max(MAX_WAIT_PER_SCRIPT_MILLIS, 2L * quietPeriodInMillis);
+        int changes = 0;
+        try {
+            while (true) {
+                List<?> res = (List<?>) ((JavascriptExecutor) driver).executeAsyncScript(
+                        stableScript, query, quietPeriodInMillis, timeout);
+                changes += ((Number) res.get(1)).intValue();
+                if (Boolean.TRUE.equals(res.get(0))) {
+                    return Optional.of(changes + 1);
+                }
+            }
+        } catch (WebDriverException | ClassCastException | NullPointerException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.loyada.jdollarx;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Internal implementation.
+ * Keeps the results of read-only queries: countAll, numberOfAppearances, getAttributeOfAll and getCssClasses,
+ * as long as the DOM of the page did not change. Changes are detected by a generation counter in the page
+ * (see {@link InBrowser#setElementCaching(boolean)}), that also changes on navigation. Thus, a repeated query on
+ * an unchanged page costs a single check of the generation.
+ * Applications whose state changes outside the DOM (for example, in a canvas) should call {@link #invalidate()}.
+ * Disabled by default.
+ */
+public final class QueryResultCache {
+    static final int MAX_ENTRIES = 1024;
+
+    private static volatile boolean enabled = false;
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final Map<WebDriver, Results> resultsOfDriver = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private QueryResultCache() {}
+
+    /**
+     * Keep the results of the read-only queries while the DOM is unchanged
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Always query the browser
+     */
+    public static void disable() {
+        enabled = false;
+        invalidate();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Drop all the results that are kept
+     */
+    public static void invalidate() {
+        resultsOfDriver.clear();
+    }
+
+    /**
+     * @return the number of queries that were answered from the cache
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of queries that were sent to the browser, while the cache was enabled
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * @param driver the driver
+     * @param query identifies the query and its arguments
+     * @param compute runs the query in the browser
+     * @param <T> the type of the result
+     * @return the result of the query. If the cache is enabled, it may be a result that was kept
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T get(WebDriver driver, List<Object> query, Supplier<T> compute) {
+        if (!enabled) {
+            return compute.get();
+        }
+        Results results = resultsOfDriver.computeIfAbsent(driver, d -> new Results());
+        String generation = ElementCache.generationOf(driver);
+        synchronized (results) {
+            if (!generation.equals(results.generation) || results.values.size() >= MAX_ENTRIES) {
+                results.values.clear();
+                results.generation = generation;
+            }
+            if (results.values.containsKey(query)) {
+                hits.incrementAndGet();
+                return (T) results.values.get(query);
+            }
+        }
+        misses.incrementAndGet();
+        T value = compute.get();
+        synchronized (results) {
+            if (generation.equals(results.generation)) {
+                results.values.put(query, value);
+            }
+        }
+        return value;
+    }
+
+    private static final class Results {
+        private String generation = "";
+        private final Map<List<Object>, Object> values = new HashMap<>();
+    }
+}
@@ -0,0 +1,374 @@
+package com.github.loyada.jdollarx;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static java.lang.String.format;
+
+/**
+ * Defines how to retry an action: how many times, how long to wait between attempts, until when, and on which
+ * failures. The delay between attempts grows exponentially, with an optional random jitter, so a flaky action is
+ * retried quickly at first, without paying the worst-case delay every time.
+ * A policy also keeps statistics of all the actions it ran, to help tune it.
+ * Example:
+ * <pre>
+ * {@code
+ *     RetryPolicy policy = RetryPolicy.builder()
+ *             .withMaxAttempts(5)
+ *             .withInitialDelay(Duration.ofMillis(20))
+ *             .withBackoffMultiplier(2)
+ *             .withDeadline(Duration.ofSeconds(2))
+ *             .retryOn(NoSuchElementException.class)
+ *             .build();
+ *     WebElement el = policy.call(() -> browser.find(div.withClass("foo")));
+ * }
+ * </pre>
+ * A policy is immutable, apart from its statistics, and can be shared between threads.
+ */
+public final class RetryPolicy {
+    private final String name;
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final double backoffMultiplier;
+    private final long maxDelayMillis;
+    private final double jitter;
+    private final Optional<Duration> deadline;
+    private final Duration attemptBudget;
+    private final Predicate<Throwable> retryOn;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    private RetryPolicy(Builder builder) {
+        this.name = builder.name;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialDelayMillis = builder.initialDelayMillis;
+        this.backoffMultiplier = builder.backoffMultiplier;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.jitter = builder.jitter;
+        this.deadline = builder.deadline;
+        this.attemptBudget = builder.attemptBudget;
+        this.retryOn = (builder.retryOn == null) ? e -> true : builder.retryOn;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A policy with a fixed number of attempts and a fixed delay, retrying on any Exception or AssertionError.
+     * Equivalent to {@link Operations#doWithRetries(Callable, int, int)}.
+     * @param maxAttempts maximal number of attempts
+     * @param delayInMillis delay between consecutive attempts
+     * @return a RetryPolicy
+     */
+    public static RetryPolicy fixed(int maxAttempts, int delayInMillis) {
+        return builder().withMaxAttempts(maxAttempts).withInitialDelay(Duration.ofMillis(delayInMillis)).build();
+    }
+
+    /**
+     * Run the action until it succeeds, or until the policy does not allow another attempt
+     * @param action the action to try
+     * @param <T> the type of the result of the action
+     * @return the result of the first successful attempt
+     * @throws Exception the failure of the last attempt
+     */
+    public <T> T call(Callable<T> action) throws Exception {
+        final long start = System.nanoTime();
+        int attempt = 0;
+        while (true) {
+            attempt++;
+            try {
+                T result = action.call();
+                record(attempt, start, false);
+                return result;
+            } catch (Exception | AssertionError e) {
+                long delay = delayBeforeNextAttempt(attempt, start, e);
+                if (delay < 0) {
+                    record(attempt, start, true);
+                    throw e;
+                }
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Run the action until it succeeds, or until the policy does not allow another attempt
+     * @param action the action to try
+     */
+    public void run(Runnable action) {
+        try {
+            call(() -> {
+                action.run();
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e); // should never happen
+        }
+    }
+
+    /**
+     * @return the delay in milliseconds before the next attempt, or -1 if there should be no more attempts
+     */
+    private long delayBeforeNextAttempt(int attempt, long start, Throwable failure) {
+        if (attempt >= maxAttempts || !retryOn.test(failure)) {
+            return -1;
+        }
+        double exponentialDelay = initialDelayMillis * Math.pow(backoffMultiplier, attempt - 1);
+        long delay = (long) Math.min(maxDelayMillis, exponentialDelay);
+        if (jitter > 0 && delay > 0) {
+            double factor = 1 - jitter + 2 * jitter * ThreadLocalRandom.current().nextDouble();
+            delay = Math.round(delay * factor);
+        }
+        if (deadline.isPresent()) {
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            long remaining = deadline.get().toMillis() - elapsedMillis;
+            if (remaining - delay < attemptBudget.toMillis() || remaining <= 0) {
+                return -1;
+            }
+        }
+        return delay;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void record(int attemptsOfCall, long start, boolean failed) {
+        long duration = System.nanoTime() - start;
+        calls.incrementAndGet();
+        attempts.addAndGet(attemptsOfCall);
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        totalNanos.addAndGet(duration);
+        maxNanos.accumulateAndGet(duration, Math::max);
+    }
+
+    /**
+     * @return a snapshot of the statistics of all the actions that were run with this policy
+     */
+    public Statistics getStatistics() {
+        return new Statistics(calls.get(), attempts.get(), failures.get(), totalNanos.get(), maxNanos.get());
+    }
+
+    public void resetStatistics() {
+        calls.set(0);
+        attempts.set(0);
+        failures.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return format("retry policy%s: up to %d attempts, delay %dms x%s up to %dms%s%s",
+                name.isEmpty() ? "" : " " + name,
+                maxAttempts, initialDelayMillis, backoffMultiplier, maxDelayMillis,
+                jitter > 0 ? format(", jitter %s", jitter) : "",
+                deadline.map(d -> format(", deadline %dms", d.toMillis())).orElse(""));
+    }
+
+    /**
+     * Statistics of the actions that were run with a policy
+     */
+    public static final class Statistics {
+        private final long calls;
+        private final long attempts;
+        private final long failures;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Statistics(long calls, long attempts, long failures, long totalNanos, long maxNanos) {
+            this.calls = calls;
+            this.attempts = attempts;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * @return the number of actions that were run
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return the number of attempts of all the actions
+         */
+        public long getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return the number of actions that failed after all their attempts
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the average time of an action, including all its attempts and delays
+         */
+        public Duration getAverageLatency() {
+            return calls == 0 ? Duration.ZERO : Duration.ofNanos(totalNanos / calls);
+        }
+
+        /**
+         * @return the longest time of an action, including all its attempts and delays
+         */
+        public Duration getMaxLatency() {
+            return Duration.ofNanos(maxNanos);
+        }
+
+        @Override
+        public String toString() {
+            return format("%d calls, %d attempts, %d failures, average %dms, max %dms",
+                    calls, attempts, failures, getAverageLatency().toMillis(), getMaxLatency().toMillis());
+        }
+    }
+
+    public static final class Builder {
+        private String name = "";
+        private int maxAttempts = 3;
+        private long initialDelayMillis = 100;
+        private double backoffMultiplier = 1;
+        private long maxDelayMillis = Long.MAX_VALUE;
+        private double jitter = 0;
+        private Optional<Duration> deadline = Optional.empty();
+        private Duration attemptBudget = Duration.ZERO;
+        private Predicate<Throwable> retryOn = null;
+
+        private Builder() {}
+
+        /**
+         * @param name a name for the policy, used in its description
+         * @return the builder
+         */
+        public Builder named(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts the maximal number of attempts, including the first one. Default is 3.
+         * @return the builder
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("at least one attempt is required");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param delay the delay before the second attempt. Default is 100 milliseconds.
+         * @return the builder
+         */
+        public Builder withInitialDelay(Duration delay) {
+            this.initialDelayMillis = delay.toMillis();
+            return this;
+        }
+
+        /**
+         * @param multiplier the factor by which the delay grows after every attempt. Default is 1 (a fixed delay).
+         * @return the builder
+         */
+        public Builder withBackoffMultiplier(double multiplier) {
+            if (multiplier < 1) {
+                throw new IllegalArgumentException("the multiplier must be at least 1");
+            }
+            this.backoffMultiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * @param maxDelay the maximal delay between attempts
+         * @return the builder
+         */
+        public Builder withMaxDelay(Duration maxDelay) {
+            this.maxDelayMillis = maxDelay.toMillis();
+            return this;
+        }
+
+        /**
+         * @param jitter a fraction between 0 and 1. Every delay is randomly changed by up to that fraction of it.
+         * @return the builder
+         */
+        public Builder withJitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param deadline the maximal overall time, since the start of the first attempt, to start a new attempt
+         * @return the builder
+         */
+        public Builder withDeadline(Duration deadline) {
+            this.deadline = Optional.of(deadline);
+            return this;
+        }
+
+        /**
+         * @param budget the expected time of a single attempt. A new attempt is not started if it is not expected to
+         *               end before the deadline.
+         * @return the builder
+         */
+        public Builder withAttemptBudget(Duration budget) {
+            this.attemptBudget = budget;
+            return this;
+        }
+
+        /**
+         * Retry only on the given types of failures. May be combined with {@link #retryIf(Predicate)}.
+         * By default, any Exception or AssertionError is retried.
+         * @param failureTypes the types of failures to retry on
+         * @return the builder
+         */
+        @SafeVarargs
+        public final Builder retryOn(Class<? extends Throwable>... failureTypes) {
+            return retryIf(e -> Arrays.stream(failureTypes).anyMatch(type -> type.isInstance(e)));
+        }
+
+        /**
+         * Retry only on failures that match the predicate. May be combined with {@link #retryOn(Class[])}.
+         * @param predicate a condition on the failure
+         * @return the builder
+         */
+        public Builder retryIf(Predicate<Throwable> predicate) {
+            this.retryOn = (this.retryOn == null) ? predicate : this.retryOn.or(predicate);
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
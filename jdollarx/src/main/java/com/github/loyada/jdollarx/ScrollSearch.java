@@ -0,0 +1,161 @@
+package com.github.loyada.jdollarx;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Internal implementation.
+ * Scrolls an element and searches for an expected element inside the browser, with an asynchronous script, instead
+ * of a round trip for every scroll step and every search. After every step, the script waits for the content to
+ * settle (by default, no DOM changes for SETTLE_MILLIS), since virtualized elements render their content after a scroll.
+ * When the condition on the expected element can not be checked in the browser, the script returns the candidates,
+ * and the condition is checked in Java.
+ */
+final class ScrollSearch {
+    enum Direction {DOWN, UP, RIGHT, LEFT}
+
+    // The condition that is checked in the browser. DISPLAYED is approximated, and must be confirmed in Java.
+    enum Condition {PRESENT, DISPLAYED, CANDIDATES}
+
+    static final int SETTLE_MILLIS = 30;
+    static final int MAX_SETTLE_MILLIS = 300;
+    // The settle period is capped, so that a single script still has time to scroll and search
+    static final int MAX_SETTLE_PERIOD_MILLIS = 1500;
+    static final long MIN_SCRIPT_TIMEOUT_MILLIS = 1000;
+
+    // Returns [status, elements, scrolls], where status is 'found', 'end' or 'continue' (out of time)
+    private static final String searchScript = InBrowserFinder.elementStateFunctions +
+            "var wrapper = arguments[0], query = arguments[1], direction = arguments[2], step = arguments[3];" +
+            "var maxScrolls = arguments[4], condition = arguments[5], scrollFirst = arguments[6];" +
+            "var timeout = arguments[7], settle = arguments[8], maxSettle = arguments[9];" +
+            "var callback = arguments[arguments.length - 1];" +
+            "var kind = query[0], expr = query[1], context = query[2] || document;" +
+            "var start = Date.now(), scrolls = 0, lastChange = Date.now(), scrollTime;" +
+            "var observer = new MutationObserver(function() { lastChange = Date.now(); });" +
+            "observer.observe(wrapper, {subtree: true, childList: true, attributes: true, characterData: true});" +
+            "function finish(status, elements) {" +
+            "  observer.disconnect();" +
+            "  callback([status, elements, scrolls]);" +
+            "}" +
+            "function all() {" +
+            "  if (kind === 'self') return context.isConnected ? [context] : [];" +
+            "  if (kind === 'css') return Array.prototype.slice.call(context.querySelectorAll(expr));" +
+            "  var nodes = document.evaluate(expr, context, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null), res = [];" +
+            "  for (var i = 0; i < nodes.snapshotLength; i++) res.push(nodes.snapshotItem(i));" +
+            "  return res;" +
+            "}" +
+            "function search() {" +
+            "  var els = all();" +
+            "  if (condition === 'CANDIDATES') return els;" +
+            "  if (condition === 'PRESENT') return els.slice(0, 1);" +
+            // the visibility in the browser is approximated, so it only filters the candidates
+            "  return els.filter(dollarxIsDisplayed);" +
+            "}" +
+            "function scroll() {" +
+            "  var vertical = direction === 'DOWN' || direction === 'UP';" +
+            "  var forward = direction === 'DOWN' || direction === 'RIGHT';" +
+            "  var size = vertical ? wrapper.clientHeight : wrapper.clientWidth;" +
+            "  var delta = step > 0 ? step : Math.max(1, Math.floor(size * 0.8));" +
+            "  if (vertical) wrapper.scrollTop += forward ? delta : -delta;" +
+            "  else wrapper.scrollLeft += forward ? delta : -delta;" +
+            "  scrolls++;" +
+            "  scrollTime = Date.now();" +
+            "}" +
+            "function atEnd() {" +
+            "  switch (direction) {" +
+            "    case 'DOWN': return wrapper.scrollHeight - wrapper.scrollTop - wrapper.clientHeight < 1;" +
+            "    case 'UP': return wrapper.scrollTop < 1;" +
+            "    case 'RIGHT': return wrapper.scrollWidth - wrapper.scrollLeft - wrapper.clientWidth < 1;" +
+            "    case 'LEFT': return wrapper.scrollLeft < 1;" +
+            "  }" +
+            "}" +
+            "function next() {" +
+            "  if (atEnd() || scrolls >= maxScrolls) return finish('end', []);" +
+            // at least one scroll in every script, so that every call makes progress
+            "  if (scrolls > 0 && Date.now() - start >= timeout) return finish('continue', []);" +
+            "  scroll();" +
+            "  requestAnimationFrame(function settled() {" +
+            "    var now = Date.now();" +
+            "    if (now - Math.max(lastChange, scrollTime) < settle && now - scrollTime < maxSettle) {" +
+            "      return setTimeout(settled, 10);" +
+            "    }" +
+            "    check();" +
+            "  });" +
+            "}" +
+            "function check() {" +
+            "  var found = search();" +
+            "  if (found.length > 0) return finish('found', found);" +
+            "  next();" +
+            "}" +
+            "if (scrollFirst) next(); else check();";
+
+    private ScrollSearch() {}
+
+    /**
+     * @param driver the driver
+     * @param wrapper the element to scroll
+     * @param expectedElement the element to look for
+     * @param direction the direction of the scroll
+     * @param step the step of the scroll in pixels, or 0 for a step that is adapted to the size of the wrapper
+     * @param maxNumberOfScrolls maximum number of scroll steps
+     * @param settleMillis the period in which the DOM must not change after a scroll, before searching. It is
+     *                     capped at MAX_SETTLE_PERIOD_MILLIS.
+     * @param condition the condition that is checked in the browser
+     * @param predicate the condition that is checked in Java, for CANDIDATES and DISPLAYED
+     * @return the first element that was found
+     * @throws NoSuchElementException if the element was not found
+     * @throws UnsupportedOperationException if the browser can not run the search
+     */
+    static WebElement search(WebDriver driver, WebElement wrapper, Path expectedElement, Direction direction, int step,
+                             int maxNumberOfScrolls, int settleMillis, Condition condition, Predicate<WebElement> predicate) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            throw new UnsupportedOperationException("the driver can not run scripts");
+        }
+        List<Object> query = InBrowserFinder.queryForBatch(expectedElement);
+        int settle = Math.min(settleMillis, MAX_SETTLE_PERIOD_MILLIS);
+        int maxSettle = Math.max(MAX_SETTLE_MILLIS, 2 * settle);
+        long timeout = Math.max(MIN_SCRIPT_TIMEOUT_MILLIS, PushWait.MAX_WAIT_PER_SCRIPT_MILLIS - maxSettle);
+        int scrollsLeft = maxNumberOfScrolls;
+        boolean scrollFirst = false;
+        while (true) {
+            List<?> res;
+            try {
+                res = (List<?>) ((JavascriptExecutor) driver).executeAsyncScript(searchScript,
+                        wrapper, query, direction.name(), step, scrollsLeft, condition.name(), scrollFirst,
+                        timeout, settle, maxSettle);
+            } catch (WebDriverException | ClassCastException e) {
+                throw new UnsupportedOperationException("the browser could not run the search", e);
+            }
+            String status = (String) res.get(0);
+            int scrolls = ((Number) res.get(2)).intValue();
+            scrollsLeft -= scrolls;
+            if (status.equals("continue") && scrolls == 0) {
+                // no progress: do not run the same search again
+                break;
+            }
+            if (status.equals("found")) {
+                Optional<WebElement> found = ((List<?>) res.get(1)).stream().
+                        map(WebElement.class::cast).
+                        filter(predicate).
+                        findFirst();
+                if (found.isPresent()) {
+                    return found.get();
+                }
+            } else if (status.equals("end")) {
+                break;
+            }
+            if (scrollsLeft <= 0) {
+                break;
+            }
+            scrollFirst = status.equals("found");
+        }
+        throw new NoSuchElementException(expectedElement.toString());
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.loyada.jdollarx;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+
+import java.util.function.Predicate;
+
+/**
+ * A condition on the first element that matches a Path, to wait for with
+ * {@link InBrowser#waitUntil(Path, WaitCondition, long, java.util.concurrent.TimeUnit)}
+ */
+public enum WaitCondition {
+    PRESENT(true, false, false, el -> true),
+    ABSENT(false, true, false, el -> false),
+    DISPLAYED(true, false, true, WebElement::isDisplayed),
+    NOT_DISPLAYED(true, true, true, el -> !el.isDisplayed()),
+    SELECTED(true, false, false, WebElement::isSelected),
+    NOT_SELECTED(true, false, false, el -> !el.isSelected()),
+    ENABLED(true, false, false, WebElement::isEnabled),
+    DISABLED(true, false, false, el -> !el.isEnabled());
+
+    private final boolean inspectsElement;
+    private final boolean metWhenAbsent;
+    private final boolean confirmedInJava;
+    private final Predicate<WebElement> elementCheck;
+
+    WaitCondition(boolean inspectsElement, boolean metWhenAbsent, boolean confirmedInJava,
+                  Predicate<WebElement> elementCheck) {
+        this.inspectsElement = inspectsElement;
+        this.metWhenAbsent = metWhenAbsent;
+        this.confirmedInJava = confirmedInJava;
+        this.elementCheck = elementCheck;
+    }
+
+    /**
+     * Whether the check in the browser only approximates the check in Java, so that it must be confirmed in Java.
+     * The visibility check in the browser ignores the opacity of the ancestors, clipping by overflow and zero size,
+     * unlike WebElement.isDisplayed().
+     */
+    boolean isConfirmedInJava() {
+        return confirmedInJava;
+    }
+
+    /**
+     * Check the condition from the Java side, by finding the element. Used when the browser can not wait for it.
+     */
+    boolean isMetIn(InBrowser browser, Path el) {
+        if (!inspectsElement) {
+            return browser.findAll(el).isEmpty() == metWhenAbsent;
+        }
+        try {
+            return elementCheck.test(browser.find(el));
+        } catch (NoSuchElementException | StaleElementReferenceException e) {
+            return metWhenAbsent;
+        }
+    }
+}
@@ -0,0 +1,756 @@
+package com.github.loyada.jdollarx;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Internal implementation.
+ * An expression tree that a {@link Path} is built from. The xpath string is emitted from the tree only
+ * when it is needed, which allows to analyze and rewrite a query before it is sent to the browser.
+ * The nodes fall into two groups: location nodes (node tests, axis steps, unions, index selectors),
+ * and predicate nodes (and/or/not, relations, attribute and class conditions).
+ */
+public abstract class XpathExpr {
+    static final XpathExpr ANY_ELEMENT = new Raw("*");
+
+    XpathExpr() {}
+
+    /**
+     * Append the xpath this expression is mapped to
+     * @param sb the builder to append to
+     */
+    public abstract void appendTo(StringBuilder sb);
+
+    /**
+     * @return the xpath this expression is mapped to
+     */
+    public final String toXpath() {
+        EmissionBuffer buffer = EmissionBuffer.current.get();
+        if (buffer.inUse) {
+            // a nested emission, such as the first rendering of a cached sub-expression
+            StringBuilder sb = new StringBuilder();
+            appendTo(sb);
+            return sb.toString();
+        }
+        buffer.inUse = true;
+        try {
+            appendTo(buffer.sb);
+            return buffer.sb.toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * A builder that is reused by all the emissions in a thread, so that emitting an xpath allocates only
+     * the resulting string.
+     */
+    private static final class EmissionBuffer {
+        private static final int MAX_RETAINED_CAPACITY = 8 * 1024;
+        static final ThreadLocal<EmissionBuffer> current = ThreadLocal.withInitial(EmissionBuffer::new);
+
+        StringBuilder sb = new StringBuilder(256);
+        boolean inUse;
+
+        void release() {
+            if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+                sb = new StringBuilder(256);
+            } else {
+                sb.setLength(0);
+            }
+            inUse = false;
+        }
+    }
+
+    /**
+     * Equivalent to checking whether the emitted xpath contains "/", without emitting it.
+     * @return true if the emitted xpath contains a hierarchy
+     */
+    boolean hasHierarchy() {
+        return toXpath().contains("/");
+    }
+
+    /**
+     * Equivalent to checking whether the emitted xpath starts with "(", without emitting it.
+     * @return true if the emitted xpath starts with a parenthesis
+     */
+    boolean startsWithParenthesis() {
+        return toXpath().startsWith("(");
+    }
+
+    @Override
+    public String toString() {
+        return toXpath();
+    }
+
+    static XpathExpr raw(String xpath) {
+        return new Raw(xpath);
+    }
+
+    static XpathExpr of(ElementProperty prop) {
+        return new PropertyCondition(prop);
+    }
+
+    ///////////////////////////////////////////////////////////
+    // location nodes
+
+    /**
+     * An opaque xpath fragment, typically a node test such as "div", or an xpath given explicitly by the user.
+     */
+    public static final class Raw extends XpathExpr {
+        final String xpath;
+
+        Raw(String xpath) {
+            this.xpath = xpath;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append(xpath);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return xpath.contains("/");
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return xpath.startsWith("(");
+        }
+    }
+
+    /**
+     * The expression of an immutable Path. It is emitted once, and the result is reused by every
+     * Path that is composed from it.
+     */
+    public static final class Cached extends XpathExpr {
+        final XpathExpr expression;
+        // a race between readers can at most emit the same value twice
+        private volatile String rendered;
+
+        Cached(XpathExpr expression) {
+            this.expression = expression;
+        }
+
+        private String rendered() {
+            String result = rendered;
+            if (result == null) {
+                result = expression.toXpath();
+                rendered = result;
+            }
+            return result;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append(rendered());
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return rendered().contains("/");
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return rendered().startsWith("(");
+        }
+    }
+
+    /**
+     * An expression followed by a list of predicates: {@code base[p1][p2]}
+     */
+    public static final class Filtered extends XpathExpr {
+        final XpathExpr base;
+        final List<XpathExpr> predicates;
+
+        Filtered(XpathExpr base, List<XpathExpr> predicates) {
+            this.base = base;
+            this.predicates = ImmutableList.copyOf(predicates);
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            base.appendTo(sb);
+            for (XpathExpr predicate : predicates) {
+                sb.append('[');
+                predicate.appendTo(sb);
+                sb.append(']');
+            }
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return base.hasHierarchy() || predicates.stream().anyMatch(XpathExpr::hasHierarchy);
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return base.startsWithParenthesis();
+        }
+    }
+
+    /**
+     * {@code ancestor//target}
+     */
+    public static final class Descendant extends XpathExpr {
+        final XpathExpr ancestor;
+        final XpathExpr target;
+
+        Descendant(XpathExpr ancestor, XpathExpr target) {
+            this.ancestor = ancestor;
+            this.target = target;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            ancestor.appendTo(sb);
+            sb.append("//");
+            target.appendTo(sb);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return true;
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return ancestor.startsWithParenthesis();
+        }
+    }
+
+    /**
+     * An axis step from the context expression: {@code context/axis::target}.
+     * If the target contains a hierarchy it cannot follow an axis, so the equivalent fallback expression
+     * (which uses a predicate on the target instead) is emitted.
+     */
+    public static final class AxisStep extends XpathExpr {
+        final XpathExpr context;
+        final String axis;
+        final XpathExpr target;
+        final XpathExpr fallback;
+
+        AxisStep(XpathExpr context, String axis, XpathExpr target, XpathExpr fallback) {
+            this.context = context;
+            this.axis = axis;
+            this.target = target;
+            this.fallback = fallback;
+        }
+
+        boolean usesFallback() {
+            return target.hasHierarchy();
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            if (usesFallback()) {
+                fallback.appendTo(sb);
+            } else {
+                context.appendTo(sb);
+                sb.append('/').append(axis).append("::");
+                target.appendTo(sb);
+            }
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return !usesFallback() || fallback.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return usesFallback() ? fallback.startsWithParenthesis() : context.startsWithParenthesis();
+        }
+    }
+
+    /**
+     * An element that matches any of the expressions: {@code *[(self::first) | (self::second)]}
+     */
+    public static final class Union extends XpathExpr {
+        final List<XpathExpr> alternatives;
+
+        Union(XpathExpr first, XpathExpr second) {
+            this(ImmutableList.of(first, second));
+        }
+
+        Union(List<XpathExpr> alternatives) {
+            this.alternatives = ImmutableList.copyOf(alternatives);
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append("*[");
+            for (int i = 0; i < alternatives.size(); i++) {
+                if (i > 0) {
+                    sb.append(" | ");
+                }
+                sb.append("(self::");
+                alternatives.get(i).appendTo(sb);
+                sb.append(')');
+            }
+            sb.append(']');
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return alternatives.stream().anyMatch(XpathExpr::hasHierarchy);
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return false;
+        }
+    }
+
+    /**
+     * The form of a Path that can follow an axis. If the xpath contains a hierarchy, the alternate xpath is used.
+     */
+    public static final class CorrectAxis extends XpathExpr {
+        final XpathExpr xpath;
+        final XpathExpr alternate;
+
+        CorrectAxis(XpathExpr xpath, XpathExpr alternate) {
+            this.xpath = xpath;
+            this.alternate = alternate;
+        }
+
+        XpathExpr resolve() {
+            return xpath.hasHierarchy() ? alternate : xpath;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            resolve().appendTo(sb);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return resolve().hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return resolve().startsWithParenthesis();
+        }
+    }
+
+    /**
+     * The nth occurrence of the target in the document: {@code (//target)[index]}
+     */
+    public static final class GlobalIndex extends XpathExpr {
+        final XpathExpr target;
+        final XpathExpr prefixSource;
+        final XpathExpr index;
+
+        GlobalIndex(XpathExpr target, XpathExpr prefixSource, XpathExpr index) {
+            this.target = target;
+            this.prefixSource = prefixSource;
+            this.index = index;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append(prefixSource.startsWithParenthesis() ? "(" : "(//");
+            target.appendTo(sb);
+            sb.append(")[");
+            index.appendTo(sb);
+            sb.append(']');
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return !prefixSource.startsWithParenthesis() || target.hasHierarchy() || index.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return true;
+        }
+    }
+
+    /**
+     * The expression, explicitly inside the document
+     */
+    public static final class TopLevel extends XpathExpr {
+        final XpathExpr target;
+
+        TopLevel(XpathExpr target) {
+            this.target = target;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            XpathUtils.appendInsideTopLevel(sb, target.toXpath());
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return true;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////
+    // predicate nodes
+
+    /**
+     * A predicate defined by an {@link ElementProperty}. It is expanded to its expression tree only when needed.
+     */
+    public static final class PropertyCondition extends XpathExpr {
+        final ElementProperty property;
+
+        PropertyCondition(ElementProperty property) {
+            this.property = property;
+        }
+
+        XpathExpr expand() {
+            return property.toXpathExpr();
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            expand().appendTo(sb);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return expand().hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return expand().startsWithParenthesis();
+        }
+    }
+
+    /**
+     * {@code (first and second)}
+     */
+    public static final class And extends XpathExpr {
+        final XpathExpr first;
+        final XpathExpr second;
+
+        And(XpathExpr first, XpathExpr second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append('(');
+            first.appendTo(sb);
+            sb.append(" and ");
+            second.appendTo(sb);
+            sb.append(')');
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return first.hasHierarchy() || second.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return true;
+        }
+    }
+
+    /**
+     * {@code first or second}
+     */
+    public static final class Or extends XpathExpr {
+        final XpathExpr first;
+        final XpathExpr second;
+
+        Or(XpathExpr first, XpathExpr second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            first.appendTo(sb);
+            sb.append(" or ");
+            second.appendTo(sb);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return first.hasHierarchy() || second.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return first.startsWithParenthesis();
+        }
+    }
+
+    /**
+     * {@code not(condition)}
+     */
+    public static final class Not extends XpathExpr {
+        final XpathExpr condition;
+
+        Not(XpathExpr condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append("not(");
+            condition.appendTo(sb);
+            sb.append(')');
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return condition.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return false;
+        }
+    }
+
+    /**
+     * {@code (expression)}
+     */
+    public static final class Group extends XpathExpr {
+        final XpathExpr expression;
+
+        Group(XpathExpr expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append('(');
+            expression.appendTo(sb);
+            sb.append(')');
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return expression.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return true;
+        }
+    }
+
+    /**
+     * {@code c1 and c2 and c3}
+     */
+    public static final class AllOf extends XpathExpr {
+        final List<XpathExpr> conditions;
+
+        AllOf(List<XpathExpr> conditions) {
+            this.conditions = ImmutableList.copyOf(conditions);
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            for (int i = 0; i < conditions.size(); i++) {
+                if (i > 0) {
+                    sb.append(" and ");
+                }
+                conditions.get(i).appendTo(sb);
+            }
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return conditions.stream().anyMatch(XpathExpr::hasHierarchy);
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return !conditions.isEmpty() && conditions.get(0).startsWithParenthesis();
+        }
+    }
+
+    /**
+     * The element has a relation to the target: {@code axis::target}
+     */
+    public static final class Relation extends XpathExpr {
+        final String axis;
+        final XpathExpr target;
+
+        Relation(String axis, XpathExpr target) {
+            this.axis = axis;
+            this.target = target;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append(axis).append("::");
+            target.appendTo(sb);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return axis.contains("/") || target.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return axis.startsWith("(");
+        }
+    }
+
+    /**
+     * {@code count(expression)=n}, with any of the relation operators
+     */
+    public static final class Count extends XpathExpr {
+        final XpathExpr expression;
+        final RelationOperator operator;
+        final int n;
+
+        Count(XpathExpr expression, RelationOperator operator, int n) {
+            this.expression = expression;
+            this.operator = operator;
+            this.n = n;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append("count(");
+            expression.appendTo(sb);
+            sb.append(')').append(RelationOperator.opAsXpathString(operator)).append(n);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return expression.hasHierarchy();
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return false;
+        }
+    }
+
+    /**
+     * An index selector, such as {@code [3]} or {@code [last()]}
+     */
+    public static final class Index extends XpathExpr {
+        final String index;
+
+        Index(String index) {
+            this.index = index;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            sb.append(index);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return false;
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return false;
+        }
+    }
+
+    /**
+     * The element has an attribute with the given value: {@code @attribute='value'}
+     */
+    public static final class AttributeEquals extends XpathExpr {
+        final String attribute;
+        final String value;
+
+        AttributeEquals(String attribute, String value) {
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            XpathUtils.appendHasAttribute(sb, attribute, value);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return attribute.contains("/") || value.contains("/");
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return false;
+        }
+    }
+
+    /**
+     * The element has all (or any) of the given classes
+     */
+    public static final class HasClasses extends XpathExpr {
+        final List<String> classNames;
+        final boolean all;
+
+        HasClasses(List<String> classNames, boolean all) {
+            this.classNames = ImmutableList.copyOf(classNames);
+            this.all = all;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            XpathUtils.appendHasClasses(sb, all, classNames.toArray(new String[0]));
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return classNames.stream().anyMatch(name -> name.contains("/"));
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return false;
+        }
+    }
+
+    /**
+     * A condition on the text of the element, such as {@code text() = 'abc'}. It is emitted directly into
+     * the builder of the entire xpath.
+     */
+    public static final class TextCondition extends XpathExpr {
+        final BiConsumer<StringBuilder, String> emitter;
+        final String text;
+        final boolean aggregated;
+
+        /**
+         * @param emitter one of the text emitters in {@link XpathUtils}
+         * @param text the text to match to
+         * @param aggregated whether the condition is on the text of the entire subtree of the element
+         */
+        TextCondition(BiConsumer<StringBuilder, String> emitter, String text, boolean aggregated) {
+            this.emitter = emitter;
+            this.text = text;
+            this.aggregated = aggregated;
+        }
+
+        @Override
+        public void appendTo(StringBuilder sb) {
+            emitter.accept(sb, text);
+        }
+
+        @Override
+        boolean hasHierarchy() {
+            return text.contains("/");
+        }
+
+        @Override
+        boolean startsWithParenthesis() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.loyada.jdollarx;
+
+import com.google.common.hash.Hashing;
+import org.openqa.selenium.WebDriver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Internal implementation.
+ * Keeps the xpath expressions that were compiled by the browser (with document.createExpression) in the page,
+ * keyed by a hash of the xpath. When enabled, the script-based lookups of {@link InBrowserFinder} (countAll,
+ * getAttributeOfAll, and the batch lookups, such as findMany and probeMany) send only the key of an xpath that was
+ * already compiled in the page, so the browser neither receives nor compiles it again.
+ * After a navigation the page loses its expressions, and they are sent again.
+ * Lookups that are done by WebDriver itself, such as find and findAll, are not affected, since they rely on
+ * the implicit wait of the driver.
+ * Disabled by default.
+ */
+public final class XpathExpressionCache {
+    static final String MISSING = "dollarx:missing";
+    static final int MAX_EXPRESSIONS = 512;
+
+    private static volatile boolean enabled = false;
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong reinjections = new AtomicLong();
+
+    // The keys that are believed to be compiled in the current page of every driver
+    private static final Map<WebDriver, Set<String>> compiledKeys = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private XpathExpressionCache() {}
+
+    /**
+     * Keep the compiled xpath expressions in the page
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Send the full xpath with every lookup
+     */
+    public static void disable() {
+        enabled = false;
+        compiledKeys.clear();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the number of lookups that used an expression that was already compiled in the page
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that sent the xpath to be compiled in the page
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of times the expressions had to be sent again, typically after a navigation
+     */
+    public static long getReinjections() {
+        return reinjections.get();
+    }
+
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        reinjections.set(0);
+    }
+
+    /**
+     * @param xpath an xpath expression
+     * @return a stable key of the expression
+     */
+    static String keyOf(String xpath) {
+        return Hashing.murmur3_128().hashString(xpath, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Add the key to every xpath query of a batch, and remove the xpath itself if it is already compiled in the page.
+     * @param driver the driver
+     * @param queries queries of the form [kind, expression, context]
+     * @return queries of the form [kind, expression or null, context, key]
+     */
+    static List<List<Object>> withKeys(WebDriver driver, List<List<Object>> queries) {
+        Set<String> known = compiledKeys.computeIfAbsent(driver, d -> new HashSet<>());
+        List<List<Object>> result = new ArrayList<>(queries.size());
+        synchronized (known) {
+            if (known.size() >= MAX_EXPRESSIONS) {
+                known.clear();
+            }
+            for (List<Object> query : queries) {
+                if (!query.get(0).equals("xpath")) {
+                    result.add(query);
+                    continue;
+                }
+                String key = keyOf((String) query.get(1));
+                List<Object> keyed = new ArrayList<>(query);
+                if (!known.add(key)) {
+                    keyed.set(1, null);
+                }
+                keyed.add(key);
+                result.add(keyed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Update the statistics after the given queries were executed successfully
+     * @param queries queries that were returned by withKeys
+     */
+    static void record(List<List<Object>> queries) {
+        for (List<Object> query : queries) {
+            if (query.size() > 3) {
+                (query.get(1) == null ? hits : misses).incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The page does not have some of the expressions, so all of them need to be sent again
+     * @param driver the driver
+     */
+    static void forget(WebDriver driver) {
+        reinjections.incrementAndGet();
+        compiledKeys.remove(driver);
+    }
+}
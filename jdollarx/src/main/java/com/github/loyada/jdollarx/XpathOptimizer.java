@@ -0,0 +1,482 @@
+package com.github.loyada.jdollarx;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Internal implementation.
+ * An optional rewrite pass over the expression tree of a {@link BasicPath}, applied before the query is sent to
+ * the browser. All the rewrites keep the semantics of the query:
+ * <ul>
+ *     <li>A union of alternatives, such as {@code *[(self::div) | (self::span)]}, is flattened into a single
+ *     predicate: {@code *[self::div or self::span]}. Alternatives of the same element are merged:
+ *     {@code div[(a) or (b)]}.</li>
+ *     <li>A redundant self step, such as {@code *[ancestor::X and self::Y]}, is folded into {@code Y[ancestor::X]}.</li>
+ *     <li>Consecutive predicates are merged into a single predicate, duplicates are removed, and cheap predicates
+ *     (id, class, attribute) are evaluated before expensive ones (aggregated text, relations, count()).</li>
+ * </ul>
+ * Predicates are moved or merged only if they are boolean, and do not depend on the position of the element.
+ * The optimizer is disabled by default.
+ */
+public final class XpathOptimizer {
+    private static volatile boolean enabled = false;
+
+    // Only element name tests: folding *[self::text()] into text() would select text nodes instead of elements
+    private static final Pattern simpleNodeTest = Pattern.compile("^(\\*|[A-Za-z_][\\w.\\-]*(:[A-Za-z_][\\w.\\-]*)?)$");
+    private static final Pattern numeric = Pattern.compile("^\\s*-?[0-9.]+\\s*$");
+    private static final List<String> booleanFunctions = ImmutableList.of(
+            "contains(", "starts-with(", "ends-with(", "not(", "boolean(", "true(", "false(", "lang(");
+
+    private XpathOptimizer() {}
+
+    /**
+     * Apply the optimizer to all queries of Paths that are sent to the browser
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * Send the queries to the browser exactly as they are defined by the Paths
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param path the Path to find
+     * @return the xpath of the path, optimized if the optimizer is enabled
+     */
+    static Optional<String> xpathForFind(Path path) {
+        if (enabled && path instanceof BasicPath) {
+            return ((BasicPath) path).getOptimizedXPath();
+        }
+        return path.getXPath();
+    }
+
+    /**
+     * @param expr an expression
+     * @return an equivalent expression, that is typically cheaper to evaluate
+     */
+    static XpathExpr optimize(XpathExpr expr) {
+        if (expr instanceof XpathExpr.Cached) {
+            return optimize(((XpathExpr.Cached) expr).expression);
+        } else if (expr instanceof XpathExpr.CorrectAxis) {
+            return optimize(((XpathExpr.CorrectAxis) expr).resolve());
+        } else if (expr instanceof XpathExpr.PropertyCondition) {
+            return optimize(((XpathExpr.PropertyCondition) expr).expand());
+        } else if (expr instanceof XpathExpr.Filtered) {
+            XpathExpr.Filtered filtered = (XpathExpr.Filtered) expr;
+            return optimizeFiltered(optimize(filtered.base), optimizeAll(filtered.predicates));
+        } else if (expr instanceof XpathExpr.Union) {
+            return optimizeUnion(optimizeAll(((XpathExpr.Union) expr).alternatives));
+        } else if (expr instanceof XpathExpr.Descendant) {
+            XpathExpr.Descendant descendant = (XpathExpr.Descendant) expr;
+            return new XpathExpr.Descendant(optimize(descendant.ancestor), optimize(descendant.target));
+        } else if (expr instanceof XpathExpr.AxisStep) {
+            XpathExpr.AxisStep step = (XpathExpr.AxisStep) expr;
+            return step.usesFallback() ?
+                    optimize(step.fallback) :
+                    new XpathExpr.AxisStep(optimize(step.context), step.axis, optimize(step.target), optimize(step.fallback));
+        } else if (expr instanceof XpathExpr.GlobalIndex) {
+            XpathExpr.GlobalIndex globalIndex = (XpathExpr.GlobalIndex) expr;
+            return new XpathExpr.GlobalIndex(optimize(globalIndex.target), globalIndex.prefixSource, globalIndex.index);
+        } else if (expr instanceof XpathExpr.TopLevel) {
+            return new XpathExpr.TopLevel(optimize(((XpathExpr.TopLevel) expr).target));
+        } else if (expr instanceof XpathExpr.And) {
+            XpathExpr.And and = (XpathExpr.And) expr;
+            return new XpathExpr.And(optimize(and.first), optimize(and.second));
+        } else if (expr instanceof XpathExpr.Or) {
+            XpathExpr.Or or = (XpathExpr.Or) expr;
+            return new XpathExpr.Or(optimize(or.first), optimize(or.second));
+        } else if (expr instanceof XpathExpr.Not) {
+            return new XpathExpr.Not(optimize(((XpathExpr.Not) expr).condition));
+        } else if (expr instanceof XpathExpr.Group) {
+            return new XpathExpr.Group(optimize(((XpathExpr.Group) expr).expression));
+        } else if (expr instanceof XpathExpr.AllOf) {
+            return new XpathExpr.AllOf(optimizeAll(((XpathExpr.AllOf) expr).conditions));
+        } else if (expr instanceof XpathExpr.Relation) {
+            XpathExpr.Relation relation = (XpathExpr.Relation) expr;
+            return new XpathExpr.Relation(relation.axis, optimize(relation.target));
+        } else if (expr instanceof XpathExpr.Count) {
+            XpathExpr.Count count = (XpathExpr.Count) expr;
+            return new XpathExpr.Count(optimize(count.expression), count.operator, count.n);
+        } else {
+            return expr;
+        }
+    }
+
+    private static List<XpathExpr> optimizeAll(List<XpathExpr> exprs) {
+        return exprs.stream().map(XpathOptimizer::optimize).collect(Collectors.toList());
+    }
+
+    private static XpathExpr optimizeUnion(List<XpathExpr> optimizedAlternatives) {
+        List<XpathExpr> alternatives = new ArrayList<>();
+        for (XpathExpr alternative : optimizedAlternatives) {
+            alternatives.addAll(alternativesOf(alternative));
+        }
+        Optional<String> commonNodeTest = commonNodeTest(alternatives);
+        if (commonNodeTest.isPresent()) {
+            List<XpathExpr> conditions = new ArrayList<>();
+            for (XpathExpr alternative : alternatives) {
+                List<XpathExpr> predicates = predicatesOf(alternative);
+                if (predicates.isEmpty()) {
+                    // this alternative matches any element of that type
+                    return XpathExpr.raw(commonNodeTest.get());
+                }
+                conditions.add(new XpathExpr.Group(conjunction(predicates)));
+            }
+            return new XpathExpr.Filtered(XpathExpr.raw(commonNodeTest.get()), ImmutableList.of(anyOf(conditions)));
+        }
+        List<XpathExpr> selfSteps = alternatives.stream().
+                map(alternative -> new XpathExpr.Relation("self", alternative)).
+                collect(Collectors.toList());
+        return new XpathExpr.Filtered(XpathExpr.ANY_ELEMENT, ImmutableList.of(anyOf(selfSteps)));
+    }
+
+    /**
+     * The alternatives of an optimized union are expressed as {@code *[self::a or self::b]}
+     */
+    private static List<XpathExpr> alternativesOf(XpathExpr expr) {
+        if (expr instanceof XpathExpr.Filtered) {
+            XpathExpr.Filtered filtered = (XpathExpr.Filtered) expr;
+            if (isAnyElement(filtered.base) && filtered.predicates.size() == 1) {
+                List<XpathExpr> disjuncts = disjunctsOf(filtered.predicates.get(0));
+                if (disjuncts.stream().allMatch(XpathOptimizer::isSelfStep)) {
+                    return disjuncts.stream().
+                            map(disjunct -> ((XpathExpr.Relation) disjunct).target).
+                            collect(Collectors.toList());
+                }
+            }
+        }
+        return ImmutableList.of(expr);
+    }
+
+    private static List<XpathExpr> disjunctsOf(XpathExpr expr) {
+        if (expr instanceof XpathExpr.Or) {
+            XpathExpr.Or or = (XpathExpr.Or) expr;
+            return ImmutableList.<XpathExpr>builder().
+                    addAll(disjunctsOf(or.first)).
+                    addAll(disjunctsOf(or.second)).
+                    build();
+        }
+        return ImmutableList.of(expr);
+    }
+
+    private static boolean isSelfStep(XpathExpr expr) {
+        return expr instanceof XpathExpr.Relation && ((XpathExpr.Relation) expr).axis.equals("self");
+    }
+
+    private static Optional<String> commonNodeTest(List<XpathExpr> alternatives) {
+        Set<String> nodeTests = new LinkedHashSet<>();
+        for (XpathExpr alternative : alternatives) {
+            if (!isSimpleStep(alternative)) {
+                return Optional.empty();
+            }
+            nodeTests.add(nodeTestOf(alternative));
+        }
+        return (nodeTests.size() == 1) ? Optional.of(nodeTests.iterator().next()) : Optional.empty();
+    }
+
+    private static XpathExpr optimizeFiltered(XpathExpr base, List<XpathExpr> optimizedPredicates) {
+        List<XpathExpr> predicates = new ArrayList<>();
+        if (base instanceof XpathExpr.Filtered) {
+            predicates.addAll(((XpathExpr.Filtered) base).predicates);
+            base = ((XpathExpr.Filtered) base).base;
+        }
+        for (XpathExpr predicate : optimizedPredicates) {
+            predicates.addAll(splitConjunction(predicate));
+        }
+
+        if (isAnyElement(base)) {
+            List<XpathExpr> selfSteps = predicates.stream().
+                    filter(XpathOptimizer::isSelfStep).
+                    collect(Collectors.toList());
+            if (selfSteps.size() == 1 && predicates.stream().allMatch(XpathOptimizer::isReorderable)) {
+                XpathExpr self = ((XpathExpr.Relation) selfSteps.get(0)).target;
+                if (isSimpleStep(self)) {
+                    List<XpathExpr> folded = new ArrayList<>(predicatesOf(self));
+                    predicates.stream().filter(p -> p != selfSteps.get(0)).forEach(folded::add);
+                    base = XpathExpr.raw(nodeTestOf(self));
+                    predicates = folded;
+                }
+            }
+        }
+
+        List<XpathExpr> result = new ArrayList<>();
+        List<XpathExpr> run = new ArrayList<>();
+        for (XpathExpr predicate : predicates) {
+            if (isReorderable(predicate)) {
+                run.add(predicate);
+            } else {
+                result.addAll(mergeRun(run));
+                run.clear();
+                result.add(predicate);
+            }
+        }
+        result.addAll(mergeRun(run));
+        return result.isEmpty() ? base : new XpathExpr.Filtered(base, result);
+    }
+
+    /**
+     * [a and b] is equivalent to [a][b] only if both do not depend on the position
+     */
+    private static List<XpathExpr> splitConjunction(XpathExpr predicate) {
+        List<XpathExpr> conjuncts = conjunctsOf(predicate);
+        return conjuncts.stream().allMatch(XpathOptimizer::isReorderable) ? conjuncts : ImmutableList.of(predicate);
+    }
+
+    private static List<XpathExpr> conjunctsOf(XpathExpr expr) {
+        if (expr instanceof XpathExpr.And) {
+            XpathExpr.And and = (XpathExpr.And) expr;
+            return ImmutableList.<XpathExpr>builder().
+                    addAll(conjunctsOf(and.first)).
+                    addAll(conjunctsOf(and.second)).
+                    build();
+        } else if (expr instanceof XpathExpr.AllOf) {
+            ImmutableList.Builder<XpathExpr> conjuncts = ImmutableList.builder();
+            ((XpathExpr.AllOf) expr).conditions.forEach(condition -> conjuncts.addAll(conjunctsOf(condition)));
+            return conjuncts.build();
+        } else if (expr instanceof XpathExpr.Group) {
+            return conjunctsOf(((XpathExpr.Group) expr).expression);
+        } else if (expr instanceof XpathExpr.HasClasses && ((XpathExpr.HasClasses) expr).all) {
+            return ((XpathExpr.HasClasses) expr).classNames.stream().
+                    map(className -> new XpathExpr.HasClasses(ImmutableList.of(className), true)).
+                    collect(Collectors.toList());
+        }
+        return ImmutableList.of(expr);
+    }
+
+    private static List<XpathExpr> mergeRun(List<XpathExpr> run) {
+        if (run.isEmpty()) {
+            return ImmutableList.of();
+        }
+        Set<String> classNames = new LinkedHashSet<>();
+        Map<String, XpathExpr> unique = new LinkedHashMap<>();
+        for (XpathExpr predicate : run) {
+            if (predicate instanceof XpathExpr.HasClasses && ((XpathExpr.HasClasses) predicate).all) {
+                classNames.addAll(((XpathExpr.HasClasses) predicate).classNames);
+            } else {
+                unique.putIfAbsent(predicate.toXpath(), predicate);
+            }
+        }
+        List<XpathExpr> merged = new ArrayList<>();
+        if (!classNames.isEmpty()) {
+            merged.add(new XpathExpr.HasClasses(new ArrayList<>(classNames), true));
+        }
+        merged.addAll(unique.values());
+        merged.sort(Comparator.comparingInt(XpathOptimizer::cost));
+        return ImmutableList.of(conjunction(merged));
+    }
+
+    private static XpathExpr conjunction(List<XpathExpr> predicates) {
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        return new XpathExpr.AllOf(predicates.stream().
+                map(p -> needsParenthesis(p) ? new XpathExpr.Group(p) : p).
+                collect(Collectors.toList()));
+    }
+
+    private static XpathExpr anyOf(List<XpathExpr> conditions) {
+        XpathExpr result = conditions.get(0);
+        for (XpathExpr condition : conditions.subList(1, conditions.size())) {
+            result = new XpathExpr.Or(result, condition);
+        }
+        return result;
+    }
+
+    private static boolean needsParenthesis(XpathExpr predicate) {
+        if (predicate instanceof XpathExpr.Or) {
+            return true;
+        } else if (predicate instanceof XpathExpr.HasClasses) {
+            return !((XpathExpr.HasClasses) predicate).all && ((XpathExpr.HasClasses) predicate).classNames.size() > 1;
+        } else if (predicate instanceof XpathExpr.Raw) {
+            return topLevelOperators(((XpathExpr.Raw) predicate).xpath).contains(" or ");
+        }
+        return false;
+    }
+
+    /**
+     * A predicate can be moved or merged with other predicates if it is a boolean expression that does not
+     * depend on the position of the element.
+     */
+    static boolean isReorderable(XpathExpr predicate) {
+        if (predicate instanceof XpathExpr.Index) {
+            return false;
+        }
+        String xpath = predicate.toXpath();
+        if (xpath.contains("position()") || xpath.contains("last()")) {
+            return false;
+        }
+        return !(predicate instanceof XpathExpr.Raw) || isBooleanXpath(xpath);
+    }
+
+    /**
+     * A conservative check of whether an opaque xpath predicate evaluates to a boolean (or a node-set, which is
+     * equivalent in a predicate). A numeric predicate is an index, so it can not be moved.
+     */
+    static boolean isBooleanXpath(String xpath) {
+        String trimmed = xpath.trim();
+        if (trimmed.isEmpty() || numeric.matcher(trimmed).matches()) {
+            return false;
+        }
+        String operators = topLevelOperators(trimmed);
+        if (operators.contains("=") || operators.contains("<") || operators.contains(">") ||
+                operators.contains(" and ") || operators.contains(" or ")) {
+            return true;
+        }
+        if (trimmed.startsWith("(") && closingParenthesis(trimmed, 0) == trimmed.length() - 1) {
+            return isBooleanXpath(trimmed.substring(1, trimmed.length() - 1));
+        }
+        for (String function : booleanFunctions) {
+            if (trimmed.startsWith(function) &&
+                    closingParenthesis(trimmed, function.length() - 1) == trimmed.length() - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the xpath, without the content of string literals, parentheses and brackets
+     */
+    private static String topLevelOperators(String xpath) {
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        char quote = 0;
+        for (char c : xpath.toCharArray()) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int closingParenthesis(String xpath, int openIndex) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = openIndex; i < xpath.length(); i++) {
+            char c = xpath.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isAnyElement(XpathExpr expr) {
+        return expr instanceof XpathExpr.Raw && ((XpathExpr.Raw) expr).xpath.equals("*");
+    }
+
+    /**
+     * A node test, optionally followed by predicates that can be moved
+     */
+    private static boolean isSimpleStep(XpathExpr expr) {
+        if (expr instanceof XpathExpr.Raw) {
+            return simpleNodeTest.matcher(((XpathExpr.Raw) expr).xpath).matches();
+        } else if (expr instanceof XpathExpr.Filtered) {
+            XpathExpr.Filtered filtered = (XpathExpr.Filtered) expr;
+            return isSimpleStep(filtered.base) && filtered.base instanceof XpathExpr.Raw &&
+                    filtered.predicates.stream().allMatch(XpathOptimizer::isReorderable);
+        }
+        return false;
+    }
+
+    private static String nodeTestOf(XpathExpr simpleStep) {
+        return (simpleStep instanceof XpathExpr.Filtered) ?
+                ((XpathExpr.Raw) ((XpathExpr.Filtered) simpleStep).base).xpath :
+                ((XpathExpr.Raw) simpleStep).xpath;
+    }
+
+    private static List<XpathExpr> predicatesOf(XpathExpr simpleStep) {
+        return (simpleStep instanceof XpathExpr.Filtered) ?
+                ((XpathExpr.Filtered) simpleStep).predicates :
+                ImmutableList.of();
+    }
+
+    /**
+     * A rough estimate of the cost of evaluating a predicate in the browser
+     */
+    private static int cost(XpathExpr predicate) {
+        if (predicate instanceof XpathExpr.AttributeEquals) {
+            return ((XpathExpr.AttributeEquals) predicate).attribute.equals("id") ? 0 : 1;
+        } else if (predicate instanceof XpathExpr.HasClasses) {
+            return 1;
+        } else if (predicate instanceof XpathExpr.Not) {
+            return cost(((XpathExpr.Not) predicate).condition);
+        } else if (predicate instanceof XpathExpr.Group) {
+            return cost(((XpathExpr.Group) predicate).expression);
+        } else if (predicate instanceof XpathExpr.And) {
+            return Math.max(cost(((XpathExpr.And) predicate).first), cost(((XpathExpr.And) predicate).second));
+        } else if (predicate instanceof XpathExpr.Or) {
+            return Math.max(cost(((XpathExpr.Or) predicate).first), cost(((XpathExpr.Or) predicate).second));
+        } else if (predicate instanceof XpathExpr.AllOf) {
+            return ((XpathExpr.AllOf) predicate).conditions.stream().mapToInt(XpathOptimizer::cost).max().orElse(0);
+        } else if (predicate instanceof XpathExpr.Relation) {
+            String axis = ((XpathExpr.Relation) predicate).axis;
+            String axisName = axis.contains("::") ? axis.substring(0, axis.indexOf("::")) : axis;
+            switch (axisName) {
+                case "self": return 2;
+                case "parent":
+                case "child": return 4;
+                case "ancestor":
+                case "preceding-sibling":
+                case "following-sibling": return 5;
+                default: return 6;
+            }
+        } else if (predicate instanceof XpathExpr.Count) {
+            return 7;
+        } else if (predicate instanceof XpathExpr.TextCondition) {
+            return ((XpathExpr.TextCondition) predicate).aggregated ? 5 : 3;
+        } else if (predicate instanceof XpathExpr.Raw) {
+            String xpath = ((XpathExpr.Raw) predicate).xpath;
+            if (xpath.contains("count(")) {
+                return 7;
+            } else if (xpath.contains("::") || xpath.contains("/")) {
+                return 6;
+            } else if (xpath.contains("string(.)")) {
+                return 5;
+            } else if (xpath.contains("text()")) {
+                return 3;
+            }
+            return 2;
+        }
+        return 6;
+    }
+}
@@ -1,98 +1,201 @@
 package com.github.loyada.jdollarx;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.function.BiFunction;
-import java.util.function.BinaryOperator;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static java.lang.String.format;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * Internal implementation.
+ * Every predicate has an "append" form, that writes it into a builder that is shared by the entire
+ * xpath, and a String form, that is kept for compatibility.
  */
 public final class XpathUtils {
+    private static final String TRANSLATE_SUFFIX = ", 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz')";
+    private static final String TEXT = "text()";
+    private static final String AGGREGATED_TEXT = "normalize-space(string(.))";
+    private static final Pattern TOP_LEVEL = Pattern.compile("^[(]*[//]+.*");
+
     private XpathUtils() {
     }
 
+    private static String emit(Consumer<StringBuilder> emitter) {
+        StringBuilder sb = new StringBuilder();
+        emitter.accept(sb);
+        return sb.toString();
+    }
+
     public static String translateTextForPath(String txt) {
-            return format("translate(%s, 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz')", txt);
+        return emit(sb -> appendTranslatedText(sb, txt));
+    }
+
+    public static void appendTranslatedText(StringBuilder sb, String txt) {
+        sb.append("translate(").append(txt).append(TRANSLATE_SUFFIX);
     }
 
     public static String processTextForXpath(String txt) {
-        String[] parts = txt.split("'");
-        if (parts.length==1) {
-            return String.format("'%s'", txt);
+        return emit(sb -> appendTextForXpath(sb, txt));
+    }
+
+    /**
+     * Append the text as an xpath string literal. A text that contains a single quote is emitted as a concat()
+     * of its parts.
+     * @param sb the builder to append to
+     * @param txt the text
+     */
+    public static void appendTextForXpath(StringBuilder sb, String txt) {
+        if (txt.indexOf('\'') < 0) {
+            sb.append('\'').append(txt).append('\'');
+            return;
+        }
+        // same parts as txt.split("'"), which drops trailing empty parts
+        int end = txt.length();
+        while (end > 0 && txt.charAt(end - 1) == '\'') {
+            end--;
+        }
+        if (txt.indexOf('\'') >= end) {
+            if (end == 0) {
+                sb.append("concat()");
+            } else {
+                sb.append('\'').append(txt).append('\'');
+            }
+            return;
         }
-        else {
-            BiFunction<List<String>, String, List<String>> f1 = (accum, part) -> {
-                if (!accum.isEmpty())
-                    accum.add("\"'\"");
-                accum.add(format("\"%s\"",part));
-                return accum;
-
-            };
-            BinaryOperator<List<String>> f2 =  (list1, list2) -> Stream.concat(list1.stream(), list2.stream())
-                    .collect(Collectors.toList());
-            List<String> escaped = Stream.of(parts).reduce(new ArrayList<>(), f1, f2);
-            return format("concat(%s)", String.join(", ", escaped));
+        sb.append("concat(");
+        int start = 0;
+        while (true) {
+            int quote = txt.indexOf('\'', start);
+            int partEnd = (quote < 0 || quote > end) ? end : quote;
+            sb.append('"').append(txt, start, partEnd).append('"');
+            if (partEnd == end) {
+                break;
+            }
+            sb.append(", \"'\", ");
+            start = partEnd + 1;
         }
+        sb.append(')');
     }
 
     public static String textContains(String text) {
-        return format("contains(%s, %s)", translateTextForPath("text()"), processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendTextContains(sb, text));
+    }
+
+    public static void appendTextContains(StringBuilder sb, String text) {
+        appendContains(sb, TEXT, text, false);
     }
 
     public static String textEquals(final String text) {
-        return format("%s = %s", translateTextForPath("text()"), processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendTextEquals(sb, text));
+    }
+
+    public static void appendTextEquals(StringBuilder sb, String text) {
+        appendEquals(sb, TEXT, text, false);
     }
 
     public static String aggregatedTextEquals(final String text) {
-        return format("%s = %s", translateTextForPath("normalize-space(string(.))"), processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendAggregatedTextEquals(sb, text));
+    }
+
+    public static void appendAggregatedTextEquals(StringBuilder sb, String text) {
+        appendEquals(sb, AGGREGATED_TEXT, text, false);
     }
 
     public static String aggregatedTextContains(final String text) {
-        return format("contains(%s, %s)", translateTextForPath("normalize-space(string(.))"), processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendAggregatedTextContains(sb, text));
+    }
+
+    public static void appendAggregatedTextContains(StringBuilder sb, String text) {
+        appendContains(sb, AGGREGATED_TEXT, text, false);
     }
 
     public static String caseSensitiveTextContains(String text) {
-        return format("contains(text(), %s)", processTextForXpath(text));
+        return emit(sb -> appendCaseSensitiveTextContains(sb, text));
+    }
+
+    public static void appendCaseSensitiveTextContains(StringBuilder sb, String text) {
+        appendContains(sb, TEXT, text, true);
     }
 
     public static String caseSensitiveTextEquals(final String text) {
-        return format("text() = %s", processTextForXpath(text));
+        return emit(sb -> appendCaseSensitiveTextEquals(sb, text));
+    }
+
+    public static void appendCaseSensitiveTextEquals(StringBuilder sb, String text) {
+        appendEquals(sb, TEXT, text, true);
     }
 
     public static String aggregatedCaseSensitiveTextEquals(final String text) {
-        return format("normalize-space(string(.)) = %s", processTextForXpath(text));
+        return emit(sb -> appendAggregatedCaseSensitiveTextEquals(sb, text));
+    }
+
+    public static void appendAggregatedCaseSensitiveTextEquals(StringBuilder sb, String text) {
+        appendEquals(sb, AGGREGATED_TEXT, text, true);
     }
 
     public static String aggregatedcaseSensitiveTextContains(final String text) {
-        return format("contains(normalize-space(string(.)), %s)",  processTextForXpath(text));
+        return emit(sb -> appendAggregatedCaseSensitiveTextContains(sb, text));
+    }
+
+    public static void appendAggregatedCaseSensitiveTextContains(StringBuilder sb, String text) {
+        appendContains(sb, AGGREGATED_TEXT, text, true);
+    }
+
+    private static void appendContains(StringBuilder sb, String source, String text, boolean caseSensitive) {
+        sb.append("contains(");
+        appendSource(sb, source, caseSensitive);
+        sb.append(", ");
+        appendTextForXpath(sb, caseSensitive ? text : text.toLowerCase());
+        sb.append(')');
+    }
+
+    private static void appendEquals(StringBuilder sb, String source, String text, boolean caseSensitive) {
+        appendSource(sb, source, caseSensitive);
+        sb.append(" = ");
+        appendTextForXpath(sb, caseSensitive ? text : text.toLowerCase());
+    }
+
+    private static void appendSource(StringBuilder sb, String source, boolean caseSensitive) {
+        if (caseSensitive) {
+            sb.append(source);
+        } else {
+            appendTranslatedText(sb, source);
+        }
     }
 
     public static final String hasSomeText = "string-length(text()) > 0";
 
     public static String hasClass(final String className) {
-        return format("contains(concat(' ', normalize-space(@class), ' '), ' %s ')", className);
+        return emit(sb -> appendHasClass(sb, className));
+    }
+
+    public static void appendHasClass(StringBuilder sb, String className) {
+        sb.append("contains(concat(' ', normalize-space(@class), ' '), ' ").append(className).append(" ')");
     }
 
     public static String hasClassContaining(final String className) {
-        return format("contains(@class, '%s')", className);
+        return "contains(@class, '" + className + "')";
     }
 
     public static String hasClasses(final String... classNames) {
-        return hasClassesInternal("and", classNames);
+        return emit(sb -> appendHasClasses(sb, true, classNames));
     }
 
     public static String hasAnyOfClasses(final String... classNames) {
-        return hasClassesInternal("or", classNames);
+        return emit(sb -> appendHasClasses(sb, false, classNames));
     }
 
-    private static String hasClassesInternal(final String logicOp, String... classNames) {
-        return Arrays.stream(classNames).map(XpathUtils::hasClass).collect(Collectors.joining(" " + logicOp + " "));
+    /**
+     * Append a condition on the classes of the element
+     * @param sb the builder to append to
+     * @param all whether all the classes are required, or any of them
+     * @param classNames the class names
+     */
+    public static void appendHasClasses(StringBuilder sb, boolean all, String... classNames) {
+        String logicOp = all ? " and " : " or ";
+        for (int i = 0; i < classNames.length; i++) {
+            if (i > 0) {
+                sb.append(logicOp);
+            }
+            appendHasClass(sb, classNames[i]);
+        }
     }
 
     public static String hasId(final String id) {
@@ -100,54 +203,92 @@ public final class XpathUtils {
     }
 
     public static String hasAttribute(final String attribute, final String value) {
-        return format("@%s=%s", attribute, processTextForXpath(value));
+        return emit(sb -> appendHasAttribute(sb, attribute, value));
+    }
+
+    public static void appendHasAttribute(StringBuilder sb, String attribute, String value) {
+        sb.append('@').append(attribute).append('=');
+        appendTextForXpath(sb, value);
     }
 
 
     public static String doesNotExist(final String path) {
-        return format("not(%s)", path);
+        return "not(" + path + ")";
     }
 
     public static String doesNotExistInEntirePage(final String path) {
-        final String processedPath =  (path.startsWith("//")) ? format(".%s", path) :
-                                         (path.startsWith("(/")) ? format("(./%s", path.substring(2)) :
+        final String processedPath =  (path.startsWith("//")) ? "." + path :
+                                         (path.startsWith("(/")) ? "(./" + path.substring(2) :
                                                  ".//" + path;
-        return format("/html[not(%s)]", processedPath);
+        return "/html[not(" + processedPath + ")]";
     }
 
     public static final String isHidden =  "contains(@style, 'display:none') or contains(normalize-space(@style), 'display: none')";
 
     public static String nOccurances(final String xpath, int numberOfOccurrences, RelationOperator relationOperator){
-        return format("[count(//%s)%s%d]", xpath, RelationOperator.opAsXpathString(relationOperator), numberOfOccurrences);
+        return "[count(//" + xpath + ")" + RelationOperator.opAsXpathString(relationOperator) + numberOfOccurrences + "]";
     }
 
     public static String insideTopLevel(String xpath) {
-        boolean alreadyInsideTopLevel = xpath.matches("^[(]*[//]+.*");
+        return emit(sb -> appendInsideTopLevel(sb, xpath));
+    }
+
+    public static void appendInsideTopLevel(StringBuilder sb, String xpath) {
+        boolean alreadyInsideTopLevel = TOP_LEVEL.matcher(xpath).matches();
 
         final String prefix =  (alreadyInsideTopLevel) ? "" :
                 (xpath.startsWith("(")) ? "(//" :
                         "//";
         final int chopn = (xpath.startsWith("(") && !alreadyInsideTopLevel) ? 1 : 0;
-        return prefix + xpath.substring(chopn);
+        sb.append(prefix).append(xpath, chopn, xpath.length());
     }
 
     public static String textEndsWith(String text)  {
-        return format("substring(%s, string-length(text()) - string-length(%s) +1) = %s",
-                translateTextForPath("text()"), processTextForXpath(text), processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendTextEndsWith(sb, text));
+    }
+
+    public static void appendTextEndsWith(StringBuilder sb, String text) {
+        appendEndsWith(sb, TEXT, text);
     }
 
     public static String textStartsWith(String text) {
-        return format("starts-with(%s, %s)",
-                translateTextForPath("text()"),  processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendTextStartsWith(sb, text));
+    }
+
+    public static void appendTextStartsWith(StringBuilder sb, String text) {
+        appendStartsWith(sb, TEXT, text);
     }
 
     public static String aggregatedTextEndsWith(final String text) {
-        return format("substring(%s, string-length(normalize-space(string(.))) - string-length(%s) +1) = %s",
-                translateTextForPath("normalize-space(string(.))"), processTextForXpath(text), processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendAggregatedTextEndsWith(sb, text));
+    }
+
+    public static void appendAggregatedTextEndsWith(StringBuilder sb, String text) {
+        appendEndsWith(sb, AGGREGATED_TEXT, text);
     }
 
     public static String aggregatedTextStartsWith(final String text) {
-        return format("starts-with(%s, %s)",
-                translateTextForPath("normalize-space(string(.))"),  processTextForXpath(text.toLowerCase()));
+        return emit(sb -> appendAggregatedTextStartsWith(sb, text));
+    }
+
+    public static void appendAggregatedTextStartsWith(StringBuilder sb, String text) {
+        appendStartsWith(sb, AGGREGATED_TEXT, text);
+    }
+
+    private static void appendEndsWith(StringBuilder sb, String source, String text) {
+        sb.append("substring(");
+        appendTranslatedText(sb, source);
+        sb.append(", string-length(").append(source).append(") - string-length(");
+        appendTextForXpath(sb, text);
+        sb.append(") +1) = ");
+        appendTextForXpath(sb, text.toLowerCase());
+    }
+
+    private static void appendStartsWith(StringBuilder sb, String source, String text) {
+        sb.append("starts-with(");
+        appendTranslatedText(sb, source);
+        sb.append(", ");
+        appendTextForXpath(sb, text.toLowerCase());
+        sb.append(')');
     }
 }
@@ -17,6 +17,8 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 import javax.xml.xpath.XPathExpressionException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static com.github.loyada.jdollarx.BasicPath.html;
@@ -448,6 +450,68 @@ public class CustomMatchers {
         };
     }
 
+    /**
+     * Successful if all the given paths are present in the browser. All the paths are checked in a single round
+     * trip to the browser, without waiting.
+     * For example:
+     * <pre>
+     *    {@code assertThat( asList(header, menu, footer), areAllPresentIn(browser)); }
+     * </pre>
+     *
+     * @param browser the browser instance to look in
+     * @return a matcher that is successful if all the elements are present in the browser
+     */
+    public static Matcher<List<? extends Path>> areAllPresentIn(final InBrowser browser) {
+        return presenceOfAll(browser, true);
+    }
+
+    /**
+     * Successful if none of the given paths is present in the browser. All the paths are checked in a single round
+     * trip to the browser, without waiting.
+     * For example:
+     * <pre>
+     *    {@code assertThat( asList(errorMessage, spinner), areAllAbsentFrom(browser)); }
+     * </pre>
+     *
+     * @param browser the browser instance to look in
+     * @return a matcher that is successful if none of the elements appears in the browser
+     */
+    public static Matcher<List<? extends Path>> areAllAbsentFrom(final InBrowser browser) {
+        return presenceOfAll(browser, false);
+    }
+
+    private static Matcher<List<? extends Path>> presenceOfAll(final InBrowser browser, boolean expected) {
+        return new TypeSafeMatcher<List<? extends Path>>() {
+            private List<? extends Path> paths;
+            private List<Boolean> presence;
+
+            @Override
+            public void describeTo(final Description description) {
+                description.appendText(expected ? "browser page contains all of " : "browser page contains none of ").
+                        appendValueList("[", ", ", "]", paths);
+            }
+
+            @Override
+            protected void describeMismatchSafely(final List<? extends Path> paths, final
+            Description mismatchDescription) {
+                List<String> mismatched = new ArrayList<>();
+                for (int i = 0; i < paths.size(); i++) {
+                    if (presence.get(i) != expected) {
+                        mismatched.add(CustomMatchersUtil.wrap(paths.get(i)));
+                    }
+                }
+                mismatchDescription.appendText(String.join(", ", mismatched) + (expected ? " absent" : " present"));
+            }
+
+            @Override
+            protected boolean matchesSafely(final List<? extends Path> paths) {
+                this.paths = paths;
+                this.presence = browser.presenceOf(paths);
+                return presence.stream().allMatch(present -> present == expected);
+            }
+        };
+    }
+
     private static boolean pathExistsInDocument(Document document, Path el) {
         final NodeList nodes;
         try {
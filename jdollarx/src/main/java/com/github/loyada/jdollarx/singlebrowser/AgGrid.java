@@ -5,14 +5,22 @@ import com.github.loyada.jdollarx.ElementProperty;
 import com.github.loyada.jdollarx.Operations;
 import com.github.loyada.jdollarx.Operations.OperationFailedException;
 import com.github.loyada.jdollarx.Path;
+import com.github.loyada.jdollarx.PathTemplate;
+import com.github.loyada.jdollarx.RetryPolicy;
 import com.github.loyada.jdollarx.singlebrowser.sizing.ElementResizer;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.NotFoundException;
 import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -21,6 +29,9 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
@@ -28,15 +39,17 @@ import java.util.stream.IntStream;
 
 import static com.github.loyada.jdollarx.BasicPath.*;
 import static com.github.loyada.jdollarx.ElementProperties.*;
+import static com.github.loyada.jdollarx.PathTemplate.value;
 import static com.github.loyada.jdollarx.singlebrowser.AgGrid.SortDirection.getAllClasses;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.clickAt;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.clickOn;
-import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.driver;
+import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.getDriver;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.find;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.findAll;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.getCssClasses;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.scrollElement;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.scrollElementWithStepOverride;
+import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.waitUntilQuiet;
 import static java.lang.Integer.parseInt;
 import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -64,20 +77,60 @@ public class AgGrid {
             .inside(AgGridRoot.or(div.withClass("ag-popup")))
             .describedBy("grid dropdown");
     public static final Path AgListOption = div.that(hasRole("option")).inside(AgList);
+    private static final PathTemplate ROW_WITH_INDEX = PathTemplate.of(
+            ROW.that(hasIndex(value("index"))).describedBy("row with index " + value("index")));
+    // How long the grid must be unchanged to be considered rendered, and the maximal wait for it
+    private static final int QUIET_PERIOD_MILLIS = 30;
+    private static final int MAX_QUIET_WAIT_MILLIS = 2000;
+    // How many times a scan of the rows starts again from the top, when the grid changes during it
+    private static final int MAX_SCAN_RESTARTS = 2;
+    /**
+     * The default maximal number of rows that are extracted through the grid API in a single script
+     */
+    public static final int DEFAULT_GRID_API_PAGE_SIZE = 1000;
+
+    /**
+     * The default policy for retrying an operation that failed because the grid was re-rendered during it.
+     * Every grid gets its own policy, so that its statistics are not mixed with those of other grids.
+     * @return a new RetryPolicy
+     */
+    public static RetryPolicy defaultRenderingRetryPolicy() {
+        return RetryPolicy.builder()
+                .named("grid rendering")
+                .withMaxAttempts(5)
+                .withInitialDelay(Duration.ofMillis(20))
+                .withBackoffMultiplier(2)
+                .retryOn(StaleElementReferenceException.class)
+                .build();
+    }
 
     private final List<String> headers;
     private final List<Map<String, ElementProperty>> rows;
+    private final List<Map<String, String>> rowsAsText;
     private final boolean virtualized;
     private final boolean strict;
+    private final RetryPolicy renderingRetryPolicy;
+    private final boolean streamingVerification;
+    private final GridApiExtraction gridApiExtraction;
     private final Path tableViewport;
     private int stepSize = 60;
 
     private Path tableHorizontalScroll;
     private final Path tableContent;
     private final Path headerWrapper;
+    private final PathTemplate contentRowWithIndex;
+    private final PathTemplate nonEmptyContentRowWithIndex;
     private final Map<String, String> colIdByHeader  = new HashMap<>();
+    private final AgGridRowIndex rowIndex = new AgGridRowIndex();
+    private AgGridSnapshot lastSnapshot = AgGridSnapshot.empty();
+    private final String containerKey;
     private int operationTimeout = 5, finalTimeout = 5000;
     private static final Pattern columnIdFormat = Pattern.compile("\\{([^}]*.?)\\}");
+    // Column IDs by header, per grid container and headers, so that other instances over the same grid skip the
+    // discovery. The drivers are weak keys, so a driver that was quit can be collected.
+    private static final int MAX_CACHED_COLUMN_MAPPINGS = 64;
+    private static final Map<WebDriver, Map<List<Object>, Map<String, String>>> columnMappingCache =
+            Collections.synchronizedMap(new WeakHashMap<>());
 
 
     public static AgGridBuilder getBuilder() {
@@ -118,11 +171,66 @@ public class AgGrid {
         private List<String> headers;
         boolean isVirtualized = true;
         private List<Map<String, ElementProperty>> rows;
+        private List<Map<String, String>> rowsAsText;
         private Path container = html;
         private boolean strict = false;
+        private Optional<RetryPolicy> renderingRetryPolicy = Optional.empty();
+        private boolean streamingVerification = false;
+        private GridApiExtraction gridApiExtraction;
 
         private AgGridBuilder(){}
 
+        /**
+         * Read the rows through the API of the grid, when the page exposes it, instead of scrolling through the
+         * rendered rows. The API is found on the root element of the grid, or in window.gridOptions.
+         * Applies to rows that are defined as strings, in {@link #findTableInBrowser()} and
+         * {@link #findRowIndexOfText(Map)}. Otherwise, or when the API is not found, the DOM is scanned as usual.
+         * See {@link AgGridData} for how cells are converted to text.
+         * @return AgGridBuilder
+         */
+        public AgGridBuilder usingGridApi() {
+            return usingGridApi(null, DEFAULT_GRID_API_PAGE_SIZE);
+        }
+
+        /**
+         * Same as {@link #usingGridApi()}, with an explicit way to find the API.
+         * @param apiExpression a javascript expression that returns the grid API, e.g. "window.myGrid.api".
+         *                      If null, the API is looked up as in {@link #usingGridApi()}.
+         * @param pageSize the maximal number of rows that are extracted in a single script
+         * @return AgGridBuilder
+         */
+        public AgGridBuilder usingGridApi(String apiExpression, int pageSize) {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("page size must be positive");
+            }
+            this.gridApiExtraction = new GridApiExtraction(Optional.ofNullable(apiExpression), pageSize);
+            return this;
+        }
+
+        /**
+         * Verify a virtualized grid in a single pass from top to bottom, instead of scrolling from the top for
+         * every expected row. In every scroll step, all the rendered rows are checked against the expected rows
+         * with a single script. This is much faster for large grids.
+         * Rows that are defined as strings are matched in Java against a snapshot of the rendered rows, see
+         * {@link AgGrid#takeSnapshot()}.
+         * @return AgGridBuilder
+         */
+        public AgGridBuilder withStreamingVerification() {
+            this.streamingVerification = true;
+            return this;
+        }
+
+        /**
+         * Override the policy for retrying an operation that failed because the grid was re-rendered during it.
+         * The default is {@link #defaultRenderingRetryPolicy()}.
+         * @param policy the retry policy
+         * @return AgGridBuilder
+         */
+        public AgGridBuilder withRenderingRetryPolicy(RetryPolicy policy) {
+            this.renderingRetryPolicy = Optional.of(policy);
+            return this;
+        }
+
         /**
          * The headers of the columns
          * @param headers - the headers of the columns. In case you prefer to use a column ID, wrap it with {}. For \
@@ -175,6 +283,7 @@ public class AgGrid {
                 row.forEach((Map.Entry<String, ElementProperty> entry) -> newRow.put(entry.getKey(), entry.getValue()));
                 return newRow;
             }).collect(toList());
+            this.rowsAsText = null;
             return this;
         }
 
@@ -191,6 +300,7 @@ public class AgGrid {
                 row.forEach(newRow::put);
                 return newRow;
             }).collect(toList());
+            this.rowsAsText = null;
             return this;
         }
 
@@ -210,6 +320,11 @@ public class AgGrid {
                 });
                 return newRow;
             }).collect(toList());
+            this.rowsAsText = rows.stream().map(row -> {
+                LinkedHashMap<String, String> newRow = new LinkedHashMap<>();
+                row.forEach(entry -> newRow.put(entry.getKey(), entry.getValue()==null ? "" : entry.getValue()));
+                return newRow;
+            }).collect(toList());
             return this;
         }
 
@@ -228,6 +343,11 @@ public class AgGrid {
                 });
                 return newRow;
             }).collect(toList());
+            this.rowsAsText = rows.stream().map(row -> {
+                LinkedHashMap<String, String> newRow = new LinkedHashMap<>();
+                row.forEach((key, text) -> newRow.put(key, text==null ? "" : text));
+                return newRow;
+            }).collect(toList());
             return this;
         }
 
@@ -239,23 +359,49 @@ public class AgGrid {
             if (headers==null || rows==null){
                 throw new IllegalArgumentException();
             }
-            return new AgGrid(headers, rows, isVirtualized, strict, container);
+            return new AgGrid(headers, rows, rowsAsText, isVirtualized, strict, container,
+                    renderingRetryPolicy.orElseGet(AgGrid::defaultRenderingRetryPolicy),
+                    streamingVerification, gridApiExtraction);
+        }
+    }
+
+    private static final class GridApiExtraction {
+        private final Optional<String> apiExpression;
+        private final int pageSize;
+
+        private GridApiExtraction(Optional<String> apiExpression, int pageSize) {
+            this.apiExpression = apiExpression;
+            this.pageSize = pageSize;
         }
     }
 
     private AgGrid(List<String> headers,
                    List<Map<String, ElementProperty>> rows,
+                   List<Map<String, String>> rowsAsText,
                    boolean virtualized,
                    boolean strict,
-                   Path tableContainer) {
+                   Path tableContainer,
+                   RetryPolicy renderingRetryPolicy,
+                   boolean streamingVerification,
+                   GridApiExtraction gridApiExtraction) {
         this.headers = headers;
         this.rows = rows;
+        this.rowsAsText = rowsAsText;
+        this.containerKey = tableContainer.getXPath().orElse(tableContainer.toString());
+        this.gridApiExtraction = gridApiExtraction;
         this.virtualized = virtualized;
         this.headerWrapper = div.that(hasAnyOfClasses("ag-pinned-right-header", "ag-pinned-left-header","ag-header-viewport")).inside(tableContainer);
         this.tableContent = div.that(hasAnyOfClasses("ag-body-viewport", "ag-body")).inside(tableContainer);
         this.tableViewport = div.withClass("ag-body-viewport").inside(tableContainer);
         this.tableHorizontalScroll = div.withClass("ag-center-cols-viewport").inside(tableContainer);
         this.strict = strict;
+        this.renderingRetryPolicy = renderingRetryPolicy;
+        this.streamingVerification = streamingVerification;
+        this.contentRowWithIndex = PathTemplate.of(ROW.that(hasIndex(value("index"))).inside(tableContent)
+                .describedBy("row with index " + value("index")));
+        this.nonEmptyContentRowWithIndex = PathTemplate.of(ROW.that(hasIndex(value("index"))).inside(tableContent)
+                .and(contains(AgGrid.CELL))
+                .describedBy("row with index " + value("index")));
     }
 
     public static Path rowOfGrid(Path gridContainer) {
@@ -273,6 +419,13 @@ public class AgGrid {
         return virtualized;
     }
 
+    /**
+     * @return the policy for retrying an operation that failed because the grid was re-rendered, with its statistics
+     */
+    public RetryPolicy getRenderingRetryPolicy() {
+        return renderingRetryPolicy;
+    }
+
     /**
      * Override the default step size of scrolling when moving through a grid
      * @param size step size in pixels
@@ -281,6 +434,15 @@ public class AgGrid {
         stepSize=size;
     }
 
+    /**
+     * Forget the rows that were indexed while looking for rows in a virtualized grid. The index is invalidated
+     * automatically when the rendered rows do not match it, and when sorting or filtering through this instance, but
+     * this is needed if the data may change without changing the rendered rows.
+     */
+    public void invalidateRowIndex() {
+        rowIndex.clear();
+    }
+
     /**
      * Override the default timeout threshold for finding elements while scrolling the table.
      * The default is 5 milliseconds
@@ -308,7 +470,11 @@ public class AgGrid {
     }
 
     static ElementProperty hasIndex(int ind) {
-        return hasAttribute("row-index", Integer.toString(ind));
+        return hasIndex(Integer.toString(ind));
+    }
+
+    private static ElementProperty hasIndex(String ind) {
+        return hasAttribute("row-index", ind);
     }
 
     private static ElementProperty hasColumnId(String id) {
@@ -321,27 +487,139 @@ public class AgGrid {
                 InBrowserSinglton.find(columnHeader);
     }
 
-    private void findColumnMapping() {
+    /*
+     * Find the column ID of every header. A mapping that was cached for the same grid is used for the headers that
+     * the rendered header cells confirm, and the headers are swept for the rest.
+     */
+    void findColumnMapping() {
         checkAndAdaptToCorrectAgGridVersion();
-        headers.forEach( columnText -> {
-            Path columnHeader = getColumnHeaderCell(columnText);
-            WebElement headerCell = getWebElForHeader(columnHeader, virtualized);
-            String columnId;
-            // This hack deals with a re-rendering in AgGrid (defect?)
-            try {
-                 columnId = headerCell.getAttribute(COL_ID);
-            } catch (StaleElementReferenceException e) {
-                getWebElForHeader(columnHeader, virtualized);
-                columnId = getWebElForHeader(columnHeader, virtualized).getAttribute(COL_ID);
+        colIdByHeader.clear();
+        boolean sweeping = getDriver() instanceof JavascriptExecutor;
+        List<Object> cacheKey = Arrays.asList(containerKey, headers);
+        if (sweeping) {
+            Map<String, String> cached = columnMappingsOf(getDriver()).get(cacheKey);
+            if (cached != null) {
+                colIdByHeader.putAll(withRenderingRetries(() -> confirmedByRenderedHeaders(cached)));
             }
+            if (!colIdByHeader.keySet().containsAll(headers)) {
+                withRenderingRetries(() -> {
+                    sweepHeaders();
+                    return null;
+                });
+            }
+        }
+        headers.stream().filter(columnText -> !colIdByHeader.containsKey(columnText)).forEach( columnText -> {
+            Path columnHeader = getColumnHeaderCell(columnText);
+            // The header may be re-rendered by AgGrid while it is read
+            String columnId = withRenderingRetries(() ->
+                    getWebElForHeader(columnHeader, virtualized).getAttribute(COL_ID));
 
             if (columnId==null)
                 throw new UnsupportedOperationException("could not find column id for " + columnHeader);
             colIdByHeader.put(columnText, columnId);
         });
+        if (sweeping) {
+            columnMappingsOf(getDriver()).put(cacheKey, ImmutableMap.copyOf(colIdByHeader));
+        }
         scrollElement(tableHorizontalScroll).toTopLeftCorner();
     }
 
+    private static Map<List<Object>, Map<String, String>> columnMappingsOf(WebDriver driver) {
+        return columnMappingCache.computeIfAbsent(driver, d -> Collections.synchronizedMap(
+                new LinkedHashMap<List<Object>, Map<String, String>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<List<Object>, Map<String, String>> eldest) {
+                        return size() > MAX_CACHED_COLUMN_MAPPINGS;
+                    }
+                }));
+    }
+
+    static boolean hasColumnMappingsOf(WebDriver driver) {
+        return columnMappingCache.containsKey(driver);
+    }
+
+    Map<String, String> getColumnIdByHeader() {
+        return Collections.unmodifiableMap(colIdByHeader);
+    }
+
+    /*
+     * Scroll the headers once from left to right. In every step, a single script reads the column ID, text and
+     * aria-labels of all the rendered header cells, and then scrolls right by most of the width of the viewport.
+     * Headers that are not found are looked up one by one afterwards, to report them as before.
+     */
+    private void sweepHeaders() {
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
+        List<WebElement> headerWrappers = findAll(headerWrapper);
+        scrollElement(tableHorizontalScroll).toLeftCorner();
+        WebElement scroller = find(tableHorizontalScroll);
+        boolean scrolled = true;
+        while (scrolled && !colIdByHeader.keySet().containsAll(headers)) {
+            waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+            List<?> res = (List<?>) js.executeScript(headerSweepScript, headerWrappers, scroller, true);
+            ((List<?>) res.get(0)).forEach(cell -> headers.stream().
+                    filter(header -> !colIdByHeader.containsKey(header) && isHeaderOf(header, (List<?>) cell)).
+                    forEach(header -> colIdByHeader.put(header, String.valueOf(((List<?>) cell).get(0)))));
+            scrolled = (Boolean) res.get(1);
+        }
+    }
+
+    // The part of a cached mapping that the rendered header cells confirm. Nothing is confirmed if a rendered cell
+    // contradicts the mapping, i.e. it is the header of a column, but has a different ID.
+    private Map<String, String> confirmedByRenderedHeaders(Map<String, String> mapping) {
+        List<?> res = (List<?>) ((JavascriptExecutor) getDriver()).executeScript(
+                headerSweepScript, findAll(headerWrapper), find(tableHorizontalScroll), false);
+        return confirmedByCells(mapping, (List<?>) res.get(0));
+    }
+
+    private static Map<String, String> confirmedByCells(Map<String, String> mapping, List<?> cells) {
+        Map<String, String> confirmed = new HashMap<>();
+        for (Object item : cells) {
+            List<?> cell = (List<?>) item;
+            String columnId = String.valueOf(cell.get(0));
+            for (Map.Entry<String, String> entry : mapping.entrySet()) {
+                boolean sameId = entry.getValue().equals(columnId);
+                boolean isHeader = isHeaderOf(entry.getKey(), cell);
+                if (sameId != isHeader) {
+                    return Collections.emptyMap();
+                }
+                if (isHeader) {
+                    confirmed.put(entry.getKey(), columnId);
+                }
+            }
+        }
+        return confirmed;
+    }
+
+    // cell is [column id, text, [aria-labels]], as returned from headerSweepScript
+    private static boolean isHeaderOf(String header, List<?> cell) {
+        String columnId = String.valueOf(cell.get(0));
+        if (columnIdFormat.matcher(header).matches()) {
+            return columnId.equals(header.substring(1, header.length() - 1));
+        }
+        return AgGridData.hasAggregatedTextEqualTo(String.valueOf(cell.get(1)), header) ||
+                ((List<?>) cell.get(2)).contains(header);
+    }
+
+    // Returns [[[column id, text, [aria-labels]]], whether it scrolled]
+    private static final String headerSweepScript =
+            "var wrappers = arguments[0], scroller = arguments[1], advance = arguments[2];" +
+            "var cells = [];" +
+            "wrappers.forEach(function(wrapper) {" +
+            "  wrapper.querySelectorAll('.ag-header-cell[col-id]').forEach(function(cell) {" +
+            "    var label = cell.querySelector('span[ref=eText]'), ariaLabels = [];" +
+            "    cell.querySelectorAll('[aria-label]').forEach(function(el) {" +
+            "      ariaLabels.push(el.getAttribute('aria-label'));" +
+            "    });" +
+            "    cells.push([cell.getAttribute('col-id'), label ? label.textContent : '', ariaLabels]);" +
+            "  });" +
+            "});" +
+            "var scrolled = false;" +
+            "if (advance && scroller.scrollWidth - scroller.scrollLeft - scroller.clientWidth >= 1) {" +
+            "  scroller.scrollLeft += Math.max(1, Math.floor(scroller.clientWidth * 0.8));" +
+            "  scrolled = true;" +
+            "}" +
+            "return [cells, scrolled];";
+
     private Path getColumnHeaderCell(String columnText) {
         Path headerCell = HEADER_CELL.inside(headerWrapper);
         Path columnHeader =  (columnIdFormat.matcher(columnText).matches()) ?
@@ -355,19 +633,15 @@ public class AgGrid {
 
     private WebElement findHeader(Path headerEl) {
         Operations.ScrollElement scroll = scrollElementWithStepOverride(tableHorizontalScroll, stepSize);
-        scroll.toLeftCorner();
         try {
-            WebElement webElement = scroll.rightUntilElementIsPresent(headerEl);
-            // Deal with an issue with how AgGrid is rendered
-            Thread.sleep(50);
-            try{
+            return withRenderingRetries(() -> {
+                scroll.toLeftCorner();
+                WebElement webElement = scroll.rightUntilElementIsPresent(headerEl);
+                // Deal with an issue with how AgGrid is rendered
+                waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
                 webElement.getAttribute(COL_ID);
                 return webElement;
-            } catch (StaleElementReferenceException e) {
-                return findHeader(headerEl);
-            }
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            });
         } catch (NoSuchElementException e) {
             if (virtualized) {
                 scroll.toTopLeftCorner();
@@ -377,6 +651,16 @@ public class AgGrid {
         }
     }
 
+    private <T> T withRenderingRetries(Callable<T> action) {
+        try {
+            return renderingRetryPolicy.call(action);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void checkAndAdaptToCorrectAgGridVersion() {
         if (!InBrowserSinglton.isPresent(tableHorizontalScroll)) {
             tableHorizontalScroll = tableViewport;
@@ -398,6 +682,7 @@ public class AgGrid {
      * @param headerText - the header text, or the column ID. A string wrapped with curly braces is interpreted as the column ID.
      */
     public void clickOnSort(String headerText) {
+        rowIndex.clear();
         checkAndAdaptToCorrectAgGridVersion();
         setOperationTimeout();
         try {
@@ -487,6 +772,7 @@ public class AgGrid {
      * @return the Path to the popup menu
      */
     public Path openColumnFilterTabAndGetMenu(String headerText) {
+        rowIndex.clear();
         return openColumnMenuAndGetMenu(headerText, "ag-icon-filter");
     }
 
@@ -601,11 +887,11 @@ public class AgGrid {
     }
 
     private void setOperationTimeout() {
-        driver.manage().timeouts().implicitlyWait(operationTimeout, MILLISECONDS);
+        getDriver().manage().timeouts().implicitlyWait(operationTimeout, MILLISECONDS);
     }
 
     public void setFinalTimeout() {
-        driver.manage().timeouts().implicitlyWait(finalTimeout, MILLISECONDS);
+        getDriver().manage().timeouts().implicitlyWait(finalTimeout, MILLISECONDS);
     }
 
     private int getBottomOfTable() {
@@ -638,8 +924,7 @@ public class AgGrid {
     public Path ensureVisibilityOfRowWithIndex(int n) {
         checkAndAdaptToCorrectAgGridVersion();
         setOperationTimeout();
-        final Path nthRow = ROW.that(hasIndex(n)).inside(tableContent)
-                .describedBy(format("row with index %d", n));
+        final Path nthRow = contentRowWithIndex.bind("index", n);
         Predicate<WebElement> isVisible = getRowVisiblityTest();
 
         try {
@@ -719,6 +1004,8 @@ public class AgGrid {
     /**
      * Find internal index of row within table. This method typically will make sure the row is also visible if it
      * exists, in case the user needs to interact with it, but in some cases ensureVisiblityOfRow will be required.
+     * In a virtualized grid, the rows that are scanned are indexed, so that repeated lookups are fast. See
+     * {@link #invalidateRowIndex()}.
      * @param row - the definition of the row content
      * @return the internal index of the row, if it was found
      */
@@ -735,13 +1022,40 @@ public class AgGrid {
                 findColumnMapping();
             }
 
+            waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+            boolean indexing = getDriver() instanceof JavascriptExecutor;
+            List<List<String>> conditions = indexing ? cellConditionsByColumnId(row) : null;
+            List<String> query = indexing ? conditions.stream().map(c -> c.get(1)).collect(toList()) : null;
+            if (indexing) {
+                refreshRowIndex();
+                OptionalInt previous = rowIndex.indexOfQuery(query);
+                if (previous.isPresent() && isRowWithIndex(previous.getAsInt(), row, true)) {
+                    return previous.getAsInt();
+                }
+            }
+
             // try to find in current DOM
-            Thread.sleep(50);
             List<Integer> presentRowIndexes = getCurrentIndexes();
             Optional<Integer> matchingIndexInCurrentDOM = tryFindRowIndexWithinList(row, presentRowIndexes);
             if (matchingIndexInCurrentDOM.isPresent())
                 return matchingIndexInCurrentDOM.get();
 
+            if (indexing) {
+                // a single pass from the top, checking all the rendered rows in every step, and indexing them
+                Set<Integer> matching = new HashSet<>();
+                int found = scanRows(false, conditions, step -> {
+                    matching.addAll(step.matching);
+                    List<Integer> candidates = new ArrayList<>(step.matching);
+                    candidates.addAll(step.unknown);
+                    candidates.sort(Integer::compare);
+                    return candidates;
+                }, index -> matching.contains(index) || isRowWithIndex(index, row, false)).
+                        orElseThrow(NotFoundException::new);
+                rowIndex.recordQuery(query, found);
+                revealRow(found);
+                return found;
+            }
+
             // couldn't find in current place. have to scan from beginning...
             Set<Integer> checkedIndexes = new HashSet<>(presentRowIndexes);
                OptionalInt foundRow = range(0, 10000000).
@@ -757,20 +1071,325 @@ public class AgGrid {
                         }).
                         findFirst();
                 return foundRow.orElseThrow(NotFoundException::new);
-        }  catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }finally {
+        } finally {
+            setFinalTimeout();
+        }
+    }
+
+    /**
+     * Find the internal index of the first row with the given texts. If the grid is defined with
+     * {@link AgGridBuilder#usingGridApi()} and the page exposes the grid API, the rows are read through the API, and
+     * the row is not scrolled into view. Otherwise, this is the same as {@link #findRowIndex(Map)}.
+     * @param row - the expected text, by column name (or column ID wrapped with curly braces)
+     * @return the internal index of the row, if it was found
+     */
+    public int findRowIndexOfText(Map<String, String> row) {
+        Optional<AgGridData> data = (gridApiExtraction == null) ? Optional.empty() : extractDataThroughGridApi();
+        if (data.isPresent() && row.keySet().stream().allMatch(column -> data.get().columnIdOf(column).isPresent())) {
+            return data.get().findRowIndex(row).orElseThrow(NotFoundException::new);
+        }
+        Map<String, ElementProperty> rowAsProperties = new LinkedHashMap<>();
+        row.forEach((column, text) -> rowAsProperties.put(column, hasAggregatedTextEqualTo(text==null ? "" : text)));
+        if (!virtualized || !(getDriver() instanceof JavascriptExecutor)) {
+            return findRowIndex(rowAsProperties);
+        }
+
+        setOperationTimeout();
+        checkAndAdaptToCorrectAgGridVersion();
+        try {
+            if (colIdByHeader.isEmpty()) {
+                findColumnMapping();
+            }
+            Map<String, String> expected = new LinkedHashMap<>();
+            row.forEach((column, text) -> expected.put(columnIdOf(column), text==null ? "" : text));
+            waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+            refreshRowIndex();
+
+            // rows that were already scanned are looked up in the index
+            for (int index : rowIndex.scannedCandidates(expected)) {
+                if (rowIndex.matchesFully(index, expected) || isRowWithIndex(index, rowAsProperties, true)) {
+                    revealRow(index);
+                    return index;
+                }
+            }
+            if (rowIndex.isComplete()) {
+                throw new NotFoundException();
+            }
+            // resume the scan from where the previous one stopped
+            int found = scanRows(true, null,
+                    step -> rowIndex.candidatesAmong(expected, step.rows.keySet()),
+                    index -> rowIndex.matchesFully(index, expected) || isRowWithIndex(index, rowAsProperties, false)).
+                    orElseThrow(NotFoundException::new);
+            revealRow(found);
+            return found;
+        } finally {
             setFinalTimeout();
         }
     }
 
+    private String columnIdOf(String columnTitle) {
+        String id = colIdByHeader.get(columnTitle);
+        if (id==null) {
+            throw new IllegalArgumentException(format("column %s was not in grid definition", columnTitle));
+        }
+        return id;
+    }
+
+    // The rendered rows of a single scan step, and which of them may match the searched row
+    private static final class ScanStep {
+        private final Map<Integer, Map<String, String>> rows = new LinkedHashMap<>();
+        private final List<Integer> matching;
+        private final List<Integer> unknown;
+        private final long scrollTop;
+
+        private ScanStep(List<?> fromScript) {
+            ((List<?>) fromScript.get(0)).forEach(row -> {
+                List<?> indexAndCells = (List<?>) row;
+                Map<String, String> cells = new LinkedHashMap<>();
+                ((List<?>) indexAndCells.get(1)).forEach(cell ->
+                        cells.put(String.valueOf(((List<?>) cell).get(0)), String.valueOf(((List<?>) cell).get(1))));
+                rows.put(((Number) indexAndCells.get(0)).intValue(), cells);
+            });
+            this.matching = toIndexes(fromScript.get(1));
+            this.unknown = toIndexes(fromScript.get(2));
+            this.scrollTop = ((Number) fromScript.get(3)).longValue();
+        }
+    }
+
+    private ScanStep scanStep(WebElement content, WebElement scroller, List<List<String>> conditions) {
+        List<?> res = (List<?>) ((JavascriptExecutor) getDriver()).executeScript(
+                indexingScanScript, content, scroller, conditions);
+        return new ScanStep(res);
+    }
+
+    // Index the rows that are rendered now. If they do not match the index, the grid has changed.
+    private void refreshRowIndex() {
+        ScanStep step = scanStep(find(tableContent), find(tableViewport), null);
+        if (!rowIndex.isConsistentWith(step.rows)) {
+            rowIndex.clear();
+        }
+        rowIndex.add(step.rows);
+    }
+
+    /*
+     * Scroll down through the grid, either from the top or from where the previous scan stopped, and index the
+     * rendered rows in every step. The candidates of every step are confirmed in order, while they are rendered.
+     * If the rendered rows do not match the index, the grid has changed, so the index is cleared and the scan starts
+     * again from the top.
+     */
+    private OptionalInt scanRows(boolean resume,
+                                 List<List<String>> conditions,
+                                 Function<ScanStep, List<Integer>> candidatesOf,
+                                 Predicate<Integer> confirm) {
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
+        for (int attempt = 0; ; attempt++) {
+            if (resume && rowIndex.getResumeScrollTop() > 0) {
+                js.executeScript("arguments[0].scrollTop = arguments[1];", find(tableViewport), rowIndex.getResumeScrollTop());
+            } else {
+                scrollElement(tableViewport).toTopLeftCorner();
+            }
+            scrollElement(tableHorizontalScroll).toLeftCorner();
+            WebElement scroller = find(tableViewport);
+            WebElement content = find(tableContent);
+            Set<Integer> rejected = new HashSet<>();
+            boolean changed = false;
+            while (!changed) {
+                waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+                ScanStep step = scanStep(content, scroller, conditions);
+                if (!rowIndex.isConsistentWith(step.rows)) {
+                    rowIndex.clear();
+                    if (attempt < MAX_SCAN_RESTARTS) {
+                        changed = true;
+                        continue;
+                    }
+                }
+                rowIndex.add(step.rows);
+                for (int index : candidatesOf.apply(step)) {
+                    if (!rejected.contains(index)) {
+                        if (confirm.test(index)) {
+                            rowIndex.scanned(index, step.scrollTop, false);
+                            return OptionalInt.of(index);
+                        }
+                        rejected.add(index);
+                        scrollElement(tableHorizontalScroll).toLeftCorner();
+                    }
+                }
+                boolean scrolled = (Boolean) js.executeScript(scrollDownScript, scroller);
+                int maxIndex = step.rows.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+                rowIndex.scanned(maxIndex, step.scrollTop, !scrolled);
+                if (!scrolled) {
+                    return OptionalInt.empty();
+                }
+            }
+            resume = false;
+        }
+    }
+
+    private boolean isRowWithIndex(int index, Map<String, ElementProperty> row, boolean reveal) {
+        try {
+            if (reveal) {
+                revealRow(index);
+            }
+            validateRowContent(row, contentRowWithIndex.bind("index", index));
+            return true;
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    private void revealRow(int index) {
+        Path nthRow = contentRowWithIndex.bind("index", index);
+        try {
+            scrollElementWithStepOverride(tableViewport, stepSize).downUntilPredicate(nthRow, getRowVisiblityTest());
+        } catch (NoSuchElementException e) {
+            scrollElement(tableViewport).toTopCorner();
+            scrollElementWithStepOverride(tableViewport, stepSize).downUntilPredicate(nthRow, getRowVisiblityTest());
+        }
+    }
+
+    // Returns [[[row index, [[column id, text]]]], matching indexes, indexes with unrendered cells, scroll top]
+    private static final String indexingScanScript =
+            "var content = arguments[0], scroller = arguments[1], conditions = arguments[2];" +
+            "var byIndex = {}, order = [];" +
+            "content.querySelectorAll('[role=row][row-index]').forEach(function(row) {" +
+            "  var index = parseInt(row.getAttribute('row-index'));" +
+            "  if (isNaN(index)) return;" +
+            "  if (!byIndex[index]) { byIndex[index] = []; order.push(index); }" +
+            // pinned columns are rendered in separate row elements with the same index
+            "  byIndex[index].push(row);" +
+            "});" +
+            "order.sort(function(a, b) { return a - b; });" +
+            "function holds(xpath, row) {" +
+            "  return document.evaluate('boolean(' + xpath + ')', row, null, XPathResult.BOOLEAN_TYPE, null).booleanValue;" +
+            "}" +
+            "var rows = [], matching = [], unknown = [];" +
+            "order.forEach(function(index) {" +
+            "  var els = byIndex[index], cells = [];" +
+            "  els.forEach(function(row) {" +
+            "    row.querySelectorAll('[col-id]').forEach(function(cell) {" +
+            "      var role = cell.getAttribute('role');" +
+            "      if (role === 'gridcell' || role === 'presentation') {" +
+            "        cells.push([cell.getAttribute('col-id'), (cell.textContent || '').trim()]);" +
+            "      }" +
+            "    });" +
+            "  });" +
+            "  if (cells.length === 0) return;" +
+            "  rows.push([index, cells]);" +
+            "  if (!conditions) return;" +
+            "  var state = 'match';" +
+            "  conditions.forEach(function(condition) {" +
+            "    if (state === 'mismatch') return;" +
+            "    if (!cells.some(function(cell) { return cell[0] === condition[0]; })) { state = 'unknown'; return; }" +
+            "    if (!els.some(function(row) { return holds(condition[1], row); })) state = 'mismatch';" +
+            "  });" +
+            "  if (state === 'match') matching.push(index); else if (state === 'unknown') unknown.push(index);" +
+            "});" +
+            "return [rows, matching, unknown, scroller.scrollTop];";
+
+    private static final String scrollDownScript =
+            "var scroller = arguments[0];" +
+            "if (scroller.scrollHeight - scroller.scrollTop - scroller.clientHeight < 1) return false;" +
+            "scroller.scrollTop += Math.max(1, Math.floor(scroller.clientHeight * 0.8));" +
+            "return true;";
+
+    /**
+     * Extract the content of all the rows of the grid to Java. The rows are read through the grid API when the page
+     * exposes it. Otherwise, the grid is scrolled from top to bottom once, and the text of every rendered cell is
+     * collected. In that case, cells of columns that are not rendered (e.g. because of column virtualization) are
+     * missing.
+     * @return the content of the grid
+     */
+    public AgGridData extractData() {
+        Optional<AgGridData> fromApi = extractDataThroughGridApi();
+        return fromApi.isPresent() ? fromApi.get() : extractDataFromDom();
+    }
+
+    /**
+     * Extract the content of all the rows of the grid through the grid API. See {@link AgGridBuilder#usingGridApi()}.
+     * @return the content of the grid, or empty if the page does not expose the grid API
+     */
+    public Optional<AgGridData> extractDataThroughGridApi() {
+        GridApiExtraction extraction = (gridApiExtraction == null) ?
+                new GridApiExtraction(Optional.empty(), DEFAULT_GRID_API_PAGE_SIZE) :
+                gridApiExtraction;
+        return AgGridData.fromGridApi(getDriver(), find(tableContent), extraction.apiExpression, extraction.pageSize);
+    }
+
+    private AgGridData extractDataFromDom() {
+        if (!(getDriver() instanceof JavascriptExecutor)) {
+            throw new UnsupportedOperationException("extracting the grid requires a driver that supports javascript");
+        }
+        checkAndAdaptToCorrectAgGridVersion();
+        setOperationTimeout();
+        try {
+            JavascriptExecutor js = (JavascriptExecutor) getDriver();
+            List<WebElement> headerWrappers = findAll(headerWrapper);
+            scrollElement(tableViewport).toTopLeftCorner();
+            scrollElement(tableHorizontalScroll).toLeftCorner();
+            WebElement scroller = find(tableViewport);
+            WebElement content = find(tableContent);
+            Map<String, String> headerByColumnId = new LinkedHashMap<>();
+            Map<Integer, Map<String, String>> textByIndex = new TreeMap<>();
+            boolean scrolled = true;
+            while (scrolled) {
+                waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+                List<?> res = (List<?>) js.executeScript(domExtractionScript, scroller, content, headerWrappers);
+                ((List<?>) res.get(0)).forEach(header -> {
+                    List<?> idAndText = (List<?>) header;
+                    headerByColumnId.putIfAbsent(String.valueOf(idAndText.get(0)), String.valueOf(idAndText.get(1)));
+                });
+                ((List<?>) res.get(1)).forEach(row -> {
+                    List<?> indexAndCells = (List<?>) row;
+                    Map<String, String> cells = textByIndex.computeIfAbsent(
+                            ((Number) indexAndCells.get(0)).intValue(), index -> new LinkedHashMap<>());
+                    ((List<?>) indexAndCells.get(1)).forEach(cell -> {
+                        List<?> idAndText = (List<?>) cell;
+                        cells.putIfAbsent(String.valueOf(idAndText.get(0)), String.valueOf(idAndText.get(1)));
+                    });
+                });
+                scrolled = (Boolean) res.get(2);
+            }
+            List<AgGridData.Row> extracted = textByIndex.entrySet().stream().
+                    map(entry -> new AgGridData.Row(entry.getKey(), entry.getValue())).
+                    collect(toList());
+            return new AgGridData(false, headerByColumnId, extracted);
+        } finally {
+            setFinalTimeout();
+        }
+    }
+
+    // Returns [[[column id, header]], [[row index, [[column id, text]]]], whether it scrolled]
+    private static final String domExtractionScript =
+            "var scroller = arguments[0], content = arguments[1], headerWrappers = arguments[2];" +
+            "function text(el) { return (el.textContent || '').trim(); }" +
+            "var headers = [];" +
+            "headerWrappers.forEach(function(wrapper) {" +
+            "  wrapper.querySelectorAll('.ag-header-cell[col-id]').forEach(function(cell) {" +
+            "    var label = cell.querySelector('[ref=eText]');" +
+            "    headers.push([cell.getAttribute('col-id'), label ? text(label) : (cell.getAttribute('aria-label') || '')]);" +
+            "  });" +
+            "});" +
+            "var rows = [];" +
+            "content.querySelectorAll('[role=row][row-index]').forEach(function(row) {" +
+            "  var cells = [];" +
+            "  row.querySelectorAll('[col-id]').forEach(function(cell) {" +
+            "    var role = cell.getAttribute('role');" +
+            "    if (role === 'gridcell' || role === 'presentation') cells.push([cell.getAttribute('col-id'), text(cell)]);" +
+            "  });" +
+            "  if (cells.length > 0) rows.push([parseInt(row.getAttribute('row-index')), cells]);" +
+            "});" +
+            "var scrolled = false;" +
+            "if (scroller.scrollHeight - scroller.scrollTop - scroller.clientHeight >= 1) {" +
+            "  scroller.scrollTop += Math.max(1, Math.floor(scroller.clientHeight * 0.8));" +
+            "  scrolled = true;" +
+            "}" +
+            "return [headers, rows, scrolled];";
+
     private Optional<Integer> tryFindRowIndexWithinList(Map<String, ElementProperty> row, List<Integer> indexes) {
         return indexes.stream().
                         filter(index -> {
                             try {
-                                final Path myRow = ROW.that(hasIndex(index)).inside(tableContent)
-                                        .and(contains(AgGrid.CELL))
-                                        .describedBy(format("row with index %d", index));
+                                final Path myRow = nonEmptyContentRowWithIndex.bind("index", index);
                                 validateRowContent(row, myRow);
                                 return true;
                             } catch (NoSuchElementException e) {
@@ -791,8 +1410,7 @@ public class AgGrid {
     private Path findRowInBrowser(int index, Map<String, ElementProperty> row) {
         scrollElement(tableViewport).toTopLeftCorner();
         scrollElement(tableHorizontalScroll).toLeftCorner();
-        final Path myRow = ROW.that(hasIndex(index)).inside(tableContent)
-            .describedBy(format("row with index %d", index));
+        final Path myRow = contentRowWithIndex.bind("index", index);
 
         try {
             scrollElement(tableViewport).downUntilElementIsPresent(myRow);
@@ -860,7 +1478,7 @@ public class AgGrid {
     }
 
     private Path findNonVirtualizedRowInBrowser(Integer index, Map<String, ElementProperty> contentByColumn) {
-        Path rowWithIndex = ROW.that(hasIndex(index)).describedBy(format("row with index %d", index));
+        Path rowWithIndex = ROW_WITH_INDEX.bind("index", index);
         return findNonVirtualizedRowInBrowser(rowWithIndex, contentByColumn );
     }
 
@@ -961,12 +1579,25 @@ public class AgGrid {
 
     public void findTableInBrowser() {
         verifyAGridIsPresent();
+        if (gridApiExtraction != null && rowsAsText != null) {
+            Optional<AgGridData> data = extractDataThroughGridApi();
+            if (data.isPresent() && headers.stream().allMatch(header -> data.get().columnIdOf(header).isPresent())) {
+                findRowsInData(data.get());
+                return;
+            }
+        }
         if (virtualized) {
             setOperationTimeout();
         }
         findColumnMapping();
         IntStream rowsIndex = range(0, rows.size());
-        if (virtualized) {
+        if (virtualized && streamingVerification && getDriver() instanceof JavascriptExecutor) {
+            if (rowsAsText != null) {
+                findTextRowsInSnapshots();
+            } else {
+                findRowsInOnePass();
+            }
+        } else if (virtualized) {
             rowsIndex.forEach(i -> findRowInBrowser (i, rows.get(i)));
         } else {
             rowsIndex.forEach(i -> findNonVirtualizedRowInBrowser(i, rows.get(i)));
@@ -977,9 +1608,186 @@ public class AgGrid {
         }
     }
 
+    private void findRowsInData(AgGridData data) {
+        range(0, rowsAsText.size()).forEach(i -> {
+            Map<String, String> expected = data.byColumnId(rowsAsText.get(i));
+            AgGridData.Row row = data.rowWithIndex(i).orElseThrow(() ->
+                    new NoSuchElementException(format("row %d was not found. The grid has %d rows", i, data.size())));
+            if (!row.matches(expected)) {
+                throw new NoSuchElementException(format("row %d is %s. Expected: %s", i, row.getTextByColumnId(),
+                        rowsAsText.get(i)));
+            }
+        });
+        if (strict && data.size() > rowsAsText.size()) {
+            throw new NoSuchElementException(format("grid with exactly %d rows. Found too many rows.", rowsAsText.size()));
+        }
+    }
+
+    /**
+     * Take a snapshot of all the rows that are rendered now, with a single script. Rows that did not change since the
+     * previous snapshot that was taken through this instance are not transferred again, so consecutive snapshots
+     * while scrolling through the grid are cheap.
+     * @return the rendered rows
+     */
+    public AgGridSnapshot takeSnapshot() {
+        if (!(getDriver() instanceof JavascriptExecutor)) {
+            throw new UnsupportedOperationException("a snapshot of the grid requires a driver that supports javascript");
+        }
+        return takeSnapshot(find(tableContent));
+    }
+
+    private AgGridSnapshot takeSnapshot(WebElement content) {
+        List<?> res = (List<?>) ((JavascriptExecutor) getDriver()).executeScript(
+                AgGridSnapshot.snapshotScript, content, lastSnapshot.signatures());
+        lastSnapshot = AgGridSnapshot.fromScript(res, lastSnapshot);
+        return lastSnapshot;
+    }
+
+    /*
+     * Same as findRowsInOnePass(), for rows that are defined as texts. Every step takes a snapshot of the rendered
+     * rows, and the expected rows are matched against it in Java. Rows that do not match, or whose cells are not
+     * rendered, are validated in the DOM while they are still rendered, so a mismatch is reported as before.
+     */
+    private void findTextRowsInSnapshots() {
+        scrollElement(tableViewport).toTopLeftCorner();
+        scrollElement(tableHorizontalScroll).toLeftCorner();
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
+        WebElement scroller = find(tableViewport);
+        WebElement content = find(tableContent);
+        Map<Integer, Map<String, String>> pending = new LinkedHashMap<>();
+        range(0, rowsAsText.size()).forEach(i -> {
+            Map<String, String> expected = new LinkedHashMap<>();
+            rowsAsText.get(i).forEach((column, text) -> expected.put(columnIdOf(column), text));
+            pending.put(i, expected);
+        });
+
+        boolean scrolled = true;
+        while (!pending.isEmpty() && scrolled) {
+            waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+            AgGridSnapshot snapshot = takeSnapshot(content);
+            if (strict && snapshot.getMaxRowIndex() >= rows.size()) {
+                throw new NoSuchElementException(format("grid with exactly %d rows. Found too many rows.", rows.size()));
+            }
+            boolean validatedInDom = false;
+            for (int index : new ArrayList<>(pending.keySet())) {
+                Optional<AgGridSnapshot.Row> row = snapshot.getRow(index);
+                if (row.isPresent()) {
+                    if (!row.get().hasTexts(pending.get(index))) {
+                        validateRowContent(rows.get(index), contentRowWithIndex.bind("index", index));
+                        validatedInDom = true;
+                    }
+                    pending.remove(index);
+                }
+            }
+            if (validatedInDom) {
+                scrollElement(tableHorizontalScroll).toLeftCorner();
+            }
+            scrolled = (Boolean) js.executeScript(scrollDownScript, scroller);
+        }
+        // rows that were never rendered. Look for them row by row, to report them as before.
+        new ArrayList<>(pending.keySet()).forEach(i -> findRowInBrowser(i, rows.get(i)));
+    }
+
+    /*
+     * Scan the grid once from top to bottom. In every step, a single script checks all the rendered rows that are
+     * still expected, and then scrolls down by most of the height of the viewport. A row with a cell that does not
+     * match, or with cells that are not rendered (e.g. because of column virtualization), is validated in Java
+     * while it is still rendered, so a mismatch is reported the same way as in the row-by-row verification.
+     */
+    private void findRowsInOnePass() {
+        scrollElement(tableViewport).toTopLeftCorner();
+        scrollElement(tableHorizontalScroll).toLeftCorner();
+        waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
+        WebElement scroller = find(tableViewport);
+        WebElement content = find(tableContent);
+        String rowXpath = ".//" + ROW.that(contains(CELL)).getXPath().get();
+        Map<Integer, List<String>> pending = new LinkedHashMap<>();
+        range(0, rows.size()).forEach(i -> pending.put(i, cellConditions(rows.get(i))));
+
+        while (!pending.isEmpty()) {
+            List<Object> pendingRows = pending.entrySet().stream().
+                    map(entry -> Arrays.asList(entry.getKey(), entry.getValue())).
+                    collect(toList());
+            List<?> res = (List<?>) js.executeScript(streamingScanScript, scroller, content, rowXpath, pendingRows);
+            toIndexes(res.get(0)).forEach(pending::remove);
+            if (strict && ((Number) res.get(2)).intValue() >= rows.size()) {
+                throw new NoSuchElementException(format("grid with exactly %d rows. Found too many rows.", rows.size()));
+            }
+            List<Integer> toValidate = toIndexes(res.get(1));
+            for (int index : toValidate) {
+                validateRowContent(rows.get(index), contentRowWithIndex.bind("index", index));
+                pending.remove(index);
+            }
+            boolean scrolled = (Boolean) res.get(3);
+            if (!toValidate.isEmpty()) {
+                scrollElement(tableHorizontalScroll).toLeftCorner();
+            } else if (!scrolled) {
+                break;
+            }
+            waitUntilQuiet(QUIET_PERIOD_MILLIS, MAX_QUIET_WAIT_MILLIS, MILLISECONDS);
+        }
+        // rows that were never rendered. Look for them row by row, to report them as before.
+        new ArrayList<>(pending.keySet()).forEach(i -> findRowInBrowser(i, rows.get(i)));
+    }
+
+    // An xpath of every expected cell with its expected content, relative to the row
+    private List<String> cellConditions(Map<String, ElementProperty> row) {
+        return row.entrySet().stream().map(entry -> {
+            String id = colIdByHeader.get(entry.getKey());
+            if (id == null) {
+                throw new IllegalArgumentException(format("column %s was not in grid definition", entry.getKey()));
+            }
+            return ".//" + CELL.that(hasColumnId(id)).that(entry.getValue()).getXPath().get();
+        }).collect(toList());
+    }
+
+    // [column id, xpath of the expected cell relative to the row] for every expected cell
+    private List<List<String>> cellConditionsByColumnId(Map<String, ElementProperty> row) {
+        List<String> xpaths = cellConditions(row);
+        List<String> ids = row.keySet().stream().map(this::columnIdOf).collect(toList());
+        return range(0, ids.size()).mapToObj(i -> Arrays.asList(ids.get(i), xpaths.get(i))).collect(toList());
+    }
+
+    private static List<Integer> toIndexes(Object fromScript) {
+        return ((List<?>) fromScript).stream().
+                map(index -> ((Number) index).intValue()).
+                collect(toList());
+    }
+
+    // Returns [matching indexes, indexes to validate, max rendered index, whether it scrolled]
+    private static final String streamingScanScript =
+            "var scroller = arguments[0], content = arguments[1], rowXpath = arguments[2], pending = arguments[3];" +
+            "var rows = document.evaluate(rowXpath, content, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+            "var byIndex = {}, maxIndex = -1;" +
+            "for (var i = 0; i < rows.snapshotLength; i++) {" +
+            "  var row = rows.snapshotItem(i), index = row.getAttribute('row-index');" +
+            "  if (index === null) continue;" +
+            // pinned columns are rendered in separate row elements with the same index
+            "  (byIndex[index] = byIndex[index] || []).push(row);" +
+            "  maxIndex = Math.max(maxIndex, parseInt(index));" +
+            "}" +
+            "function holds(xpath, row) {" +
+            "  return document.evaluate('boolean(' + xpath + ')', row, null, XPathResult.BOOLEAN_TYPE, null).booleanValue;" +
+            "}" +
+            "var matching = [], toValidate = [];" +
+            "pending.forEach(function(expected) {" +
+            "  var els = byIndex[expected[0]];" +
+            "  if (!els) return;" +
+            "  var allMatch = expected[1].every(function(cell) {" +
+            "    return els.some(function(row) { return holds(cell, row); });" +
+            "  });" +
+            "  (allMatch ? matching : toValidate).push(expected[0]);" +
+            "});" +
+            "var scrolled = false;" +
+            "if (toValidate.length === 0 && scroller.scrollHeight - scroller.scrollTop - scroller.clientHeight >= 1) {" +
+            "  scroller.scrollTop += Math.max(1, Math.floor(scroller.clientHeight * 0.8));" +
+            "  scrolled = true;" +
+            "}" +
+            "return [matching, toValidate, maxIndex, scrolled];";
+
     private void verifyNoRowWithIndex(int index) {
-        Path myRow = ROW.that(hasIndex(index)).inside(tableContent)
-            .describedBy(format("row with index %d", index));
+        Path myRow = contentRowWithIndex.bind("index", index);
         try {
             if (virtualized){
                 scrollElement(tableViewport).downUntilElementIsPresent(myRow);
@@ -0,0 +1,279 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * The content of an ag-Grid, extracted to Java in bulk, either through the API of the grid, or by scanning the DOM.
+ * The text of every cell is kept by the column ID. Texts are compared as in
+ * {@link com.github.loyada.jdollarx.ElementProperties#hasAggregatedTextEqualTo(String)}: white space of the cell is
+ * normalized, and only its ASCII letters are compared ignoring case.
+ * Through the API, the text of a cell is its value after the valueFormatter of the column, if it has one. Cell
+ * renderers are not applied, so the text may differ from the text that is displayed.
+ */
+public final class AgGridData {
+    private static final Pattern columnIdFormat = Pattern.compile("\\{([^}]*.?)\\}");
+    // the white space of normalize-space() in xpath
+    private static final Pattern whiteSpace = Pattern.compile("[ \\t\\r\\n]+");
+
+    // Returns null if the API was not found. Otherwise {total, columns: [[id, header]], rows: [[index, [texts]]]}
+    private static final String extractionScript =
+            "var root = arguments[0], apiExpression = arguments[1], start = arguments[2], pageSize = arguments[3];" +
+            "function fromComponent(c) {" +
+            "  if (!c) return null;" +
+            "  return c.gridApi || (c.beans && c.beans.gridApi) ||" +
+            "      (c.gridOptionsWrapper && c.gridOptionsWrapper.gridOptions && c.gridOptionsWrapper.gridOptions.api) ||" +
+            "      (c.gridOptionsService && c.gridOptionsService.api) || null;" +
+            "}" +
+            "var api = apiExpression ? new Function('return ' + apiExpression)() : null;" +
+            "for (var e = root; !api && e; e = e.parentElement) api = fromComponent(e.__agComponent);" +
+            "if (!api && window.gridOptions) api = window.gridOptions.api;" +
+            "if (!api || typeof api.forEachNodeAfterFilterAndSort !== 'function') return null;" +
+            "var columnApi = (window.gridOptions && window.gridOptions.columnApi) || api.columnApi;" +
+            "var columns = api.getAllDisplayedColumns ? api.getAllDisplayedColumns() :" +
+            "    (columnApi && columnApi.getAllDisplayedColumns) ? columnApi.getAllDisplayedColumns() : [];" +
+            "var defs = columns.map(function(col) {" +
+            "  var def = col.getColDef ? col.getColDef() : col;" +
+            "  var id = col.getColId ? col.getColId() : (def.colId || def.field);" +
+            "  return {col: col, def: def, id: id, header: def.headerName || id};" +
+            "});" +
+            "function text(c, node) {" +
+            "  var value = api.getValue(c.id, node);" +
+            "  if (typeof c.def.valueFormatter === 'function') {" +
+            "    value = c.def.valueFormatter({value: value, data: node.data, node: node, colDef: c.def, column: c.col," +
+            "        api: api, columnApi: columnApi, context: null});" +
+            "  }" +
+            "  return (value === null || value === undefined) ? '' : String(value);" +
+            "}" +
+            "var total = 0, rows = [];" +
+            "api.forEachNodeAfterFilterAndSort(function(node) {" +
+            "  if (node.rowIndex === null || node.rowIndex === undefined) return;" +
+            "  if (total >= start && total < start + pageSize) {" +
+            "    rows.push([node.rowIndex, defs.map(function(c) { return text(c, node); })]);" +
+            "  }" +
+            "  total++;" +
+            "});" +
+            "return {total: total, rows: rows, columns: defs.map(function(c) { return [c.id, c.header]; })};";
+
+    private final boolean fromGridApi;
+    private final ImmutableMap<String, String> headerByColumnId;
+    private final ImmutableList<Row> rows;
+    private final ImmutableMap<Integer, Row> rowByIndex;
+
+    AgGridData(boolean fromGridApi, Map<String, String> headerByColumnId, List<Row> rows) {
+        this.fromGridApi = fromGridApi;
+        this.headerByColumnId = ImmutableMap.copyOf(headerByColumnId);
+        this.rows = ImmutableList.copyOf(rows);
+        Map<Integer, Row> byIndex = new LinkedHashMap<>();
+        rows.forEach(row -> byIndex.putIfAbsent(row.getIndex(), row));
+        this.rowByIndex = ImmutableMap.copyOf(byIndex);
+    }
+
+    /**
+     * Extract all the rows through the API of the grid, one page at a time.
+     * The API is looked up with the given expression, then on the component of the root element of the grid
+     * (or one of its ancestors), and then in window.gridOptions.
+     * @param driver the driver
+     * @param root the root element of the grid
+     * @param apiExpression an optional javascript expression that returns the grid API
+     * @param pageSize the maximal number of rows in a single script
+     * @return the content of the grid, or empty if the API is not available
+     */
+    static Optional<AgGridData> fromGridApi(WebDriver driver, WebElement root, Optional<String> apiExpression,
+                                            int pageSize) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return Optional.empty();
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        List<Row> rows = new ArrayList<>();
+        int total;
+        do {
+            Map<?, ?> page;
+            try {
+                page = (Map<?, ?>) ((JavascriptExecutor) driver).executeScript(
+                        extractionScript, root, apiExpression.orElse(null), rows.size(), pageSize);
+            } catch (WebDriverException | ClassCastException e) {
+                return Optional.empty();
+            }
+            if (page == null) {
+                return Optional.empty();
+            }
+            total = ((Number) page.get("total")).intValue();
+            List<String> columnIds = new ArrayList<>();
+            for (Object column : (List<?>) page.get("columns")) {
+                List<?> idAndHeader = (List<?>) column;
+                columnIds.add(String.valueOf(idAndHeader.get(0)));
+                headers.put(String.valueOf(idAndHeader.get(0)), String.valueOf(idAndHeader.get(1)));
+            }
+            List<?> pageRows = (List<?>) page.get("rows");
+            for (Object pageRow : pageRows) {
+                List<?> indexAndTexts = (List<?>) pageRow;
+                List<?> texts = (List<?>) indexAndTexts.get(1);
+                Map<String, String> textByColumnId = new LinkedHashMap<>();
+                for (int i = 0; i < columnIds.size(); i++) {
+                    textByColumnId.put(columnIds.get(i), String.valueOf(texts.get(i)));
+                }
+                rows.add(new Row(((Number) indexAndTexts.get(0)).intValue(), textByColumnId));
+            }
+            if (pageRows.isEmpty()) {
+                break;
+            }
+        } while (rows.size() < total);
+        return Optional.of(new AgGridData(true, headers, rows));
+    }
+
+    /**
+     * @return whether the data was extracted through the API of the grid, rather than from the DOM
+     */
+    public boolean isFromGridApi() {
+        return fromGridApi;
+    }
+
+    /**
+     * @return the header of every column, by column ID
+     */
+    public ImmutableMap<String, String> getHeaderByColumnId() {
+        return headerByColumnId;
+    }
+
+    /**
+     * @return the rows, in the order they are displayed
+     */
+    public ImmutableList<Row> getRows() {
+        return rows;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @param header the header of the column, ignoring case, or the column ID wrapped with curly braces
+     * @return the column ID, if the column exists
+     */
+    public Optional<String> columnIdOf(String header) {
+        if (columnIdFormat.matcher(header).matches()) {
+            String id = header.substring(1, header.length() - 1);
+            return headerByColumnId.containsKey(id) ? Optional.of(id) : Optional.empty();
+        }
+        return headerByColumnId.entrySet().stream().
+                filter(entry -> hasAggregatedTextEqualTo(entry.getValue(), header)).
+                map(Map.Entry::getKey).
+                findFirst();
+    }
+
+    /**
+     * @param row the expected text, by the header of the column (or the column ID wrapped with curly braces)
+     * @return the index of the first row that matches, if any
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    public OptionalInt findRowIndex(Map<String, String> row) {
+        Map<String, String> byColumnId = byColumnId(row);
+        return rows.stream().
+                filter(r -> r.matches(byColumnId)).
+                mapToInt(Row::getIndex).
+                findFirst();
+    }
+
+    /**
+     * @param index the index of the row
+     * @return the row, if it exists
+     */
+    public Optional<Row> rowWithIndex(int index) {
+        return Optional.ofNullable(rowByIndex.get(index));
+    }
+
+    Map<String, String> byColumnId(Map<String, String> row) {
+        Map<String, String> byColumnId = new LinkedHashMap<>();
+        row.forEach((header, text) -> byColumnId.put(
+                columnIdOf(header).orElseThrow(() ->
+                        new IllegalArgumentException(format("column %s was not in the grid", header))),
+                text));
+        return byColumnId;
+    }
+
+    /**
+     * Same as the xpath of {@link com.github.loyada.jdollarx.ElementProperties#hasAggregatedTextEqualTo(String)}:
+     * the normalize-space() of the text, with its ASCII letters lower-cased as in translate(), equals the expected
+     * text lower-cased.
+     * @param text the text of the element
+     * @param expected the expected text
+     * @return whether the element would match
+     */
+    static boolean hasAggregatedTextEqualTo(String text, String expected) {
+        String normalized = normalizeSpace(text);
+        StringBuilder lowerAscii = new StringBuilder(normalized.length());
+        normalized.chars().forEach(c -> lowerAscii.append((char) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c)));
+        return lowerAscii.toString().equals((expected == null ? "" : expected).toLowerCase());
+    }
+
+    /**
+     * @param text a text
+     * @return the text as in normalize-space() in xpath
+     */
+    static String normalizeSpace(String text) {
+        return (text == null) ? "" : whiteSpace.matcher(text).replaceAll(" ").replaceAll("^ | $", "");
+    }
+
+    @Override
+    public String toString() {
+        return format("grid data of %d rows and %d columns, from the %s", rows.size(), headerByColumnId.size(),
+                fromGridApi ? "grid API" : "DOM");
+    }
+
+    /**
+     * A row of the grid
+     */
+    public static final class Row {
+        private final int index;
+        private final ImmutableMap<String, String> textByColumnId;
+
+        Row(int index, Map<String, String> textByColumnId) {
+            this.index = index;
+            this.textByColumnId = ImmutableMap.copyOf(textByColumnId);
+        }
+
+        /**
+         * @return the index of the row, as in the row-index attribute of the rendered row
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the text of every cell, by column ID
+         */
+        public ImmutableMap<String, String> getTextByColumnId() {
+            return textByColumnId;
+        }
+
+        /**
+         * @param expectedByColumnId the expected text, by column ID
+         * @return whether all the expected texts are in the row
+         */
+        public boolean matches(Map<String, String> expectedByColumnId) {
+            return expectedByColumnId.entrySet().stream().allMatch(entry ->
+                    textByColumnId.containsKey(entry.getKey()) &&
+                    hasAggregatedTextEqualTo(textByColumnId.get(entry.getKey()), entry.getValue()));
+        }
+
+        @Override
+        public String toString() {
+            return "row " + index + " " + textByColumnId;
+        }
+    }
+}
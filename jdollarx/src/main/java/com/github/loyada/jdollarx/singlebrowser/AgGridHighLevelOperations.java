@@ -20,7 +20,6 @@ import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.doubleC
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.hoverOver;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.scrollElement;
 import static com.github.loyada.jdollarx.singlebrowser.custommatchers.CustomMatchers.isPresent;
-import static java.util.Collections.EMPTY_LIST;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -29,20 +28,53 @@ import static org.hamcrest.MatcherAssert.assertThat;
  */
 public final class AgGridHighLevelOperations {
     final private Path gridContainer;
+    final private boolean useGridApi;
     public static int retry_duration_in_millisec = 500;
 
     public AgGridHighLevelOperations(Path gridContainer){
+        this(gridContainer, false);
+    }
+
+    private AgGridHighLevelOperations(Path gridContainer, boolean useGridApi){
         this.gridContainer = gridContainer;
+        this.useGridApi = useGridApi;
+    }
+
+    /**
+     * Read rows through the API of the grid, when the page exposes it. See {@link AgGrid.AgGridBuilder#usingGridApi()}
+     * @return the operations on the same grid, that use the grid API
+     */
+    public AgGridHighLevelOperations usingGridApi() {
+        return new AgGridHighLevelOperations(gridContainer, true);
+    }
+
+    /**
+     * @return whether rows are read through the API of the grid, when the page exposes it
+     */
+    public boolean isUsingGridApi() {
+        return useGridApi;
     }
 
     public AgGrid buildMinimalGridFromHeader(List<String> headers) {
-        return AgGrid.getBuilder()
+        return builder()
                 .withHeaders(headers)
-                .withRowsAsStrings(EMPTY_LIST)
-                .containedIn(gridContainer)
+                .withRowsAsStrings(Collections.emptyList())
                 .build();
     }
 
+    private AgGrid.AgGridBuilder builder() {
+        AgGrid.AgGridBuilder builder = AgGrid.getBuilder().containedIn(gridContainer);
+        return useGridApi ? builder.usingGridApi() : builder;
+    }
+
+    /**
+     * Extract the content of all the rows of the grid. See {@link AgGrid#extractData()}
+     * @return the content of the grid
+     */
+    public AgGridData extractData() {
+        return retry_if_needed(() -> buildMinimalGridFromHeader(Collections.emptyList()).extractData());
+    }
+
     /**
      * Ensure(or assert) that the cell in specific row and column has the expected value
      * @param rowNumber - number of row of the cell
@@ -79,10 +111,9 @@ public final class AgGridHighLevelOperations {
      */
     public AgGrid unorderedGrid(List<Map<String, String>> rows) {
         Set<String> headers = rows.get(0).keySet();
-        return AgGrid.getBuilder()
+        return builder()
                 .withHeaders(new ArrayList<>(headers))
                 .withRowsAsStrings(rows)
-                .containedIn(gridContainer)
                 .build();
     }
 
@@ -94,10 +125,9 @@ public final class AgGridHighLevelOperations {
      */
     public AgGrid unorderedStrictGrid(List<Map<String, String>> rows) {
         Set<String> headers = rows.get(0).keySet();
-        return AgGrid.getBuilder()
+        return builder()
                 .withHeaders(new ArrayList<>(headers))
                 .withRowsAsStrings(rows)
-                .containedIn(gridContainer)
                 .isStrict()
                 .build();
     }
@@ -158,7 +188,7 @@ public final class AgGridHighLevelOperations {
      * @return a grid object
      */
     public AgGrid getMinimalGrid(String columnName) {
-        return new AgGridHighLevelOperations(gridContainer)
+        return new AgGridHighLevelOperations(gridContainer, useGridApi)
                 .buildMinimalGridFromHeader(Collections.singletonList(columnName));
     }
 
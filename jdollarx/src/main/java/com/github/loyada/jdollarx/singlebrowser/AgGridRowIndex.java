@@ -0,0 +1,119 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.TreeMap;
+
+import static com.github.loyada.jdollarx.singlebrowser.AgGridData.hasAggregatedTextEqualTo;
+import static com.github.loyada.jdollarx.singlebrowser.AgGridData.normalizeSpace;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Internal implementation.
+ * An incremental index of the rows of a virtualized grid that were rendered so far: the text of the rendered cells,
+ * by row index and column ID. It also keeps how far the grid was scanned contiguously from the top, so that a scan
+ * can resume from there, and the result of previous lookups.
+ * It is invalidated when rendered rows do not match it, e.g. after a sort, a filter or a change of the data.
+ */
+final class AgGridRowIndex {
+    private final TreeMap<Integer, Map<String, String>> textByRowIndex = new TreeMap<>();
+    private final Map<List<String>, Integer> indexByQuery = new HashMap<>();
+    private int scannedUpTo = -1;
+    private long resumeScrollTop = 0;
+    private boolean complete = false;
+
+    void clear() {
+        textByRowIndex.clear();
+        indexByQuery.clear();
+        scannedUpTo = -1;
+        resumeScrollTop = 0;
+        complete = false;
+    }
+
+    boolean isEmpty() {
+        return textByRowIndex.isEmpty();
+    }
+
+    /**
+     * @param rendered the text of the rendered cells, by row index and column ID
+     * @return whether the index agrees with all the rendered cells it knows
+     */
+    boolean isConsistentWith(Map<Integer, Map<String, String>> rendered) {
+        return rendered.entrySet().stream().allMatch(row -> {
+            Map<String, String> known = textByRowIndex.get(row.getKey());
+            return known == null || row.getValue().entrySet().stream().allMatch(cell ->
+                    !known.containsKey(cell.getKey()) ||
+                    normalizeSpace(known.get(cell.getKey())).equals(normalizeSpace(cell.getValue())));
+        });
+    }
+
+    void add(Map<Integer, Map<String, String>> rendered) {
+        rendered.forEach((index, cells) ->
+                textByRowIndex.computeIfAbsent(index, i -> new LinkedHashMap<>()).putAll(cells));
+    }
+
+    /**
+     * Record the progress of a contiguous scan from the top of the grid
+     * @param maxIndex the highest row index that was rendered
+     * @param scrollTop the scroll position where those rows are rendered
+     * @param reachedBottom whether the scan reached the bottom of the grid
+     */
+    void scanned(int maxIndex, long scrollTop, boolean reachedBottom) {
+        scannedUpTo = Math.max(scannedUpTo, maxIndex);
+        resumeScrollTop = Math.max(resumeScrollTop, scrollTop);
+        complete = complete || reachedBottom;
+    }
+
+    long getResumeScrollTop() {
+        return resumeScrollTop;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param expectedByColumnId the expected text, by column ID
+     * @return the scanned rows that may match, in order: rows whose known cells match
+     */
+    List<Integer> scannedCandidates(Map<String, String> expectedByColumnId) {
+        return candidatesAmong(expectedByColumnId,
+                complete ? textByRowIndex.keySet() : textByRowIndex.headMap(scannedUpTo, true).keySet());
+    }
+
+    List<Integer> candidatesAmong(Map<String, String> expectedByColumnId, Collection<Integer> indexes) {
+        return indexes.stream().
+                filter(textByRowIndex::containsKey).
+                sorted().
+                filter(index -> {
+                    Map<String, String> known = textByRowIndex.get(index);
+                    return expectedByColumnId.entrySet().stream().allMatch(cell ->
+                            !known.containsKey(cell.getKey()) ||
+                            hasAggregatedTextEqualTo(known.get(cell.getKey()), cell.getValue()));
+                }).
+                collect(toList());
+    }
+
+    /**
+     * @return whether all the expected cells of the row are known, and match
+     */
+    boolean matchesFully(int index, Map<String, String> expectedByColumnId) {
+        Map<String, String> known = textByRowIndex.get(index);
+        return known != null && expectedByColumnId.entrySet().stream().allMatch(cell ->
+                known.containsKey(cell.getKey()) &&
+                hasAggregatedTextEqualTo(known.get(cell.getKey()), cell.getValue()));
+    }
+
+    OptionalInt indexOfQuery(List<String> query) {
+        Integer index = indexByQuery.get(query);
+        return index == null ? OptionalInt.empty() : OptionalInt.of(index);
+    }
+
+    void recordQuery(List<String> query, int index) {
+        indexByQuery.put(query, index);
+    }
+}
@@ -0,0 +1,253 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The rows of an AgGrid that were rendered at a given moment. For every row index and column ID, it has the
+ * aggregated text of the cell, as in normalize-space(), and the CSS classes of the cell that are not internal to
+ * ag-Grid (i.e. do not start with "ag-"). It is taken in a single script with {@link AgGrid#takeSnapshot()}.
+ * Rows that did not change since the previous snapshot of the same grid are not transferred again.
+ */
+public final class AgGridSnapshot {
+    // Returns [[row index, signature]] for rows that did not change, and
+    // [row index, signature, selected, [[column id, text, [css classes]]]] for the others
+    static final String snapshotScript =
+            "var content = arguments[0], known = {};" +
+            "(arguments[1] || []).forEach(function(k) { known[k[0]] = k[1]; });" +
+            "function text(el) { return (el.textContent || '').replace(/[ \\t\\r\\n]+/g, ' ').replace(/^ | $/g, ''); }" +
+            "function classes(el) {" +
+            "  return Array.prototype.filter.call(el.classList, function(c) { return c.indexOf('ag-') !== 0; });" +
+            "}" +
+            "function hash(s) {" +
+            "  var h = 2166136261;" +
+            "  for (var i = 0; i < s.length; i++) { h ^= s.charCodeAt(i); h = Math.imul(h, 16777619); }" +
+            "  return h >>> 0;" +
+            "}" +
+            "var byIndex = {}, order = [];" +
+            "content.querySelectorAll('[role=row][row-index]').forEach(function(row) {" +
+            "  var index = parseInt(row.getAttribute('row-index'));" +
+            "  if (isNaN(index)) return;" +
+            "  if (!byIndex[index]) { byIndex[index] = []; order.push(index); }" +
+            // pinned columns are rendered in separate row elements with the same index
+            "  byIndex[index].push(row);" +
+            "});" +
+            "order.sort(function(a, b) { return a - b; });" +
+            "var result = [];" +
+            "order.forEach(function(index) {" +
+            "  var cells = [], selected = false;" +
+            "  byIndex[index].forEach(function(row) {" +
+            "    if (row.classList.contains('ag-row-selected')) selected = true;" +
+            "    row.querySelectorAll('[col-id]').forEach(function(cell) {" +
+            "      var role = cell.getAttribute('role');" +
+            "      if (role === 'gridcell' || role === 'presentation') {" +
+            "        cells.push([cell.getAttribute('col-id'), text(cell), classes(cell)]);" +
+            "      }" +
+            "    });" +
+            "  });" +
+            "  if (cells.length === 0) return;" +
+            "  var signature = hash(JSON.stringify([selected, cells]));" +
+            "  result.push(known[index] === signature ? [index, signature] : [index, signature, selected, cells]);" +
+            "});" +
+            "return result;";
+
+    private final ImmutableSortedMap<Integer, Row> rows;
+    private final int transferredRows;
+
+    private AgGridSnapshot(Map<Integer, Row> rows, int transferredRows) {
+        this.rows = ImmutableSortedMap.copyOf(rows);
+        this.transferredRows = transferredRows;
+    }
+
+    static AgGridSnapshot empty() {
+        return new AgGridSnapshot(new TreeMap<>(), 0);
+    }
+
+    /**
+     * @return the signatures of the rows, to send to the next snapshot script
+     */
+    List<List<Object>> signatures() {
+        return rows.values().stream().
+                map(row -> ImmutableList.<Object>of(row.index, row.signature)).
+                collect(toList());
+    }
+
+    /**
+     * @param fromScript the result of {@link #snapshotScript}
+     * @param previous the previous snapshot of the same grid, whose signatures were sent to the script
+     * @return the snapshot
+     */
+    static AgGridSnapshot fromScript(List<?> fromScript, AgGridSnapshot previous) {
+        Map<Integer, Row> rows = new TreeMap<>();
+        int transferred = 0;
+        for (Object item : fromScript) {
+            List<?> row = (List<?>) item;
+            int index = ((Number) row.get(0)).intValue();
+            long signature = ((Number) row.get(1)).longValue();
+            if (row.size() == 2) {
+                Row known = previous.rows.get(index);
+                if (known == null || known.signature != signature) {
+                    throw new IllegalStateException(format("row %d was not in the previous snapshot", index));
+                }
+                rows.put(index, known);
+                continue;
+            }
+            Map<String, Cell> cells = new LinkedHashMap<>();
+            ((List<?>) row.get(3)).forEach(cell -> {
+                List<?> cellData = (List<?>) cell;
+                List<String> classes = ((List<?>) cellData.get(2)).stream().map(String::valueOf).collect(toList());
+                cells.putIfAbsent(String.valueOf(cellData.get(0)), new Cell(String.valueOf(cellData.get(1)), classes));
+            });
+            rows.put(index, new Row(index, signature, (Boolean) row.get(2), cells));
+            transferred++;
+        }
+        return new AgGridSnapshot(rows, transferred);
+    }
+
+    /**
+     * @return the rendered rows, by row index
+     */
+    public ImmutableSortedMap<Integer, Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * @param index the row index
+     * @return the row, if it was rendered
+     */
+    public Optional<Row> getRow(int index) {
+        return Optional.ofNullable(rows.get(index));
+    }
+
+    /**
+     * @param index the row index
+     * @param columnId the column ID
+     * @return the cell, if it was rendered
+     */
+    public Optional<Cell> getCell(int index, String columnId) {
+        return getRow(index).flatMap(row -> Optional.ofNullable(row.cellsByColumnId.get(columnId)));
+    }
+
+    /**
+     * @return the highest rendered row index, or -1 if no row was rendered
+     */
+    public int getMaxRowIndex() {
+        return rows.isEmpty() ? -1 : rows.lastKey();
+    }
+
+    /**
+     * @return how many rows were transferred from the browser, because they were not in the previous snapshot, or
+     * changed since
+     */
+    public int getTransferredRowCount() {
+        return transferredRows;
+    }
+
+    @Override
+    public String toString() {
+        return format("snapshot of %d rendered rows", rows.size());
+    }
+
+    /**
+     * A rendered row
+     */
+    public static final class Row {
+        private final int index;
+        private final long signature;
+        private final boolean selected;
+        private final ImmutableMap<String, Cell> cellsByColumnId;
+
+        private Row(int index, long signature, boolean selected, Map<String, Cell> cellsByColumnId) {
+            this.index = index;
+            this.signature = signature;
+            this.selected = selected;
+            this.cellsByColumnId = ImmutableMap.copyOf(cellsByColumnId);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return whether the row is selected (has the class ag-row-selected)
+         */
+        public boolean isSelected() {
+            return selected;
+        }
+
+        /**
+         * @return the rendered cells, by column ID
+         */
+        public ImmutableMap<String, Cell> getCellsByColumnId() {
+            return cellsByColumnId;
+        }
+
+        /**
+         * @param expectedByColumnId the expected text, by column ID
+         * @return whether all the expected cells are rendered, with their texts as in
+         * {@link com.github.loyada.jdollarx.ElementProperties#hasAggregatedTextEqualTo(String)}
+         */
+        public boolean hasTexts(Map<String, String> expectedByColumnId) {
+            return expectedByColumnId.entrySet().stream().allMatch(entry ->
+                    cellsByColumnId.containsKey(entry.getKey()) &&
+                    cellsByColumnId.get(entry.getKey()).hasAggregatedTextEqualTo(entry.getValue()));
+        }
+
+        @Override
+        public String toString() {
+            return "row " + index + " " + cellsByColumnId;
+        }
+    }
+
+    /**
+     * A rendered cell
+     */
+    public static final class Cell {
+        private final String text;
+        private final ImmutableList<String> cssClasses;
+
+        private Cell(String text, List<String> cssClasses) {
+            this.text = text;
+            this.cssClasses = ImmutableList.copyOf(cssClasses);
+        }
+
+        /**
+         * @return the aggregated text of the cell, with normalized white space
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return the CSS classes of the cell that do not start with "ag-"
+         */
+        public ImmutableList<String> getCssClasses() {
+            return cssClasses;
+        }
+
+        /**
+         * Same as {@link com.github.loyada.jdollarx.ElementProperties#hasAggregatedTextEqualTo(String)}: only ASCII
+         * letters of the cell are compared ignoring case, as in the xpath translate().
+         * @param expected the expected text
+         * @return whether the cell has the text
+         */
+        public boolean hasAggregatedTextEqualTo(String expected) {
+            return AgGridData.hasAggregatedTextEqualTo(text, expected);
+        }
+
+        @Override
+        public String toString() {
+            return cssClasses.isEmpty() ? format("'%s'", text) : format("'%s' %s", text, cssClasses);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.github.loyada.jdollarx.InBrowser;
+import com.github.loyada.jdollarx.RetryPolicy;
+import org.openqa.selenium.WebDriver;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The state of {@link InBrowserSinglton} for the current thread: the driver, the implicit timeout, the
+ * probing and caching settings, and the retry policy of clicks. While a context is open, all the singleton API in this thread (including AgGrid,
+ * the custom matchers and the high level API) uses it, instead of the static {@link InBrowserSinglton#driver}.
+ * This allows running tests that use the singleton API on parallel threads, each with its own browser.
+ * Threads without a context keep using the static driver and settings, as before.
+ * Example:
+ * <pre>
+ * {@code
+ *     try (BrowserContext context = BrowserContext.open(DriverSetup.createStandardChromeDriver())) {
+ *         InBrowserSinglton.clickOn(button);
+ *     }
+ * }
+ * </pre>
+ * Contexts can be nested. Closing a context restores the one that was open before it in this thread.
+ * The context is bound to a thread, and works the same on platform and virtual threads. It is not inherited by
+ * threads that are started while it is open.
+ */
+public final class BrowserContext implements AutoCloseable {
+    private static final ThreadLocal<BrowserContext> current = new ThreadLocal<>();
+
+    private final WebDriver driver;
+    private final BrowserContext previous;
+    private final Thread owner;
+    private int implicitTimeout;
+    private TimeUnit timeoutUnit;
+    private boolean probing;
+    private boolean elementCaching;
+    private RetryPolicy clickRetryPolicy = InBrowser.defaultClickRetryPolicy();
+
+    private BrowserContext(WebDriver driver, BrowserContext previous) {
+        this.driver = driver;
+        this.previous = previous;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * Open a context for the given driver in the current thread. Does not quit the driver when closed.
+     * @param driver the driver that is used by the singleton API in this thread
+     * @return the new context
+     */
+    public static BrowserContext open(WebDriver driver) {
+        if (driver == null) {
+            throw new IllegalArgumentException("driver must not be null");
+        }
+        BrowserContext context = new BrowserContext(driver, current.get());
+        current.set(context);
+        return context;
+    }
+
+    /**
+     * Run an operation of the singleton API with the given driver, in the current thread
+     * @param driver the driver that is used by the operation
+     * @param operation the operation
+     * @param <T> the type of the result
+     * @return the result of the operation
+     * @throws Exception the exception of the operation
+     */
+    public static <T> T callWith(WebDriver driver, Callable<T> operation) throws Exception {
+        try (BrowserContext ignored = open(driver)) {
+            return operation.call();
+        }
+    }
+
+    /**
+     * Run an operation of the singleton API with the given driver, in the current thread
+     * @param driver the driver that is used by the operation
+     * @param operation the operation
+     */
+    public static void runWith(WebDriver driver, Runnable operation) {
+        try (BrowserContext ignored = open(driver)) {
+            operation.run();
+        }
+    }
+
+    /**
+     * @return the context that is open in the current thread, if any
+     */
+    public static Optional<BrowserContext> current() {
+        return Optional.ofNullable(current.get());
+    }
+
+    public WebDriver getDriver() {
+        return driver;
+    }
+
+    public int getImplicitTimeout() {
+        return implicitTimeout;
+    }
+
+    public TimeUnit getTimeoutUnit() {
+        return timeoutUnit;
+    }
+
+    public boolean isProbing() {
+        return probing;
+    }
+
+    public boolean isElementCaching() {
+        return elementCaching;
+    }
+
+    public RetryPolicy getClickRetryPolicy() {
+        return clickRetryPolicy;
+    }
+
+    void setImplicitTimeout(int implicitTimeout, TimeUnit unit) {
+        this.implicitTimeout = implicitTimeout;
+        this.timeoutUnit = unit;
+    }
+
+    void setProbing(boolean probing) {
+        this.probing = probing;
+    }
+
+    void setElementCaching(boolean elementCaching) {
+        this.elementCaching = elementCaching;
+    }
+
+    void setClickRetryPolicy(RetryPolicy clickRetryPolicy) {
+        this.clickRetryPolicy = clickRetryPolicy;
+    }
+
+    /**
+     * Close the context, and restore the previous context of this thread. Must be called by the thread that
+     * opened it. Does not quit the driver.
+     */
+    @Override
+    public void close() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("a browser context must be closed by the thread that opened it");
+        }
+        if (current.get() != this) {
+            throw new IllegalStateException("browser contexts must be closed in the reverse order of opening");
+        }
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "browser context of " + owner.getName();
+    }
+}
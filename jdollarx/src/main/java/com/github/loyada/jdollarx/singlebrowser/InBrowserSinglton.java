@@ -1,7 +1,10 @@
 package com.github.loyada.jdollarx.singlebrowser;
 
 
+import com.github.loyada.jdollarx.ElementProbe;
 import com.github.loyada.jdollarx.InBrowser;
+import com.github.loyada.jdollarx.RetryPolicy;
+import com.github.loyada.jdollarx.WaitCondition;
 import com.github.loyada.jdollarx.Operations;
 import com.github.loyada.jdollarx.Path;
 import com.github.loyada.jdollarx.visual.Images;
@@ -18,11 +21,23 @@ import java.util.concurrent.TimeUnit;
 /**
  * A simplified API built to interact with a single instance of a running browser.
  * See {@link com.github.loyada.jdollarx.InBrowser} for an API that supports multiple browser instances.
+ * To use this API on parallel threads, open a {@link BrowserContext} with its own driver in every thread.
  */
 public final class InBrowserSinglton {
     public static WebDriver driver;
     private static int implicitTimeout;
     private static TimeUnit timeoutUnit;
+    private static boolean probing;
+    private static boolean elementCaching;
+    private static RetryPolicy clickRetryPolicy = InBrowser.defaultClickRetryPolicy();
+
+    /**
+     * @return the driver of the {@link BrowserContext} of the current thread, if one is open, or the static driver
+     */
+    public static WebDriver getDriver() {
+        BrowserContext context = BrowserContext.current().orElse(null);
+        return (context == null) ? driver : context.getDriver();
+    }
 
     /**
      * Convert from a InBrowserSinglton to an non-singleton instance of InBrowser
@@ -76,6 +91,98 @@ public final class InBrowserSinglton {
         return getBrowser().countAll(el);
     }
 
+    /**
+     * Find many elements in a single round trip to the browser. Does not wait for the elements.
+     * @param paths the paths to find
+     * @return the first element that matches every path, in the same order, or throws NoSuchElementException
+     * that lists all the paths that were not found
+     */
+    public static List<WebElement> findMany(final List<? extends Path> paths) {
+        return getBrowser().findMany(paths);
+    }
+
+    /**
+     * Count the elements that match every one of the given paths, in a single round trip to the browser.
+     * @param paths the element definitions
+     * @return the number of elements of every path, in the same order
+     */
+    public static List<Integer> countMany(final List<? extends Path> paths) {
+        return getBrowser().countMany(paths);
+    }
+
+    /**
+     * Check whether every one of the given paths is present, in a single round trip to the browser.
+     * @param paths the paths to look for
+     * @return whether every path is present, in the same order
+     */
+    public static List<Boolean> presenceOf(final List<? extends Path> paths) {
+        return getBrowser().presenceOf(paths);
+    }
+
+    /**
+     * Probe the state of the first element that matches the path, with a single script, without any implicit waiting.
+     * @param el a Path instance
+     * @return the state of the element
+     */
+    public static ElementProbe probe(final Path el) {
+        return getBrowser().probe(el);
+    }
+
+    /**
+     * See {@link InBrowser#setProbing(boolean)}
+     * @param probing whether the predicates probe the page instead of finding the elements
+     */
+    public static void setProbing(boolean probing) {
+        BrowserContext context = BrowserContext.current().orElse(null);
+        if (context == null) {
+            InBrowserSinglton.probing = probing;
+        } else {
+            context.setProbing(probing);
+        }
+    }
+
+    public static boolean isProbing() {
+        return BrowserContext.current().map(BrowserContext::isProbing).orElse(probing);
+    }
+
+    /**
+     * See {@link InBrowser#setElementCaching(boolean)}. The cached elements are shared by all the operations
+     * of the singleton browser.
+     * @param caching whether to cache the elements that were found
+     */
+    public static void setElementCaching(boolean caching) {
+        BrowserContext context = BrowserContext.current().orElse(null);
+        if (context == null) {
+            InBrowserSinglton.elementCaching = caching;
+        } else {
+            context.setElementCaching(caching);
+        }
+    }
+
+    public static boolean isElementCaching() {
+        return BrowserContext.current().map(BrowserContext::isElementCaching).orElse(elementCaching);
+    }
+
+    /**
+     * See {@link InBrowser#setClickRetryPolicy(RetryPolicy)}
+     * @param policy the retry policy of {@link #clickOn(Path)}
+     */
+    public static void setClickRetryPolicy(RetryPolicy policy) {
+        BrowserContext context = BrowserContext.current().orElse(null);
+        if (context == null) {
+            InBrowserSinglton.clickRetryPolicy = policy;
+        } else {
+            context.setClickRetryPolicy(policy);
+        }
+    }
+
+    /**
+     * @return the retry policy of {@link #clickOn(Path)}, with its statistics
+     */
+    public static RetryPolicy getClickRetryPolicy() {
+        return BrowserContext.current().map(BrowserContext::getClickRetryPolicy).orElse(clickRetryPolicy);
+    }
+
     /////////////// predicates
 
     /**
@@ -141,6 +248,17 @@ public final class InBrowserSinglton {
         return getBrowser().clickOn(el);
     }
 
+    /**
+     * Click on the element that corresponds to the given path, retrying according to the given policy.
+     * See {@link InBrowser#clickOn(Path, RetryPolicy)}
+     * @param el a Path instance
+     * @param policy how to retry a click that failed
+     * @return the WebElement clicked on
+     */
+    public static WebElement clickOn(final Path el, RetryPolicy policy) {
+        return getBrowser().clickOn(el, policy);
+    }
+
     /**
      * Click on the location of the element that corresponds to the given path.
      * @param el a Path instance
@@ -311,21 +429,51 @@ public final class InBrowserSinglton {
     }
 
 
+    /**
+     * Wait until the number of elements that match the path does not change for the given period.
+     * See {@link InBrowser#waitUntilStable(Path, int)}
+     * @param el a Path instance
+     * @param waitBetweenChecksInMillis the period in which the number of elements must not change
+     * @return the number of times the number of elements changed, plus one
+     */
     public static int waitUntilStable(Path el, int waitBetweenChecksInMillis) {
-        int currentCount = countAll(el);
-        int previousCount;
-        int iterations = 0;
-        do {
-            previousCount = currentCount;
-            try {
-                Thread.sleep(waitBetweenChecksInMillis);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-            currentCount = countAll(el);
-            iterations += 1;
-        } while (currentCount!=previousCount);
-        return iterations;
+        return getBrowser().waitUntilStable(el, waitBetweenChecksInMillis);
+    }
+
+    /**
+     * Wait until the page is quiet. See {@link InBrowser#waitUntilQuiet(int, long, TimeUnit)}
+     * @param quietPeriodInMillis the period in which the DOM must not change
+     * @param timeout the maximal time to wait
+     * @param unit the unit of the timeout
+     * @return true if the page became quiet before the timeout
+     */
+    public static boolean waitUntilQuiet(int quietPeriodInMillis, long timeout, TimeUnit unit) {
+        return getBrowser().waitUntilQuiet(quietPeriodInMillis, timeout, unit);
+    }
+
+    /**
+     * Wait until the page is quiet. See {@link InBrowser#waitUntilQuiet(int, boolean, long, TimeUnit)}
+     * @param quietPeriodInMillis the period in which the DOM must not change
+     * @param includingNetwork whether to wait also until there are no fetch/XHR requests in flight
+     * @param timeout the maximal time to wait
+     * @param unit the unit of the timeout
+     * @return true if the page became quiet before the timeout
+     */
+    public static boolean waitUntilQuiet(int quietPeriodInMillis, boolean includingNetwork, long timeout, TimeUnit unit) {
+        return getBrowser().waitUntilQuiet(quietPeriodInMillis, includingNetwork, timeout, unit);
+    }
+
+    /**
+     * Wait until the condition on the first element that matches the path is met.
+     * See {@link InBrowser#waitUntil(Path, WaitCondition, long, TimeUnit)}
+     * @param el a Path instance
+     * @param condition the condition to wait for
+     * @param timeout the maximal time to wait
+     * @param unit the unit of the timeout
+     * @return true if the condition was met before the timeout
+     */
+    public static boolean waitUntil(Path el, WaitCondition condition, long timeout, TimeUnit unit) {
+        return getBrowser().waitUntil(el, condition, timeout, unit);
     }
 
 
@@ -335,28 +483,34 @@ public final class InBrowserSinglton {
      * @param unit similar to Selenium API
      */
     public static void setImplicitTimeout(int implicitTimeout, TimeUnit unit) {
-        InBrowserSinglton.implicitTimeout = implicitTimeout;
-        InBrowserSinglton.timeoutUnit = unit;
-        driver.manage().timeouts().implicitlyWait(implicitTimeout, unit);
+        BrowserContext context = BrowserContext.current().orElse(null);
+        if (context == null) {
+            InBrowserSinglton.implicitTimeout = implicitTimeout;
+            InBrowserSinglton.timeoutUnit = unit;
+        } else {
+            context.setImplicitTimeout(implicitTimeout, unit);
+        }
+        getDriver().manage().timeouts().implicitlyWait(implicitTimeout, unit);
     }
 
     public static int getImplicitTimeout() {
-        return implicitTimeout;
+        return BrowserContext.current().map(BrowserContext::getImplicitTimeout).orElse(implicitTimeout);
     }
 
     public static TimeUnit getTimeoutUnit() {
-        return timeoutUnit;
+        BrowserContext context = BrowserContext.current().orElse(null);
+        return (context == null) ? timeoutUnit : context.getTimeoutUnit();
     }
 
     public static long getImplicitTimeoutInMillisec() {
-        return timeoutUnit.toMillis(implicitTimeout);
+        return getTimeoutUnit().toMillis(getImplicitTimeout());
     }
 
     public static void captureWindowToFile(File outputFile) {
-        Images.captureToFile(new InBrowser(driver), outputFile);
+        Images.captureToFile(new InBrowser(getDriver()), outputFile);
     }
 
     public static BufferedImage captureWindow() {
-        return Images.captureImage(new InBrowser(driver));
+        return Images.captureImage(new InBrowser(getDriver()));
     }
 }
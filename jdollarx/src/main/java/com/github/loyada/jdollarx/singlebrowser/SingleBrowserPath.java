@@ -43,6 +43,21 @@ public final class SingleBrowserPath implements Path {
         this.path = path;
     }
 
+    /**
+     * Equal to another SingleBrowserPath if the underlying BasicPaths are equal. See {@link BasicPath#equals(Object)}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SingleBrowserPath)) return false;
+        return path.equals(((SingleBrowserPath) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
     @Override
     public Optional<WebElement> getUnderlyingSource() {
         return path.getUnderlyingSource();
@@ -248,7 +248,7 @@ public class SingltonBrowserImage {
   }
 
   private static InBrowser browser() {
-    return new InBrowser(InBrowserSinglton.driver);
+    return new InBrowser(InBrowserSinglton.getDriver());
   }
 
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package com.github.loyada.jdollarx.singlebrowser.custommatchers;
 
-import com.github.loyada.jdollarx.ElementProperties;
-import com.github.loyada.jdollarx.ElementProperty;
 import com.github.loyada.jdollarx.Operations;
 import com.github.loyada.jdollarx.singlebrowser.AgGrid;
 import com.github.loyada.jdollarx.singlebrowser.AgGridHighLevelOperations;
@@ -11,11 +9,9 @@ import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
 import org.openqa.selenium.NoSuchElementException;
 
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 
@@ -76,7 +72,9 @@ public class AgGridMatchers {
     }
 
     /**
-     * Verify that the grid, as defined, contains a row (which can be partial)
+     * Verify that the grid, as defined, contains a row (which can be partial).
+     * If the operations are {@link AgGridHighLevelOperations#usingGridApi()}, the rows are read through the grid API
+     * when the page exposes it.
      *
      * @return a Hamcrest matcher
      */
@@ -105,15 +103,10 @@ public class AgGridMatchers {
             protected boolean matchesSafely(final AgGridHighLevelOperations agGridHighLevelOperations) {
                 List<String> columns = new ArrayList<>(row.keySet());
                 AgGrid grid = agGridHighLevelOperations.buildMinimalGridFromHeader(columns);
-                Map<String, ElementProperty> transformedRow = row.entrySet().stream()
-                        .map(e -> new AbstractMap.SimpleEntry<>(
-                                e.getKey(),
-                                ElementProperties.hasAggregatedTextEqualTo(e.getValue()==null ? "" : e.getValue())))
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
                 try {
                     int timeout = getTimeoutInMillis() / 4;
-                    Operations.doWithRetries(() -> grid.findRowIndex(transformedRow),
+                    Operations.doWithRetries(() -> grid.findRowIndexOfText(row),
                             4,
                             timeout);
                     return true;
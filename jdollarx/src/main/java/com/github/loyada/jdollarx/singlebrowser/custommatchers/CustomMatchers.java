@@ -4,23 +4,19 @@ package com.github.loyada.jdollarx.singlebrowser.custommatchers;
 import com.github.loyada.jdollarx.ElementProperties;
 import com.github.loyada.jdollarx.InBrowser;
 import com.github.loyada.jdollarx.Path;
+import com.github.loyada.jdollarx.WaitCondition;
 import com.github.loyada.jdollarx.custommatchers.HasText;
 import com.github.loyada.jdollarx.custommatchers.IsPresent;
 import com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
-import org.openqa.selenium.NoSuchElementException;
-import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.FluentWait;
-import org.openqa.selenium.support.ui.Wait;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static com.github.loyada.jdollarx.BasicPath.html;
 import static com.github.loyada.jdollarx.ElementProperties.contains;
-import static org.openqa.selenium.support.ui.ExpectedConditions.elementSelectionStateToBe;
 
 /**
  * A collection of Hamcrest custom matchers, that are optimized to be as atomic as possible when interacting with the browser or a W3C document,
@@ -29,11 +25,15 @@ import static org.openqa.selenium.support.ui.ExpectedConditions.elementSelection
  */
 public final class CustomMatchers {
 
-    private static Wait<WebDriver> getWaiter() {
-         return new FluentWait<>(InBrowserSinglton.driver).
-        withTimeout(1, TimeUnit.SECONDS)
-        .pollingEvery(100, TimeUnit.MILLISECONDS)
-        .ignoring(NoSuchElementException.class);
+    // A second for the state of the element, on top of the implicit wait for the element itself
+    private static long getWaitTimeoutInMillis() {
+        long implicitWait = (InBrowserSinglton.getTimeoutUnit() == null) ? 0 :
+                InBrowserSinglton.getImplicitTimeoutInMillisec();
+        return 1000 + implicitWait;
+    }
+
+    private static boolean waitUntil(InBrowser browser, Path el, WaitCondition condition) {
+        return browser.waitUntil(el, condition, getWaitTimeoutInMillis(), TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -65,7 +65,7 @@ public final class CustomMatchers {
      * @return a matcher that checks if an element is present in the browser
      */
     public static Matcher<Path> isPresent() {
-        return  new IsPresent().in(new InBrowser(InBrowserSinglton.driver));
+        return  new IsPresent().in(new InBrowser(InBrowserSinglton.getDriver()));
     }
 
     /**
@@ -80,7 +80,7 @@ public final class CustomMatchers {
      * @return a custom Hamcrest matcher
      */
     public static Matcher<Path> hasText(String text) {
-        InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+        InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
         return new HasText(text).in(browser);
     }
 
@@ -94,7 +94,7 @@ public final class CustomMatchers {
     public static Matcher<Path> isDisplayed() {
         return new TypeSafeMatcher<Path>() {
             private Path el;
-            private final InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+            private final InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
 
             @Override
             public String toString() {
@@ -115,13 +115,7 @@ public final class CustomMatchers {
             @Override
             protected boolean matchesSafely(final Path el) {
                 this.el = el;
-                Wait<WebDriver> wait = getWaiter();
-                try {
-                    wait.until(ExpectedConditions.visibilityOf(browser.find(el)));
-                    return true;
-                } catch (Throwable e) {
-                    return false;
-                }
+                return waitUntil(browser, el, WaitCondition.DISPLAYED);
             }
         };
     }
@@ -137,7 +131,7 @@ public final class CustomMatchers {
     public static Matcher<Path> isNotDisplayed() {
         return new TypeSafeMatcher<Path>() {
             private Path el;
-            private final InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+            private final InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
 
             @Override
             public String toString() {
@@ -158,15 +152,7 @@ public final class CustomMatchers {
             @Override
             protected boolean matchesSafely(final Path el) {
                 this.el = el;
-                Wait<WebDriver> wait = getWaiter();
-                try {
-                    wait.until(ExpectedConditions.invisibilityOf(browser.find(el)));
-                    return true;
-                } catch (NoSuchElementException ex) {
-                    return true;
-                } catch (Throwable e) {
-                    return false;
-                }
+                return waitUntil(browser, el, WaitCondition.NOT_DISPLAYED);
             }
         };
     }
@@ -181,7 +167,7 @@ public final class CustomMatchers {
     public static Matcher<Path> isSelected() {
         return new TypeSafeMatcher<Path>() {
             private Path el;
-            private final InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+            private final InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
 
             @Override
             public String toString() {
@@ -202,13 +188,7 @@ public final class CustomMatchers {
             @Override
             protected boolean matchesSafely(final Path el) {
                 this.el = el;
-                Wait<WebDriver> wait = getWaiter();
-                try {
-                    wait.until(elementSelectionStateToBe(browser.find(el), true));
-                    return true;
-                } catch (Throwable ex) {
-                    return false;
-                }
+                return waitUntil(browser, el, WaitCondition.SELECTED);
             }
         };
     }
@@ -223,7 +203,7 @@ public final class CustomMatchers {
     public static Matcher<Path> isNotSelected() {
         return new TypeSafeMatcher<Path>() {
             private Path el;
-            private final InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+            private final InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
 
             @Override
             public String toString() {
@@ -244,14 +224,7 @@ public final class CustomMatchers {
             @Override
             protected boolean matchesSafely(final Path el) {
                 this.el = el;
-                Wait<WebDriver> wait = getWaiter();
-                try {
-                    wait.until(elementSelectionStateToBe(
-                            browser.find(el), false));
-                    return true;
-                } catch (Throwable ex) {
-                    return false;
-                }
+                return waitUntil(browser, el, WaitCondition.NOT_SELECTED);
             }
         };
     }
@@ -266,7 +239,7 @@ public final class CustomMatchers {
     public static Matcher<Path> isEnabled() {
         return new TypeSafeMatcher<Path>() {
             private Path el;
-            private final InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+            private final InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
 
             @Override
             public String toString() {
@@ -304,7 +277,7 @@ public final class CustomMatchers {
     public static Matcher<Path> isAbsent() {
         return new TypeSafeMatcher<Path>() {
             private Path el;
-            private final InBrowser browser = new InBrowser(InBrowserSinglton.driver);
+            private final InBrowser browser = new InBrowser(InBrowserSinglton.getDriver());
 
             @Override
             public String toString() {
@@ -329,4 +302,28 @@ public final class CustomMatchers {
             }
         };
     }
+
+    /**
+     * Successful if all the given paths are present in the browser. All the paths are checked in a single round
+     * trip to the browser, without waiting.
+     * For example:
+     * {@code assertThat( asList(header, menu, footer), areAllPresent()); }
+     *
+     * @return a matcher that is successful if all the elements are present in the browser
+     */
+    public static Matcher<List<? extends Path>> areAllPresent() {
+        return com.github.loyada.jdollarx.custommatchers.CustomMatchers.areAllPresentIn(new InBrowser(InBrowserSinglton.getDriver()));
+    }
+
+    /**
+     * Successful if none of the given paths is present in the browser. All the paths are checked in a single round
+     * trip to the browser, without waiting.
+     * For example:
+     * {@code assertThat( asList(errorMessage, spinner), areAllAbsent()); }
+     *
+     * @return a matcher that is successful if none of the elements appears in the browser
+     */
+    public static Matcher<List<? extends Path>> areAllAbsent() {
+        return com.github.loyada.jdollarx.custommatchers.CustomMatchers.areAllAbsentFrom(new InBrowser(InBrowserSinglton.getDriver()));
+    }
 }
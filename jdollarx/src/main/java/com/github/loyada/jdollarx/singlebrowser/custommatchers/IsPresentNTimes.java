@@ -43,15 +43,15 @@ public class IsPresentNTimes {
 
 
     public Matcher<Path> times(){
-        return new NTimesMatcher(nTimes, exactly, new InBrowser(InBrowserSinglton.driver));
+        return new NTimesMatcher(nTimes, exactly, new InBrowser(InBrowserSinglton.getDriver()));
     }
 
     public Matcher<Path> timesOrMore(){
-        return new NTimesMatcher(nTimes, orMore, new InBrowser(InBrowserSinglton.driver));
+        return new NTimesMatcher(nTimes, orMore, new InBrowser(InBrowserSinglton.getDriver()));
     }
 
     public Matcher<Path> timesOrLess(){
-        return new NTimesMatcher(nTimes, orLess, new InBrowser(InBrowserSinglton.driver));
+        return new NTimesMatcher(nTimes, orLess, new InBrowser(InBrowserSinglton.getDriver()));
     }
 
 }
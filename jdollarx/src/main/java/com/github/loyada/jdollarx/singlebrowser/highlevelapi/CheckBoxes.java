@@ -5,7 +5,7 @@ import com.github.loyada.jdollarx.InBrowser;
 import com.github.loyada.jdollarx.Path;
 import com.github.loyada.jdollarx.highlevelapi.CheckBox;
 
-import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.driver;
+import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.getDriver;
 
 
 
@@ -23,7 +23,7 @@ public final class CheckBoxes {
      * @return a high level instance of CheckBox
      */
     public static CheckBox checkBoxWithLabel(String labelText) {
-        return new CheckBox(new InBrowser(driver), labelText);
+        return new CheckBox(new InBrowser(getDriver()), labelText);
     }
 
     /**
@@ -33,7 +33,7 @@ public final class CheckBoxes {
      * @return a high level instance of CheckBox
      */
     public static CheckBox checkboxForInput(Path inputEl, String name) {
-        return new CheckBox(new InBrowser(driver), inputEl, name);
+        return new CheckBox(new InBrowser(getDriver()), inputEl, name);
     }
 
     /**
@@ -42,7 +42,7 @@ public final class CheckBoxes {
      * @return a high level instance of CheckBox
      */
     public static CheckBox checkBoxWithProperties(ElementProperty... props) {
-        return new CheckBox(new InBrowser(driver), props);
+        return new CheckBox(new InBrowser(getDriver()), props);
     }
 
 
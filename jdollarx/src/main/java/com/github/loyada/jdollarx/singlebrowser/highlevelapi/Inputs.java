@@ -9,7 +9,7 @@ import java.util.concurrent.TimeUnit;
 
 import static com.github.loyada.jdollarx.BasicPath.input;
 import static com.github.loyada.jdollarx.BasicPath.textNode;
-import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.driver;
+import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.getDriver;
 
 /**
  * High-level API to define and interact with various input elements.
@@ -28,7 +28,7 @@ public final class Inputs {
      * @return a Path to the input, on a best effort basis
      */
     public static Path inputForLabel(String labelText) {
-        return com.github.loyada.jdollarx.highlevelapi.Inputs.inputForLabel(new InBrowser(driver), labelText);
+        return com.github.loyada.jdollarx.highlevelapi.Inputs.inputForLabel(new InBrowser(getDriver()), labelText);
     }
 
     /**
@@ -45,7 +45,7 @@ public final class Inputs {
      * @param field the input element
      */
     public static void clearInput(Path field) throws Operations.OperationFailedException {
-        com.github.loyada.jdollarx.highlevelapi.Inputs.clearInput(new InBrowser(driver), field);
+        com.github.loyada.jdollarx.highlevelapi.Inputs.clearInput(new InBrowser(getDriver()), field);
     }
 
     /**
@@ -56,7 +56,7 @@ public final class Inputs {
      */
     public static void selectInFieldWithLabel(String labelText, String option) {
         com.github.loyada.jdollarx.highlevelapi.Inputs.selectInFieldWithLabel(
-                new InBrowser(driver), labelText, option);
+                new InBrowser(getDriver()), labelText, option);
     }
 
     /**
@@ -67,7 +67,7 @@ public final class Inputs {
      */
     public static void changeInputValue(Path field, String text) throws Operations.OperationFailedException {
         com.github.loyada.jdollarx.highlevelapi.Inputs.changeInputValue(
-                new InBrowser(driver), field, text);
+                new InBrowser(getDriver()), field, text);
     }
 
     /**
@@ -78,7 +78,7 @@ public final class Inputs {
      */
     public static void changeInputValueAssumingElementIsNotReplaced(Path field, String text) throws Operations.OperationFailedException {
         com.github.loyada.jdollarx.highlevelapi.Inputs.changeInputValueAssumingElementIsNotReplaced(
-                new InBrowser(driver), field, text);
+                new InBrowser(getDriver()), field, text);
     }
 
     /**
@@ -89,7 +89,7 @@ public final class Inputs {
      */
     public static void changeInputValueWithApproximateDeletion(Path field, String text) throws Operations.OperationFailedException {
         com.github.loyada.jdollarx.highlevelapi.Inputs.changeInputValueWithQuickApproximateDeletion(
-                new InBrowser(driver), field, text);
+                new InBrowser(getDriver()), field, text);
     }
 
     /**
@@ -100,7 +100,7 @@ public final class Inputs {
      */
     public static void changeInputValueNonStrictClearing(Path field, String text) throws Operations.OperationFailedException {
         com.github.loyada.jdollarx.highlevelapi.Inputs.changeInputValueNonStrictClearing(
-                new InBrowser(driver), field, text);
+                new InBrowser(getDriver()), field, text);
     }
 
     /**
@@ -111,7 +111,7 @@ public final class Inputs {
      */
     public static void changeInputValueWithEnter(Path field, String text) throws Operations.OperationFailedException {
         com.github.loyada.jdollarx.highlevelapi.Inputs.changeInputValueWithEnter(
-                new InBrowser(driver), field, text);
+                new InBrowser(getDriver()), field, text);
     }
 
     /**
@@ -123,7 +123,7 @@ public final class Inputs {
      */
     public static void changeInputValueWithEnterApproximateDeletion(Path field, String text) throws Operations.OperationFailedException {
         com.github.loyada.jdollarx.highlevelapi.Inputs.changeInputValueWithApproximateDeletionWithEnter(
-                new InBrowser(driver), field, text);
+                new InBrowser(getDriver()), field, text);
     }
 
 
@@ -146,7 +146,7 @@ public final class Inputs {
     }
 
     public static void selectDropdownOption(Path dropdownContent, Path myOption) {
-        InBrowser browser = new InBrowser(driver);
+        InBrowser browser = new InBrowser(getDriver());
         browser.setImplicitTimeout((int)InBrowserSinglton.getImplicitTimeoutInMillisec(), TimeUnit.MILLISECONDS);
         com.github.loyada.jdollarx.highlevelapi.Inputs.selectDropdownOption(
                 browser, dropdownContent, myOption);
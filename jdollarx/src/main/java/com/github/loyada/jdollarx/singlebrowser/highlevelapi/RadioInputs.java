@@ -6,7 +6,7 @@ import com.github.loyada.jdollarx.highlevelapi.RadioInput;
 
 import java.util.concurrent.TimeUnit;
 
-import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.driver;
+import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.getDriver;
 
 /**
  * High-level API to define a with high level instance of radio input
@@ -27,7 +27,7 @@ public final class RadioInputs {
      * @return a RadioInput instance
      */
     public static RadioInput withTextUnknownDOM(String text, int originalImplicitWait, TimeUnit timeUnit) {
-       return RadioInput.withTextUnknownDOM(new InBrowser(driver), text, originalImplicitWait, timeUnit);
+       return RadioInput.withTextUnknownDOM(new InBrowser(getDriver()), text, originalImplicitWait, timeUnit);
     }
 
     /**
@@ -37,7 +37,7 @@ public final class RadioInputs {
      * @return - a RadioInput instance
      */
     public static RadioInput withLabeledText(String labelText) {
-        return RadioInput.withLabeledText(new InBrowser(driver), labelText);
+        return RadioInput.withLabeledText(new InBrowser(getDriver()), labelText);
     }
 
     /**
@@ -51,7 +51,7 @@ public final class RadioInputs {
      * @return - a RadioInput instance
      */
     public static RadioInput withUnlabeledText(String text) {
-        return RadioInput.withUnlabeledText(new InBrowser(driver), text);
+        return RadioInput.withUnlabeledText(new InBrowser(getDriver()), text);
     }
 
 
@@ -62,6 +62,6 @@ public final class RadioInputs {
      * @return a radio input with some custom properties
      */
     public static RadioInput withProperties(ElementProperty... props){
-        return new RadioInput(new InBrowser(driver), props);
+        return new RadioInput(new InBrowser(getDriver()), props);
     }
 }
@@ -6,7 +6,7 @@ import org.openqa.selenium.WebElement;
 
 import java.util.Map;
 
-import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.driver;
+import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.getDriver;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.find;
 import static java.lang.String.format;
 
@@ -29,27 +29,27 @@ class SizingUtils {
         return format("'%s'", s);
     }
     static  void setDimensions(Path path, String width, String height) {
-        JavascriptExecutor js = (JavascriptExecutor) driver;
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
         WebElement el = find(path);
         String script = format("arguments[0].style.width=%s;  arguments[0].style.height=%s;", correct(width), correct(height));
         js.executeScript(script, el);
     }
 
     static Map<String, Long> getVisibleDimensions(Path path) {
-        JavascriptExecutor js = (JavascriptExecutor) driver;
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
         WebElement el = find(path);
         return castToMap(js.executeScript("return  { 'height':  arguments[0].clientHeight, 'width':   arguments[0].clientWidth};", el));
     }
 
 
     static Map<String, Long> getScrollableDimensions(Path path) {
-        JavascriptExecutor js = (JavascriptExecutor) driver;
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
         WebElement el = find(path);
         return castToMap(js.executeScript("return  { 'height':  arguments[0].scrollHeight, 'width':   arguments[0].scrollWidth};", el));
     }
 
     static Map<String, String> getStylingDimensions(Path path) {
-        JavascriptExecutor js = (JavascriptExecutor) driver;
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
         WebElement el = find(path);
         return castToMap(js.executeScript("return  { 'height':  arguments[0].style.height, 'width':   arguments[0].style.width};", el));
     }
@@ -29,12 +29,12 @@ public class WindowResizer implements AutoCloseable {
         Long originalWidth = dimensions.get(WIDTH);
         originalStyling = SizingUtils.getStylingDimensions(html);
 
-        totalOriginalDimensions  = driver.manage().window().getSize();
+        totalOriginalDimensions  = getDriver().manage().window().getSize();
         int heightOverhead = totalOriginalDimensions.getHeight() - originalHeight.intValue();
         int widthOverhead = totalOriginalDimensions.getWidth() - originalWidth.intValue();
 
-        driver.manage().window().setPosition(new Point(1,1));
-        driver.manage().window().setSize(new Dimension(expectedWidth + widthOverhead, expectedHeight + heightOverhead));
+        getDriver().manage().window().setPosition(new Point(1,1));
+        getDriver().manage().window().setSize(new Dimension(expectedWidth + widthOverhead, expectedHeight + heightOverhead));
         SizingUtils.setDimensions(html, expectedWidth, expectedHeight);
     }
 
@@ -77,7 +77,7 @@ public class WindowResizer implements AutoCloseable {
     public void close()  {
         SizingUtils.setDimensions(html,
                     originalStyling.get(WIDTH), originalStyling.get(HEIGHT));
-        driver.manage().window().setSize(totalOriginalDimensions);
+        getDriver().manage().window().setSize(totalOriginalDimensions);
     }
 
 
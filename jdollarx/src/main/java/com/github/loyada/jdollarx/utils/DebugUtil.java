@@ -21,7 +21,7 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.driver;
+import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.getDriver;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.find;
 import static com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton.findAll;
 import static java.lang.String.format;
@@ -87,14 +87,14 @@ public final class DebugUtil {
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
-        JavascriptExecutor js = (JavascriptExecutor) driver;
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
         IntStream.range(0, els.size()).forEach(ind ->
             js.executeScript(format("arguments[0].setAttribute('style', '%s');", oldStyles.get(ind))
                 , els.get(ind)));
     }
 
     private static String highlight_internal(WebElement webEl) {
-        JavascriptExecutor js = (JavascriptExecutor) driver;
+        JavascriptExecutor js = (JavascriptExecutor) getDriver();
         String oldStyle = webEl.getAttribute("style");
 
         js.executeScript("arguments[0].setAttribute('style', arguments[1] + ' background: yellow; border: 4px solid red;');",
@@ -108,7 +108,7 @@ public final class DebugUtil {
      * @return a W3C document
      */
     public static  org.w3c.dom.Document getPageAsW3CDoc() {
-        String html = (String)((JavascriptExecutor) driver).executeScript("return document.documentElement.outerHTML");
+        String html = (String)((JavascriptExecutor) getDriver()).executeScript("return document.documentElement.outerHTML");
         org.jsoup.nodes.Document jsoupDoc = Jsoup.parse(html);
         return DOMBuilder.jsoup2DOM(jsoupDoc);
     }
@@ -0,0 +1,104 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AsyncInBrowserTest {
+
+    @Test
+    public void operationsOnTheSameDriverRunSeriallyInOrder() throws Exception {
+        WebDriver driver = mock(WebDriver.class);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AsyncInBrowser first = new AsyncInBrowser(driver);
+        AsyncInBrowser second = new AsyncInBrowser(new InBrowser(driver));
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            futures.add((i % 2 == 0 ? first : second).run(browser -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(index);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertThat(maxRunning.get(), is(1));
+        for (int i = 0; i < 20; i++) {
+            assertThat(order.get(i), is(i));
+        }
+    }
+
+    @Test
+    public void operationsOnDifferentDriversRunConcurrently() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<CompletableFuture<WebElement>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            WebDriver driver = mock(WebDriver.class);
+            WebElement element = mock(WebElement.class);
+            when(driver.findElement(By.xpath("//div"))).thenAnswer(invocation -> {
+                bothStarted.countDown();
+                // completes only if the other driver is used at the same time
+                return bothStarted.await(5, TimeUnit.SECONDS) ? element : null;
+            });
+            futures.add(new AsyncInBrowser(driver).find(div));
+        }
+        for (CompletableFuture<WebElement> future : futures) {
+            assertThat(future.get(10, TimeUnit.SECONDS) != null, is(true));
+        }
+    }
+
+    @Test
+    public void failuresCompleteTheFutureExceptionally() throws Exception {
+        WebDriver driver = mock(WebDriver.class);
+        when(driver.findElement(By.xpath("//div"))).thenThrow(new NoSuchElementException("no div"));
+        AsyncInBrowser async = new AsyncInBrowser(driver);
+        try {
+            async.find(div).get(5, TimeUnit.SECONDS);
+            fail("expected to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(NoSuchElementException.class));
+        }
+        // the failure does not block the following operations
+        assertThat(async.submit(browser -> "next").get(5, TimeUnit.SECONDS), is("next"));
+    }
+
+    @Test
+    public void virtualThreadsAreUsedWhenAvailable() {
+        boolean available;
+        try {
+            java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            available = true;
+        } catch (NoSuchMethodException e) {
+            available = false;
+        }
+        assertThat(AsyncInBrowser.usesVirtualThreads(), is(available));
+    }
+}
@@ -5,6 +5,8 @@ import org.junit.Test;
 import org.openqa.selenium.WebElement;
 import org.w3c.dom.NodeList;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.hamcrest.CoreMatchers.*;
 import static org.mockito.Mockito.mock;
 
@@ -461,4 +463,60 @@ public class BasicPathTest extends XPathTester {
         assertThat(getText(nodes.item(1)), equalTo("2"));
     }
 
+    @Test
+    public void derivedStringsAreComputedOnce() {
+        Path el = span.withClass("foo").inside(div.that(hasText("bar")));
+        assertThat(el.getXPath().get(), sameInstance(el.getXPath().get()));
+        assertThat(el.getAlternateXPath().get(), sameInstance(el.getAlternateXPath().get()));
+        assertThat(el.toString(), sameInstance(el.toString()));
+        assertThat(el.getXPath().get(), equalTo("div[translate(text(), 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz') = 'bar']//span[contains(concat(' ', normalize-space(@class), ' '), ' foo ')]"));
+    }
+
+    @Test
+    public void structurallyIdenticalPathsAreEqual() {
+        Path el1 = span.withClass("foo").inside(div.that(hasText("bar")));
+        Path el2 = span.that(hasClass("foo")).inside(div.withText("bar"));
+        assertThat(el1, equalTo(el2));
+        assertThat(el1.hashCode(), equalTo(el2.hashCode()));
+        assertThat(el1, not(equalTo(span.withClass("foo").inside(div.that(hasText("baz"))))));
+        assertThat(el1, not(equalTo(el1.describedBy("my span"))));
+    }
+
+    @Test
+    public void internReturnsCanonicalInstance() {
+        BasicPath el1 = (BasicPath) span.that(hasAttribute("row-index", "3"));
+        BasicPath el2 = (BasicPath) span.that(hasAttribute("row-index", "3"));
+        assertThat(el1, not(sameInstance(el2)));
+        assertThat(el2.intern(), sameInstance(el1.intern()));
+    }
+
+    @Test
+    public void descriptionsAreRenderedOnlyWhenRead() {
+        AtomicInteger described = new AtomicInteger();
+        ElementProperty prop = new ElementProperty() {
+            @Override
+            public String toXpath() {
+                return "@a";
+            }
+
+            @Override
+            public String toString() {
+                described.incrementAndGet();
+                return "has a";
+            }
+        };
+        Path el = span.that(prop);
+        for (int i = 0; i < 50; i++) {
+            el = (i % 2 == 0) ? el.inside(div.that(prop)) : div.that(prop).childOf(el);
+        }
+        el.getXPath();
+        assertThat(described.get(), equalTo(0));
+
+        assertThat(el.toString(), startsWith("div, that has a, child of div, that has a, child of "));
+        int afterFirstRendering = described.get();
+        assertThat(afterFirstRendering, not(equalTo(0)));
+        el.toString();
+        assertThat(described.get(), equalTo(afterFirstRendering));
+    }
+
 }
@@ -0,0 +1,134 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.Test;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BrowserPoolTest {
+    private final List<WebDriver> drivers = new ArrayList<>();
+
+    private final Supplier<WebDriver> factory = () -> {
+        WebDriver driver = mock(WebDriver.class, RETURNS_DEEP_STUBS);
+        when(driver.getWindowHandle()).thenReturn("window");
+        drivers.add(driver);
+        return driver;
+    };
+
+    @Test
+    public void returnedSessionIsResetAndReused() {
+        BrowserPool pool = BrowserPool.builder(factory).build();
+        WebDriver first;
+        try (BrowserPool.Lease lease = pool.lease()) {
+            first = lease.getDriver();
+            assertThat(lease.getBrowser().getDriver(), is(first));
+        }
+        verify(first.manage()).deleteAllCookies();
+        verify(first).get("about:blank");
+        try (BrowserPool.Lease lease = pool.lease()) {
+            assertThat(lease.getDriver(), is(first));
+        }
+        assertThat(pool.getStatistics().getCreated(), is(1L));
+        assertThat(pool.getStatistics().getLeases(), is(2L));
+        assertThat(pool.getStatistics().getEvictions(), is(0L));
+    }
+
+    @Test
+    public void warmSessionsAreCreatedInAdvance() {
+        BrowserPool pool = BrowserPool.builder(factory).withMaxSessions(3).withWarmSessions(2).build();
+        assertThat(drivers.size(), is(2));
+        assertThat(pool.getStatistics().getSessions(), is(2));
+        assertThat(pool.getStatistics().getLeased(), is(0));
+
+        try (BrowserPool.Lease ignored = pool.lease()) {
+            assertThat(drivers.size(), is(2));
+            assertThat(pool.getStatistics().getUtilization(), is(1.0 / 3));
+        }
+    }
+
+    @Test
+    public void unhealthySessionIsEvicted() {
+        BrowserPool pool = BrowserPool.builder(factory).build();
+        WebDriver first;
+        try (BrowserPool.Lease lease = pool.lease()) {
+            first = lease.getDriver();
+            when(first.getWindowHandle()).thenThrow(new WebDriverException("session deleted"));
+        }
+        verify(first).quit();
+        try (BrowserPool.Lease lease = pool.lease()) {
+            assertThat(lease.getDriver(), is(not(first)));
+        }
+        assertThat(pool.getStatistics().getEvictions(), is(1L));
+        assertThat(pool.getStatistics().getCreated(), is(2L));
+    }
+
+    @Test
+    public void sessionIsEvictedAfterMaxLeasesOrWhenMarked() {
+        BrowserPool pool = BrowserPool.builder(factory).withMaxLeasesPerSession(2).build();
+        pool.lease().close();
+        pool.lease().close();
+        assertThat(drivers.size(), is(1));
+        verify(drivers.get(0)).quit();
+
+        BrowserPool.Lease lease = pool.lease();
+        lease.markUnhealthy();
+        lease.close();
+        lease.close();
+        verify(drivers.get(1)).quit();
+        assertThat(pool.getStatistics().getEvictions(), is(2L));
+        assertThat(pool.getStatistics().getSessions(), is(0));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void leaseTimesOutWhenPoolIsFull() {
+        BrowserPool pool = BrowserPool.builder(factory).build();
+        pool.lease();
+        pool.lease(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void waitingLeaseGetsReturnedSession() throws Exception {
+        BrowserPool pool = BrowserPool.builder(factory).withLeaseTimeout(Duration.ofSeconds(10)).build();
+        BrowserPool.Lease first = pool.lease();
+        CompletableFuture<WebDriver> waiting = CompletableFuture.supplyAsync(() -> {
+            try (BrowserPool.Lease lease = pool.lease()) {
+                return lease.getDriver();
+            }
+        });
+        Thread.sleep(50);
+        assertThat(waiting.isDone(), is(false));
+        first.close();
+
+        assertThat(waiting.get(5, TimeUnit.SECONDS), is(first.getDriver()));
+        assertThat(drivers.size(), is(1));
+        assertThat(pool.getStatistics().getMaxWait().toMillis() >= 50, is(true));
+    }
+
+    @Test
+    public void closeQuitsIdleSessions() {
+        BrowserPool pool = BrowserPool.builder(factory).withMaxSessions(2).build();
+        BrowserPool.Lease leased = pool.lease();
+        pool.lease().close();
+        pool.close();
+        verify(drivers.get(1)).quit();
+        verify(leased.getDriver(), never()).quit();
+        leased.close();
+        verify(leased.getDriver()).quit();
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.loyada.jdollarx;
+
+import org.jsoup.Jsoup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static com.github.loyada.jdollarx.BasicPath.*;
+import static com.github.loyada.jdollarx.ElementProperties.*;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CssSelectorCompilerTest {
+
+    private static final List<String> documents = Arrays.asList(
+            "<div id='a' class='x y'><span class='x'>foo</span><span class='y' title='t'>bar</span><span>baz</span></div>" +
+                    "<div class='y'><span>Foo</span><p>foo<b>bar</b></p><input disabled='true'/><input/></div>",
+            "<div><ul><li class='item'>one</li><li class='item selected'>two</li><li>three</li><li class='item'>four</li></ul>" +
+                    "<div class='wrapper'><ul><li id='x' class='item'>five</li><li class='other'>six</li></ul></div></div>"
+    );
+
+    private static final List<Path> paths = Arrays.asList(
+            span,
+            span.withClass("x"),
+            element.withClasses("x", "y"),
+            span.that(hasId("a")),
+            span.that(hasTitle("t")),
+            element.that(hasAnyOfClasses("x")),
+            element.that(hasNonOfTheClasses("x", "item")),
+            span.that(not(hasClass("x"))),
+            input.that(isDisabled),
+            input.that(isEnabled),
+            span.inside(div.withClass("x")),
+            listItem.withClass("item").inside(div.withClass("wrapper")),
+            span.childOf(div.that(hasId("a"))),
+            listItem.that(isChildOf(unorderedList)),
+            span.that(isInside(div.withClass("y"))),
+            span.afterSibling(span.withClass("x")),
+            span.immediatelyAfterSibling(span.withClass("x")),
+            span.that(isAfterSibling(span.withClass("x"))),
+            listItem.that(isNthSibling(1)),
+            listItem.that(isNthFromLastSibling(0)),
+            listItem.that(isLastSibling),
+            childNumber(2).ofType(listItem),
+            listItem.that(isWithIndex(0)),
+            span.that(hasClass("x").and(hasTitle("t")))
+    );
+
+    @Before
+    public void setup() {
+        InBrowserFinder.resetLookupCounters();
+    }
+
+    @After
+    public void teardown() {
+        CssSelectorCompiler.disable();
+        InBrowserFinder.resetLookupCounters();
+    }
+
+    @Test
+    public void compiledSelectors() {
+        assertThat(css(span.withClass("x")), equalTo(Optional.of("span.x")));
+        assertThat(css(span.that(hasId("a"), hasClass("b"))), equalTo(Optional.of("span#a.b")));
+        assertThat(css(span.that(hasTitle("a \"b\""))), equalTo(Optional.of("span[title=\"a \\\"b\\\"\"]")));
+        assertThat(css(div.withClass("x").inside(span.that(hasId("y")))), equalTo(Optional.of("span#y div.x")));
+        assertThat(css(span.childOf(div.withClass("x"))), equalTo(Optional.of("div.x > span")));
+        assertThat(css(span.immediatelyAfterSibling(div)), equalTo(Optional.of("div + span")));
+        assertThat(css(element.that(hasNonOfTheClasses("a", "b"))), equalTo(Optional.of("*:not(.a):not(.b)")));
+        assertThat(css(childNumber(3).ofType(listItem)), equalTo(Optional.of("li:nth-of-type(3)")));
+        assertThat(css(listItem.that(isNthSibling(2))), equalTo(Optional.of("li:nth-child(3)")));
+    }
+
+    @Test
+    public void unsupportedPathsAreNotCompiled() {
+        assertThat(css(span.withText("x")), equalTo(Optional.empty()));
+        assertThat(css(div.contains(span)), equalTo(Optional.empty()));
+        assertThat(css(div.or(span)), equalTo(Optional.empty()));
+        assertThat(css(firstOccurrenceOf(div)), equalTo(Optional.empty()));
+        assertThat(css(input.that(hasAttribute("type", "text"))), equalTo(Optional.empty()));
+        assertThat(css(childNumber(2).ofType(listItem.withClass("a"))), equalTo(Optional.empty()));
+        assertThat(css(span.that(isInside(div), isChildOf(section))), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void selectorsFindTheSameElementsAsXpath() throws Exception {
+        for (String html : documents) {
+            Document doc = PathParsers.getDocumentFromString("<html><body>" + html + "</body></html>");
+            org.jsoup.nodes.Document jsoupDoc = Jsoup.parse("<html><body>" + html + "</body></html>");
+            for (Path path : paths) {
+                String selector = css(path).orElseThrow(() -> new AssertionError("not compiled: " + path));
+                List<String> byXpath = describe(PathParsers.findAllByPath(doc, path));
+                List<String> byCss = jsoupDoc.select(selector).stream().
+                        filter(e -> e.parents().contains(jsoupDoc.body())).
+                        map(e -> e.tagName() + ":" + e.text().replaceAll("\\s", "")).
+                        collect(Collectors.toList());
+                assertThat(path + " -> " + selector, byCss, equalTo(byXpath));
+            }
+        }
+    }
+
+    @Test
+    public void findUsesCssWhenEnabled() {
+        WebDriver driverMock = mock(WebDriver.class);
+        WebElement webElement = mock(WebElement.class);
+        when(driverMock.findElement(By.cssSelector("div.x"))).thenReturn(webElement);
+        when(driverMock.findElement(By.xpath("//div[contains(text(), 'a')]"))).thenReturn(webElement);
+        CssSelectorCompiler.enable();
+
+        assertThat(InBrowserFinder.find(driverMock, div.withClass("x")), is(webElement));
+        assertThat(InBrowserFinder.find(driverMock, div.that(hasCaseSensitiveTextContaining("a"))), is(webElement));
+        assertThat(InBrowserFinder.getCssLookups(), is(1L));
+        assertThat(InBrowserFinder.getXpathLookups(), is(1L));
+    }
+
+    @Test
+    public void findUsesXpathWhenDisabled() {
+        WebDriver driverMock = mock(WebDriver.class);
+        WebElement webElement = mock(WebElement.class);
+        when(driverMock.findElement(By.xpath("//div[contains(concat(' ', normalize-space(@class), ' '), ' x ')]"))).
+                thenReturn(webElement);
+
+        assertThat(InBrowserFinder.find(driverMock, div.withClass("x")), is(webElement));
+        assertThat(InBrowserFinder.getCssLookups(), is(0L));
+    }
+
+    private static Optional<String> css(Path path) {
+        return ((BasicPath) path).getCssSelector();
+    }
+
+    private static List<String> describe(NodeList nodeList) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Node node = nodeList.item(i);
+            if (!Arrays.asList("html", "body").contains(node.getNodeName())) {
+                result.add(node.getNodeName() + ":" + node.getTextContent().replaceAll("\\s", ""));
+            }
+        }
+        return result;
+    }
+}
@@ -10,6 +10,8 @@ import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
+import java.util.Arrays;
+
 import static com.github.loyada.jdollarx.BasicPath.div;
 import static com.github.loyada.jdollarx.BasicPath.html;
 import static com.github.loyada.jdollarx.BasicPath.span;
@@ -96,7 +98,7 @@ public class CustomMatchersTest {
 
     @Test
     public void isAbsentFailed() {
-        when(browser.isPresent(eq(html.that(ElementProperties.not(contains(div)))))).thenThrow(new NoSuchElementException(""));
+        when(browser.isPresent(eq(html.that(ElementProperties.not(contains(div)))))).thenReturn(false);
         try {
             assertThat(div, CustomMatchers.isAbsentFrom(browser));
             fail("should fail");
@@ -285,4 +287,21 @@ public class CustomMatchersTest {
         }
     }
 
+    @Test
+    public void areAllPresentFailed() {
+        when(browser.presenceOf(any())).thenReturn(Arrays.asList(true, false, false));
+        try {
+            assertThat(Arrays.asList(div, span, span.inside(div)), CustomMatchers.areAllPresentIn(browser));
+            fail("should fail");
+        } catch (AssertionError e) {
+            assertThat(e.getMessage(), is(equalTo("\nExpected: browser page contains all of [<div>, <span>, <span, inside div>]" +
+                    "\n     but: span, (span, inside div) absent")));
+        }
+    }
+
+    @Test
+    public void areAllAbsentSuccess() {
+        when(browser.presenceOf(any())).thenReturn(Arrays.asList(false, false));
+        assertThat(Arrays.asList(div, span), CustomMatchers.areAllAbsentFrom(browser));
+    }
 }
@@ -1,19 +1,34 @@
 package com.github.loyada.jdollarx;
 
+import com.github.loyada.jdollarx.singlebrowser.InBrowserSinglton;
 import org.junit.Before;
 import org.junit.Test;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.SessionId;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 
 public class InBrowserFinderTest {
@@ -70,5 +85,137 @@ public class InBrowserFinderTest {
         Path path = BasicPath.builder().withUnderlying(webElement).withXpath("div").build();
         assertThat(InBrowserFinder.findPageWithNumberOfOccurrences(driverMock, path, 5), is(webElement2));
     }
-}
 
+    @Test
+    public void findManyInSingleRoundTrip() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        AtomicReference<Object[]> scriptArgs = new AtomicReference<>();
+        when(((JavascriptExecutor) jsDriver).executeScript(anyString(), anyVararg())).thenAnswer(invocation -> {
+            scriptArgs.set(invocation.getArguments());
+            return Arrays.asList(webElement, null, webElement2);
+        });
+        Path underDiv = BasicPath.builder().withUnderlying(webElement).withXpath("span").build();
+        InBrowser jsBrowser = new InBrowser(jsDriver);
+
+        try {
+            jsBrowser.findMany(Arrays.asList(BasicPath.div, BasicPath.span.withClass("a"), underDiv));
+            throw new AssertionError("should fail");
+        } catch (NoSuchElementException e) {
+            assertThat(e.getMessage().startsWith("could not find span, that has class a"), is(true));
+        }
+        verify((JavascriptExecutor) jsDriver, times(1)).executeScript(anyString(), anyVararg());
+        assertThat(scriptArgs.get()[1], equalTo(Arrays.asList(
+                Arrays.asList("xpath", "//div", false),
+                Arrays.asList("xpath", "//span[contains(concat(' ', normalize-space(@class), ' '), ' a ')]", false),
+                Arrays.asList("xpath", "span", webElement))));
+        assertThat(scriptArgs.get()[2], equalTo("find"));
+    }
+
+    @Test
+    public void countManyAndPresence() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) jsDriver).executeScript(anyString(), anyVararg())).thenAnswer(invocation ->
+                invocation.getArguments()[2].equals("count") ? Arrays.asList(3L, 0L) : Arrays.asList(true, false));
+        List<Path> paths = Arrays.asList(BasicPath.div, BasicPath.span);
+
+        assertThat(InBrowserFinder.countMany(jsDriver, paths), equalTo(Arrays.asList(3, 0)));
+        assertThat(InBrowserFinder.presenceOf(jsDriver, paths), equalTo(Arrays.asList(true, false)));
+        assertThat(InBrowserFinder.countMany(jsDriver, Collections.emptyList()), equalTo(Collections.emptyList()));
+        verify((JavascriptExecutor) jsDriver, times(2)).executeScript(anyString(), anyVararg());
+    }
+
+    @Test
+    public void probingPredicatesDoNotFindElements() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) jsDriver).executeScript(anyString(), anyVararg())).thenAnswer(invocation ->
+                invocation.getArguments()[2].equals("probe") && ((List<?>) invocation.getArguments()[1]).get(0).equals(
+                        Arrays.asList("xpath", "//div", false)) ?
+                        Collections.singletonList(Arrays.asList(true, false, true, null)) :
+                        Collections.singletonList(null));
+        InBrowser jsBrowser = new InBrowser(jsDriver);
+        jsBrowser.setProbing(true);
+
+        assertThat(jsBrowser.isPresent(BasicPath.div), is(true));
+        assertThat(jsBrowser.isEnabled(BasicPath.div), is(true));
+        assertThat(jsBrowser.isDisplayed(BasicPath.div), is(false));
+        assertThat(jsBrowser.isSelected(BasicPath.div), is(true));
+        assertThat(jsBrowser.isNotPresent(BasicPath.span), is(true));
+        assertThat(jsBrowser.isDisplayed(BasicPath.span), is(false));
+        assertThat(jsBrowser.probe(BasicPath.span).toString(), equalTo("absent"));
+        verify(jsDriver, never()).findElement(any());
+        verify(jsDriver, never()).findElements(any());
+    }
+
+    @Test
+    public void probedVisibilityIsConfirmedWithTheElement() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        // the browser considers both displayed, but an ancestor of the first one has opacity 0
+        when(((JavascriptExecutor) jsDriver).executeScript(anyString(), anyVararg())).thenReturn(Arrays.asList(
+                Arrays.asList(true, true, false, webElement),
+                Arrays.asList(true, true, false, webElement2)));
+        when(webElement.isDisplayed()).thenReturn(false);
+        when(webElement2.isDisplayed()).thenReturn(true);
+        InBrowser jsBrowser = new InBrowser(jsDriver);
+
+        List<ElementProbe> probes = jsBrowser.probeMany(Arrays.asList(BasicPath.div, BasicPath.span));
+        assertThat(probes.get(0).isDisplayed(), is(false));
+        assertThat(probes.get(1).isDisplayed(), is(true));
+        jsBrowser.setProbing(true);
+        assertThat(jsBrowser.isDisplayed(BasicPath.div), is(false));
+        verify(jsDriver, never()).findElement(any());
+    }
+
+    @Test
+    public void cachedElementsAreReusedWhileTheDomIsUnchanged() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        AtomicReference<String> generation = new AtomicReference<>("a:0");
+        when(((JavascriptExecutor) jsDriver).executeScript(anyString(), anyVararg())).thenAnswer(invocation ->
+                generation.get());
+        when(jsDriver.findElement(By.xpath("//div"))).thenReturn(webElement, webElement2);
+        InBrowser jsBrowser = new InBrowser(jsDriver);
+        jsBrowser.setElementCaching(true);
+
+        assertThat(jsBrowser.find(BasicPath.div), is(webElement));
+        assertThat(jsBrowser.find(BasicPath.div), is(webElement));
+        verify(jsDriver, times(1)).findElement(By.xpath("//div"));
+        generation.set("a:1");
+        assertThat(jsBrowser.find(BasicPath.div), is(webElement2));
+        verify(jsDriver, times(2)).findElement(By.xpath("//div"));
+    }
+
+    @Test
+    public void staleCachedElementIsFoundAgain() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) jsDriver).executeScript(anyString(), anyVararg())).thenReturn("a:0");
+        when(jsDriver.findElement(By.xpath("//div"))).thenReturn(webElement, webElement2);
+        when(webElement.getAttribute("class")).thenThrow(new StaleElementReferenceException("stale"));
+        when(webElement2.getAttribute("class")).thenReturn("x y");
+        InBrowser jsBrowser = new InBrowser(jsDriver);
+        jsBrowser.setElementCaching(true);
+
+        assertThat(jsBrowser.getCssClasses(BasicPath.div), equalTo(Arrays.asList("x", "y")));
+        assertThat(jsBrowser.find(BasicPath.div), is(webElement2));
+    }
+
+    @Test
+    public void singletonElementCacheOfAQuitDriverIsRemoved() {
+        RemoteWebDriver quitDriver = mock(RemoteWebDriver.class);
+        when(quitDriver.getSessionId()).thenReturn(new SessionId("1"));
+        WebDriver nextDriver = mock(WebDriver.class);
+        InBrowserSinglton.setElementCaching(true);
+        try {
+            InBrowserSinglton.driver = quitDriver;
+            InBrowser.fromSingleton();
+            assertThat(InBrowser.hasSingletonElementCache(quitDriver), is(true));
+
+            when(quitDriver.getSessionId()).thenReturn(null);
+            InBrowserSinglton.driver = nextDriver;
+            InBrowser.fromSingleton();
+            assertThat(InBrowser.hasSingletonElementCache(quitDriver), is(false));
+            assertThat(InBrowser.hasSingletonElementCache(nextDriver), is(true));
+        } finally {
+            InBrowserSinglton.setElementCaching(false);
+            InBrowserSinglton.driver = null;
+        }
+    }
+}
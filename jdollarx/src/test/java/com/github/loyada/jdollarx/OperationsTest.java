@@ -2,20 +2,35 @@ package com.github.loyada.jdollarx;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.loyada.jdollarx.BasicPath.div;
+import static com.github.loyada.jdollarx.BasicPath.span;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 public class OperationsTest {
     WebDriver driver;
@@ -49,6 +64,14 @@ public class OperationsTest {
         fail("expected to throw NoSuchElementException");
     }
 
+    @Test
+    public void clickWithRetriesWaitsForQuietPage() throws Exception {
+        when(browser.clickOn(any())).thenThrow(NoSuchElementException.class).thenReturn(webel);
+        Operations.doWithRetries(() -> browser.clickOn(div), 5, browser, 30);
+        verify(browser, times(2)).clickOn(div);
+        verify(browser, times(1)).waitUntilQuiet(30, Operations.MAX_QUIET_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
     @Test(expected = TimeoutException.class)
     public void clickInvisibleFailure() throws Exception {
         browser = new InBrowser(driver);
@@ -75,4 +98,137 @@ public class OperationsTest {
         browser.clickOn(div);
     }
 
+    @Test
+    public void scrollSearchRunsInBrowser() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        WebElement wrapperEl = mock(WebElement.class);
+        when(jsDriver.findElement(any())).thenReturn(wrapperEl);
+        when(((JavascriptExecutor) jsDriver).executeAsyncScript(anyString(), anyVararg())).
+                thenReturn(Arrays.asList("found", Collections.singletonList(webel), 12L));
+
+        WebElement found = new Operations.ScrollElement(jsDriver, div).searchingInBrowser().downUntilElementIsPresent(span);
+
+        assertThat(found, is(webel));
+        verify((JavascriptExecutor) jsDriver, times(1)).executeAsyncScript(anyString(), anyVararg());
+        verify((JavascriptExecutor) jsDriver, never()).executeScript(anyString(), anyVararg());
+        verify(jsDriver, never()).findElements(any());
+    }
+
+    @Test
+    public void scrollSearchChecksJavaPredicateOnCandidates() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        WebElement wrapperEl = mock(WebElement.class);
+        WebElement other = mock(WebElement.class);
+        when(jsDriver.findElement(any())).thenReturn(wrapperEl);
+        List<Object[]> calls = new ArrayList<>();
+        when(((JavascriptExecutor) jsDriver).executeAsyncScript(anyString(), anyVararg())).thenAnswer(invocation -> {
+            calls.add(invocation.getArguments());
+            return calls.size() == 1 ?
+                    Arrays.asList("found", Collections.singletonList(other), 2L) :
+                    Arrays.asList("found", Arrays.asList(other, webel), 3L);
+        });
+
+        WebElement found = new Operations.ScrollElement(jsDriver, div, 40).searchingInBrowser().
+                rightUntilPredicate(span, 40, 10, el -> el == webel);
+
+        assertThat(found, is(webel));
+        assertThat(calls.size(), is(2));
+        // [script, wrapper, query, direction, step, max scrolls, condition, scroll first, ...]
+        assertThat(Arrays.asList(calls.get(0)).subList(3, 8), equalTo(Arrays.asList("RIGHT", 40, 10, "CANDIDATES", false)));
+        assertThat(Arrays.asList(calls.get(1)).subList(3, 8), equalTo(Arrays.asList("RIGHT", 40, 8, "CANDIDATES", true)));
+    }
+
+    @Test
+    public void scrollSearchUsesAdaptiveStepAndBrowserVisibility() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        WebElement wrapperEl = mock(WebElement.class);
+        when(jsDriver.findElement(any())).thenReturn(wrapperEl);
+        List<Object[]> calls = new ArrayList<>();
+        when(((JavascriptExecutor) jsDriver).executeAsyncScript(anyString(), anyVararg())).thenAnswer(invocation -> {
+            calls.add(invocation.getArguments());
+            return Arrays.asList("found", Collections.singletonList(webel), 1L);
+        });
+        when(webel.isDisplayed()).thenReturn(true);
+
+        new Operations.ScrollElement(jsDriver, div).searchingInBrowser().rightUntilElementIsVisible(span);
+
+        assertThat(Arrays.asList(calls.get(0)).subList(3, 7), equalTo(Arrays.asList("RIGHT", 0, 100000, "DISPLAYED")));
+        verify(webel).isDisplayed();
+    }
+
+    @Test
+    public void scrollSearchWithALongQuietPeriodDoesNotLoopForever() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        WebElement wrapperEl = mock(WebElement.class);
+        when(jsDriver.findElement(any())).thenReturn(wrapperEl);
+        List<Object[]> calls = new ArrayList<>();
+        when(((JavascriptExecutor) jsDriver).executeAsyncScript(anyString(), anyVararg())).thenAnswer(invocation -> {
+            if (invocation.getArguments().length < 10) {
+                return true; // waiting for a quiet page between retries
+            }
+            calls.add(invocation.getArguments());
+            return Arrays.asList("continue", Collections.emptyList(), 0L);
+        });
+
+        try {
+            new Operations.ScrollElement(jsDriver, div).waitingForQuietPage(3000).searchingInBrowser().
+                    downUntilElementIsPresent(span);
+            fail();
+        } catch (RuntimeException e) {
+            // not found
+        }
+
+        // a search that made no progress is not repeated, apart from the retries of the operation
+        assertThat(calls.size(), is(3));
+        // [script, wrapper, query, direction, step, max scrolls, condition, scroll first, timeout, settle, max settle]
+        assertThat(Arrays.asList(calls.get(0)).subList(8, 11), equalTo(Arrays.asList(2000L, 1500, 3000)));
+    }
+
+    @Test
+    public void scrollSearchKeepsAnExplicitStepEqualToTheDefault() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        WebElement wrapperEl = mock(WebElement.class);
+        when(jsDriver.findElement(any())).thenReturn(wrapperEl);
+        List<Object[]> calls = new ArrayList<>();
+        when(((JavascriptExecutor) jsDriver).executeAsyncScript(anyString(), anyVararg())).thenAnswer(invocation -> {
+            calls.add(invocation.getArguments());
+            return Arrays.asList("found", Collections.singletonList(webel), 1L);
+        });
+
+        new Operations.ScrollElement(jsDriver, div).searchingInBrowser().rightUntilElementIsPresent(span, 60, 10);
+
+        assertThat(Arrays.asList(calls.get(0)).subList(3, 7), equalTo(Arrays.asList("RIGHT", 60, 10, "PRESENT")));
+    }
+
+    @Test
+    public void scrollSearchConfirmsBrowserVisibilityInJava() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        WebElement wrapperEl = mock(WebElement.class);
+        WebElement clipped = mock(WebElement.class);
+        when(jsDriver.findElement(any())).thenReturn(wrapperEl);
+        when(((JavascriptExecutor) jsDriver).executeAsyncScript(anyString(), anyVararg())).
+                thenReturn(Arrays.asList("found", Arrays.asList(clipped, webel), 1L));
+        when(clipped.isDisplayed()).thenReturn(false);
+        when(webel.isDisplayed()).thenReturn(true);
+
+        WebElement found = new Operations.ScrollElement(jsDriver, div).searchingInBrowser().rightUntilElementIsVisible(span);
+
+        assertThat(found, is(webel));
+    }
+
+    @Test
+    public void scrollSearchFallsBackWithoutAsyncScripts() {
+        WebDriver jsDriver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        WebElement wrapperEl = mock(WebElement.class);
+        when(jsDriver.findElement(any())).thenReturn(wrapperEl);
+        when(((JavascriptExecutor) jsDriver).executeAsyncScript(anyString(), anyVararg())).
+                thenThrow(new WebDriverException("not supported"));
+        when(jsDriver.findElements(any())).thenReturn(Collections.emptyList(), Collections.singletonList(webel));
+        when(((JavascriptExecutor) jsDriver).executeScript(anyString(), anyVararg())).thenReturn(100L);
+
+        WebElement found = new Operations.ScrollElement(jsDriver, div).searchingInBrowser().downUntilElementIsPresent(span);
+
+        assertThat(found, is(webel));
+        verify((JavascriptExecutor) jsDriver, times(1)).executeScript(anyString(), anyVararg());
+    }
 }
@@ -0,0 +1,63 @@
+package com.github.loyada.jdollarx;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static com.github.loyada.jdollarx.BasicPath.*;
+import static com.github.loyada.jdollarx.ElementProperties.*;
+import static com.github.loyada.jdollarx.PathTemplate.text;
+import static com.github.loyada.jdollarx.PathTemplate.value;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PathTemplateTest {
+
+    private static void assertSamePath(Path bound, Path expected) {
+        assertThat(bound.getXPath(), equalTo(expected.getXPath()));
+        assertThat(bound.getAlternateXPath(), equalTo(expected.getAlternateXPath()));
+        assertThat(bound.toString(), equalTo(expected.toString()));
+    }
+
+    @Test
+    public void boundTemplateIsEquivalentToPath() {
+        Path table = div.withClass("table");
+        PathTemplate template = PathTemplate.of(div.that(hasRole("row"), hasAttribute("row-index", value("index")))
+                .inside(table)
+                .describedBy("row with index " + value("index")));
+        for (int i : new int[]{0, 7, 123}) {
+            assertSamePath(template.bind("index", i), div.that(hasRole("row"), hasAttribute("row-index", Integer.toString(i)))
+                    .inside(table)
+                    .describedBy("row with index " + i));
+        }
+    }
+
+    @Test
+    public void multiplePlaceholders() {
+        PathTemplate template = PathTemplate.of(span.that(hasText(text("name")), hasClass(value("cls")))
+                .childOf(div.that(PathTemplate.isWithIndex("row"))));
+        assertThat(template.getPlaceholders(), equalTo(ImmutableSet.of("name", "cls", "row")));
+
+        Path bound = template.bind(ImmutableMap.of("name", "O'Neil", "cls", "person", "row", 2));
+        assertSamePath(bound, span.that(hasText("O'Neil"), hasClass("person")).childOf(div.that(isWithIndex(2))));
+    }
+
+    @Test
+    public void boundPathCanBeComposed() {
+        PathTemplate template = PathTemplate.of(listItem.that(hasAttribute("data-id", value("id"))).inside(unorderedList));
+        Path bound = template.bind("id", "a1");
+        Path expected = listItem.that(hasAttribute("data-id", "a1")).inside(unorderedList);
+        assertThat(span.inside(bound).getXPath(), equalTo(span.inside(expected).getXPath()));
+        assertThat(span.childOf(bound).getXPath(), equalTo(span.childOf(expected).getXPath()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingValueIsRejected() {
+        PathTemplate.of(div.that(hasId(value("id")), hasTitle(value("title")))).bind("id", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indexMustBeAnInteger() {
+        PathTemplate.of(div.that(PathTemplate.isWithIndex("i"))).bind("i", "1");
+    }
+}
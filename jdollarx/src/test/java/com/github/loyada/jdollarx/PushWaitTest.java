@@ -0,0 +1,124 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class PushWaitTest {
+
+    @Test
+    public void conditionIsWaitedForInTheBrowser() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).thenReturn(true);
+        WebElement el = mock(WebElement.class);
+        when(driver.findElement(By.xpath("//div"))).thenReturn(el);
+        when(el.isDisplayed()).thenReturn(false, true);
+
+        assertThat(new InBrowser(driver).waitUntil(div, WaitCondition.DISPLAYED, 1, TimeUnit.SECONDS), is(true));
+        verify((JavascriptExecutor) driver, times(1)).executeAsyncScript(anyString(),
+                eq(Arrays.asList("xpath", "//div", false)), eq("DISPLAYED"), anyLong());
+    }
+
+    @Test
+    public void visibilityInTheBrowserIsConfirmedInJava() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).thenReturn(true);
+        WebElement el = mock(WebElement.class);
+        when(driver.findElement(By.xpath("//div"))).thenReturn(el);
+        // e.g. an ancestor has opacity 0, which the check in the browser ignores
+        when(el.isDisplayed()).thenReturn(false);
+
+        assertThat(new InBrowser(driver).waitUntil(div, WaitCondition.DISPLAYED, 200, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    @Test
+    public void hiddenElementIsNotWaitedForInTheBrowser() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).thenReturn(false);
+        WebElement el = mock(WebElement.class);
+        when(driver.findElement(By.xpath("//div"))).thenReturn(el);
+        when(el.isDisplayed()).thenReturn(false);
+
+        assertThat(new InBrowser(driver).waitUntil(div, WaitCondition.NOT_DISPLAYED, 1, TimeUnit.SECONDS), is(true));
+        verify((JavascriptExecutor) driver, times(0)).executeAsyncScript(anyString(), anyVararg());
+    }
+
+    @Test
+    public void longWaitsAreSplit() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).thenReturn(false, true);
+
+        assertThat(new InBrowser(driver).waitUntil(div, WaitCondition.ABSENT, 1, TimeUnit.MINUTES), is(true));
+        verify((JavascriptExecutor) driver, times(2)).executeAsyncScript(anyString(), anyVararg());
+    }
+
+    @Test
+    public void fallsBackToPollingWhenTheBrowserCanNotWait() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).
+                thenThrow(new ScriptTimeoutException("timeout"));
+        WebElement el = mock(WebElement.class);
+        when(driver.findElement(By.xpath("//div"))).thenReturn(el);
+        when(el.isSelected()).thenReturn(false, true);
+
+        assertThat(new InBrowser(driver).waitUntil(div, WaitCondition.SELECTED, 1, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void waitUntilStableCountsTheChanges() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).
+                thenReturn(Arrays.asList(false, 3L), Arrays.asList(true, 1L));
+
+        assertThat(new InBrowser(driver).waitUntilStable(div, 100), is(5));
+    }
+
+    @Test
+    public void waitUntilQuietInTheBrowser() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).thenReturn(false, true);
+
+        assertThat(new InBrowser(driver).waitUntilQuiet(50, true, 1, TimeUnit.MINUTES), is(true));
+        verify((JavascriptExecutor) driver, times(2)).executeAsyncScript(anyString(), eq(50), eq(true), anyLong());
+    }
+
+    @Test
+    public void waitUntilQuietDoesNotTrackAnimationFrames() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeAsyncScript(anyString(), anyVararg())).thenReturn(true);
+        ArgumentCaptor<String> script = ArgumentCaptor.forClass(String.class);
+
+        new InBrowser(driver).waitUntilQuiet(50, 1, TimeUnit.SECONDS);
+        verify((JavascriptExecutor) driver).executeAsyncScript(script.capture(), eq(50), eq(false), anyLong());
+        // a page with a continuous animation must still become quiet
+        assertThat(script.getValue().contains("window.requestAnimationFrame ="), is(false));
+    }
+
+    @Test
+    public void waitUntilQuietSleepsWhenTheBrowserCanNotWait() {
+        WebDriver driver = mock(WebDriver.class);
+        long start = System.currentTimeMillis();
+        assertThat(new InBrowser(driver).waitUntilQuiet(50, 1, TimeUnit.SECONDS), is(true));
+        assertThat(System.currentTimeMillis() - start >= 50, is(true));
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static com.github.loyada.jdollarx.BasicPath.span;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class QueryResultCacheTest {
+    private WebDriver driverMock;
+    private final AtomicReference<String> generation = new AtomicReference<>("a:0");
+
+    @Before
+    public void setup() {
+        driverMock = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driverMock).executeScript(anyString(), anyVararg())).thenAnswer(invocation ->
+                ((String) invocation.getArguments()[0]).contains("__dollarxGeneration") ? generation.get() : 3L);
+        QueryResultCache.enable();
+        QueryResultCache.resetStatistics();
+    }
+
+    @After
+    public void teardown() {
+        QueryResultCache.disable();
+        QueryResultCache.resetStatistics();
+    }
+
+    @Test
+    public void repeatedQueriesOnAnUnchangedDomAreCached() {
+        assertThat(InBrowserFinder.countAll(driverMock, div), is(3));
+        assertThat(InBrowserFinder.countAll(driverMock, div), is(3));
+        assertThat(InBrowserFinder.countAll(driverMock, span), is(3));
+        assertThat(QueryResultCache.getHits(), is(1L));
+        assertThat(QueryResultCache.getMisses(), is(2L));
+        verify((JavascriptExecutor) driverMock, times(1)).executeScript(
+                "return document.evaluate(\"count(//div)\", document, null, XPathResult.NUMBER_TYPE, null).numberValue",
+                new Object[0]);
+    }
+
+    @Test
+    public void changeOfTheDomInvalidatesTheResults() {
+        WebElement el = mock(WebElement.class);
+        when(driverMock.findElements(By.xpath("//div"))).thenReturn(Arrays.asList(el), Arrays.asList(el, el));
+        InBrowser browser = new InBrowser(driverMock);
+
+        assertThat(browser.numberOfAppearances(div), is(1));
+        assertThat(browser.numberOfAppearances(div), is(1));
+        generation.set("a:1");
+        assertThat(browser.numberOfAppearances(div), is(2));
+        assertThat(QueryResultCache.getHits(), is(1L));
+    }
+
+    @Test
+    public void explicitInvalidation() {
+        WebElement el = mock(WebElement.class);
+        when(driverMock.findElement(By.xpath("//div"))).thenReturn(el);
+        when(el.getAttribute("class")).thenReturn("a b", "c");
+        InBrowser browser = new InBrowser(driverMock);
+
+        assertThat(browser.getCssClasses(div), equalTo(Arrays.asList("a", "b")));
+        assertThat(browser.getCssClasses(div), equalTo(Arrays.asList("a", "b")));
+        QueryResultCache.invalidate();
+        assertThat(browser.getCssClasses(div), equalTo(Arrays.asList("c")));
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.Test;
+import org.openqa.selenium.ElementClickInterceptedException;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void retriesUntilSuccess() throws Exception {
+        RetryPolicy policy = RetryPolicy.builder().withMaxAttempts(5).withInitialDelay(Duration.ofMillis(1)).build();
+        AtomicInteger attempts = new AtomicInteger();
+        String result = policy.call(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new NoSuchElementException("not yet");
+            }
+            return "done";
+        });
+        assertThat(result, equalTo("done"));
+        assertThat(policy.getStatistics().getCalls(), is(1L));
+        assertThat(policy.getStatistics().getAttempts(), is(3L));
+        assertThat(policy.getStatistics().getFailures(), is(0L));
+    }
+
+    @Test
+    public void onlyTheGivenFailuresAreRetried() {
+        RetryPolicy policy = RetryPolicy.builder().withMaxAttempts(5).withInitialDelay(Duration.ZERO)
+                .retryOn(StaleElementReferenceException.class).build();
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            policy.run(() -> {
+                attempts.incrementAndGet();
+                throw new NoSuchElementException("missing");
+            });
+            fail("should fail");
+        } catch (NoSuchElementException e) {
+            assertThat(attempts.get(), is(1));
+            assertThat(policy.getStatistics().getFailures(), is(1L));
+        }
+    }
+
+    @Test
+    public void assertionErrorsAreRetriedByDefault() {
+        RetryPolicy policy = RetryPolicy.fixed(3, 1);
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            Operations.doWithRetries((Runnable) () -> {
+                attempts.incrementAndGet();
+                throw new AssertionError("wrong");
+            }, policy);
+            fail("should fail");
+        } catch (AssertionError e) {
+            assertThat(attempts.get(), is(3));
+        }
+    }
+
+    @Test
+    public void delaysGrowExponentiallyUntilTheDeadline() {
+        RetryPolicy policy = RetryPolicy.builder()
+                .withMaxAttempts(100)
+                .withInitialDelay(Duration.ofMillis(10))
+                .withBackoffMultiplier(2)
+                .withMaxDelay(Duration.ofMillis(80))
+                .withDeadline(Duration.ofMillis(250))
+                .build();
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        try {
+            policy.run(() -> {
+                attempts.incrementAndGet();
+                throw new NoSuchElementException("missing");
+            });
+            fail("should fail");
+        } catch (NoSuchElementException e) {
+            // delays of 10, 20, 40, 80, 80: the next one would cross the deadline
+            assertThat(attempts.get(), is(6));
+            assertThat(System.currentTimeMillis() - start < 250, is(true));
+        }
+    }
+
+    @Test
+    public void attemptBudgetPreventsAnAttemptThatCanNotEndInTime() {
+        RetryPolicy policy = RetryPolicy.builder()
+                .withMaxAttempts(10)
+                .withInitialDelay(Duration.ZERO)
+                .withDeadline(Duration.ofSeconds(1))
+                .withAttemptBudget(Duration.ofSeconds(2))
+                .build();
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            policy.run(() -> {
+                attempts.incrementAndGet();
+                throw new NoSuchElementException("missing");
+            });
+            fail("should fail");
+        } catch (NoSuchElementException e) {
+            assertThat(attempts.get(), is(1));
+        }
+    }
+
+    @Test
+    public void clickOnUsesTheGivenPolicy() {
+        WebDriver driver = mock(WebDriver.class);
+        WebElement el = mock(WebElement.class);
+        when(driver.findElement(any())).thenReturn(el);
+        when(el.isDisplayed()).thenReturn(true);
+        when(el.isEnabled()).thenReturn(true);
+        doThrow(new ElementClickInterceptedException("covered")).doNothing().when(el).click();
+        RetryPolicy policy = RetryPolicy.builder().withInitialDelay(Duration.ofMillis(1))
+                .retryOn(ElementClickInterceptedException.class).build();
+
+        assertThat(new InBrowser(driver).clickOn(div, policy), is(el));
+        assertThat(policy.getStatistics().getAttempts(), is(2L));
+    }
+}
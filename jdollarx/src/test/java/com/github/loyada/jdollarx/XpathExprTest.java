@@ -0,0 +1,92 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.Test;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static com.github.loyada.jdollarx.BasicPath.span;
+import static com.github.loyada.jdollarx.ElementProperties.hasAggregatedTextContaining;
+import static com.github.loyada.jdollarx.ElementProperties.hasCaseSensitiveText;
+import static com.github.loyada.jdollarx.ElementProperties.hasClass;
+import static com.github.loyada.jdollarx.ElementProperties.hasId;
+import static com.github.loyada.jdollarx.ElementProperties.hasText;
+import static com.github.loyada.jdollarx.ElementProperties.isInside;
+import static com.github.loyada.jdollarx.ElementProperties.not;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class XpathExprTest {
+
+    @Test
+    public void propertiesAreKeptAsPredicateTree() {
+        XpathExpr expr = hasClass("a").and(not(hasId("b"))).toXpathExpr();
+        assertThat(expr, instanceOf(XpathExpr.And.class));
+        XpathExpr.And and = (XpathExpr.And) expr;
+        assertThat(and.first, instanceOf(XpathExpr.HasClasses.class));
+        assertThat(and.second, instanceOf(XpathExpr.Not.class));
+        assertThat(((XpathExpr.Not) and.second).condition, instanceOf(XpathExpr.AttributeEquals.class));
+        assertThat(expr.toXpath(), equalTo("(contains(concat(' ', normalize-space(@class), ' '), ' a ') and not(@id='b'))"));
+    }
+
+    @Test
+    public void relationIsKeptAsAxisStep() {
+        BasicPath path = (BasicPath) span.childOf(div.withClass("foo"));
+        XpathExpr expr = ((XpathExpr.Cached) path.getXpathExpr().get()).expression;
+        assertThat(expr, instanceOf(XpathExpr.AxisStep.class));
+        assertThat(((XpathExpr.AxisStep) expr).axis, equalTo("child"));
+        assertThat(expr.toXpath(), equalTo("div[contains(concat(' ', normalize-space(@class), ' '), ' foo ')]/child::span"));
+    }
+
+    @Test
+    public void axisStepFallsBackWhenTargetHasHierarchy() {
+        Path path = span.inside(div).childOf(div.withClass("foo"));
+        assertThat(path.getXPath().get(), equalTo(path.getAlternateXPath().get()));
+    }
+
+    @Test
+    public void hierarchyIsDetectedInsideOpaqueText() {
+        assertThat(XpathExpr.of(hasText("a/b")).hasHierarchy(), is(true));
+        assertThat(XpathExpr.of(hasText("ab")).hasHierarchy(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void propertyIsExpandedOnlyOnEmission() {
+        Path path = span.that(isInside(BasicPath.builder().build()));
+        path.getXPath();
+    }
+
+    @Test
+    public void textConditionsAreEmittedDirectly() {
+        XpathExpr expr = hasText("a").or(hasAggregatedTextContaining("B")).and(not(hasCaseSensitiveText("C"))).toXpathExpr();
+        XpathExpr.Or or = (XpathExpr.Or) ((XpathExpr.And) expr).first;
+        assertThat(or.first, instanceOf(XpathExpr.TextCondition.class));
+        assertThat(((XpathExpr.TextCondition) or.second).aggregated, is(true));
+        assertThat(expr.toXpath(), equalTo(
+                "(translate(text(), 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz') = 'a' or " +
+                "contains(translate(normalize-space(string(.)), 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz'), 'b')" +
+                " and not(text() = 'C'))"));
+    }
+
+    @Test
+    public void textLiteralsWithQuotes() {
+        assertThat(XpathUtils.processTextForXpath(""), equalTo("''"));
+        assertThat(XpathUtils.processTextForXpath("ab"), equalTo("'ab'"));
+        assertThat(XpathUtils.processTextForXpath("a'b"), equalTo("concat(\"a\", \"'\", \"b\")"));
+        assertThat(XpathUtils.processTextForXpath("'a''b'"),
+                equalTo("concat(\"\", \"'\", \"a\", \"'\", \"\", \"'\", \"b\")"));
+        // trailing quotes are dropped by the split, as they always were
+        assertThat(XpathUtils.processTextForXpath("a'"), equalTo("'a''"));
+        assertThat(XpathUtils.processTextForXpath("'"), equalTo("concat()"));
+    }
+
+    @Test
+    public void nestedEmissionDoesNotCorruptTheSharedBuilder() {
+        Path inner = div.withClass("x");
+        Path outer = span.that(hasText("a")).inside(inner);
+        String expected = "div[contains(concat(' ', normalize-space(@class), ' '), ' x ')]//span[" +
+                "translate(text(), 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz') = 'a']";
+        assertThat(outer.getXPath().get(), equalTo(expected));
+        assertThat(inner.getXPath().get(), equalTo("div[contains(concat(' ', normalize-space(@class), ' '), ' x ')]"));
+    }
+}
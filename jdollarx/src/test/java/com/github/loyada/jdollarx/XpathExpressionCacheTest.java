@@ -0,0 +1,91 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static com.github.loyada.jdollarx.BasicPath.span;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class XpathExpressionCacheTest {
+    private WebDriver driverMock;
+    private final List<List<?>> sentQueries = new ArrayList<>();
+    private boolean pageWasReloaded = false;
+
+    @Before
+    public void setup() {
+        driverMock = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driverMock).executeScript(anyString(), anyVararg())).thenAnswer(invocation -> {
+            List<?> queries = (List<?>) invocation.getArguments()[1];
+            sentQueries.add(queries);
+            if (pageWasReloaded && ((List<?>) queries.get(0)).get(1) == null) {
+                return XpathExpressionCache.MISSING;
+            }
+            pageWasReloaded = false;
+            return invocation.getArguments()[2].equals("attribute") ?
+                    Collections.singletonList(Arrays.asList("a", "b")) :
+                    Collections.nCopies(queries.size(), 2L);
+        });
+        XpathExpressionCache.enable();
+        XpathExpressionCache.resetStatistics();
+    }
+
+    @After
+    public void teardown() {
+        XpathExpressionCache.disable();
+        XpathExpressionCache.resetStatistics();
+    }
+
+    @Test
+    public void onlyTheKeyIsSentForKnownExpressions() {
+        assertThat(InBrowserFinder.countAll(driverMock, div), is(2));
+        assertThat(InBrowserFinder.countAll(driverMock, div), is(2));
+        String key = XpathExpressionCache.keyOf("//div");
+        assertThat(sentQueries.get(0), equalTo(Collections.singletonList(Arrays.asList("xpath", "//div", false, key))));
+        assertThat(sentQueries.get(1), equalTo(Collections.singletonList(Arrays.asList("xpath", null, false, key))));
+        assertThat(XpathExpressionCache.getMisses(), is(1L));
+        assertThat(XpathExpressionCache.getHits(), is(1L));
+    }
+
+    @Test
+    public void expressionsAreSentAgainAfterNavigation() {
+        InBrowserFinder.countMany(driverMock, Arrays.asList(div, span));
+        pageWasReloaded = true;
+        assertThat(InBrowserFinder.countMany(driverMock, Arrays.asList(div, span)), equalTo(Arrays.asList(2, 2)));
+        assertThat(sentQueries.size(), is(3));
+        assertThat(((List<?>) sentQueries.get(2).get(0)).get(1), equalTo("//div"));
+        assertThat(XpathExpressionCache.getReinjections(), is(1L));
+        assertThat(XpathExpressionCache.getMisses(), is(4L));
+        assertThat(XpathExpressionCache.getHits(), is(0L));
+    }
+
+    @Test
+    public void attributesUseTheCompiledExpression() {
+        assertThat(InBrowserFinder.getAttributeOfAll(driverMock, div, "id"), equalTo(Arrays.asList("a", "b")));
+        assertThat(InBrowserFinder.getAttributeOfAll(driverMock, div, "id"), equalTo(Arrays.asList("a", "b")));
+        assertThat(((List<?>) sentQueries.get(1).get(0)).get(1), is(nullValue()));
+        assertThat(XpathExpressionCache.getHits(), is(1L));
+    }
+
+    @Test
+    public void keysAreStable() {
+        assertThat(XpathExpressionCache.keyOf("//div"), equalTo(XpathExpressionCache.keyOf("//" + "div")));
+        assertThat(XpathExpressionCache.keyOf("//div").equals(XpathExpressionCache.keyOf("//span")), is(false));
+    }
+}
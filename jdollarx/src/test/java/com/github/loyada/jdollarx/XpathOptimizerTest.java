@@ -0,0 +1,166 @@
+package com.github.loyada.jdollarx;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.loyada.jdollarx.BasicPath.*;
+import static com.github.loyada.jdollarx.ElementProperties.*;
+import static com.github.loyada.jdollarx.NPath.atLeast;
+import static com.github.loyada.jdollarx.PathOperators.not;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class XpathOptimizerTest {
+
+    private static final List<String> documents = Arrays.asList(
+            "<div id='a' class='x y'><span class='x'>foo</span><span class='y'>bar</span></div>" +
+                    "<div class='y'><span>Foo</span><p>foo<b>bar</b></p></div><span class='x y'>baz</span>",
+            "<ul><li class='item'>one</li><li class='item selected'>two</li><li>three</li><li class='item'>four</li></ul>" +
+                    "<div class='wrapper'><ul><li id='x' class='item'>five</li><li class='other'>six</li></ul></div>",
+            "<section><h1>title</h1><div class='a'><h2 class='a'>sub</h2><h3>sub sub</h3></div>" +
+                    "<div class='b'><div class='a b'><span role='button' title='t'>x</span></div></div></section>"
+    );
+
+    private static final List<Path> paths = Arrays.asList(
+            header,
+            header.that(hasClass("a")),
+            div.withClass("x").or(span.withClass("x")),
+            span.withClass("x").or(span.withClass("y")),
+            span.or(span.withClass("y")),
+            div.or(span).or(listItem).withClass("x"),
+            span.withClass("x").withClass("y").withClass("x"),
+            span.that(hasClass("x"), hasId("a"), hasText("foo")),
+            div.that(hasAggregatedTextContaining("bar"), hasClass("y"), hasText("foo")),
+            listItem.withClass("item").inside(unorderedList).childOf(div),
+            listItem.withClass("item").inside(div.withClass("wrapper")),
+            listItem.that(hasClass("item"), isWithIndex(1)),
+            listItem.that(isWithIndex(1), hasClass("item")),
+            listItem.that(hasClass("item")).withGlobalIndex(1),
+            firstOccurrenceOf(listItem.withClass("item")),
+            lastOccurrenceOf(listItem.withClass("item")),
+            childNumber(2).ofType(listItem.withClass("item")),
+            span.that(isInside(div.withClass("a")), hasRole("button"), hasTitle("t")),
+            span.inside(div.withClass("a")).inside(section),
+            element.that(isChildOf(div), hasClass("a").or(hasClass("b"))),
+            element.that(hasAnyOfClasses("a", "x"), hasNonOfTheClasses("b")),
+            element.that(contains(atLeast(2).occurrencesOf(span))),
+            element.that(isParentOf(span, span.withClass("y"))),
+            span.afterSibling(span.withClass("x")),
+            span.immediatelyAfterSibling(span.withClass("x")),
+            listItem.withClass("item").after(listItem.withText("two")),
+            listItem.withClass("item").before(listItem.withText("four")),
+            not(span.withClass("x")),
+            div.that(hasChild(header.withClass("a"))),
+            element.that(isSiblingOf(listItem.withClass("selected"))),
+            listItem.that(isLastSibling, hasClass("item")),
+            listItem.that(hasClass("item").and(hasText("two").or(hasText("four"))))
+    );
+
+    @Test
+    public void optimizedQueriesFindTheSameElements() throws Exception {
+        for (String html : documents) {
+            Document doc = PathParsers.getDocumentFromString("<html>" + html + "</html>");
+            for (Path path : paths) {
+                String original = path.getXPath().get();
+                String optimized = optimized(path);
+                assertThat(original + " -> " + optimized,
+                        nodes(PathParsers.findAllByXPath(doc, optimized)),
+                        equalTo(nodes(PathParsers.findAllByXPath(doc, original))));
+            }
+        }
+    }
+
+    @Test
+    public void unionIsFlattened() {
+        assertThat(optimized(header), equalTo("*[self::h1 or self::h2 or self::h3 or self::h4 or self::h5 or self::h6]"));
+    }
+
+    @Test
+    public void unionOfSameElementIsMerged() {
+        assertThat(optimized(span.withClass("x").or(span.withText("y"))), equalTo(
+                "span[(contains(concat(' ', normalize-space(@class), ' '), ' x ')) or " +
+                "(translate(text(), 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz') = 'y')]"));
+    }
+
+    @Test
+    public void predicatesAreDedupedAndCheapOnesComeFirst() {
+        Path path = span.that(hasAggregatedTextEqualTo("a"), hasClass("x"), hasId("i"), hasClass("x"));
+        assertThat(optimized(path), equalTo(
+                "span[@id='i' and contains(concat(' ', normalize-space(@class), ' '), ' x ') and " +
+                "translate(normalize-space(string(.)), 'ABCDEFGHIJKLMNOPQRSTUVWXYZ', 'abcdefghijklmnopqrstuvwxyz') = 'a']"));
+    }
+
+    @Test
+    public void redundantSelfStepIsFolded() throws Exception {
+        XpathExpr span = new XpathExpr.Filtered(XpathExpr.raw("span"),
+                Arrays.asList(new XpathExpr.HasClasses(Arrays.asList("x"), true)));
+        XpathExpr expr = new XpathExpr.Filtered(XpathExpr.ANY_ELEMENT, Arrays.asList(new XpathExpr.AllOf(Arrays.asList(
+                new XpathExpr.Relation("ancestor", XpathExpr.raw("div")),
+                new XpathExpr.Relation("self", span)))));
+        String optimized = XpathOptimizer.optimize(expr).toXpath();
+        assertThat(optimized, equalTo("span[contains(concat(' ', normalize-space(@class), ' '), ' x ') and ancestor::div]"));
+
+        Document doc = PathParsers.getDocumentFromString("<html>" + documents.get(0) + "</html>");
+        assertThat(nodes(PathParsers.findAllByXPath(doc, optimized)),
+                equalTo(nodes(PathParsers.findAllByXPath(doc, expr.toXpath()))));
+    }
+
+    @Test
+    public void textNodeTestIsNotFolded() throws Exception {
+        XpathExpr text = new XpathExpr.Filtered(XpathExpr.raw("text()"),
+                Arrays.asList(new XpathExpr.Relation("parent", XpathExpr.raw("span"))));
+        XpathExpr filtered = new XpathExpr.Filtered(XpathExpr.ANY_ELEMENT, Arrays.asList(new XpathExpr.AllOf(Arrays.asList(
+                new XpathExpr.Relation("ancestor", XpathExpr.raw("div")),
+                new XpathExpr.Relation("self", text)))));
+        XpathExpr union = new XpathExpr.Union(text, XpathExpr.raw("text()"));
+
+        Document doc = PathParsers.getDocumentFromString("<html>" + documents.get(0) + "</html>");
+        for (XpathExpr expr : Arrays.asList(filtered, union)) {
+            String optimized = XpathOptimizer.optimize(expr).toXpath();
+            assertThat(optimized, optimized.startsWith("*["), is(true));
+            assertThat(nodes(PathParsers.findAllByXPath(doc, optimized)),
+                    equalTo(nodes(PathParsers.findAllByXPath(doc, expr.toXpath()))));
+        }
+    }
+
+    @Test
+    public void positionalPredicatesAreNotMoved() {
+        Path path = listItem.that(hasText("a"), isWithIndex(1), hasClass("item"));
+        assertThat(optimized(path), equalTo(path.getXPath().get()));
+    }
+
+    @Test
+    public void numericPredicatesAreNotBoolean() {
+        assertThat(XpathOptimizer.isBooleanXpath("3"), is(false));
+        assertThat(XpathOptimizer.isBooleanXpath("count(./*)"), is(false));
+        assertThat(XpathOptimizer.isBooleanXpath("string-length(@a[.='x'])"), is(false));
+        assertThat(XpathOptimizer.isBooleanXpath("count(./*)=3"), is(true));
+        assertThat(XpathOptimizer.isBooleanXpath("contains(@a, ')')"), is(true));
+        assertThat(XpathOptimizer.isBooleanXpath("(@a='1')"), is(true));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        Path path = span.that(hasText("a"), hasClass("x"));
+        assertThat(XpathOptimizer.xpathForFind(path).get(), equalTo(path.getXPath().get()));
+    }
+
+    private static String optimized(Path path) {
+        return XpathOptimizer.optimize(((BasicPath) path).getXpathExpr().get()).toXpath();
+    }
+
+    private static List<Node> nodes(NodeList nodeList) {
+        List<Node> result = new ArrayList<>();
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            result.add(nodeList.item(i));
+        }
+        return result;
+    }
+}
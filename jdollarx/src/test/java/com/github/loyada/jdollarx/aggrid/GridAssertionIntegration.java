@@ -81,6 +81,85 @@ public class GridAssertionIntegration {
         assertThat(grid, isPresent());
     }
 
+    @Test
+    public void orderedSuccessWithStreamingVerification() {
+        Map<String, String> row1 = new LinkedHashMap<>();
+        row1.put("name", "tony smith");
+        row1.put("language", "english");
+        row1.put("jan","$38,031");
+        row1.put("dec","$86,416");
+        Map<String, String> row2 = new LinkedHashMap<>();
+        row2.put("name", "Andrew Connell");
+        row2.put("language", "swedish");
+        row2.put("jan","$17,697");
+        row2.put("dec","$83,386");
+        AgGrid grid = AgGrid.getBuilder()
+                .withHeaders(Arrays.asList("dec", "jan", "language", "name"))
+                .withRowsAsStrings(Arrays.asList(row1, row2))
+                .containedIn(container)
+                .withStreamingVerification()
+                .build();
+        assertThat(grid, isPresent());
+    }
+
+    @Test
+    public void orderedSuccessWithStreamingVerificationOfElementProperties() {
+        Map<String, ElementProperty> row1 = new LinkedHashMap<>();
+        row1.put("{name}", hasAggregatedTextEqualTo("tony smith"));
+        row1.put("language", hasAggregatedTextEqualTo("english"));
+        row1.put("dec", hasAggregatedTextEqualTo("$86,416"));
+        Map<String, ElementProperty> row2 = new LinkedHashMap<>();
+        row2.put("{name}", hasAggregatedTextEqualTo("Andrew Connell"));
+        row2.put("language", hasAggregatedTextEqualTo("swedish"));
+        row2.put("dec", hasAggregatedTextEqualTo("$83,386"));
+        AgGrid grid = AgGrid.getBuilder()
+                .withHeaders(Arrays.asList("dec", "language", "{name}"))
+                .withRowsAsElementProperties(Arrays.asList(row1, row2))
+                .containedIn(container)
+                .withStreamingVerification()
+                .build();
+        assertThat(grid, isPresent());
+    }
+
+    @Test
+    public void streamingVerificationOfElementPropertiesFailsOnMismatch() {
+        Map<String, ElementProperty> row1 = new LinkedHashMap<>();
+        row1.put("{name}", hasAggregatedTextEqualTo("tony smith"));
+        row1.put("language", hasAggregatedTextEqualTo("swedish"));
+        AgGrid grid = AgGrid.getBuilder()
+                .withHeaders(Arrays.asList("language", "{name}"))
+                .withRowsAsElementProperties(Arrays.asList(row1))
+                .containedIn(container)
+                .withStreamingVerification()
+                .build();
+        try {
+            assertThat(grid, isPresent());
+            Assert.fail();
+        } catch(AssertionError e) {
+            assertThat(e.getMessage(), Matchers.containsString("swedish"));
+        }
+    }
+
+    @Test
+    public void streamingVerificationOfElementPropertiesFailsInStrictModeWithoutAllRows() {
+        Map<String, ElementProperty> row1 = new LinkedHashMap<>();
+        row1.put("{name}", hasAggregatedTextEqualTo("tony smith"));
+        row1.put("language", hasAggregatedTextEqualTo("english"));
+        AgGrid grid = AgGrid.getBuilder()
+                .withHeaders(Arrays.asList("language", "{name}"))
+                .withRowsAsElementProperties(Arrays.asList(row1))
+                .containedIn(container)
+                .withStreamingVerification()
+                .isStrict()
+                .build();
+        try {
+            assertThat(grid, isPresent());
+            Assert.fail();
+        } catch(AssertionError e) {
+            assertThat(e.getMessage(), Matchers.containsString("Found too many rows."));
+        }
+    }
+
     @Test
     public  void orderedSuccessWithListOfEntries() {
         List<Entry<String, String>> row1 = Arrays.asList(
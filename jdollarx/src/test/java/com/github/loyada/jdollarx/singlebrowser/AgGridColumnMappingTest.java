@@ -0,0 +1,175 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.github.loyada.jdollarx.Path;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class AgGridColumnMappingTest {
+    private static final Path container = div.withClass("grid");
+    private WebDriver driver;
+    private JavascriptExecutor js;
+    private List<?> renderedHeaderCells;
+
+    @Before
+    public void setup() {
+        driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        js = (JavascriptExecutor) driver;
+        WebElement element = mock(WebElement.class);
+        when(element.getAttribute(AgGrid.COL_ID)).thenReturn("fallback");
+        when(driver.findElement(any(By.class))).thenReturn(element);
+        when(driver.findElements(any(By.class))).thenReturn(Collections.singletonList(element));
+        when(js.executeAsyncScript(anyString(), anyVararg())).thenReturn(true);
+        when(js.executeScript(contains("advance = arguments[2]"), anyVararg())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return asList(renderedHeaderCells, false);
+            }
+        });
+        InBrowserSinglton.driver = driver;
+    }
+
+    @After
+    public void teardown() {
+        InBrowserSinglton.driver = null;
+    }
+
+    private static List<?> headerCell(String columnId, String text, String... ariaLabels) {
+        return asList(columnId, text, asList(ariaLabels));
+    }
+
+    private static AgGrid grid(String... headers) {
+        return AgGrid.getBuilder().
+                withHeaders(asList(headers)).
+                withRowsAsStrings(Collections.emptyList()).
+                withoutVirtualization().
+                containedIn(container).
+                build();
+    }
+
+    private void verifySweeps(int times) {
+        verify(js, times(times)).executeScript(anyString(), any(), any(), eq(true));
+    }
+
+    @Test
+    public void headersAreMatchedByColumnIdTextAndAriaLabel() {
+        renderedHeaderCells = asList(
+                headerCell("age", "Age"),
+                headerCell("name", " Full \n Name "),
+                headerCell("select", "", "Toggle Selection"));
+        AgGrid grid = grid("{age}", "full NAME", "Toggle Selection");
+
+        grid.findColumnMapping();
+
+        assertThat(grid.getColumnIdByHeader(), is(ImmutableMap.of(
+                "{age}", "age", "full NAME", "name", "Toggle Selection", "select")));
+        verifySweeps(1);
+    }
+
+    @Test
+    public void headersThatAreNotSweptAreLookedUpOneByOne() {
+        renderedHeaderCells = asList(headerCell("name", "Name"));
+        AgGrid grid = grid("Name", "Age");
+
+        grid.findColumnMapping();
+
+        assertThat(grid.getColumnIdByHeader(), is(ImmutableMap.of("Name", "name", "Age", "fallback")));
+    }
+
+    @Test
+    public void cachedMappingIsUsedWhenTheRenderedHeadersConfirmIt() {
+        renderedHeaderCells = asList(headerCell("name", "Name"), headerCell("age", "Age"));
+        grid("Name", "Age").findColumnMapping();
+
+        AgGrid grid = grid("Name", "Age");
+        grid.findColumnMapping();
+
+        assertThat(grid.getColumnIdByHeader(), is(ImmutableMap.of("Name", "name", "Age", "age")));
+        verifySweeps(1);
+    }
+
+    @Test
+    public void cachedMappingIsRejectedWhenAHeaderMovedToAnotherColumn() {
+        renderedHeaderCells = asList(headerCell("name", "Name"), headerCell("age", "Age"));
+        grid("Name", "Age").findColumnMapping();
+
+        // the column with the cached ID is not rendered, but another one has the header
+        renderedHeaderCells = asList(headerCell("fullName", "Name"), headerCell("age", "Age"));
+        AgGrid grid = grid("Name", "Age");
+        grid.findColumnMapping();
+
+        assertThat(grid.getColumnIdByHeader(), is(ImmutableMap.of("Name", "fullName", "Age", "age")));
+        verifySweeps(2);
+    }
+
+    @Test
+    public void cachedMappingIsRejectedWhenAColumnHasAnotherHeader() {
+        renderedHeaderCells = asList(headerCell("name", "Name"), headerCell("age", "Age"));
+        grid("Name", "Age").findColumnMapping();
+
+        renderedHeaderCells = asList(headerCell("name", "Age"), headerCell("age", "Name"));
+        AgGrid grid = grid("Name", "Age");
+        grid.findColumnMapping();
+
+        assertThat(grid.getColumnIdByHeader(), is(ImmutableMap.of("Name", "age", "Age", "name")));
+        verifySweeps(2);
+    }
+
+    @Test
+    public void headersThatAreNotConfirmedAreSwept() {
+        renderedHeaderCells = asList(headerCell("name", "Name"), headerCell("age", "Age"));
+        grid("Name", "Age").findColumnMapping();
+
+        renderedHeaderCells = asList(headerCell("name", "Name"));
+        AgGrid grid = grid("Name", "Age");
+        grid.findColumnMapping();
+
+        assertThat(grid.getColumnIdByHeader(), is(ImmutableMap.of("Name", "name", "Age", "fallback")));
+        verifySweeps(2);
+    }
+
+    @Test
+    public void cachedMappingsDoNotKeepTheDriver() throws InterruptedException {
+        renderedHeaderCells = asList(headerCell("name", "Name"));
+        grid("Name").findColumnMapping();
+        assertThat(AgGrid.hasColumnMappingsOf(driver), is(true));
+
+        WeakReference<WebDriver> quitDriver = new WeakReference<>(driver);
+        InBrowserSinglton.driver = null;
+        driver = null;
+        js = null;
+        // mockito keeps the last invocation of a mock
+        mock(WebElement.class).getText();
+        for (int i = 0; i < 50 && quitDriver.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(quitDriver.get() == null, is(true));
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class AgGridDataTest {
+    private WebDriver driver;
+    private WebElement root;
+
+    @Before
+    public void setup() {
+        driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        root = mock(WebElement.class);
+    }
+
+    private static Map<String, Object> page(int total, List<?> rows) {
+        return ImmutableMap.of(
+                "total", (long) total,
+                "rows", rows,
+                "columns", asList(asList("name", "Name"), asList("age", "Age")));
+    }
+
+    @Test
+    public void rowsAreExtractedPageByPage() {
+        when(((JavascriptExecutor) driver).executeScript(anyString(), eq(root), eq(null), eq(0), eq(2))).thenReturn(
+                page(3, asList(asList(0L, asList("Alice", "30")), asList(1L, asList("Bob", "40")))));
+        when(((JavascriptExecutor) driver).executeScript(anyString(), eq(root), eq(null), eq(2), eq(2))).thenReturn(
+                page(3, asList(asList(2L, asList("Carol  Smith", "50")))));
+
+        AgGridData data = AgGridData.fromGridApi(driver, root, Optional.empty(), 2).get();
+
+        assertThat(data.isFromGridApi(), is(true));
+        assertThat(data.size(), is(3));
+        assertThat(data.getHeaderByColumnId(), is(ImmutableMap.of("name", "Name", "age", "Age")));
+        assertThat(data.getRows().get(1).getTextByColumnId(), is(ImmutableMap.of("name", "Bob", "age", "40")));
+        assertThat(data.findRowIndex(ImmutableMap.of("name", "carol smith", "{age}", "50")), is(OptionalInt.of(2)));
+        assertThat(data.findRowIndex(ImmutableMap.of("Name", "Bob", "Age", "30")), is(OptionalInt.empty()));
+    }
+
+    @Test
+    public void apiExpressionIsPassedToTheScript() {
+        when(((JavascriptExecutor) driver).executeScript(anyString(), anyVararg())).thenReturn(
+                page(1, asList(asList(0L, asList("Alice", "30")))));
+
+        AgGridData.fromGridApi(driver, root, Optional.of("window.grid.api"), 10);
+
+        verify((JavascriptExecutor) driver).executeScript(anyString(), eq(root), eq("window.grid.api"), eq(0), eq(10));
+    }
+
+    @Test
+    public void emptyWhenTheApiIsNotFound() {
+        when(((JavascriptExecutor) driver).executeScript(anyString(), anyVararg())).thenReturn(null);
+        assertThat(AgGridData.fromGridApi(driver, root, Optional.empty(), 10).isPresent(), is(false));
+        assertThat(AgGridData.fromGridApi(mock(WebDriver.class), root, Optional.empty(), 10).isPresent(), is(false));
+    }
+
+    @Test
+    public void textsAreComparedAsInTheXpathOfAggregatedText() {
+        assertThat(AgGridData.hasAggregatedTextEqualTo(" Carol \n Smith ", "carol SMITH"), is(true));
+        // only XML white space is normalized, and only ASCII letters of the text are lower-cased
+        assertThat(AgGridData.hasAggregatedTextEqualTo("Carol\u00a0Smith", "carol smith"), is(false));
+        assertThat(AgGridData.hasAggregatedTextEqualTo("ÉVORA", "évora"), is(false));
+        assertThat(AgGridData.hasAggregatedTextEqualTo("évora", "ÉVORA"), is(true));
+
+        AgGridData data = new AgGridData(true, ImmutableMap.of("city", "City"),
+                Arrays.asList(new AgGridData.Row(0, ImmutableMap.of("city", "ÉVORA"))));
+        assertThat(data.findRowIndex(ImmutableMap.of("city", "évora")), is(OptionalInt.empty()));
+        assertThat(data.rowWithIndex(0).isPresent(), is(true));
+        assertThat(data.rowWithIndex(1).isPresent(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownColumnIsRejected() {
+        AgGridData data = new AgGridData(false, ImmutableMap.of("name", "Name"),
+                Arrays.asList(new AgGridData.Row(0, ImmutableMap.of("name", "Alice"))));
+        data.findRowIndex(ImmutableMap.of("Age", "30"));
+    }
+}
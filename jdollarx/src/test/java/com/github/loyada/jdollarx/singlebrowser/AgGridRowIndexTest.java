@@ -0,0 +1,70 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.OptionalInt;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AgGridRowIndexTest {
+    private AgGridRowIndex index;
+
+    @Before
+    public void setup() {
+        index = new AgGridRowIndex();
+        index.add(ImmutableMap.of(
+                0, ImmutableMap.of("name", "Alice", "age", "30"),
+                1, ImmutableMap.of("name", "Bob"),
+                2, ImmutableMap.of("name", "Alice", "age", "40")));
+    }
+
+    @Test
+    public void onlyScannedRowsAreCandidates() {
+        Map<String, String> alice = ImmutableMap.of("name", "alice");
+        assertThat(index.scannedCandidates(alice), is(Collections.emptyList()));
+
+        index.scanned(1, 100, false);
+        assertThat(index.scannedCandidates(alice), is(Arrays.asList(0)));
+        assertThat(index.getResumeScrollTop(), is(100L));
+
+        index.scanned(2, 200, true);
+        assertThat(index.isComplete(), is(true));
+        assertThat(index.scannedCandidates(alice), is(Arrays.asList(0, 2)));
+    }
+
+    @Test
+    public void rowsWithUnknownCellsAreCandidatesButDoNotMatchFully() {
+        Map<String, String> bob = ImmutableMap.of("name", "Bob", "age", "50");
+        assertThat(index.candidatesAmong(bob, Arrays.asList(2, 1, 0)), is(Arrays.asList(1)));
+        assertThat(index.matchesFully(1, bob), is(false));
+        assertThat(index.matchesFully(2, ImmutableMap.of("name", "ALICE", "age", "40")), is(true));
+        // as in the xpath of hasAggregatedTextEqualTo, the expected text is not trimmed
+        assertThat(index.matchesFully(2, ImmutableMap.of("name", " ALICE ", "age", "40")), is(false));
+    }
+
+    @Test
+    public void changedRowsAreDetected() {
+        assertThat(index.isConsistentWith(ImmutableMap.of(1, ImmutableMap.of("name", " Bob ", "age", "50"))), is(true));
+        assertThat(index.isConsistentWith(ImmutableMap.of(1, ImmutableMap.of("name", "bob"))), is(false));
+        assertThat(index.isConsistentWith(ImmutableMap.of(5, ImmutableMap.of("name", "Dan"))), is(true));
+        assertThat(index.isConsistentWith(ImmutableMap.of(0, ImmutableMap.of("name", "Bob"))), is(false));
+    }
+
+    @Test
+    public void clearForgetsRowsAndQueries() {
+        index.recordQuery(Arrays.asList("xpath"), 2);
+        index.scanned(2, 200, true);
+        assertThat(index.indexOfQuery(Arrays.asList("xpath")), is(OptionalInt.of(2)));
+
+        index.clear();
+        assertThat(index.isEmpty(), is(true));
+        assertThat(index.isComplete(), is(false));
+        assertThat(index.indexOfQuery(Arrays.asList("xpath")), is(OptionalInt.empty()));
+    }
+}
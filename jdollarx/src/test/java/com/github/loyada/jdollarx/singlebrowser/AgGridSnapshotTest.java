@@ -0,0 +1,73 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AgGridSnapshotTest {
+
+    private static List<?> renderedRow(int index, long signature, boolean selected, List<?> cells) {
+        return asList((long) index, signature, selected, cells);
+    }
+
+    private static List<?> cell(String columnId, String text, String... classes) {
+        return asList(columnId, text, asList(classes));
+    }
+
+    @Test
+    public void renderedRowsAreParsed() {
+        AgGridSnapshot snapshot = AgGridSnapshot.fromScript(asList(
+                renderedRow(3, 11, false, asList(cell("name", "Alice"), cell("age", "30", "old"))),
+                renderedRow(4, 12, true, asList(cell("name", "Bob")))),
+                AgGridSnapshot.empty());
+
+        assertThat(snapshot.getMaxRowIndex(), is(4));
+        assertThat(snapshot.getTransferredRowCount(), is(2));
+        assertThat(snapshot.getRow(4).get().isSelected(), is(true));
+        assertThat(snapshot.getCell(3, "age").get().getCssClasses(), is(asList("old")));
+        assertThat(snapshot.getCell(3, "age").get().getText(), is("30"));
+        assertThat(snapshot.getCell(4, "age").isPresent(), is(false));
+        assertThat(snapshot.signatures(), is(asList(asList(3, 11L), asList(4, 12L))));
+    }
+
+    @Test
+    public void unchangedRowsAreTakenFromThePreviousSnapshot() {
+        AgGridSnapshot first = AgGridSnapshot.fromScript(asList(
+                renderedRow(0, 11, false, asList(cell("name", "Alice"))),
+                renderedRow(1, 12, false, asList(cell("name", "Bob")))),
+                AgGridSnapshot.empty());
+
+        AgGridSnapshot second = AgGridSnapshot.fromScript(asList(
+                asList(1L, 12L),
+                renderedRow(2, 13, false, asList(cell("name", "Carol")))),
+                first);
+
+        assertThat(second.getTransferredRowCount(), is(1));
+        assertThat(second.getRows().keySet(), is(new TreeSet<>(asList(1, 2))));
+        assertThat(second.getCell(1, "name").get().getText(), is("Bob"));
+    }
+
+    @Test
+    public void textsAreComparedAsAggregatedText() {
+        AgGridSnapshot snapshot = AgGridSnapshot.fromScript(Collections.singletonList(
+                renderedRow(0, 11, false, asList(cell("name", "Alice Smith"), cell("city", "ÉVORA")))),
+                AgGridSnapshot.empty());
+        AgGridSnapshot.Row row = snapshot.getRow(0).get();
+
+        assertThat(row.hasTexts(ImmutableMap.of("name", "alice SMITH")), is(true));
+        assertThat(row.hasTexts(ImmutableMap.of("name", "Alice  Smith")), is(false));
+        assertThat(row.hasTexts(ImmutableMap.of("age", "30")), is(false));
+        // like xpath translate(), only ASCII letters of the cell are lower-cased
+        assertThat(row.hasTexts(ImmutableMap.of("city", "ÉVORA")), is(false));
+        assertThat(snapshot.getCell(0, "city").get().hasAggregatedTextEqualTo("évora"), is(false));
+        assertThat(AgGridSnapshot.fromScript(Arrays.asList(), snapshot).getMaxRowIndex(), is(-1));
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.github.loyada.jdollarx.ElementProperty;
+import com.github.loyada.jdollarx.Path;
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static com.github.loyada.jdollarx.BasicPath.div;
+import static com.github.loyada.jdollarx.ElementProperties.hasAggregatedTextEqualTo;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class AgGridStreamingVerificationTest {
+    private static final Path container = div.withClass("grid");
+    private static final String scanScript = "var scroller = arguments[0], content = arguments[1], rowXpath";
+    private WebDriver driver;
+    private JavascriptExecutor js;
+    private WebElement element;
+    private final Queue<List<?>> scanResults = new LinkedList<>();
+
+    @Before
+    public void setup() {
+        driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        js = (JavascriptExecutor) driver;
+        element = mock(WebElement.class);
+        WebDriver.Options options = mock(WebDriver.Options.class);
+        when(options.timeouts()).thenReturn(mock(WebDriver.Timeouts.class));
+        when(driver.manage()).thenReturn(options);
+        when(driver.findElement(any(By.class))).thenReturn(element);
+        when(driver.findElements(any(By.class))).thenReturn(Collections.singletonList(element));
+        when(js.executeAsyncScript(anyString(), anyVararg())).thenReturn(true);
+        when(js.executeScript(contains("advance = arguments[2]"), anyVararg())).thenReturn(asList(asList(
+                asList("name", "Name", Collections.emptyList()),
+                asList("age", "Age", Collections.emptyList())), false));
+        when(js.executeScript(contains(scanScript), anyVararg())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return scanResults.remove();
+            }
+        });
+        InBrowserSinglton.driver = driver;
+    }
+
+    @After
+    public void teardown() {
+        InBrowserSinglton.driver = null;
+    }
+
+    // [matching indexes, indexes to validate, max rendered index, whether it scrolled]
+    private void scanReturns(List<Integer> matching, List<Integer> toValidate, int maxIndex, boolean scrolled) {
+        scanResults.add(asList(matching, toValidate, maxIndex, scrolled));
+    }
+
+    private static Map<String, ElementProperty> row(String name, String age) {
+        return ImmutableMap.of("Name", hasAggregatedTextEqualTo(name), "Age", hasAggregatedTextEqualTo(age));
+    }
+
+    private static AgGrid.AgGridBuilder grid() {
+        return AgGrid.getBuilder().
+                withHeaders(asList("Name", "Age")).
+                withRowsAsElementProperties(asList(row("tony", "30"), row("bob", "40"))).
+                containedIn(container).
+                withStreamingVerification();
+    }
+
+    private List<List<?>> pendingRowsOfEveryScan(int scans) {
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(js, times(scans)).executeScript(contains(scanScript), any(), any(), any(), args.capture());
+        @SuppressWarnings("unchecked")
+        List<List<?>> pending = (List<List<?>>) (List<?>) args.getAllValues();
+        return pending;
+    }
+
+    @Test
+    public void rowsAreMatchedInTheBrowserWhileScrolling() {
+        scanReturns(asList(0), asList(), 0, true);
+        scanReturns(asList(1), asList(), 1, false);
+
+        grid().build().findTableInBrowser();
+
+        List<List<?>> pending = pendingRowsOfEveryScan(2);
+        assertThat(pending.get(0).size(), is(2));
+        assertThat(((List<?>) pending.get(0).get(0)).get(0), is(0));
+        assertThat(((List<?>) pending.get(0).get(0)).get(1).toString(), containsString("tony"));
+        assertThat(pending.get(1).size(), is(1));
+        assertThat(((List<?>) pending.get(1).get(0)).get(0), is(1));
+    }
+
+    @Test
+    public void rowThatDoesNotMatchInTheBrowserIsValidatedInJava() {
+        // row 0 is rendered, but not all its cells are rendered
+        scanReturns(asList(), asList(0), 0, false);
+        scanReturns(asList(1), asList(), 1, false);
+
+        grid().build().findTableInBrowser();
+
+        List<List<?>> pending = pendingRowsOfEveryScan(2);
+        assertThat(pending.get(1).size(), is(1));
+        assertThat(((List<?>) pending.get(1).get(0)).get(0), is(1));
+        // the cells of row 0 were looked for in the DOM
+        ArgumentCaptor<By> found = ArgumentCaptor.forClass(By.class);
+        verify(driver, atLeastOnce()).findElement(found.capture());
+        assertThat(found.getAllValues().stream().anyMatch(by -> by.toString().contains("tony")), is(true));
+    }
+
+    @Test
+    public void mismatchIsReportedByTheValidationInJava() {
+        when(driver.findElement(any(By.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                if (invocation.getArguments()[0].toString().contains("bob")) {
+                    throw new NoSuchElementException("no such cell");
+                }
+                return element;
+            }
+        });
+        scanReturns(asList(0), asList(1), 1, false);
+
+        try {
+            grid().build().findTableInBrowser();
+            fail("expected a mismatch in row 1");
+        } catch (NoSuchElementException e) {
+            assertThat(e.getMessage(), containsString("row with index 1"));
+            assertThat(e.getMessage(), containsString("with aggregated text \"bob\""));
+        }
+        pendingRowsOfEveryScan(1);
+    }
+
+    @Test
+    public void tooManyRowsInStrictMode() {
+        scanReturns(asList(0), asList(), 2, true);
+
+        try {
+            grid().isStrict().build().findTableInBrowser();
+            fail("expected too many rows");
+        } catch (NoSuchElementException e) {
+            assertThat(e.getMessage(), containsString("Found too many rows"));
+        }
+        pendingRowsOfEveryScan(1);
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.loyada.jdollarx.singlebrowser;
+
+import com.github.loyada.jdollarx.BasicPath;
+import com.github.loyada.jdollarx.InBrowser;
+import com.github.loyada.jdollarx.RetryPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BrowserContextTest {
+    private WebDriver staticDriver;
+    private WebElement staticElement;
+
+    @Before
+    public void setup() {
+        staticDriver = mock(WebDriver.class, RETURNS_DEEP_STUBS);
+        staticElement = mock(WebElement.class);
+        when(staticDriver.findElement(By.xpath("//div"))).thenReturn(staticElement);
+        InBrowserSinglton.driver = staticDriver;
+        InBrowserSinglton.setImplicitTimeout(1, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void teardown() {
+        InBrowserSinglton.driver = null;
+    }
+
+    @Test
+    public void contextDriverIsUsedWhileOpen() {
+        WebDriver contextDriver = mock(WebDriver.class);
+        WebElement contextElement = mock(WebElement.class);
+        when(contextDriver.findElement(By.xpath("//div"))).thenReturn(contextElement);
+
+        try (BrowserContext ignored = BrowserContext.open(contextDriver)) {
+            assertThat(InBrowserSinglton.getDriver(), is(contextDriver));
+            assertThat(InBrowserSinglton.find(BasicPath.div), is(contextElement));
+        }
+        assertThat(InBrowserSinglton.getDriver(), is(staticDriver));
+        assertThat(InBrowserSinglton.find(BasicPath.div), is(staticElement));
+    }
+
+    @Test
+    public void settingsArePerContext() {
+        WebDriver contextDriver = mock(WebDriver.class, RETURNS_DEEP_STUBS);
+        try (BrowserContext context = BrowserContext.open(contextDriver)) {
+            InBrowserSinglton.setImplicitTimeout(5, TimeUnit.MILLISECONDS);
+            InBrowserSinglton.setProbing(true);
+            assertThat(InBrowserSinglton.getImplicitTimeoutInMillisec(), is(5L));
+            assertThat(context.isProbing(), is(true));
+            verify(contextDriver.manage().timeouts()).implicitlyWait(5, TimeUnit.MILLISECONDS);
+        }
+        assertThat(InBrowserSinglton.getImplicitTimeoutInMillisec(), is(1000L));
+        assertThat(InBrowserSinglton.isProbing(), is(false));
+        verify(staticDriver.manage().timeouts(), never()).implicitlyWait(5, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void nestedContextsAreRestored() {
+        WebDriver outer = mock(WebDriver.class);
+        WebDriver inner = mock(WebDriver.class);
+        try (BrowserContext ignored = BrowserContext.open(outer)) {
+            BrowserContext.runWith(inner, () -> assertThat(InBrowserSinglton.getDriver(), is(inner)));
+            assertThat(InBrowserSinglton.getDriver(), is(outer));
+        }
+        assertThat(BrowserContext.current().isPresent(), is(false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void contextsMustBeClosedInOrder() {
+        BrowserContext outer = BrowserContext.open(mock(WebDriver.class));
+        BrowserContext inner = BrowserContext.open(mock(WebDriver.class));
+        try {
+            outer.close();
+        } finally {
+            inner.close();
+            outer.close();
+        }
+    }
+
+    @Test
+    public void threadsUseTheirOwnDrivers() throws Exception {
+        final int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<WebElement> expected = new ArrayList<>();
+            List<Future<List<WebElement>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                WebDriver driver = mock(WebDriver.class, RETURNS_DEEP_STUBS);
+                WebElement element = mock(WebElement.class);
+                when(driver.findElement(By.xpath("//div"))).thenReturn(element);
+                expected.add(element);
+                results.add(executor.submit(() -> BrowserContext.callWith(driver, () -> {
+                    List<WebElement> found = new ArrayList<>();
+                    for (int j = 0; j < 50; j++) {
+                        InBrowserSinglton.setImplicitTimeout(j, TimeUnit.MILLISECONDS);
+                        found.add(InBrowserSinglton.find(BasicPath.div));
+                        assertThat(InBrowserSinglton.getImplicitTimeout(), is(j));
+                    }
+                    return found;
+                })));
+            }
+            for (int i = 0; i < threads; i++) {
+                WebElement element = expected.get(i);
+                List<WebElement> found = results.get(i).get(10, TimeUnit.SECONDS);
+                assertThat(found.stream().allMatch(el -> el == element), is(true));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(staticDriver, never()).findElement(By.xpath("//div"));
+        verify(staticDriver.manage().timeouts(), never()).implicitlyWait(anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void everyBrowserHasItsOwnClickRetryPolicy() {
+        RetryPolicy singletonPolicy = InBrowserSinglton.getClickRetryPolicy();
+        assertThat(InBrowser.fromSingleton().getClickRetryPolicy(), sameInstance(singletonPolicy));
+        try (BrowserContext ignored = BrowserContext.open(mock(WebDriver.class))) {
+            RetryPolicy contextPolicy = InBrowserSinglton.getClickRetryPolicy();
+            assertThat(contextPolicy, not(sameInstance(singletonPolicy)));
+            assertThat(InBrowser.fromSingleton().getClickRetryPolicy(), sameInstance(contextPolicy));
+        }
+        assertThat(new InBrowser(staticDriver).getClickRetryPolicy(),
+                not(sameInstance(new InBrowser(staticDriver).getClickRetryPolicy())));
+    }
+}